@@ -0,0 +1,270 @@
+/*
+   Copyright 2016 Cyberian Tiger
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.cyberiantiger.example.stringsets.cluster;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import javax.ws.rs.ProcessingException;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.GenericType;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import org.cyberiantiger.example.stringsets.model.CorpusStatistics;
+import org.cyberiantiger.example.stringsets.model.Data;
+import org.cyberiantiger.example.stringsets.model.Fingerprint;
+import org.cyberiantiger.example.stringsets.model.MembershipQuery;
+import org.cyberiantiger.example.stringsets.model.Partition;
+import org.cyberiantiger.example.stringsets.model.StringSet;
+import org.cyberiantiger.example.stringsets.model.frequency.FrequencyEstimate;
+import org.cyberiantiger.example.stringsets.model.longestchain.ChainSummary;
+import org.cyberiantiger.example.stringsets.model.similarity.Similarity;
+import org.glassfish.jersey.client.ClientProperties;
+import org.glassfish.jersey.jackson.JacksonFeature;
+
+/**
+ * A partition held by another string-sets node, accessed over its REST api.
+ *
+ * Point operations use the normal api of the node, global queries use the
+ * partition api provided by
+ * {@link org.cyberiantiger.example.stringsets.service.PartitionResource}.
+ *
+ * @author antony
+ */
+public class RemotePartition implements Partition {
+
+    /**
+     * System property used to configure the timeout in milliseconds of
+     * connecting to a node.
+     */
+    public static final String CONNECT_TIMEOUT_PROPERTY = "stringsets.nodeConnectTimeoutMillis";
+
+    /**
+     * System property used to configure the timeout in milliseconds of
+     * reading a response from a node.
+     */
+    public static final String READ_TIMEOUT_PROPERTY = "stringsets.nodeReadTimeoutMillis";
+
+    private static final GenericType<List<String>> STRING_LIST = new GenericType<List<String>>() {};
+    private static final GenericType<List<Integer>> ID_LIST = new GenericType<List<Integer>>() {};
+    private static final GenericType<LinkedHashMap<Integer, LinkedHashSet<String>>> SET_MAP = new GenericType<LinkedHashMap<Integer, LinkedHashSet<String>>>() {};
+    private static final GenericType<HashMap<String, Integer>> FREQUENCIES = new GenericType<HashMap<String, Integer>>() {};
+    private static final GenericType<List<FrequencyEstimate>> FREQUENCY_ESTIMATES = new GenericType<List<FrequencyEstimate>>() {};
+    private static final GenericType<TreeMap<Integer, Integer>> HISTOGRAM = new GenericType<TreeMap<Integer, Integer>>() {};
+    private static final GenericType<Map<Integer, ChainSummary>> CHAIN_SUMMARIES = new GenericType<Map<Integer, ChainSummary>>() {};
+    private static final GenericType<List<Similarity>> SIMILARITIES = new GenericType<List<Similarity>>() {};
+    private static final GenericType<LinkedHashMap<Integer, List<String>>> MEMBERS = new GenericType<LinkedHashMap<Integer, List<String>>>() {};
+
+    /**
+     * The base target of the node.
+     */
+    private final WebTarget target;
+
+    /**
+     * The client of the target, closed by {@link #close()}, or null if it
+     * is not ours to close.
+     */
+    private final Client client;
+
+    /**
+     * Create a RemotePartition for a node.
+     *
+     * @param target the base target of the node's api
+     */
+    public RemotePartition(WebTarget target) {
+        this(target, null);
+    }
+
+    private RemotePartition(WebTarget target, Client client) {
+        this.target = target;
+        this.client = client;
+    }
+
+    /**
+     * Create a coordinator data store, with one partition per node.
+     *
+     * Ids continue from the largest id held by any node, if every node can
+     * be reached, otherwise from the largest when an id is first found to
+     * be in use.
+     *
+     * @param uris the base URIs of each node's api, in partition order
+     * @return the coordinator data store
+     */
+    public static Data createCoordinator(String... uris) {
+        Client client = ClientBuilder.newClient()
+                .property(ClientProperties.CONNECT_TIMEOUT, Integer.getInteger(CONNECT_TIMEOUT_PROPERTY, 5000))
+                .property(ClientProperties.READ_TIMEOUT, Integer.getInteger(READ_TIMEOUT_PROPERTY, 60000))
+                .register(JacksonFeature.class);
+        List<RemotePartition> partitions = new ArrayList<>(uris.length);
+        for (String uri : uris) {
+            partitions.add(new RemotePartition(client.target(uri), client));
+        }
+        Data result = new Data(partitions);
+        try {
+            result.seedIds();
+        } catch (ProcessingException | WebApplicationException ex) {
+            // Nodes may start after the coordinator.
+        }
+        return result;
+    }
+
+    @Override
+    public boolean put(int id, StringSet set) {
+        Response response = target.path("partition").path(String.valueOf(id)).request()
+                .put(Entity.json(set.getSet()));
+        try {
+            if (response.getStatus() == Response.Status.CONFLICT.getStatusCode()) {
+                return false;
+            }
+            if (response.getStatusInfo().getFamily() != Response.Status.Family.SUCCESSFUL) {
+                throw new WebApplicationException(response.readEntity(String.class), response.getStatus());
+            }
+            return true;
+        } finally {
+            response.close();
+        }
+    }
+
+    @Override
+    public int getMaxId() {
+        return target.path("partition").path("max_id").request(MediaType.APPLICATION_JSON).get(Integer.class);
+    }
+
+    @Override
+    public void close() {
+        if (client != null) {
+            client.close();
+        }
+    }
+
+    @Override
+    public StringSet get(int id) {
+        return readStringSet(target.path(String.valueOf(id)).request(MediaType.APPLICATION_JSON).get());
+    }
+
+    @Override
+    public StringSet remove(int id) {
+        return readStringSet(target.path(String.valueOf(id)).path("delete").request(MediaType.APPLICATION_JSON).get());
+    }
+
+    /**
+     * Read a string set from a response.
+     *
+     * @param response the response
+     * @return the string set, or null if the response was not found.
+     */
+    private StringSet readStringSet(Response response) {
+        try {
+            if (response.getStatus() == Response.Status.NOT_FOUND.getStatusCode()) {
+                return null;
+            }
+            return new StringSet(new LinkedHashSet<>(response.readEntity(STRING_LIST)));
+        } finally {
+            response.close();
+        }
+    }
+
+    @Override
+    public void clear() {
+        target.path("partition").request().delete(Void.class);
+    }
+
+    @Override
+    public Map<Integer, Set<String>> getMap() {
+        return new LinkedHashMap<>(target.request(MediaType.APPLICATION_JSON).get(SET_MAP));
+    }
+
+    @Override
+    public List<Integer> search(String query) {
+        return target.path("search").request(MediaType.APPLICATION_JSON)
+                .post(Entity.json(query), ID_LIST);
+    }
+
+    @Override
+    public Map<String, Integer> getFrequencies() {
+        return target.path("partition").path("frequencies").request(MediaType.APPLICATION_JSON).get(FREQUENCIES);
+    }
+
+    @Override
+    public List<FrequencyEstimate> getExactlyIn(int min, int max, int offset, int limit) {
+        return new ArrayList<>(target.path("exactly_in_range")
+                .queryParam("min", min).queryParam("max", max)
+                .queryParam("offset", offset).queryParam("limit", limit)
+                .request(MediaType.APPLICATION_JSON).get(FREQUENCY_ESTIMATES));
+    }
+
+    @Override
+    public SortedMap<Integer, Integer> getCountHistogram() {
+        return target.path("exactly_in_histogram").request(MediaType.APPLICATION_JSON).get(HISTOGRAM);
+    }
+
+    @Override
+    public List<FrequencyEstimate> getTopFrequencies(int k) {
+        return new ArrayList<>(target.path("partition").path("top_frequencies").queryParam("k", k)
+                .request(MediaType.APPLICATION_JSON).get(FREQUENCY_ESTIMATES));
+    }
+
+    @Override
+    public Map<String, Integer> estimateFrequencies(Collection<String> strings) {
+        return target.path("partition").path("frequencies").request(MediaType.APPLICATION_JSON)
+                .post(Entity.json(strings), FREQUENCIES);
+    }
+
+    @Override
+    public CorpusStatistics getStatistics() {
+        return target.path("statistics").request(MediaType.APPLICATION_JSON).get(CorpusStatistics.class);
+    }
+
+    @Override
+    public List<String> getLongest() {
+        return new ArrayList<>(target.path("longest").request(MediaType.APPLICATION_JSON).get(STRING_LIST));
+    }
+
+    @Override
+    public Map<Integer, ChainSummary> getChainSummaries() {
+        return target.path("partition").path("chain_summaries").request(MediaType.APPLICATION_JSON).get(CHAIN_SUMMARIES);
+    }
+
+    @Override
+    public List<Similarity> findSimilar(int[] signature, double threshold) {
+        return target.path("partition").path("similar").queryParam("threshold", threshold)
+                .request(MediaType.APPLICATION_JSON).post(Entity.json(signature), SIMILARITIES);
+    }
+
+    @Override
+    public List<Integer> findDuplicates(Fingerprint fingerprint) {
+        return target.path("partition").path("duplicates").path(fingerprint.toString())
+                .request(MediaType.APPLICATION_JSON).get(ID_LIST);
+    }
+
+    @Override
+    public Map<Integer, List<String>> findMembers(List<String> strings, Collection<Integer> ids) {
+        MembershipQuery query = new MembershipQuery(strings, ids == null ? null : new ArrayList<>(ids));
+        return target.path("partition").path("members").request(MediaType.APPLICATION_JSON)
+                .post(Entity.json(query), MEMBERS);
+    }
+}
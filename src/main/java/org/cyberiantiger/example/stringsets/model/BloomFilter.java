@@ -0,0 +1,97 @@
+/*
+   Copyright 2016 Cyberian Tiger
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.cyberiantiger.example.stringsets.model;
+
+import java.util.Collection;
+import org.cyberiantiger.example.stringsets.model.similarity.MinHash;
+
+/**
+ * A Bloom filter of the Strings of a StringSet, so testing whether it
+ * contains a String it doesn't can usually be answered without reading it.
+ *
+ * With 10 bits per String and 7 hashes roughly 1% of Strings not in the
+ * set are reported as possibly in it. Each String is hashed once, with
+ * {@link #hash(String)}, and that hash can be reused to test any number of
+ * filters.
+ *
+ * @author antony
+ */
+final class BloomFilter {
+
+    private static final int BITS_PER_STRING = 10;
+    private static final int HASHES = 7;
+
+    private final long[] bits;
+
+    /**
+     * Create a Bloom filter of some Strings.
+     *
+     * @param strings the Strings
+     */
+    BloomFilter(Collection<String> strings) {
+        this.bits = new long[Math.max(1, (strings.size() * BITS_PER_STRING + 63) / 64)];
+        for (String s : strings) {
+            long hash = hash(s);
+            for (int i = 0; i < HASHES; i++) {
+                int bit = bit(hash, i);
+                bits[bit >>> 6] |= 1L << bit;
+            }
+        }
+    }
+
+    /**
+     * Hash a String for testing filters.
+     *
+     * @param s the String
+     * @return the hash
+     */
+    static long hash(String s) {
+        return MinHash.hash(s);
+    }
+
+    /**
+     * The i'th bit for a hash, derived from it's two halves.
+     */
+    private int bit(long hash, int i) {
+        int h = (int) hash + i * (int) (hash >>> 32);
+        return (int) ((h & 0xffffffffL) % (bits.length * 64L));
+    }
+
+    /**
+     * Test whether the filter might contain a String.
+     *
+     * @param hash the {@link #hash(String)} of the String
+     * @return false if the String is definitely not in the filter
+     */
+    boolean mightContain(long hash) {
+        for (int i = 0; i < HASHES; i++) {
+            int bit = bit(hash, i);
+            if ((bits[bit >>> 6] & 1L << bit) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Get the approximate heap used by the filter.
+     *
+     * @return the approximate size in bytes
+     */
+    long getBytes() {
+        return 16 + bits.length * 8L;
+    }
+}
@@ -0,0 +1,181 @@
+/*
+   Copyright 2016 Cyberian Tiger
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.cyberiantiger.example.stringsets.model;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import java.io.IOException;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An immutable ordered set of Strings built in a single pass by a
+ * {@link StringSetBuilder}, already checked to be a valid StringSet apart
+ * from being empty.
+ *
+ * Rather than a hash set entry per String, a set is an array of the
+ * Strings, an array of their hash codes and an open addressing hash table
+ * of indexes, the same layout as {@link PackedStringSet} but with Strings
+ * on the heap.
+ *
+ * Read from JSON as an array of Strings, streamed straight into a builder
+ * without an intermediate list.
+ *
+ * @author antony
+ */
+@JsonDeserialize(using = CompactStringSet.Deserializer.class)
+public class CompactStringSet extends AbstractSet<String> {
+
+    private final String[] strings;
+    private final int[] hashes;
+
+    /**
+     * Open addressing hash table of index + 1 of each String, 0 if empty.
+     */
+    private final int[] table;
+
+    private final int size;
+    private final int hashCode;
+    private final Fingerprint fingerprint;
+
+    CompactStringSet(String[] strings, int[] hashes, int[] table, int size, int hashCode, Fingerprint fingerprint) {
+        this.strings = strings;
+        this.hashes = hashes;
+        this.table = table;
+        this.size = size;
+        this.hashCode = hashCode;
+        this.fingerprint = fingerprint;
+    }
+
+    static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Get a String.
+     *
+     * @param index the index of the String in iteration order
+     * @return the String
+     */
+    public String get(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index);
+        }
+        return strings[index];
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        if (!(o instanceof String)) {
+            return false;
+        }
+        int hash = o.hashCode();
+        int mask = table.length - 1;
+        for (int slot = spread(hash) & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+            int index = table[slot] - 1;
+            if (hashes[index] == hash && strings[index].equals(o)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Get the fingerprint of our Strings, computed while building.
+     *
+     * @return the fingerprint
+     */
+    Fingerprint getFingerprint() {
+        return fingerprint;
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        return new Iterator<String>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < size;
+            }
+
+            @Override
+            public String next() {
+                if (next >= size) {
+                    throw new NoSuchElementException();
+                }
+                return strings[next++];
+            }
+        };
+    }
+
+    @Override
+    public Object[] toArray() {
+        return Arrays.copyOf(strings, size, Object[].class);
+    }
+
+    /**
+     * Get the approximate heap used by this set, excluding the characters of
+     * the Strings.
+     *
+     * @return the approximate size in bytes
+     */
+    long heapBytes() {
+        return 128 + 4L * (strings.length + hashes.length + table.length) + 56L * size;
+    }
+
+    /**
+     * Reads a JSON array of Strings into a CompactStringSet.
+     */
+    public static class Deserializer extends JsonDeserializer<CompactStringSet> {
+
+        @Override
+        public CompactStringSet deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+            if (!p.isExpectedStartArrayToken()) {
+                throw ctxt.mappingException(CompactStringSet.class);
+            }
+            StringSetBuilder builder = new StringSetBuilder();
+            JsonToken token;
+            while ((token = p.nextToken()) != JsonToken.END_ARRAY) {
+                if (token != JsonToken.VALUE_STRING) {
+                    throw ctxt.mappingException(CompactStringSet.class, token);
+                }
+                try {
+                    builder.add(p.getText());
+                } catch (IllegalArgumentException ex) {
+                    throw new JsonMappingException(ex.getMessage(), p.getCurrentLocation(), ex);
+                }
+            }
+            return builder.build();
+        }
+    }
+}
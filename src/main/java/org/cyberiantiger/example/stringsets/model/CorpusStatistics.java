@@ -0,0 +1,89 @@
+/*
+   Copyright 2016 Cyberian Tiger
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.cyberiantiger.example.stringsets.model;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Statistics for every StringSet in the data store, or a partition of it.
+ *
+ * @author antony
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class CorpusStatistics {
+
+    private final Histogram setSizes;
+    private final Histogram stringLengths;
+
+    /**
+     * Create a CorpusStatistics.
+     *
+     * @param setSizes histogram of the number of Strings in each StringSet
+     * @param stringLengths histogram of the length of every String in every StringSet
+     */
+    @JsonCreator
+    public CorpusStatistics(@JsonProperty("setSizes") Histogram setSizes, @JsonProperty("stringLengths") Histogram stringLengths) {
+        this.setSizes = setSizes;
+        this.stringLengths = stringLengths;
+    }
+
+    /**
+     * Merge the statistics of another partition into these.
+     *
+     * @param other the other statistics
+     * @return these statistics
+     */
+    public CorpusStatistics merge(CorpusStatistics other) {
+        setSizes.merge(other.setSizes);
+        stringLengths.merge(other.stringLengths);
+        return this;
+    }
+
+    /**
+     * Get the number of StringSets.
+     * @return the number of StringSets
+     */
+    public long getSets() {
+        return setSizes.getCount();
+    }
+
+    /**
+     * Get the number of Strings, counting a String once for every StringSet
+     * containing it.
+     * @return the number of Strings
+     */
+    public long getStrings() {
+        return stringLengths.getCount();
+    }
+
+    /**
+     * Get the histogram of the number of Strings in each StringSet.
+     * @return the histogram
+     */
+    public Histogram getSetSizes() {
+        return setSizes;
+    }
+
+    /**
+     * Get the histogram of the length of every String in every StringSet.
+     * @return the histogram
+     */
+    public Histogram getStringLengths() {
+        return stringLengths;
+    }
+}
@@ -15,39 +15,433 @@
 */
 package org.cyberiantiger.example.stringsets.model;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.cyberiantiger.example.stringsets.cluster.RemotePartition;
+import org.cyberiantiger.example.stringsets.model.changes.Change;
+import org.cyberiantiger.example.stringsets.model.changes.ChangeBatch;
+import org.cyberiantiger.example.stringsets.model.changes.ChangeLog;
+import org.cyberiantiger.example.stringsets.model.frequency.FrequencyEstimate;
+import org.cyberiantiger.example.stringsets.model.frequency.HeavyHitters;
+import org.cyberiantiger.example.stringsets.model.longestchain.ChainExplanation;
+import org.cyberiantiger.example.stringsets.model.longestchain.ChainIndex;
+import org.cyberiantiger.example.stringsets.model.longestchain.ChainSummary;
+import org.cyberiantiger.example.stringsets.model.longestchain.LongestChainSolver;
+import org.cyberiantiger.example.stringsets.model.similarity.LshIndex;
+import org.cyberiantiger.example.stringsets.model.similarity.MinHash;
+import org.cyberiantiger.example.stringsets.model.similarity.Similarity;
 
 /**
+ * In memory data store for StringSets.
+ *
+ * StringSets are partitioned across a number of shards by id, each shard has
+ * it's own lock and indexes. Global queries are computed on every shard in
+ * parallel and the partial results merged.
+ *
+ * Shards may also be {@link RemotePartition}s held by other nodes, in which
+ * case this store acts as a coordinator, routing requests to the node owning
+ * an id and merging the results of global queries from every node.
+ *
+ * Creates, deletes and clears are recorded in a {@link ChangeLog}.
+ *
+ * Changes share the read lock of a read write lock, so they run
+ * concurrently with each other, and a consistent snapshot is taken by
+ * briefly holding the write lock while references to every StringSet are
+ * copied.
+ *
  * @author antony
  */
 public class Data {
 
-    public static final Data instance = new Data();
     /**
-     * The next id for a created StringSet.
+     * System property used to configure the number of shards of {@link #instance}.
      */
-    private int nextId = 1;
+    public static final String SHARDS_PROPERTY = "stringsets.shards";
 
     /**
-     * Our in memory data store.
+     * System property used to configure {@link #instance} as a coordinator,
+     * a comma separated list of the base URIs of every node.
      */
-    private final Map<Integer, StringSet> data = new LinkedHashMap<>();
+    public static final String NODES_PROPERTY = "stringsets.nodes";
+
+    /**
+     * System property used to enable storage deduplication for {@link #instance}.
+     */
+    public static final String DEDUPLICATE_PROPERTY = "stringsets.deduplicate";
+
+    public static final Data instance = createInstance(null);
+
+    /**
+     * Maximum number of changes read at a time when updating {@link #chainIndex}.
+     */
+    private static final int CHAIN_BATCH = 4096;
+
+    /**
+     * The next id for a created StringSet, a long so that it can't wrap
+     * around to ids in use once every id has been allocated.
+     */
+    private final AtomicLong nextId = new AtomicLong(1);
+
+    /**
+     * Our in memory data store, partitioned by id.
+     */
+    private final Partition[] shards;
+
+    /**
+     * Log of changes made through this store.
+     */
+    private final ChangeLog changeLog = new ChangeLog();
+
+    /**
+     * Held for reading while making changes, and for writing while taking or
+     * loading a snapshot.
+     */
+    private final ReadWriteLock snapshotLock = new ReentrantReadWriteLock();
+
+    /**
+     * Whether StringSets identical to an existing StringSet share it's storage.
+     */
+    private volatile boolean deduplicate;
+
+    /**
+     * Tiered storage for the Strings of our StringSets, or null to keep them
+     * all on the heap.
+     */
+    private volatile SegmentStore segmentStore;
+
+    /**
+     * Arena the Strings of our StringSets are packed into, or null to keep
+     * them as Strings.
+     */
+    private volatile StringArena arena;
+
+    /**
+     * The number of heavy hitter candidates each shard keeps approximate
+     * frequencies for, or 0 if they keep exact frequencies.
+     */
+    private volatile int heavyHitters;
+
+    /**
+     * The approximate heap used by the StringSets of our local shards.
+     */
+    private final AtomicLong bytes = new AtomicLong();
+
+    /**
+     * The maximum of {@link #bytes}, or 0 for no limit.
+     */
+    private volatile long maxBytes;
+
+    /**
+     * The longest chain across every StringSet of our local shards, brought
+     * up to date from {@link #changeLog} when read.
+     */
+    private final ChainIndex chainIndex = new ChainIndex();
+
+    /**
+     * Create a data store with a single shard.
+     */
+    public Data() {
+        this(1);
+    }
+
+    /**
+     * Create a data store with the specified number of shards.
+     *
+     * @param shardCount the number of shards
+     * @throws IllegalArgumentException if shardCount is less than one
+     */
+    public Data(int shardCount) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("Invalid shard count: " + shardCount);
+        }
+        this.shards = new Partition[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new DataShard(shardCount, i);
+        }
+    }
+
+    /**
+     * Create a data store from a list of partitions, ids are assigned to
+     * partitions by id modulo the number of partitions, so every coordinator
+     * must use the same partitions in the same order.
+     *
+     * @param partitions the partitions
+     * @throws IllegalArgumentException if there are no partitions
+     */
+    public Data(List<? extends Partition> partitions) {
+        if (partitions.isEmpty()) {
+            throw new IllegalArgumentException("No partitions");
+        }
+        this.shards = partitions.toArray(new Partition[partitions.size()]);
+    }
+
+    /**
+     * Create a data store as configured by system properties, either our
+     * singleton instance or the store of a namespace.
+     *
+     * In coordinator mode the store of a namespace coordinates the same
+     * namespace on every node, with tiered storage it's segment file is the
+     * configured file with the name of the namespace appended.
+     *
+     * @param namespace the name of the namespace, or null for our singleton instance
+     * @return the data store
+     */
+    public static Data createInstance(String namespace) {
+        String nodes = System.getProperty(NODES_PROPERTY, "").trim();
+        int heavyHitters = Integer.getInteger(HeavyHitters.CAPACITY_PROPERTY, 0);
+        if (!nodes.isEmpty()) {
+            String[] uris = nodes.split("\\s*,\\s*");
+            if (namespace != null) {
+                for (int i = 0; i < uris.length; i++) {
+                    uris[i] = uris[i].replaceAll("/+$", "") + "/ns/" + namespace;
+                }
+            }
+            Data coordinator = RemotePartition.createCoordinator(uris);
+            coordinator.setHeavyHitters(heavyHitters);
+            return coordinator;
+        }
+        Data result = new Data(Integer.getInteger(SHARDS_PROPERTY, 1));
+        result.setHeavyHitters(heavyHitters);
+        result.setDeduplicate(Boolean.getBoolean(DEDUPLICATE_PROPERTY));
+        if (Boolean.getBoolean(StringArena.PACKED_PROPERTY)) {
+            result.setArena(new StringArena());
+        }
+        String segmentFile = System.getProperty(SegmentStore.FILE_PROPERTY, "").trim();
+        if (!segmentFile.isEmpty()) {
+            if (namespace != null) {
+                segmentFile += "." + namespace;
+            }
+            try {
+                result.setSegmentStore(SegmentStore.open(Paths.get(segmentFile),
+                        Long.getLong(SegmentStore.HEAP_BYTES_PROPERTY, 256L << 20)));
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Set whether a newly created StringSet which has the same strings in
+     * the same order as an existing StringSet shares the existing StringSet's
+     * storage, rather than keeping it's own copy.
+     *
+     * @param deduplicate true to share storage
+     */
+    public void setDeduplicate(boolean deduplicate) {
+        this.deduplicate = deduplicate;
+    }
+
+    /**
+     * Set the tiered store used for the Strings of StringSets created from
+     * now on, see {@link SegmentStore}.
+     *
+     * @param segmentStore the store, or null to keep Strings on the heap
+     */
+    public void setSegmentStore(SegmentStore segmentStore) {
+        this.segmentStore = segmentStore;
+    }
+
+    /**
+     * Set the arena the Strings of StringSets created from now on are
+     * packed into, see {@link PackedStringSet}.
+     *
+     * @param arena the arena, or null to keep Strings as Strings
+     */
+    public void setArena(StringArena arena) {
+        this.arena = arena;
+    }
+
+    /**
+     * Set whether to keep exact frequencies of every String, or approximate
+     * frequencies of the most frequent Strings in constant memory, see
+     * {@link HeavyHitters}. Each shard rebuilds it's indexes in the
+     * background, see {@link #isIndexed()}.
+     *
+     * Without exact frequencies most_common and the counts of
+     * {@link #getTopFrequencies(int)} are estimates,
+     * {@link #getFrequencies()} and {@link #getExactlyIn(int)} are
+     * unsupported and {@link #getLongest()} reads every StringSet. In
+     * coordinator mode every node must be configured the same.
+     *
+     * @param capacity the number of candidates each shard keeps, or 0 to
+     *        keep exact frequencies
+     * @throws IllegalArgumentException if capacity is negative
+     */
+    public void setHeavyHitters(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Invalid heavy hitters capacity: " + capacity);
+        }
+        this.heavyHitters = capacity;
+        for (Partition shard : shards) {
+            if (shard instanceof DataShard) {
+                ((DataShard) shard).setHeavyHitters(capacity);
+            }
+        }
+    }
+
+    /**
+     * Check whether every shard has built it's indexes. After loading a
+     * snapshot or changing how frequencies are kept each shard builds it's
+     * indexes in the background, until then queries of the shard read every
+     * StringSet instead, which gives the same results more slowly. In
+     * coordinator mode this only covers this JVM.
+     *
+     * @return true unless a shard is building it's indexes
+     */
+    public boolean isIndexed() {
+        for (Partition shard : shards) {
+            if (shard instanceof DataShard && !((DataShard) shard).isIndexed()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Check whether every shard is in this JVM, rather than a remote node.
+     *
+     * @return true unless this is a coordinator
+     */
+    public boolean isLocal() {
+        for (Partition shard : shards) {
+            if (!(shard instanceof DataShard)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Wait for every shard to build it's indexes, see {@link #isIndexed()}.
+     *
+     * @throws java.util.concurrent.CompletionException if building the
+     *         indexes of a shard failed, in which case it's queries keep
+     *         reading every StringSet
+     */
+    public void awaitIndexes() {
+        for (Partition shard : shards) {
+            if (shard instanceof DataShard) {
+                ((DataShard) shard).awaitIndexes();
+            }
+        }
+    }
+
+    /**
+     * Set the maximum approximate heap the StringSets of this store may use,
+     * creating a StringSet which would take it over the limit fails. Each
+     * StringSet is charged for, even when deduplicated. In coordinator mode
+     * limits are enforced by each node.
+     *
+     * @param maxBytes the limit in bytes, or 0 for no limit
+     * @throws IllegalArgumentException if maxBytes is negative
+     */
+    public void setMaxBytes(long maxBytes) {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("Invalid maximum bytes: " + maxBytes);
+        }
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Get the maximum approximate heap the StringSets of this store may use.
+     *
+     * @return the limit in bytes, or 0 for no limit
+     */
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Get the approximate heap used by the StringSets of this store, 0 in
+     * coordinator mode.
+     *
+     * @return the size in bytes
+     */
+    public long getBytes() {
+        return bytes.get();
+    }
+
+    /**
+     * Charge for a StringSet against our limit.
+     *
+     * @param size the approximate size of the StringSet
+     * @throws QuotaExceededException if it would take us over our limit
+     */
+    private void charge(long size) {
+        long max = maxBytes;
+        long used;
+        do {
+            used = bytes.get();
+            if (max > 0 && used + size > max) {
+                throw new QuotaExceededException("Memory limit of " + max + " bytes exceeded");
+            }
+        } while (!bytes.compareAndSet(used, used + size));
+    }
+
+    /**
+     * Get the log of changes made through this store, in coordinator mode
+     * changes made through other coordinators are not included.
+     *
+     * @return the change log
+     */
+    public ChangeLog getChangeLog() {
+        return changeLog;
+    }
+
+    /**
+     * Get the number of shards.
+     *
+     * @return the number of shards
+     */
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    /**
+     * Get the shard which owns an id.
+     *
+     * @param id the id
+     * @return the owning shard
+     */
+    private Partition shardFor(int id) {
+        return shards[Math.floorMod(id, shards.length)];
+    }
 
     /**
      * Get all our data.
      * 
      * @return An unmodifiable copy of all the data
      */
-    public synchronized Map<Integer,Set<String>> getMap() {
+    public Map<Integer,Set<String>> getMap() {
+        List<Map.Entry<Integer, Set<String>>> entries = Arrays.stream(shards).parallel()
+                .flatMap(s -> s.getMap().entrySet().stream())
+                .sorted(Map.Entry.comparingByKey())
+                .collect(Collectors.toList());
         Map<Integer, Set<String>> result = new LinkedHashMap<>();
-        data.entrySet().stream().forEach((e) -> {
-            result.put(e.getKey(), Collections.unmodifiableSet(e.getValue().getSet()));
+        entries.stream().forEach((e) -> {
+            result.put(e.getKey(), Collections.unmodifiableSet(e.getValue()));
         });
         return Collections.unmodifiableMap(result);
     }
@@ -55,8 +449,36 @@ public class Data {
     /**
      * Clear the data store, primarily used by tests.
      */
-    public synchronized void clear() {
-        this.data.clear();
+    public void clear() {
+        Lock lock = snapshotLock.readLock();
+        lock.lock();
+        try {
+            clearShards();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void clearShards() {
+        long sequence = changeLog.reserve();
+        try {
+            for (Partition shard : shards) {
+                shard.clear();
+            }
+            bytes.set(0);
+        } finally {
+            changeLog.publish(sequence, Change.Type.CLEAR, 0);
+        }
+        SegmentStore store = segmentStore;
+        if (store != null) {
+            try {
+                segmentStore = store.clear();
+            } catch (IOException ex) {
+                // Keep Strings on the heap from now on.
+                segmentStore = null;
+                throw new UncheckedIOException(ex);
+            }
+        }
     }
 
     /**
@@ -64,8 +486,11 @@ public class Data {
      * 
      * @return An unmodifiable Set of all our keys
      */
-    public synchronized Set<Integer> getKeys() {
-        return Collections.unmodifiableSet(data.keySet());
+    public Set<Integer> getKeys() {
+        return Collections.unmodifiableSet(new LinkedHashSet<>(Arrays.stream(shards).parallel()
+                .flatMap(s -> s.getMap().keySet().stream())
+                .sorted()
+                .collect(Collectors.toList())));
     }
 
     /**
@@ -74,32 +499,396 @@ public class Data {
      * @param id the id.
      * @return The StringSet or null if it does not exist
      */
-    public synchronized StringSet get(int id) {
-        return data.get(id);
+    public StringSet get(int id) {
+        return shardFor(id).get(id);
     }
 
     /**
-     * Create a StringSet from a set of strings, and return the
-     * id it is stored under.
+     * Check a set of strings is a valid StringSet.
      * 
      * The set must not be empty, and it must contain no empty strings.
      * 
-     * @param set The set of strings (expected to have order, such as a LinkedHashSet).
-     * @return the id of the newly created StringSet
+     * @param set The set of strings
      * @throws IllegalArgumentException if the set is empty, or contains empty strings.
      */
-    public synchronized int create(Set<String> set) {
+    public static void validate(Set<String> set) {
         if (set.isEmpty()) {
             throw new IllegalArgumentException("Empty sets not allowed");
         }
+        if (set instanceof CompactStringSet) {
+            // Checked by StringSetBuilder as it was read.
+            return;
+        }
         for (String s : set) {
             if (s.length() == 0) throw new IllegalArgumentException("Empty strings not allowed");
         }
-        int result = nextId++;
-        data.put(result, new StringSet(set));
+    }
+
+    /**
+     * Create a StringSet from a set of strings, and return the
+     * id it is stored under.
+     * 
+     * The set must not be empty, and it must contain no empty strings.
+     * 
+     * @param set The set of strings (expected to have order, such as a LinkedHashSet).
+     * @return the id of the newly created StringSet
+     * @throws IllegalArgumentException if the set is empty, or contains empty strings.
+     * @throws QuotaExceededException if the set would take this store over it's memory limit
+     * @throws IllegalStateException if every id has been allocated
+     */
+    public int create(Set<String> set) {
+        validate(set);
+        Fingerprint fingerprint = Fingerprint.of(set);
+        StringSet stringSet = deduplicate ? findIdentical(set, fingerprint) : null;
+        if (stringSet == null) {
+            stringSet = newStringSet(set, fingerprint);
+        }
+        int result = allocateId();
+        while (!put(result, stringSet)) {
+            // Only in coordinator mode, the id was allocated by another
+            // coordinator, or by this one before a restart.
+            seedIds();
+            result = allocateId();
+        }
+        return result;
+    }
+
+    /**
+     * Continue allocating ids after the largest id in any shard, so that a
+     * coordinator does not allocate ids already allocated by another, or by
+     * itself before a restart. Coordinators sharing nodes allocate ids
+     * independently, so their ids interleave, but are never reused.
+     */
+    public void seedIds() {
+        nextId.accumulateAndGet(getMaxId() + 1L, Math::max);
+    }
+
+    /**
+     * Get the largest id in use.
+     *
+     * @return the id, or 0 if there are no StringSets
+     */
+    public int getMaxId() {
+        int result = 0;
+        for (Partition shard : shards) {
+            result = Math.max(result, shard.getMaxId());
+        }
+        return result;
+    }
+
+    /**
+     * Release any resources held by our shards, such as the connections of
+     * a coordinator to it's nodes, and close our segment store.
+     */
+    public void close() {
+        for (Partition shard : shards) {
+            shard.close();
+        }
+        SegmentStore store = segmentStore;
+        if (store != null) {
+            try {
+                store.close();
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+    }
+
+    /**
+     * Allocate an id for a new StringSet.
+     *
+     * @return the id
+     * @throws IllegalStateException if every id has been allocated
+     */
+    private int allocateId() {
+        long id = nextId.getAndIncrement();
+        if (id > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Every id has been allocated");
+        }
+        return (int) id;
+    }
+
+    private StringSet newStringSet(Set<String> set, Fingerprint fingerprint) {
+        StringSet result = new StringSet(set, fingerprint, arena);
+        SegmentStore store = segmentStore;
+        if (store != null) {
+            store.add(result);
+        }
+        return result;
+    }
+
+    /**
+     * Find an existing StringSet with the same strings in the same order.
+     *
+     * @param set the set of strings
+     * @param fingerprint the fingerprint of the set
+     * @return the existing StringSet, or null if there isn't one
+     */
+    private StringSet findIdentical(Set<String> set, Fingerprint fingerprint) {
+        for (int id : findDuplicates(fingerprint)) {
+            StringSet existing = get(id);
+            if (existing != null && existing.getSet().size() == set.size()) {
+                Iterator<String> i = existing.getSet().iterator();
+                boolean identical = true;
+                for (String s : set) {
+                    if (!s.equals(i.next())) {
+                        identical = false;
+                        break;
+                    }
+                }
+                if (identical) {
+                    return existing;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Find StringSets with the same content as a fingerprint.
+     *
+     * @param fingerprint the fingerprint
+     * @return the ids of StringSets with the same content, in id order
+     */
+    public List<Integer> findDuplicates(Fingerprint fingerprint) {
+        if (shards.length == 1) {
+            return shards[0].findDuplicates(fingerprint);
+        }
+        return Arrays.stream(shards).parallel()
+                .flatMap(s -> s.findDuplicates(fingerprint).stream())
+                .sorted()
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Find StringSets with the same strings as a set, in any order.
+     *
+     * @param set the set of strings
+     * @return the ids of StringSets with the same strings, in id order
+     */
+    public List<Integer> findDuplicates(Set<String> set) {
+        return findDuplicates(Fingerprint.of(set));
+    }
+
+    /**
+     * Find other StringSets with the same strings as an existing StringSet,
+     * in any order.
+     *
+     * @param id the id of the StringSet
+     * @return the ids of other StringSets with the same strings, in id order
+     * @throws IllegalArgumentException if the StringSet does not exist
+     */
+    public List<Integer> findDuplicates(int id) {
+        StringSet set = get(id);
+        if (set == null) {
+            throw new IllegalArgumentException("Unknown id: " + id);
+        }
+        List<Integer> result = findDuplicates(set.getFingerprint());
+        result.remove((Integer) id);
         return result;
     }
 
+    /**
+     * Find which of many Strings are in which StringSets, in one pass over
+     * the StringSets rather than a search for each String. The Bloom filter
+     * of each StringSet rejects most Strings it doesn't contain without
+     * reading it.
+     *
+     * The pass holds the snapshot read lock, so a load or clear is never
+     * seen half done, but StringSets created or deleted concurrently may or
+     * may not be included, each StringSet is answered for as a whole.
+     *
+     * @param strings the Strings to look for, duplicates are ignored
+     * @param ids the ids of the StringSets to look in, or null for every StringSet
+     * @return map of id to the Strings in that StringSet in the order given,
+     *         omitting StringSets which don't exist or contain none of them
+     * @throws IllegalArgumentException if strings is null, or strings or ids
+     *         contain null
+     */
+    public SortedMap<Integer, List<String>> findMembers(List<String> strings, List<Integer> ids) {
+        if (strings == null || strings.contains(null)) {
+            throw new IllegalArgumentException("Invalid strings");
+        }
+        if (ids != null && ids.contains(null)) {
+            throw new IllegalArgumentException("Invalid ids");
+        }
+        List<String> distinct = new ArrayList<>(new LinkedHashSet<>(strings));
+        List<List<Integer>> byShard = null;
+        if (ids != null) {
+            byShard = new ArrayList<>(shards.length);
+            for (int i = 0; i < shards.length; i++) {
+                byShard.add(new ArrayList<>());
+            }
+            for (int id : new LinkedHashSet<>(ids)) {
+                byShard.get(Math.floorMod(id, shards.length)).add(id);
+            }
+        }
+        List<List<Integer>> shardIds = byShard;
+        SortedMap<Integer, List<String>> result = new TreeMap<>();
+        Lock lock = snapshotLock.readLock();
+        lock.lock();
+        try {
+            IntStream.range(0, shards.length).parallel()
+                    .filter(i -> shardIds == null || !shardIds.get(i).isEmpty())
+                    .mapToObj(i -> shards[i].findMembers(distinct, shardIds == null ? null : shardIds.get(i)))
+                    .collect(Collectors.toList())
+                    .forEach(result::putAll);
+        } finally {
+            lock.unlock();
+        }
+        return result;
+    }
+
+    /**
+     * Store a StringSet under an id chosen by a coordinator, subject to the
+     * same constraints as {@link Data#create(java.util.Set)}.
+     *
+     * @param id the id to store the StringSet under
+     * @param set The set of strings (expected to have order, such as a LinkedHashSet).
+     * @return true if it was stored, false if the id is already in use
+     * @throws IllegalArgumentException if the id is not positive, the set is
+     *         empty, or contains empty strings.
+     */
+    public boolean store(int id, Set<String> set) {
+        validate(set);
+        if (id < 1) {
+            throw new IllegalArgumentException("Invalid id: " + id);
+        }
+        nextId.accumulateAndGet(id + 1L, Math::max);
+        return put(id, newStringSet(set, Fingerprint.of(set)));
+    }
+
+    /**
+     * Put a new StringSet in it's shard, recording the change.
+     *
+     * @param id the id
+     * @param stringSet the StringSet
+     * @return true if it was stored, false if the id is already in use
+     */
+    private boolean put(int id, StringSet stringSet) {
+        Partition shard = shardFor(id);
+        // Sized before reserving a sequence number, as it walks the whole
+        // set, and no later change can be read until this one is published.
+        long size = shard instanceof DataShard ? stringSet.getBytes() : 0;
+        Lock lock = snapshotLock.readLock();
+        lock.lock();
+        long sequence = changeLog.reserve();
+        Change.Type type = null;
+        try {
+            charge(size);
+            if (!shard.put(id, stringSet)) {
+                bytes.addAndGet(-size);
+                return false;
+            }
+            type = Change.Type.CREATE;
+            return true;
+        } finally {
+            changeLog.publish(sequence, type, id);
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Take a consistent point in time snapshot of every StringSet.
+     *
+     * Changes are only blocked while references to the StringSets are copied
+     * from each shard, not while the snapshot is used.
+     *
+     * @return an unmodifiable map of id to StringSet, in id order
+     * @throws UnsupportedOperationException in coordinator mode, where each
+     *         node must be snapshotted separately
+     */
+    public Map<Integer, StringSet> snapshot() {
+        List<Map<Integer, StringSet>> copies = new ArrayList<>(shards.length);
+        Lock lock = snapshotLock.writeLock();
+        lock.lock();
+        try {
+            for (Partition shard : shards) {
+                if (!(shard instanceof DataShard)) {
+                    throw new UnsupportedOperationException("Snapshots must be taken on each node");
+                }
+                copies.add(((DataShard) shard).getStringSets());
+            }
+        } finally {
+            lock.unlock();
+        }
+        List<Map.Entry<Integer, StringSet>> entries = copies.stream()
+                .flatMap(m -> m.entrySet().stream())
+                .sorted(Map.Entry.comparingByKey())
+                .collect(Collectors.toList());
+        Map<Integer, StringSet> result = new LinkedHashMap<>(entries.size() * 4 / 3 + 1);
+        for (Map.Entry<Integer, StringSet> e : entries) {
+            result.put(e.getKey(), e.getValue());
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    /**
+     * Replace every StringSet with those of a snapshot, keeping their ids.
+     *
+     * StringSets are created in parallel before changes are blocked, then
+     * each shard stores it's StringSets. Each shard builds it's indexes once
+     * in the background, so the StringSets can be queried as soon as this
+     * returns, see {@link #isIndexed()}.
+     *
+     * @param sets map of id to set of strings
+     * @throws IllegalArgumentException if any id is not positive, or any set
+     *         is empty or contains empty strings, in which case nothing is
+     *         changed
+     * @throws QuotaExceededException if the sets would take this store over
+     *         it's memory limit, in which case nothing is changed
+     */
+    public void load(Map<Integer, Set<String>> sets) {
+        List<Map.Entry<Integer, Set<String>>> entries = new ArrayList<>(sets.entrySet());
+        StringSet[] stringSets = new StringSet[entries.size()];
+        Arrays.parallelSetAll(stringSets, i -> {
+            Map.Entry<Integer, Set<String>> e = entries.get(i);
+            if (e.getKey() < 1) {
+                throw new IllegalArgumentException("Invalid id: " + e.getKey());
+            }
+            validate(e.getValue());
+            return new StringSet(e.getValue(), Fingerprint.of(e.getValue()), arena);
+        });
+        List<Map<Integer, StringSet>> byShard = new ArrayList<>(shards.length);
+        for (int i = 0; i < shards.length; i++) {
+            byShard.add(new LinkedHashMap<>());
+        }
+        long size = 0;
+        for (StringSet set : stringSets) {
+            size += set.getBytes();
+        }
+        long max = maxBytes;
+        if (max > 0 && size > max) {
+            throw new QuotaExceededException("Memory limit of " + max + " bytes exceeded");
+        }
+        int maxId = 0;
+        for (int i = 0; i < stringSets.length; i++) {
+            int id = entries.get(i).getKey();
+            byShard.get(Math.floorMod(id, shards.length)).put(id, stringSets[i]);
+            maxId = Math.max(maxId, id);
+        }
+        Lock lock = snapshotLock.writeLock();
+        lock.lock();
+        try {
+            clearShards();
+            IntStream.range(0, shards.length).parallel()
+                    .forEach(i -> shards[i].putAll(byShard.get(i)));
+            bytes.set(size);
+            SegmentStore store = segmentStore;
+            if (store != null) {
+                for (StringSet set : stringSets) {
+                    store.add(set);
+                }
+            }
+            nextId.accumulateAndGet(maxId + 1L, Math::max);
+            for (int i = 0; i < stringSets.length; i++) {
+                changeLog.publish(changeLog.reserve(), Change.Type.CREATE, entries.get(i).getKey());
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
     /**
      * Create a new StringSet as an intersection of two existing StringSets.
      * 
@@ -115,39 +904,167 @@ public class Data {
      * @throws IllegalArgumentException if either string set does not exist, or
      *         if the resulting set is empty or contains empty strings.
      */
-    public synchronized int createIntersection(int a, int b) {
-        if (!data.containsKey(a)) {
-            throw new IllegalArgumentException("Unknown id: " + a);
+    public int createIntersection(int a, int b) {
+        return create(SetOperation.INTERSECTION, Arrays.asList(a, b));
+    }
+
+    /**
+     * Get the sets of strings for a list of ids.
+     *
+     * @param ids the ids
+     * @return the sets of strings, in the same order as the ids
+     * @throws IllegalArgumentException if there are no ids, or any string set does not exist
+     */
+    private List<Set<String>> getSets(List<Integer> ids) {
+        if (ids.isEmpty()) {
+            throw new IllegalArgumentException("No ids");
         }
-        if (!data.containsKey(b)) {
-            throw new IllegalArgumentException("Unknown id: " + b);
+        List<Set<String>> result = new ArrayList<>(ids.size());
+        for (int id : ids) {
+            StringSet set = get(id);
+            if (set == null) {
+                throw new IllegalArgumentException("Unknown id: " + id);
+            }
+            result.add(set.getSet());
         }
-        Set<String> newSet = new LinkedHashSet<>();
-        newSet.addAll(data.get(a).getSet());
-        newSet.retainAll(data.get(b).getSet());
-        return create(newSet);
+        return result;
+    }
+
+    /**
+     * Create a new StringSet as the result of a set operation on existing
+     * StringSets.
+     * 
+     * Note: the order of the result is the order in which each string first
+     * appears, taking the StringSets in the order of the ids, see
+     * {@link SetOperation}.
+     * 
+     * StringSets with the ids must exist, and the resulting Set must satisfy
+     * the constraints of {@link Data#create(java.util.Set)}. 
+     * 
+     * @param operation The set operation
+     * @param ids The ids of the StringSets to apply the operation to
+     * @return The id of the newly created StringSet
+     * @throws IllegalArgumentException if there are no ids, any string set
+     *         does not exist, or if the resulting set is empty.
+     */
+    public int create(SetOperation operation, List<Integer> ids) {
+        return create(operation.apply(getSets(ids)));
+    }
+
+    /**
+     * Count the size of the result of a set operation on existing StringSets,
+     * without creating it.
+     * 
+     * @param operation The set operation
+     * @param ids The ids of the StringSets to apply the operation to
+     * @return The number of strings in the result
+     * @throws IllegalArgumentException if there are no ids, or any string set does not exist
+     */
+    public int count(SetOperation operation, List<Integer> ids) {
+        return operation.count(getSets(ids));
     }
 
     /**
      * Search for StringSets containing a specific String.
      * 
      * @param query the string to search for
-     * @return A list of ids of matching StringSets
+     * @return A list of ids of matching StringSets, in id order, an
+     *         {@link IdList} unless every StringSet is in one remote partition
      */
-    public synchronized List<Integer> search(String query) {
-        return data.entrySet().stream()
-                .filter(e -> (e.getValue().getSet().contains(query)))
-                .map(e -> e.getKey())
+    public List<Integer> search(String query) {
+        if (shards.length == 1) {
+            return shards[0].search(query);
+        }
+        List<List<Integer>> found = Arrays.stream(shards).parallel()
+                .map(s -> s.search(query))
                 .collect(Collectors.toList());
+        IdList result = new IdList(found.stream().mapToInt(List::size).sum());
+        for (List<Integer> ids : found) {
+            result.addAll(ids);
+        }
+        result.sortInts();
+        return result;
     }
 
     /**
      * Delete a StringSet.
+     *
+     * Deleting takes no shard monitor and the change log takes no lock, it
+     * only waits while a snapshot, load or clear holds the snapshot lock, a
+     * shard briefly freezes a copy of it's StringSets to rebuild it's
+     * indexes, or the change log is full of unpublished changes. With a
+     * segment store it then checks for other ids sharing the StringSet,
+     * which takes each shard's monitor, and the store's monitor to stop
+     * managing it.
+     *
      * @param id The id of the StringSet to delete
      * @return the deleted StringSet or null if it did not exist
      */
-    public synchronized StringSet delete(int id) {
-        return data.remove(id);
+    public StringSet delete(int id) {
+        Lock lock = snapshotLock.readLock();
+        lock.lock();
+        long sequence = changeLog.reserve();
+        StringSet result = null;
+        try {
+            Partition shard = shardFor(id);
+            result = shard.remove(id);
+            if (result != null && shard instanceof DataShard) {
+                bytes.addAndGet(-result.getBytes());
+            }
+        } finally {
+            changeLog.publish(sequence, result != null ? Change.Type.DELETE : null, id);
+            lock.unlock();
+        }
+        if (result != null) {
+            release(result);
+        }
+        return result;
+    }
+
+    /**
+     * Stop managing a deleted StringSet in our segment store, unless it's
+     * storage is shared with another id.
+     *
+     * @param set the deleted StringSet
+     */
+    private void release(StringSet set) {
+        SegmentStore store = segmentStore;
+        if (store != null && findDuplicates(set.getFingerprint()).stream().noneMatch(i -> get(i) == set)) {
+            store.remove(set);
+        }
+    }
+
+    /**
+     * Get the number of StringSets containing each String, summed over
+     * every shard.
+     *
+     * @return a map of String to the number of StringSets containing it
+     * @throws UnsupportedOperationException if only approximate frequencies are kept
+     */
+    public Map<String, Integer> getFrequencies() {
+        if (heavyHitters > 0) {
+            throw new UnsupportedOperationException("Only approximate frequencies are kept");
+        }
+        return Arrays.stream(shards).parallel()
+                .map(Partition::getFrequencies)
+                .reduce((a, b) -> {
+                    Map<String, Integer> into = a.size() >= b.size() ? a : b;
+                    Map<String, Integer> from = into == a ? b : a;
+                    from.forEach((k, v) -> into.merge(k, v, Integer::sum));
+                    return into;
+                }).get();
+    }
+
+    /**
+     * Get statistics of every StringSet, merged from each shard's
+     * incrementally maintained histograms.
+     *
+     * @return the statistics
+     */
+    public CorpusStatistics getStatistics() {
+        return Arrays.stream(shards).parallel()
+                .map(Partition::getStatistics)
+                .reduce(CorpusStatistics::merge).get();
     }
 
     /**
@@ -156,26 +1073,111 @@ public class Data {
      * 
      * @return A list of the most common Strings in alphabetical order
      */
-    public synchronized List<String> getMostCommon() {
-        if (data.isEmpty()) {
+    public List<String> getMostCommon() {
+        int capacity = heavyHitters;
+        if (capacity > 0) {
+            List<FrequencyEstimate> top = getTopFrequencies(capacity);
+            if (top.isEmpty()) {
+                return Collections.emptyList();
+            }
+            int max = top.get(0).getCount();
+            return top.stream().filter(e -> max == e.getCount()).map(FrequencyEstimate::getString).sorted().collect(Collectors.toList());
+        }
+        Map<String, Integer> collect = getFrequencies();
+        if (collect.isEmpty()) {
             return Collections.emptyList();
         }
-        Map<String, Integer> collect = data.values().stream().flatMap(s -> s.getSet().stream()).collect(Collectors.toMap(e -> e, e -> 1, Integer::sum));
-        int max = collect.entrySet().stream().map(e -> e.getValue()).max(Integer::compare).get();
+        int max = collect.values().stream().max(Integer::compare).get();
         return collect.entrySet().stream().filter(e -> max == e.getValue()).map(e -> e.getKey()).sorted().collect(Collectors.toList());
     }
 
+    /**
+     * Get the most frequent Strings, with the number of StringSets
+     * containing each.
+     *
+     * With approximate frequencies each shard's candidates are merged,
+     * then the count of each estimated by every shard and summed, so the
+     * error bounds of every shard add up. Strings which are not among the
+     * candidates of any shard are missed.
+     *
+     * @param k the maximum number of Strings
+     * @return the most frequent Strings, most frequent first then alphabetically
+     * @throws IllegalArgumentException if k is less than one
+     */
+    public List<FrequencyEstimate> getTopFrequencies(int k) {
+        if (k < 1) {
+            throw new IllegalArgumentException("Invalid k: " + k);
+        }
+        if (heavyHitters == 0) {
+            return getFrequencies().entrySet().stream()
+                    .map(e -> new FrequencyEstimate(e.getKey(), e.getValue()))
+                    .sorted(FrequencyEstimate.MOST_FREQUENT)
+                    .limit(k)
+                    .collect(Collectors.toList());
+        }
+        Set<String> candidates = Arrays.stream(shards).parallel()
+                .flatMap(s -> s.getTopFrequencies(k).stream())
+                .map(FrequencyEstimate::getString)
+                .collect(Collectors.toCollection(HashSet::new));
+        return estimateFrequencies(candidates).entrySet().stream()
+                .filter(e -> e.getValue() > 0)
+                .map(e -> new FrequencyEstimate(e.getKey(), e.getValue()))
+                .sorted(FrequencyEstimate.MOST_FREQUENT)
+                .limit(k)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Get the number of StringSets containing each of some Strings, summed
+     * over every shard.
+     *
+     * @param strings the Strings
+     * @return a map of each String to the number of StringSets containing
+     *         it, with approximate frequencies an estimate never less than
+     *         the true count
+     */
+    public Map<String, Integer> estimateFrequencies(Collection<String> strings) {
+        return Arrays.stream(shards).parallel()
+                .map(s -> s.estimateFrequencies(strings))
+                .reduce((a, b) -> {
+                    b.forEach((k, v) -> a.merge(k, v, Integer::sum));
+                    return a;
+                }).get();
+    }
+
+    /**
+     * Get the number of StringSets containing a String, see
+     * {@link #estimateFrequencies(java.util.Collection)}.
+     *
+     * @param s the String
+     * @return the number of StringSets containing it
+     */
+    public int estimateFrequency(String s) {
+        return estimateFrequencies(Collections.singleton(s)).get(s);
+    }
+
     /**
      * Find the Longest words in all StringSets.
      * 
      * @return A list of the longest Strings in alphabetical order
      */
-    public synchronized List<String> getLongest() {
-        if (data.isEmpty()) {
-            return Collections.emptyList();
-        }
-        int maxLength = data.values().stream().flatMap(s -> s.getSet().stream().map(ss -> ss.length())).max(Integer::compare).get();
-        return data.values().stream().flatMap(s -> s.getSet().stream().filter(ss -> ss.length() == maxLength)).sorted().collect(Collectors.toList());
+    public List<String> getLongest() {
+        List<String> result = Arrays.stream(shards).parallel()
+                .map(Partition::getLongest)
+                .reduce((a, b) -> {
+                    if (a.isEmpty() || b.isEmpty()) {
+                        return a.isEmpty() ? b : a;
+                    }
+                    int lengthA = a.get(0).length();
+                    int lengthB = b.get(0).length();
+                    if (lengthA != lengthB) {
+                        return lengthA > lengthB ? a : b;
+                    }
+                    a.addAll(b);
+                    return a;
+                }).get();
+        Collections.sort(result);
+        return result;
     }
 
     /**
@@ -183,9 +1185,394 @@ public class Data {
      * 
      * @param count The repetition count to search for
      * @return A list of strings repeated exactly count times in alphabetical order
+     * @throws UnsupportedOperationException if only approximate frequencies are kept
      */
-    public synchronized List<String> getExactlyIn(int count) {
-        Map<String, Integer> collect = data.values().stream().flatMap(s -> s.getSet().stream()).collect(Collectors.toMap(e -> e, e -> 1, Integer::sum));
+    public List<String> getExactlyIn(int count) {
+        if (shards.length == 1) {
+            return shards[0].getExactlyIn(count, count, 0, Integer.MAX_VALUE).stream()
+                    .map(FrequencyEstimate::getString)
+                    .collect(Collectors.toList());
+        }
+        Map<String, Integer> collect = getFrequencies();
         return collect.entrySet().stream().filter(e -> count == e.getValue()).map(e -> e.getKey()).sorted().collect(Collectors.toList());
     }
+
+    /**
+     * Find the words repeated in between min and max StringSets, a page at
+     * a time.
+     *
+     * With a single shard this is served from it's index of Strings by
+     * count, skipping whole counts outside the page, otherwise every
+     * shard's frequencies are merged once.
+     *
+     * @param min the minimum number of StringSets
+     * @param max the maximum number of StringSets
+     * @param offset the number of Strings to skip
+     * @param limit the maximum number of Strings
+     * @return Strings with the number of StringSets containing each, by
+     *         count then alphabetically
+     * @throws IllegalArgumentException if min is less than one or greater
+     *         than max, offset is negative or limit less than one
+     * @throws UnsupportedOperationException if only approximate frequencies are kept
+     */
+    public List<FrequencyEstimate> getExactlyIn(int min, int max, int offset, int limit) {
+        if (min < 1 || min > max) {
+            throw new IllegalArgumentException("Invalid range: " + min + " to " + max);
+        }
+        if (offset < 0 || limit < 1) {
+            throw new IllegalArgumentException("Invalid page: offset " + offset + ", limit " + limit);
+        }
+        if (shards.length == 1) {
+            return shards[0].getExactlyIn(min, max, offset, limit);
+        }
+        return getFrequencies().entrySet().stream()
+                .filter(e -> e.getValue() >= min && e.getValue() <= max)
+                .map(e -> new FrequencyEstimate(e.getKey(), e.getValue()))
+                .sorted(FrequencyEstimate.LEAST_FREQUENT)
+                .skip(offset)
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Get the number of words repeated in exactly each number of
+     * StringSets, as {@link #getExactlyIn(int)} for every count at once.
+     *
+     * @return a map of number of StringSets to number of Strings, in order
+     *         of number of StringSets, omitting zeros
+     * @throws UnsupportedOperationException if only approximate frequencies are kept
+     */
+    public SortedMap<Integer, Integer> getCountHistogram() {
+        if (shards.length == 1) {
+            return shards[0].getCountHistogram();
+        }
+        SortedMap<Integer, Integer> result = new TreeMap<>();
+        for (int count : getFrequencies().values()) {
+            result.merge(count, 1, Integer::sum);
+        }
+        return result;
+    }
+
+    /**
+     * Get the longest chain summaries of every StringSet.
+     *
+     * @return the summaries of every StringSet by id
+     */
+    public Map<Integer, ChainSummary> getChainSummaries() {
+        if (shards.length == 1) {
+            return shards[0].getChainSummaries();
+        }
+        return Arrays.stream(shards).parallel()
+                .flatMap(s -> s.getChainSummaries().entrySet().stream())
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+    }
+
+    /**
+     * Get the longest chain across every StringSet.
+     *
+     * The longest chain is maintained incrementally: each read applies the
+     * changes published since the last one, summarising only the
+     * StringSets created since, and joining them with the best chains
+     * starting and ending with each character in the StringSets already
+     * summarised, so with no changes this just returns the last result. If
+     * the changes are no longer retained every StringSet is summarised
+     * again. In coordinator mode nodes may be changed directly, so every
+     * summary is fetched and combined.
+     *
+     * @return an unmodifiable list of the strings in the longest chain
+     */
+    public List<String> getLongestChain() {
+        if (!isLocal()) {
+            return Collections.unmodifiableList(LongestChainSolver.combine(getChainSummaries()));
+        }
+        synchronized (chainIndex) {
+            updateChainIndex();
+            return chainIndex.getLongest();
+        }
+    }
+
+    /**
+     * Apply the changes published since the chain index was last read,
+     * summarising every StringSet again if they are no longer retained.
+     * Only changes published before the call are waited for, so readers
+     * still return under a sustained stream of uploads, changes published
+     * since are left for the next read. Called holding the chain index's
+     * lock.
+     */
+    private void updateChainIndex() {
+        long target = changeLog.getSequence();
+        do {
+            ChangeBatch batch = changeLog.read(chainIndex.getSequence(), CHAIN_BATCH);
+            if (batch.isTruncated()) {
+                long sequence = changeLog.getSequence();
+                chainIndex.clear();
+                getChainSummaries().forEach(chainIndex::put);
+                chainIndex.setSequence(sequence);
+                continue;
+            }
+            for (Change change : batch.getChanges()) {
+                if (change.getType() == Change.Type.CLEAR) {
+                    chainIndex.clear();
+                    continue;
+                }
+                StringSet set = get(change.getId());
+                if (set != null) {
+                    chainIndex.put(change.getId(), set.getChainSummary());
+                } else {
+                    chainIndex.remove(change.getId());
+                }
+            }
+            chainIndex.setSequence(batch.getSequence());
+        } while (chainIndex.getSequence() < target);
+    }
+
+    /**
+     * Check whether {@link #getLongestChain()} would return the last result
+     * without applying any changes.
+     *
+     * @return true if there are no changes since the longest chain was last
+     *         read, always false in coordinator mode
+     */
+    public boolean isLongestChainCached() {
+        return isLocal() && chainIndex.getSequence() == changeLog.getSequence();
+    }
+
+    /**
+     * Get the longest chain across every StringSet, explaining how it was
+     * found.
+     *
+     * @return the longest chain and statistics on the search for it
+     */
+    public ChainExplanation explainLongestChain() {
+        long start = System.nanoTime();
+        Map<Integer, ChainSummary> summaries = getChainSummaries();
+        return LongestChainSolver.explain(summaries, System.nanoTime() - start);
+    }
+
+    /**
+     * Get the longest chain summary of a single StringSet.
+     *
+     * @param id the id of the StringSet
+     * @return the summary of the StringSet
+     * @throws IllegalArgumentException if the StringSet does not exist
+     */
+    public ChainSummary getChainSummary(int id) {
+        StringSet set = get(id);
+        if (set == null) {
+            throw new IllegalArgumentException("Unknown id: " + id);
+        }
+        return set.getChainSummary();
+    }
+
+    /**
+     * Get the longest chain within a single StringSet.
+     *
+     * @param id the id of the StringSet
+     * @return a longest chain in the StringSet
+     * @throws IllegalArgumentException if the StringSet does not exist
+     */
+    public List<String> getLongestChain(int id) {
+        return new ArrayList<>(getChainSummary(id).getLongest());
+    }
+
+    /**
+     * Get the longest chain starting in one StringSet, which may jump to a
+     * second StringSet.
+     *
+     * Only the two StringSets are searched.
+     *
+     * @param from the id of the StringSet the chain starts in
+     * @param to the id of the StringSet the chain may jump to
+     * @return a longest chain
+     * @throws IllegalArgumentException if either StringSet does not exist,
+     *         or they are the same StringSet
+     */
+    public List<String> getLongestChain(int from, int to) {
+        if (from == to) {
+            throw new IllegalArgumentException("Cannot jump from a StringSet to itself: " + from);
+        }
+        ChainSummary a = getChainSummary(from);
+        ChainSummary b = getChainSummary(to);
+        return new ArrayList<>(LongestChainSolver.longer(a.getLongest(),
+                LongestChainSolver.join(Collections.singletonMap(from, a), Collections.singletonMap(to, b))));
+    }
+
+    /**
+     * Get the longest chain within a list of StringSets.
+     *
+     * Only the listed StringSets are searched.
+     *
+     * @param ids the ids of the StringSets
+     * @return a longest chain
+     * @throws IllegalArgumentException if any StringSet does not exist
+     */
+    public List<String> getLongestChain(List<Integer> ids) {
+        Map<Integer, ChainSummary> summaries = new HashMap<>();
+        for (int id : ids) {
+            summaries.put(id, getChainSummary(id));
+        }
+        return LongestChainSolver.combine(summaries);
+    }
+
+    /**
+     * Get the longest chain starting with a specific string.
+     *
+     * Only StringSets containing the string are searched for the start of
+     * the chain, using just the paths from the string, the chain may then
+     * jump to any other StringSet. Only the StringSets with the longest
+     * chains starting with the characters those paths end with are looked
+     * up, from the chain index kept for {@link #getLongestChain()}.
+     *
+     * @param string the first string of the chain
+     * @return a longest chain, or an empty list if no StringSet contains the string
+     */
+    public List<String> getLongestChainStartingAt(String string) {
+        Map<Integer, ChainSummary> from = new HashMap<>();
+        for (int id : search(string)) {
+            StringSet set = get(id);
+            if (set != null && set.contains(string)) {
+                from.put(id, LongestChainSolver.summariseFrom(set.readSet(), string));
+            }
+        }
+        Set<Character> ends = new HashSet<>();
+        for (ChainSummary summary : from.values()) {
+            ends.addAll(summary.getEndingWith().keySet());
+        }
+        return longestJoin(from, ends.isEmpty() ? Collections.emptyMap() : getChainSummaries(ends, true), from);
+    }
+
+    /**
+     * Get the longest chain ending with a specific string.
+     *
+     * Only StringSets containing the string are searched for the end of
+     * the chain, using just the paths to the string, the chain may have
+     * jumped from any other StringSet. Only the StringSets with the longest
+     * chains ending with the characters those paths start with are looked
+     * up, as for {@link #getLongestChainStartingAt(java.lang.String)}.
+     *
+     * @param string the last string of the chain
+     * @return a longest chain, or an empty list if no StringSet contains the string
+     */
+    public List<String> getLongestChainEndingWith(String string) {
+        Map<Integer, ChainSummary> to = new HashMap<>();
+        for (int id : search(string)) {
+            StringSet set = get(id);
+            if (set != null && set.contains(string)) {
+                to.put(id, LongestChainSolver.summariseTo(set.readSet(), string));
+            }
+        }
+        Set<Character> starts = new HashSet<>();
+        for (ChainSummary summary : to.values()) {
+            starts.addAll(summary.getStartingWith().keySet());
+        }
+        return longestJoin(starts.isEmpty() ? Collections.emptyMap() : getChainSummaries(starts, false), to, to);
+    }
+
+    /**
+     * Get the summaries of the StringSets with the longest chains starting or
+     * ending with some characters. In coordinator mode there is no chain
+     * index, so every summary is fetched.
+     *
+     * @param characters the characters
+     * @param startingWith true for chains starting with the characters,
+     *        false for chains ending with them
+     * @return the summaries by id
+     */
+    private Map<Integer, ChainSummary> getChainSummaries(Set<Character> characters, boolean startingWith) {
+        if (!isLocal()) {
+            return getChainSummaries();
+        }
+        synchronized (chainIndex) {
+            updateChainIndex();
+            return startingWith ? chainIndex.getStartingWith(characters) : chainIndex.getEndingWith(characters);
+        }
+    }
+
+    private static List<String> longestJoin(Map<Integer, ChainSummary> from, Map<Integer, ChainSummary> to, Map<Integer, ChainSummary> anchored) {
+        // The longest chain either stays in one StringSet containing the
+        // string or jumps between two.
+        List<String> result = Collections.emptyList();
+        for (ChainSummary summary : anchored.values()) {
+            result = LongestChainSolver.longer(result, summary.getLongest());
+        }
+        return new ArrayList<>(LongestChainSolver.longer(result, LongestChainSolver.join(from, to)));
+    }
+
+    /**
+     * Find StringSets similar to a set of strings.
+     *
+     * Candidates are found from a locality sensitive hashing index of MinHash
+     * signatures, so sets with a low similarity may be missed, see
+     * {@link LshIndex}.
+     *
+     * @param query the set of strings to find similar StringSets to
+     * @param threshold the minimum Jaccard similarity
+     * @param exact if true compute the exact Jaccard similarity of each
+     *        candidate and filter by that, otherwise filter by the estimate
+     * @return similar StringSets, most similar first
+     * @throws IllegalArgumentException if the query is empty
+     */
+    public List<Similarity> findSimilar(Set<String> query, double threshold, boolean exact) {
+        if (query.isEmpty()) {
+            throw new IllegalArgumentException("Empty sets not allowed");
+        }
+        return findSimilar(query, MinHash.signature(query), threshold, exact, 0);
+    }
+
+    /**
+     * Find StringSets similar to an existing StringSet, as for
+     * {@link #findSimilar(java.util.Set, double, boolean)}.
+     *
+     * @param id the id of the StringSet, which is excluded from the results
+     * @param threshold the minimum Jaccard similarity
+     * @param exact if true compute and filter by the exact Jaccard similarity
+     * @return similar StringSets, most similar first
+     * @throws IllegalArgumentException if the StringSet does not exist
+     */
+    public List<Similarity> findSimilar(int id, double threshold, boolean exact) {
+        StringSet set = get(id);
+        if (set == null) {
+            throw new IllegalArgumentException("Unknown id: " + id);
+        }
+        return findSimilar(set.getSet(), set.getMinHash(), threshold, exact, id);
+    }
+
+    /**
+     * Find StringSets whose estimated Jaccard similarity to a MinHash
+     * signature is at least a threshold.
+     *
+     * @param signature the MinHash signature
+     * @param threshold the minimum estimated Jaccard similarity
+     * @return similar StringSets, most similar first, without exact similarities
+     * @throws IllegalArgumentException if the signature is not a MinHash signature
+     */
+    public List<Similarity> findSimilar(int[] signature, double threshold) {
+        if (signature.length != MinHash.SIZE) {
+            throw new IllegalArgumentException("Invalid signature length: " + signature.length);
+        }
+        return Arrays.stream(shards).parallel()
+                .flatMap(s -> s.findSimilar(signature, threshold).stream())
+                .sorted(Similarity.MOST_SIMILAR)
+                .collect(Collectors.toList());
+    }
+
+    private List<Similarity> findSimilar(Set<String> query, int[] signature, double threshold, boolean exact, int exclude) {
+        // When filtering by the exact similarity don't drop candidates whose estimate is low.
+        return findSimilar(signature, exact ? 0 : threshold).stream()
+                .filter(s -> s.getId() != exclude)
+                .map(s -> {
+                    if (!exact) {
+                        return s;
+                    }
+                    StringSet set = get(s.getId());
+                    if (set == null) {
+                        return null;
+                    }
+                    double jaccard = MinHash.jaccard(query, set.getSet());
+                    return jaccard >= threshold ? new Similarity(s.getId(), s.getEstimatedJaccard(), jaccard) : null;
+                })
+                .filter(s -> s != null)
+                .sorted(Similarity.MOST_SIMILAR)
+                .collect(Collectors.toList());
+    }
 }
@@ -0,0 +1,830 @@
+/*
+   Copyright 2016 Cyberian Tiger
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.cyberiantiger.example.stringsets.model;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.cyberiantiger.example.stringsets.model.frequency.FrequencyEstimate;
+import org.cyberiantiger.example.stringsets.model.frequency.HeavyHitters;
+import org.cyberiantiger.example.stringsets.model.longestchain.ChainSummary;
+import org.cyberiantiger.example.stringsets.model.similarity.LshIndex;
+import org.cyberiantiger.example.stringsets.model.similarity.MinHash;
+import org.cyberiantiger.example.stringsets.model.similarity.Similarity;
+
+/**
+ * A partition of the data store held in this JVM.
+ *
+ * Each shard has its own lock and maintains its own indexes, global queries
+ * are answered by {@link Data} merging the partial results of every shard.
+ * Indexes never fault StringSets evicted by a {@link SegmentStore} back onto
+ * the heap.
+ *
+ * StringSets are held in an {@link IdTable}, so getting and removing a
+ * StringSet never wait for our lock. The indexes of removed StringSets are
+ * updated by the next thread to hold our lock, before it uses them.
+ *
+ * After storing many StringSets at once, or changing how frequencies are
+ * kept, our indexes are built from scratch in the background, in parallel
+ * passes over a frozen copy of our StringSets whose results are merged.
+ * Until they are built queries read every StringSet instead, and changes
+ * are applied to the new indexes once they are built. If a bulk build
+ * fails our indexes are built incrementally instead.
+ *
+ * @author antony
+ */
+class DataShard implements Partition {
+
+    /**
+     * Minimum number of StringSets indexed by each pass of a bulk build.
+     */
+    private static final int MIN_CHUNK = 1024;
+
+    /**
+     * The StringSets owned by this shard.
+     */
+    private final IdTable<StringSet> data;
+
+    /**
+     * StringSets removed from data which are still in our indexes.
+     */
+    private final Queue<Map.Entry<Integer, StringSet>> removed = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Held for reading while removing a StringSet, and for writing while
+     * rebuilding our indexes, so a removal is either in the StringSets our
+     * indexes are rebuilt from, or in removed after they are rebuilt.
+     */
+    private final ReadWriteLock rebuildLock = new ReentrantReadWriteLock();
+
+    /**
+     * Runs bulk builds of our indexes.
+     */
+    private final Executor executor;
+
+    /**
+     * The number of heavy hitter candidates to keep, or 0 to keep exact
+     * frequencies.
+     */
+    private int heavyHitters;
+
+    /**
+     * Our indexes, or null while they are built.
+     */
+    private Indexes indexes = new Indexes(0);
+
+    /**
+     * StringSets put while our indexes are built, or null.
+     */
+    private List<Map.Entry<Integer, StringSet>> pending;
+
+    /**
+     * Incremented each time our indexes are replaced, so the result of a
+     * bulk build which has been superseded is discarded.
+     */
+    private long generation;
+
+    /**
+     * Completes when the latest bulk build of our indexes has finished.
+     */
+    private CompletableFuture<Void> building = CompletableFuture.completedFuture(null);
+
+    /**
+     * Create a shard for every stride'th id.
+     *
+     * @param stride the number of shards
+     * @param residue the remainder of our ids divided by the number of shards
+     */
+    DataShard(int stride, int residue) {
+        this(stride, residue, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Create a shard for every stride'th id.
+     *
+     * @param stride the number of shards
+     * @param residue the remainder of our ids divided by the number of shards
+     * @param executor runs bulk builds of our indexes
+     */
+    DataShard(int stride, int residue, Executor executor) {
+        this.data = new IdTable<>(stride, residue);
+        this.executor = executor;
+    }
+
+    /**
+     * Set whether to keep exact frequencies, or approximate frequencies in
+     * constant memory, rebuilding our indexes.
+     *
+     * @param capacity the number of heavy hitter candidates to keep, or 0
+     *        to keep exact frequencies
+     */
+    synchronized void setHeavyHitters(int capacity) {
+        heavyHitters = capacity;
+        rebuild(null);
+    }
+
+    /**
+     * Check whether our indexes are built.
+     *
+     * @return true unless a bulk build is in progress
+     */
+    synchronized boolean isIndexed() {
+        return indexes != null;
+    }
+
+    /**
+     * Wait for the latest bulk build of our indexes to finish.
+     *
+     * @throws java.util.concurrent.CompletionException if it failed, our
+     *         indexes are then built incrementally instead
+     */
+    void awaitIndexes() {
+        CompletableFuture<Void> future;
+        synchronized (this) {
+            future = building;
+        }
+        future.join();
+    }
+
+    /**
+     * Start rebuilding our indexes from our StringSets, while holding our
+     * lock.
+     *
+     * @param sets StringSets to add first, or null
+     */
+    private void rebuild(Map<Integer, StringSet> sets) {
+        List<Map.Entry<Integer, StringSet>> frozen;
+        Lock lock = rebuildLock.writeLock();
+        lock.lock();
+        try {
+            if (sets != null) {
+                sets.forEach(data::put);
+            }
+            removed.clear();
+            frozen = new ArrayList<>(data.toMap().entrySet());
+        } finally {
+            lock.unlock();
+        }
+        long build = ++generation;
+        int capacity = heavyHitters;
+        if (frozen.isEmpty()) {
+            indexes = new Indexes(capacity);
+            pending = null;
+            building = CompletableFuture.completedFuture(null);
+            return;
+        }
+        indexes = null;
+        pending = new ArrayList<>();
+        building = CompletableFuture.runAsync(() -> {
+            Indexes built;
+            try {
+                built = Indexes.build(frozen, capacity);
+            } catch (RuntimeException | Error ex) {
+                recover(build);
+                throw ex;
+            }
+            install(build, built);
+        }, executor);
+    }
+
+    /**
+     * Build our indexes incrementally while holding our lock after a bulk
+     * build failed, unless it has been superseded, so StringSets put and
+     * removed don't queue up forever waiting for indexes which will never
+     * be installed.
+     *
+     * @param build the generation of the failed build
+     */
+    private synchronized void recover(long build) {
+        if (build != generation) {
+            return;
+        }
+        List<Map.Entry<Integer, StringSet>> frozen;
+        Lock lock = rebuildLock.writeLock();
+        lock.lock();
+        try {
+            removed.clear();
+            frozen = new ArrayList<>(data.toMap().entrySet());
+        } finally {
+            lock.unlock();
+        }
+        Indexes rebuilt = new Indexes(heavyHitters);
+        for (Map.Entry<Integer, StringSet> e : frozen) {
+            rebuilt.add(e.getKey(), e.getValue());
+        }
+        pending = null;
+        indexes = rebuilt;
+        applyRemovals();
+    }
+
+    /**
+     * Use the result of a bulk build, unless it has been superseded, adding
+     * the StringSets put and removed while it was built.
+     *
+     * @param build the generation of the build
+     * @param built the indexes
+     */
+    private synchronized void install(long build, Indexes built) {
+        if (build != generation) {
+            return;
+        }
+        for (Map.Entry<Integer, StringSet> e : pending) {
+            built.add(e.getKey(), e.getValue());
+        }
+        pending = null;
+        indexes = built;
+        applyRemovals();
+    }
+
+    /**
+     * Remove the StringSets removed since we last held our lock from our
+     * indexes, must be called holding our lock before using our indexes.
+     * While our indexes are built removals are kept until they are.
+     */
+    private void applyRemovals() {
+        if (indexes == null) {
+            return;
+        }
+        Map.Entry<Integer, StringSet> e;
+        while ((e = removed.poll()) != null) {
+            indexes.remove(e.getKey(), e.getValue());
+            data.release(e.getKey());
+        }
+    }
+
+    @Override
+    public synchronized boolean put(int id, StringSet set) {
+        applyRemovals();
+        if (data.get(id) != null) {
+            return false;
+        }
+        data.put(id, set);
+        if (indexes != null) {
+            indexes.add(id, set);
+        } else {
+            pending.add(new AbstractMap.SimpleImmutableEntry<>(id, set));
+        }
+        return true;
+    }
+
+    @Override
+    public int getMaxId() {
+        return data.lastId();
+    }
+
+    /**
+     * Store many StringSets, building our indexes once in the background
+     * rather than maintaining them for each StringSet.
+     */
+    @Override
+    public synchronized void putAll(Map<Integer, StringSet> sets) {
+        rebuild(sets);
+    }
+
+    /**
+     * Get our StringSets, for a snapshot of the data store.
+     *
+     * @return a copy of the map of id to StringSet
+     */
+    Map<Integer, StringSet> getStringSets() {
+        return data.toMap();
+    }
+
+    @Override
+    public StringSet get(int id) {
+        return data.get(id);
+    }
+
+    @Override
+    public StringSet remove(int id) {
+        Lock lock = rebuildLock.readLock();
+        lock.lock();
+        try {
+            StringSet result = data.remove(id);
+            if (result != null) {
+                removed.add(new AbstractMap.SimpleImmutableEntry<>(id, result));
+            }
+            return result;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public synchronized void clear() {
+        Lock lock = rebuildLock.writeLock();
+        lock.lock();
+        try {
+            data.clear();
+            removed.clear();
+        } finally {
+            lock.unlock();
+        }
+        generation++;
+        indexes = new Indexes(heavyHitters);
+        pending = null;
+        building = CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public Map<Integer, Set<String>> getMap() {
+        Map<Integer, Set<String>> result = new LinkedHashMap<>();
+        data.forEach((k, v) -> result.put(k, v.readSet()));
+        return result;
+    }
+
+    /**
+     * Count the StringSets containing each String by reading every
+     * StringSet, while our indexes are built.
+     *
+     * @return the number of StringSets containing each String
+     */
+    private Map<String, Integer> scanFrequencies() {
+        Map<String, Integer> result = new HashMap<>();
+        data.forEach((id, set) -> {
+            for (String s : set.readSet()) {
+                result.merge(s, 1, Integer::sum);
+            }
+        });
+        return result;
+    }
+
+    private void checkExact() {
+        if (heavyHitters > 0) {
+            throw new UnsupportedOperationException("Exact frequencies are not kept");
+        }
+    }
+
+    @Override
+    public synchronized List<Integer> search(String query) {
+        applyRemovals();
+        // Approximate frequencies are never zero for a String we contain.
+        if (indexes != null && (indexes.frequencies != null
+                ? !indexes.frequencies.containsKey(query)
+                : indexes.heavyHitters.estimate(query) == 0)) {
+            return Collections.emptyList();
+        }
+        long hash = BloomFilter.hash(query);
+        IdList result = new IdList();
+        data.forEach((id, set) -> {
+            if (set.contains(query, hash)) {
+                result.addInt(id);
+            }
+        });
+        return result;
+    }
+
+    @Override
+    public synchronized Map<String, Integer> getFrequencies() {
+        applyRemovals();
+        checkExact();
+        return indexes != null ? new HashMap<>(indexes.frequencies) : scanFrequencies();
+    }
+
+    @Override
+    public synchronized List<FrequencyEstimate> getExactlyIn(int min, int max, int offset, int limit) {
+        applyRemovals();
+        checkExact();
+        TreeMap<Integer, TreeSet<String>> stringsByCount = indexes != null
+                ? indexes.stringsByCount
+                : Indexes.byCount(scanFrequencies());
+        List<FrequencyEstimate> result = new ArrayList<>(Math.min(limit, 1024));
+        int skip = offset;
+        for (Map.Entry<Integer, TreeSet<String>> e : stringsByCount.subMap(min, true, max, true).entrySet()) {
+            TreeSet<String> bucket = e.getValue();
+            // Skip whole buckets without iterating them.
+            if (skip >= bucket.size()) {
+                skip -= bucket.size();
+                continue;
+            }
+            for (String s : bucket) {
+                if (skip > 0) {
+                    skip--;
+                    continue;
+                }
+                result.add(new FrequencyEstimate(s, e.getKey()));
+                if (result.size() == limit) {
+                    return result;
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized SortedMap<Integer, Integer> getCountHistogram() {
+        applyRemovals();
+        checkExact();
+        SortedMap<Integer, Integer> result = new TreeMap<>();
+        if (indexes != null) {
+            indexes.stringsByCount.forEach((k, v) -> result.put(k, v.size()));
+        } else {
+            scanFrequencies().values().forEach(count -> result.merge(count, 1, Integer::sum));
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized List<FrequencyEstimate> getTopFrequencies(int k) {
+        applyRemovals();
+        if (indexes != null && indexes.heavyHitters != null) {
+            return indexes.heavyHitters.getTop(k);
+        }
+        // Exact counts are also valid estimates.
+        Map<String, Integer> frequencies = indexes != null ? indexes.frequencies : scanFrequencies();
+        return frequencies.entrySet().stream()
+                .map(e -> new FrequencyEstimate(e.getKey(), e.getValue()))
+                .sorted(FrequencyEstimate.MOST_FREQUENT)
+                .limit(k)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public synchronized Map<String, Integer> estimateFrequencies(Collection<String> strings) {
+        applyRemovals();
+        Map<String, Integer> result = new HashMap<>();
+        if (indexes == null) {
+            for (String s : strings) {
+                result.put(s, 0);
+            }
+            data.forEach((id, set) -> result.replaceAll((s, count) -> set.contains(s) ? count + 1 : count));
+            return result;
+        }
+        for (String s : strings) {
+            result.put(s, indexes.frequencies != null
+                    ? indexes.frequencies.getOrDefault(s, 0)
+                    : indexes.heavyHitters.estimate(s));
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized CorpusStatistics getStatistics() {
+        applyRemovals();
+        if (indexes != null) {
+            return new CorpusStatistics(indexes.setSizes.copy(), indexes.stringLengths.copy());
+        }
+        Histogram setSizes = new Histogram();
+        Histogram stringLengths = new Histogram();
+        data.forEach((id, set) -> {
+            Set<String> strings = set.readSet();
+            for (String s : strings) {
+                stringLengths.add(s.length());
+            }
+            setSizes.add(strings.size());
+        });
+        return new CorpusStatistics(setSizes, stringLengths);
+    }
+
+    @Override
+    public synchronized List<String> getLongest() {
+        applyRemovals();
+        List<String> result = new ArrayList<>();
+        int maxLength = 0;
+        if (indexes == null || indexes.frequencies == null) {
+            // Without exact frequencies look at every String of every StringSet.
+            for (StringSet set : data.toMap().values()) {
+                for (String s : set.readSet()) {
+                    if (s.length() > maxLength) {
+                        maxLength = s.length();
+                        result.clear();
+                    }
+                    if (s.length() == maxLength) {
+                        result.add(s);
+                    }
+                }
+            }
+            return result;
+        }
+        for (Map.Entry<String, Integer> e : indexes.frequencies.entrySet()) {
+            int length = e.getKey().length();
+            if (length < maxLength) {
+                continue;
+            }
+            if (length > maxLength) {
+                maxLength = length;
+                result.clear();
+            }
+            for (int i = 0; i < e.getValue(); i++) {
+                result.add(e.getKey());
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public Map<Integer, ChainSummary> getChainSummaries() {
+        Map<Integer, StringSet> sets = data.toMap();
+        // Summaries are computed lazily by each StringSet, so do it outside
+        // our lock, and only once for StringSets with the same content.
+        Map<Fingerprint, ChainSummary> summaries = new HashMap<>();
+        Map<Integer, ChainSummary> result = new LinkedHashMap<>();
+        for (Map.Entry<Integer, StringSet> e : sets.entrySet()) {
+            StringSet set = e.getValue();
+            result.put(e.getKey(), summaries.computeIfAbsent(set.getFingerprint(), k -> set.getChainSummary()));
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized List<Similarity> findSimilar(int[] signature, double threshold) {
+        applyRemovals();
+        Collection<Integer> candidates = indexes != null
+                ? indexes.lshIndex.candidates(signature)
+                : data.toMap().keySet();
+        List<Similarity> result = new ArrayList<>();
+        for (int id : candidates) {
+            StringSet set = data.get(id);
+            if (set == null) {
+                // Removed since we applied removals.
+                continue;
+            }
+            double estimate = MinHash.estimate(signature, set.getMinHash());
+            if (estimate >= threshold) {
+                result.add(new Similarity(id, estimate, null));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized List<Integer> findDuplicates(Fingerprint fingerprint) {
+        applyRemovals();
+        List<Integer> result = new ArrayList<>();
+        if (indexes == null) {
+            data.forEach((id, set) -> {
+                if (set.getFingerprint().equals(fingerprint)) {
+                    result.add(id);
+                }
+            });
+            return result;
+        }
+        List<Integer> ids = indexes.fingerprints.get(fingerprint);
+        if (ids != null) {
+            result.addAll(ids);
+        }
+        return result;
+    }
+
+    @Override
+    public Map<Integer, List<String>> findMembers(List<String> strings, Collection<Integer> ids) {
+        long[] hashes = new long[strings.size()];
+        for (int i = 0; i < hashes.length; i++) {
+            hashes[i] = BloomFilter.hash(strings.get(i));
+        }
+        Map<Integer, List<String>> result = new LinkedHashMap<>();
+        IdTable.Visitor<StringSet> test = (id, set) -> {
+            List<String> members = set.getMembers(strings, hashes);
+            if (!members.isEmpty()) {
+                result.put(id, members);
+            }
+        };
+        if (ids == null) {
+            data.forEach(test);
+        } else {
+            for (int id : ids) {
+                StringSet set = data.get(id);
+                if (set != null) {
+                    test.accept(id, set);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The indexes of a shard, maintained one StringSet at a time while
+     * holding the shard's lock, or built in bulk.
+     */
+    private static final class Indexes {
+
+        /**
+         * Number of StringSets containing each String, or null when keeping
+         * approximate frequencies.
+         */
+        final Map<String, Integer> frequencies;
+
+        /**
+         * The Strings in frequencies by their count, in alphabetical order,
+         * or null while indexing part of a bulk build.
+         */
+        final TreeMap<Integer, TreeSet<String>> stringsByCount;
+
+        /**
+         * Approximate frequencies, or null when keeping exact frequencies or
+         * indexing part of a bulk build.
+         */
+        final HeavyHitters heavyHitters;
+
+        /**
+         * Ids of StringSets by fingerprint.
+         */
+        final Map<Fingerprint, List<Integer>> fingerprints;
+
+        /**
+         * Index of the MinHash signatures of StringSets.
+         */
+        final LshIndex lshIndex;
+
+        /**
+         * Histogram of the size of each StringSet.
+         */
+        final Histogram setSizes;
+
+        /**
+         * Histogram of the length of each String in each StringSet.
+         */
+        final Histogram stringLengths;
+
+        /**
+         * Create empty indexes.
+         *
+         * @param capacity the number of heavy hitter candidates to keep, or
+         *        0 to keep exact frequencies
+         */
+        Indexes(int capacity) {
+            this(capacity > 0 ? null : new HashMap<>(), new TreeMap<>(),
+                    capacity > 0 ? new HeavyHitters(capacity) : null,
+                    new HashMap<>(), new LshIndex(), new Histogram(), new Histogram());
+        }
+
+        private Indexes(Map<String, Integer> frequencies, TreeMap<Integer, TreeSet<String>> stringsByCount,
+                HeavyHitters heavyHitters, Map<Fingerprint, List<Integer>> fingerprints, LshIndex lshIndex,
+                Histogram setSizes, Histogram stringLengths) {
+            this.frequencies = frequencies;
+            this.stringsByCount = stringsByCount;
+            this.heavyHitters = heavyHitters;
+            this.fingerprints = fingerprints;
+            this.lshIndex = lshIndex;
+            this.setSizes = setSizes;
+            this.stringLengths = stringLengths;
+        }
+
+        /**
+         * Build indexes from a frozen collection of StringSets.
+         *
+         * Chunks of the StringSets are indexed in parallel and the results
+         * merged, then Strings are grouped by their count. Heavy hitters
+         * depend on the order Strings are counted in, so are counted by a
+         * single pass alongside the others.
+         *
+         * @param sets the StringSets by id, in id order
+         * @param capacity the number of heavy hitter candidates to keep, or
+         *        0 to keep exact frequencies
+         * @return the indexes
+         */
+        static Indexes build(List<Map.Entry<Integer, StringSet>> sets, int capacity) {
+            CompletableFuture<HeavyHitters> heavyHitters = null;
+            if (capacity > 0) {
+                heavyHitters = CompletableFuture.supplyAsync(() -> {
+                    HeavyHitters result = new HeavyHitters(capacity);
+                    for (Map.Entry<Integer, StringSet> e : sets) {
+                        for (String s : e.getValue().readSet()) {
+                            result.add(s);
+                        }
+                    }
+                    return result;
+                });
+            }
+            int chunks = Math.max(1, Math.min(sets.size() / MIN_CHUNK,
+                    ForkJoinPool.getCommonPoolParallelism() * 4));
+            Indexes merged = IntStream.range(0, chunks).parallel()
+                    .mapToObj(chunk -> {
+                        Indexes partial = new Indexes(capacity > 0 ? null : new HashMap<>(), null, null,
+                                new HashMap<>(), new LshIndex(), new Histogram(), new Histogram());
+                        int end = (int) ((chunk + 1L) * sets.size() / chunks);
+                        for (int i = (int) ((long) chunk * sets.size() / chunks); i < end; i++) {
+                            partial.add(sets.get(i).getKey(), sets.get(i).getValue());
+                        }
+                        return partial;
+                    })
+                    .reduce(Indexes::merge)
+                    .get();
+            return new Indexes(merged.frequencies,
+                    merged.frequencies != null ? byCount(merged.frequencies) : new TreeMap<>(),
+                    heavyHitters != null ? heavyHitters.join() : null,
+                    merged.fingerprints, merged.lshIndex, merged.setSizes, merged.stringLengths);
+        }
+
+        /**
+         * Group Strings by their count.
+         *
+         * @param frequencies the count of each String
+         * @return the Strings with each count, in alphabetical order
+         */
+        static TreeMap<Integer, TreeSet<String>> byCount(Map<String, Integer> frequencies) {
+            return frequencies.entrySet().parallelStream()
+                    .collect(Collectors.groupingBy(Map.Entry::getValue, TreeMap::new,
+                            Collectors.mapping(Map.Entry::getKey, Collectors.toCollection(TreeSet::new))));
+        }
+
+        /**
+         * Merge the indexes of a later chunk of a bulk build into these.
+         *
+         * @param other the indexes of StringSets with higher ids
+         * @return these indexes
+         */
+        private Indexes merge(Indexes other) {
+            if (frequencies != null) {
+                other.frequencies.forEach((s, count) -> frequencies.merge(s, count, Integer::sum));
+            }
+            other.fingerprints.forEach((fingerprint, ids) -> fingerprints.merge(fingerprint, ids, (a, b) -> {
+                a.addAll(b);
+                return a;
+            }));
+            lshIndex.merge(other.lshIndex);
+            setSizes.merge(other.setSizes);
+            stringLengths.merge(other.stringLengths);
+            return this;
+        }
+
+        void add(int id, StringSet set) {
+            Set<String> strings = set.readSet();
+            for (String s : strings) {
+                if (frequencies != null) {
+                    int count = frequencies.merge(s, 1, Integer::sum);
+                    if (stringsByCount != null) {
+                        moveCount(s, count - 1, count);
+                    }
+                } else if (heavyHitters != null) {
+                    heavyHitters.add(s);
+                }
+                stringLengths.add(s.length());
+            }
+            setSizes.add(strings.size());
+            lshIndex.add(id, set.getMinHash());
+            fingerprints.computeIfAbsent(set.getFingerprint(), k -> new ArrayList<>(1)).add(id);
+        }
+
+        void remove(int id, StringSet set) {
+            Set<String> strings = set.readSet();
+            for (String s : strings) {
+                if (frequencies != null) {
+                    Integer count = frequencies.computeIfPresent(s, (k, v) -> v == 1 ? null : v - 1);
+                    moveCount(s, count == null ? 1 : count + 1, count == null ? 0 : count);
+                } else {
+                    heavyHitters.remove(s);
+                }
+                stringLengths.remove(s.length());
+            }
+            setSizes.remove(strings.size());
+            lshIndex.remove(id, set.getMinHash());
+            fingerprints.computeIfPresent(set.getFingerprint(), (k, v) -> {
+                v.remove((Integer) id);
+                return v.isEmpty() ? null : v;
+            });
+        }
+
+        /**
+         * Move a String between buckets of stringsByCount.
+         *
+         * @param s the String
+         * @param from it's previous count, 0 if it was not in any StringSet
+         * @param to it's new count, 0 if it is no longer in any StringSet
+         */
+        private void moveCount(String s, int from, int to) {
+            if (from > 0) {
+                TreeSet<String> bucket = stringsByCount.get(from);
+                bucket.remove(s);
+                if (bucket.isEmpty()) {
+                    stringsByCount.remove(from);
+                }
+            }
+            if (to > 0) {
+                stringsByCount.computeIfAbsent(to, k -> new TreeSet<>()).add(s);
+            }
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/*
+   Copyright 2016 Cyberian Tiger
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.cyberiantiger.example.stringsets.model;
+
+import java.util.Set;
+import org.cyberiantiger.example.stringsets.model.similarity.MinHash;
+
+/**
+ * An order independent 128 bit fingerprint of the content of a set of
+ * strings.
+ *
+ * The fingerprint is the sum of two independent 64 bit hashes of every
+ * string, the first being {@link MinHash#hash(String)}, so sets with the
+ * same strings in any order have the same fingerprint, and sets with
+ * different strings have the same fingerprint with negligible probability.
+ *
+ * @author antony
+ */
+public final class Fingerprint {
+    private final long high;
+    private final long low;
+
+    /**
+     * Create a Fingerprint.
+     *
+     * @param high the high 64 bits
+     * @param low the low 64 bits
+     */
+    public Fingerprint(long high, long low) {
+        this.high = high;
+        this.low = low;
+    }
+
+    /**
+     * Compute the fingerprint of a set of strings.
+     *
+     * @param set the set of strings
+     * @return the fingerprint
+     */
+    public static Fingerprint of(Set<String> set) {
+        if (set instanceof CompactStringSet) {
+            return ((CompactStringSet) set).getFingerprint();
+        }
+        Builder result = new Builder();
+        for (String s : set) {
+            result.add(s);
+        }
+        return result.build();
+    }
+
+    /**
+     * Parse a fingerprint from it's string form.
+     *
+     * @param s 32 hexadecimal digits, as returned by {@link #toString()}
+     * @return the fingerprint
+     * @throws IllegalArgumentException if s is not a valid fingerprint
+     */
+    public static Fingerprint fromString(String s) {
+        if (s.length() != 32) {
+            throw new IllegalArgumentException("Invalid fingerprint: " + s);
+        }
+        try {
+            return new Fingerprint(Long.parseUnsignedLong(s.substring(0, 16), 16), Long.parseUnsignedLong(s.substring(16), 16));
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Invalid fingerprint: " + s);
+        }
+    }
+
+    /**
+     * Computes a fingerprint one string at a time, so it can be computed
+     * while reading strings.
+     */
+    public static final class Builder {
+        private long high;
+        private long low;
+        private int size;
+
+        /**
+         * Add a string, which must not already have been added.
+         *
+         * @param s the string
+         */
+        public void add(String s) {
+            long b = 0x84222325cbf29ce4L;
+            for (int i = 0; i < s.length(); i++) {
+                b = (b + s.charAt(i)) * 0x9e3779b97f4a7c15L;
+            }
+            high += MinHash.hash(s);
+            low += MinHash.mix(b ^ s.length());
+            size++;
+        }
+
+        /**
+         * Get the fingerprint of the strings added so far.
+         *
+         * @return the fingerprint
+         */
+        public Fingerprint build() {
+            return new Fingerprint(high, low + size);
+        }
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (low ^ (low >>> 32));
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        final Fingerprint other = (Fingerprint) obj;
+        return this.high == other.high && this.low == other.low;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%016x%016x", high, low);
+    }
+}
@@ -0,0 +1,296 @@
+/*
+   Copyright 2016 Cyberian Tiger
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.cyberiantiger.example.stringsets.model;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A mergeable histogram of non-negative ints, such as lengths or sizes.
+ *
+ * Values below 64 are counted exactly, larger values in log-linear buckets,
+ * 16 per power of two, so percentiles are accurate to within 1/32 of the
+ * value. Histograms are maintained incrementally by each shard, with values
+ * removed as well as added, and merged rather than recomputed for global
+ * statistics.
+ *
+ * Not thread safe.
+ *
+ * @author antony
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class Histogram {
+
+    private static final int EXACT = 64;
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int EXACT_BITS = 6;
+    private static final int BUCKETS = EXACT + (31 - EXACT_BITS) * SUB_BUCKETS;
+
+    /**
+     * The percentiles reported by {@link #getPercentiles()}.
+     */
+    private static final double[] PERCENTILES = { 50, 90, 99, 99.9 };
+
+    private final long[] counts = new long[BUCKETS];
+    private long count;
+    private long sum;
+
+    /**
+     * Create an empty Histogram.
+     */
+    public Histogram() {
+    }
+
+    /**
+     * Create a Histogram from it's JSON form.
+     *
+     * @param sum the sum of every value
+     * @param buckets the non-empty buckets
+     */
+    @JsonCreator
+    public Histogram(@JsonProperty("sum") long sum, @JsonProperty("buckets") List<Bucket> buckets) {
+        this.sum = sum;
+        for (Bucket b : buckets) {
+            counts[index(b.getFrom())] += b.getCount();
+            count += b.getCount();
+        }
+    }
+
+    private static int index(int value) {
+        if (value < EXACT) {
+            return value;
+        }
+        int exponent = 31 - Integer.numberOfLeadingZeros(value);
+        int subBucket = (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return EXACT + (exponent - EXACT_BITS) * SUB_BUCKETS + subBucket;
+    }
+
+    private static int lowerBound(int index) {
+        if (index < EXACT) {
+            return index;
+        }
+        int exponent = (index - EXACT) / SUB_BUCKETS + EXACT_BITS;
+        int subBucket = (index - EXACT) % SUB_BUCKETS;
+        return (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+    }
+
+    private static int width(int index) {
+        return index < EXACT ? 1 : 1 << ((index - EXACT) / SUB_BUCKETS + EXACT_BITS - SUB_BUCKET_BITS);
+    }
+
+    /**
+     * Add a value.
+     *
+     * @param value the value, which must not be negative
+     */
+    public void add(int value) {
+        counts[index(value)]++;
+        count++;
+        sum += value;
+    }
+
+    /**
+     * Remove a previously added value.
+     *
+     * @param value the value
+     */
+    public void remove(int value) {
+        counts[index(value)]--;
+        count--;
+        sum -= value;
+    }
+
+    /**
+     * Add every value of another Histogram to this one.
+     *
+     * @param other the other Histogram
+     * @return this Histogram
+     */
+    public Histogram merge(Histogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] += other.counts[i];
+        }
+        count += other.count;
+        sum += other.sum;
+        return this;
+    }
+
+    /**
+     * Get a copy of this Histogram.
+     *
+     * @return the copy
+     */
+    public Histogram copy() {
+        return new Histogram().merge(this);
+    }
+
+    /**
+     * Clear this Histogram.
+     */
+    public void clear() {
+        Arrays.fill(counts, 0);
+        count = 0;
+        sum = 0;
+    }
+
+    /**
+     * Get the number of values.
+     * @return the number of values
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Get the sum of every value.
+     * @return the sum
+     */
+    public long getSum() {
+        return sum;
+    }
+
+    /**
+     * Get the mean value.
+     * @return the mean, or 0 if there are no values
+     */
+    public double getMean() {
+        return count == 0 ? 0 : 1D * sum / count;
+    }
+
+    /**
+     * Get the smallest value, approximately.
+     * @return the lower bound of the lowest non-empty bucket, or 0 if there are no values
+     */
+    public int getMin() {
+        for (int i = 0; i < BUCKETS; i++) {
+            if (counts[i] != 0) {
+                return lowerBound(i);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Get the largest value, approximately.
+     * @return the upper bound of the highest non-empty bucket, or 0 if there are no values
+     */
+    public int getMax() {
+        for (int i = BUCKETS - 1; i >= 0; i--) {
+            if (counts[i] != 0) {
+                return lowerBound(i) + width(i) - 1;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Get the value at a percentile, by nearest rank.
+     *
+     * @param percentile the percentile, between 0 and 100
+     * @return the value, the middle of it's bucket for large values, or 0 if there are no values
+     */
+    public double getPercentile(double percentile) {
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return lowerBound(i) + (width(i) - 1) / 2D;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Get the 50th, 90th, 99th and 99.9th percentiles.
+     * @return map of percentile to value
+     */
+    public Map<String, Double> getPercentiles() {
+        Map<String, Double> result = new LinkedHashMap<>();
+        for (double p : PERCENTILES) {
+            result.put(p == Math.rint(p) ? Integer.toString((int) p) : Double.toString(p), getPercentile(p));
+        }
+        return result;
+    }
+
+    /**
+     * Get the non-empty buckets.
+     * @return the non-empty buckets in order
+     */
+    public List<Bucket> getBuckets() {
+        List<Bucket> result = new ArrayList<>();
+        for (int i = 0; i < BUCKETS; i++) {
+            if (counts[i] != 0) {
+                result.add(new Bucket(lowerBound(i), lowerBound(i) + width(i) - 1, counts[i]));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * A bucket of a Histogram.
+     */
+    public static class Bucket {
+        private final int from;
+        private final int to;
+        private final long count;
+
+        /**
+         * Create a Bucket.
+         *
+         * @param from the smallest value in the bucket
+         * @param to the largest value in the bucket
+         * @param count the number of values in the bucket
+         */
+        @JsonCreator
+        public Bucket(@JsonProperty("from") int from, @JsonProperty("to") int to, @JsonProperty("count") long count) {
+            this.from = from;
+            this.to = to;
+            this.count = count;
+        }
+
+        /**
+         * Get the smallest value in the bucket.
+         * @return the smallest value
+         */
+        public int getFrom() {
+            return from;
+        }
+
+        /**
+         * Get the largest value in the bucket.
+         * @return the largest value
+         */
+        public int getTo() {
+            return to;
+        }
+
+        /**
+         * Get the number of values in the bucket.
+         * @return the number of values
+         */
+        public long getCount() {
+            return count;
+        }
+    }
+}
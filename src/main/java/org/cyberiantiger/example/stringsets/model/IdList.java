@@ -0,0 +1,113 @@
+/*
+   Copyright 2016 Cyberian Tiger
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.cyberiantiger.example.stringsets.model;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.RandomAccess;
+
+/**
+ * A growable list of ids held as an int array, returned by queries which may
+ * find many StringSets so the ids are never boxed unless the list is used as
+ * a List.
+ *
+ * @author antony
+ */
+public final class IdList extends AbstractList<Integer> implements RandomAccess {
+
+    private int[] ids;
+    private int size;
+
+    /**
+     * Create an empty IdList.
+     */
+    public IdList() {
+        this(16);
+    }
+
+    /**
+     * Create an empty IdList.
+     *
+     * @param capacity the initial capacity
+     */
+    public IdList(int capacity) {
+        this.ids = new int[Math.max(1, capacity)];
+    }
+
+    /**
+     * Add an id.
+     *
+     * @param id the id
+     */
+    public void addInt(int id) {
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, size * 2);
+        }
+        ids[size++] = id;
+    }
+
+    @Override
+    public boolean add(Integer id) {
+        addInt(id);
+        return true;
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends Integer> c) {
+        if (c instanceof IdList) {
+            IdList other = (IdList) c;
+            if (ids.length - size < other.size) {
+                ids = Arrays.copyOf(ids, Math.max(ids.length * 2, size + other.size));
+            }
+            System.arraycopy(other.ids, 0, ids, size, other.size);
+            size += other.size;
+            return other.size > 0;
+        }
+        return super.addAll(c);
+    }
+
+    /**
+     * Get an id without boxing it.
+     *
+     * @param index the index of the id
+     * @return the id
+     * @throws IndexOutOfBoundsException if index is out of range
+     */
+    public int getInt(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        }
+        return ids[index];
+    }
+
+    @Override
+    public Integer get(int index) {
+        return getInt(index);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Sort the ids into ascending order.
+     */
+    public void sortInts() {
+        Arrays.sort(ids, 0, size);
+    }
+}
@@ -0,0 +1,232 @@
+/*
+   Copyright 2016 Cyberian Tiger
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.cyberiantiger.example.stringsets.model;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A concurrent map from id to value for the ids of a single shard, which are
+ * every stride'th id and are allocated densely and in increasing order.
+ *
+ * Values are kept in chunks of {@link #CHUNK_SIZE} slots indexed by id
+ * divided by stride. {@link #get(int)} and {@link #remove(int)} never block,
+ * adding a chunk and releasing an empty chunk are done by the caller of
+ * {@link #put(int, Object)} and {@link #release(int)} which must be
+ * serialised, e.g. by holding the lock of the shard.
+ *
+ * @param <T> the type of value
+ * @author antony
+ */
+class IdTable<T> {
+
+    private static final int CHUNK_BITS = 10;
+
+    /**
+     * The number of slots in each chunk.
+     */
+    static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private final int stride;
+
+    private final int residue;
+
+    /**
+     * The chunks, null for chunks with no values, replaced when it grows.
+     */
+    private volatile AtomicReferenceArray<T>[] chunks;
+
+    /**
+     * Create an IdTable.
+     *
+     * @param stride the difference between consecutive ids
+     * @param residue the remainder of every id divided by stride
+     */
+    IdTable(int stride, int residue) {
+        this.stride = stride;
+        this.residue = residue;
+        this.chunks = newSpine(0);
+    }
+
+    private static <T> AtomicReferenceArray<T>[] newSpine(int length) {
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        AtomicReferenceArray<T>[] result = new AtomicReferenceArray[length];
+        return result;
+    }
+
+    private AtomicReferenceArray<T> chunk(int id) {
+        if (id < 0 || id % stride != residue) {
+            return null;
+        }
+        int chunk = (id / stride) >>> CHUNK_BITS;
+        AtomicReferenceArray<T>[] spine = chunks;
+        return chunk < spine.length ? spine[chunk] : null;
+    }
+
+    /**
+     * Get the value of an id, without blocking.
+     *
+     * @param id the id
+     * @return the value, or null if there is none
+     */
+    T get(int id) {
+        AtomicReferenceArray<T> chunk = chunk(id);
+        return chunk == null ? null : chunk.get((id / stride) & CHUNK_MASK);
+    }
+
+    /**
+     * Remove the value of an id, without blocking.
+     *
+     * @param id the id
+     * @return the removed value, or null if there was none
+     */
+    T remove(int id) {
+        AtomicReferenceArray<T> chunk = chunk(id);
+        return chunk == null ? null : chunk.getAndSet((id / stride) & CHUNK_MASK, null);
+    }
+
+    /**
+     * Set the value of an id, adding a chunk if needed. Calls must be
+     * serialised with each other and {@link #release(int)}.
+     *
+     * @param id the id, which must not be negative and must have our residue
+     * @param value the value
+     * @return the previous value, or null if there was none
+     */
+    T put(int id, T value) {
+        int index = id / stride;
+        int chunk = index >>> CHUNK_BITS;
+        AtomicReferenceArray<T>[] spine = chunks;
+        if (chunk >= spine.length) {
+            spine = Arrays.copyOf(spine, Math.max(chunk + 1, spine.length * 2));
+        }
+        if (spine[chunk] == null) {
+            if (spine == chunks) {
+                spine = spine.clone();
+            }
+            spine[chunk] = new AtomicReferenceArray<>(CHUNK_SIZE);
+        }
+        if (spine != chunks) {
+            chunks = spine;
+        }
+        return spine[chunk].getAndSet(index & CHUNK_MASK, value);
+    }
+
+    /**
+     * Release the chunk holding an id if it has no values and is not the last
+     * chunk. Calls must be serialised with each other and
+     * {@link #put(int, Object)}.
+     *
+     * @param id the id
+     */
+    void release(int id) {
+        if (id < 0) {
+            return;
+        }
+        int index = id / stride;
+        int chunk = index >>> CHUNK_BITS;
+        AtomicReferenceArray<T>[] spine = chunks;
+        if (chunk + 1 >= spine.length || spine[chunk] == null) {
+            return;
+        }
+        AtomicReferenceArray<T> values = spine[chunk];
+        // Ids are deleted in roughly the order they were created, so start
+        // looking for a value after the id.
+        for (int i = 1; i <= CHUNK_SIZE; i++) {
+            if (values.get((index + i) & CHUNK_MASK) != null) {
+                return;
+            }
+        }
+        spine = spine.clone();
+        spine[chunk] = null;
+        chunks = spine;
+    }
+
+    /**
+     * Remove every value.
+     */
+    void clear() {
+        chunks = newSpine(0);
+    }
+
+    /**
+     * Visit every value in id order, values added or removed while visiting
+     * may or may not be visited.
+     *
+     * @param action called with each id and value
+     */
+    void forEach(Visitor<T> action) {
+        AtomicReferenceArray<T>[] spine = chunks;
+        for (int c = 0; c < spine.length; c++) {
+            AtomicReferenceArray<T> chunk = spine[c];
+            if (chunk == null) {
+                continue;
+            }
+            for (int i = 0; i < CHUNK_SIZE; i++) {
+                T value = chunk.get(i);
+                if (value != null) {
+                    action.accept(((c << CHUNK_BITS) + i) * stride + residue, value);
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the largest id with a value.
+     *
+     * @return the id, or 0 if there are no values
+     */
+    int lastId() {
+        AtomicReferenceArray<T>[] spine = chunks;
+        for (int c = spine.length - 1; c >= 0; c--) {
+            AtomicReferenceArray<T> chunk = spine[c];
+            if (chunk == null) {
+                continue;
+            }
+            for (int i = CHUNK_SIZE - 1; i >= 0; i--) {
+                if (chunk.get(i) != null) {
+                    return ((c << CHUNK_BITS) + i) * stride + residue;
+                }
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Copy every value.
+     *
+     * @return a map of id to value in id order
+     */
+    Map<Integer, T> toMap() {
+        Map<Integer, T> result = new LinkedHashMap<>();
+        forEach(result::put);
+        return result;
+    }
+
+    /**
+     * Called with each id and value, without boxing the id.
+     *
+     * @param <T> the type of value
+     */
+    interface Visitor<T> {
+
+        void accept(int id, T value);
+    }
+}
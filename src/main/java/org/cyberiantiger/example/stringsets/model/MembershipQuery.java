@@ -0,0 +1,61 @@
+/*
+   Copyright 2016 Cyberian Tiger
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.cyberiantiger.example.stringsets.model;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.util.List;
+
+/**
+ * A batch membership test, which of some Strings are in which StringSets.
+ *
+ * @author antony
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class MembershipQuery {
+
+    private final List<String> strings;
+    private final List<Integer> ids;
+
+    /**
+     * Create a MembershipQuery.
+     *
+     * @param strings the Strings to look for
+     * @param ids the ids of the StringSets to look in, or null for every StringSet
+     */
+    @JsonCreator
+    public MembershipQuery(@JsonProperty("strings") List<String> strings, @JsonProperty("ids") List<Integer> ids) {
+        this.strings = strings;
+        this.ids = ids;
+    }
+
+    /**
+     * Get the Strings to look for.
+     * @return the Strings
+     */
+    public List<String> getStrings() {
+        return strings;
+    }
+
+    /**
+     * Get the ids of the StringSets to look in.
+     * @return the ids, or null for every StringSet
+     */
+    public List<Integer> getIds() {
+        return ids;
+    }
+}
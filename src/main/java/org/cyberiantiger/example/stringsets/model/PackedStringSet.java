@@ -0,0 +1,266 @@
+/*
+   Copyright 2016 Cyberian Tiger
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.cyberiantiger.example.stringsets.model;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An immutable ordered set of Strings packed as UTF-8 into a ByteBuffer,
+ * usually a slice of a {@link StringArena}.
+ *
+ * Rather than an object per String and per hash set entry, a set is a
+ * handful of objects whatever it's size: the bytes, a table of the offset of
+ * each String, a table of each String's hash code and an open addressing
+ * hash table of indexes. Membership, equality, hashing and first and last
+ * character lookups work directly on the bytes, Strings are only decoded
+ * when iterating.
+ *
+ * @author antony
+ */
+public class PackedStringSet extends AbstractSet<String> {
+
+    private final ByteBuffer bytes;
+
+    /**
+     * Offset of each String in bytes, followed by the length of bytes.
+     */
+    private final int[] offsets;
+
+    /**
+     * {@link String#hashCode()} of each String.
+     */
+    private final int[] hashes;
+
+    /**
+     * Open addressing hash table of index + 1 of each String, 0 if empty.
+     */
+    private final int[] table;
+
+    private final int hashCode;
+
+    PackedStringSet(ByteBuffer bytes, int[] offsets, int[] hashes) {
+        this.bytes = bytes;
+        this.offsets = offsets;
+        this.hashes = hashes;
+        this.table = new int[Integer.highestOneBit(Math.max(1, hashes.length) * 2 - 1) << 1];
+        int mask = table.length - 1;
+        int sum = 0;
+        for (int i = 0; i < hashes.length; i++) {
+            int slot = spread(hashes[i]) & mask;
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = i + 1;
+            sum += hashes[i];
+        }
+        this.hashCode = sum;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    @Override
+    public int size() {
+        return hashes.length;
+    }
+
+    /**
+     * Decode a String.
+     *
+     * @param index the index of the String in iteration order
+     * @return the String
+     */
+    public String get(int index) {
+        int offset = offsets[index];
+        int length = offsets[index + 1] - offset;
+        byte[] buf = new byte[length];
+        for (int i = 0; i < length; i++) {
+            buf[i] = bytes.get(offset + i);
+        }
+        return new String(buf, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Get the first character of a String, as {@link String#charAt(int)}.
+     *
+     * @param index the index of the String in iteration order
+     * @return the first character
+     */
+    public char getFirstCharacter(int index) {
+        int cp = codePointAt(offsets[index]);
+        return Character.isBmpCodePoint(cp) ? (char) cp : Character.highSurrogate(cp);
+    }
+
+    /**
+     * Get the last character of a String, as {@link String#charAt(int)}.
+     *
+     * @param index the index of the String in iteration order
+     * @return the last character
+     */
+    public char getLastCharacter(int index) {
+        int start = offsets[index + 1] - 1;
+        while ((bytes.get(start) & 0xc0) == 0x80) {
+            start--;
+        }
+        int cp = codePointAt(start);
+        return Character.isBmpCodePoint(cp) ? (char) cp : Character.lowSurrogate(cp);
+    }
+
+    private int codePointAt(int offset) {
+        int b = bytes.get(offset);
+        if (b >= 0) {
+            return b;
+        }
+        int length = (b & 0xe0) == 0xc0 ? 2 : (b & 0xf0) == 0xe0 ? 3 : 4;
+        int result = b & (0x7f >> length);
+        for (int i = 1; i < length; i++) {
+            result = (result << 6) | (bytes.get(offset + i) & 0x3f);
+        }
+        return result;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        if (!(o instanceof String)) {
+            return false;
+        }
+        String s = (String) o;
+        int hash = s.hashCode();
+        int mask = table.length - 1;
+        byte[] utf8 = null;
+        for (int slot = spread(hash) & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+            int index = table[slot] - 1;
+            if (hashes[index] != hash) {
+                continue;
+            }
+            int offset = offsets[index];
+            int length = offsets[index + 1] - offset;
+            if (length == s.length() && matchesAscii(offset, s)) {
+                return true;
+            }
+            if (utf8 == null) {
+                utf8 = s.getBytes(StandardCharsets.UTF_8);
+            }
+            if (length == utf8.length && matches(offset, utf8)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean matchesAscii(int offset, String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (bytes.get(offset + i) != s.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean matches(int offset, byte[] utf8) {
+        for (int i = 0; i < utf8.length; i++) {
+            if (bytes.get(offset + i) != utf8[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Check if we contain the String at an index of another PackedStringSet,
+     * comparing the bytes.
+     */
+    private boolean contains(PackedStringSet other, int otherIndex) {
+        int hash = other.hashes[otherIndex];
+        int otherOffset = other.offsets[otherIndex];
+        int length = other.offsets[otherIndex + 1] - otherOffset;
+        int mask = table.length - 1;
+        strings:
+        for (int slot = spread(hash) & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+            int index = table[slot] - 1;
+            int offset = offsets[index];
+            if (hashes[index] != hash || offsets[index + 1] - offset != length) {
+                continue;
+            }
+            for (int i = 0; i < length; i++) {
+                if (bytes.get(offset + i) != other.bytes.get(otherOffset + i)) {
+                    continue strings;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == this) {
+            return true;
+        }
+        if (!(o instanceof PackedStringSet)) {
+            return super.equals(o);
+        }
+        PackedStringSet other = (PackedStringSet) o;
+        if (size() != other.size() || hashCode != other.hashCode) {
+            return false;
+        }
+        for (int i = 0; i < other.size(); i++) {
+            if (!contains(other, i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        return new Iterator<String>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < hashes.length;
+            }
+
+            @Override
+            public String next() {
+                if (next >= hashes.length) {
+                    throw new NoSuchElementException();
+                }
+                return get(next++);
+            }
+        };
+    }
+
+    /**
+     * Get the approximate heap used by this set, excluding the packed bytes.
+     *
+     * @return the approximate size in bytes
+     */
+    long heapBytes() {
+        return 128 + 4L * (offsets.length + hashes.length + table.length);
+    }
+}
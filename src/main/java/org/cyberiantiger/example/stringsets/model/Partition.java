@@ -0,0 +1,201 @@
+/*
+   Copyright 2016 Cyberian Tiger
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.cyberiantiger.example.stringsets.model;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import org.cyberiantiger.example.stringsets.model.frequency.FrequencyEstimate;
+import org.cyberiantiger.example.stringsets.model.longestchain.ChainSummary;
+import org.cyberiantiger.example.stringsets.model.similarity.Similarity;
+
+/**
+ * A partition of the data store, owning the StringSets whose ids map to it.
+ *
+ * Global queries are answered by {@link Data} merging the partial results of
+ * every partition, so a partition may be held in this JVM or on another node.
+ *
+ * @author antony
+ */
+public interface Partition {
+
+    /**
+     * Store a StringSet under an id, unless the id is already in use.
+     *
+     * @param id the id
+     * @param set the StringSet
+     * @return true if it was stored, false if the id is in use
+     */
+    boolean put(int id, StringSet set);
+
+    /**
+     * Store many StringSets, e.g. when loading a snapshot.
+     *
+     * @param sets map of id to StringSet, the ids must not already be in use
+     */
+    default void putAll(Map<Integer, StringSet> sets) {
+        sets.forEach(this::put);
+    }
+
+    /**
+     * Get the largest id in use.
+     *
+     * @return the id, or 0 if there are no StringSets
+     */
+    int getMaxId();
+
+    /**
+     * Release any resources held, such as connections to a remote node.
+     */
+    default void close() {
+    }
+
+    /**
+     * Get the StringSet for an id.
+     *
+     * @param id the id
+     * @return the StringSet or null if it does not exist
+     */
+    StringSet get(int id);
+
+    /**
+     * Remove a StringSet.
+     *
+     * @param id the id
+     * @return the removed StringSet or null if it did not exist
+     */
+    StringSet remove(int id);
+
+    /**
+     * Remove all StringSets.
+     */
+    void clear();
+
+    /**
+     * Get a copy of the sets of Strings in this partition.
+     *
+     * @return a map of id to set of Strings, in id order
+     */
+    Map<Integer, Set<String>> getMap();
+
+    /**
+     * Search for StringSets containing a specific String.
+     *
+     * @param query the string to search for
+     * @return ids of matching StringSets in id order
+     */
+    List<Integer> search(String query);
+
+    /**
+     * Get a copy of the String frequencies for this partition.
+     *
+     * @return a mutable map of String to the number of StringSets containing it
+     * @throws UnsupportedOperationException if only approximate frequencies are kept
+     */
+    Map<String, Integer> getFrequencies();
+
+    /**
+     * Get the Strings in between min and max StringSets in this partition.
+     *
+     * @param min the minimum number of StringSets
+     * @param max the maximum number of StringSets
+     * @param offset the number of Strings to skip
+     * @param limit the maximum number of Strings
+     * @return a mutable list of Strings with their counts, by count then alphabetically
+     * @throws UnsupportedOperationException if only approximate frequencies are kept
+     */
+    List<FrequencyEstimate> getExactlyIn(int min, int max, int offset, int limit);
+
+    /**
+     * Get the number of Strings in exactly each number of StringSets in
+     * this partition.
+     *
+     * @return a mutable map of number of StringSets to number of Strings
+     * @throws UnsupportedOperationException if only approximate frequencies are kept
+     */
+    SortedMap<Integer, Integer> getCountHistogram();
+
+    /**
+     * Get the most frequent Strings in this partition, estimated if only
+     * approximate frequencies are kept.
+     *
+     * @param k the maximum number of Strings
+     * @return a mutable list of the most frequent Strings, most frequent first
+     */
+    List<FrequencyEstimate> getTopFrequencies(int k);
+
+    /**
+     * Get the number of StringSets in this partition containing each of
+     * some Strings, estimated if only approximate frequencies are kept.
+     *
+     * @param strings the Strings
+     * @return a mutable map of each String to the number of StringSets containing it
+     */
+    Map<String, Integer> estimateFrequencies(Collection<String> strings);
+
+    /**
+     * Get a copy of the statistics for this partition.
+     *
+     * @return the statistics
+     */
+    CorpusStatistics getStatistics();
+
+    /**
+     * Get the longest Strings in this partition, each repeated once for every
+     * StringSet containing it.
+     *
+     * @return a mutable list of the longest Strings
+     */
+    List<String> getLongest();
+
+    /**
+     * Get the longest chain summary of every StringSet in this partition.
+     *
+     * @return a mutable map of summaries by id
+     */
+    Map<Integer, ChainSummary> getChainSummaries();
+
+    /**
+     * Find StringSets whose estimated Jaccard similarity to a MinHash
+     * signature is at least a threshold.
+     *
+     * @param signature the MinHash signature to compare to
+     * @param threshold the minimum estimated Jaccard similarity
+     * @return a mutable list of similar StringSets, without exact similarities
+     */
+    List<Similarity> findSimilar(int[] signature, double threshold);
+
+    /**
+     * Find StringSets with the same content as a fingerprint.
+     *
+     * @param fingerprint the fingerprint
+     * @return a mutable list of ids in id order
+     */
+    List<Integer> findDuplicates(Fingerprint fingerprint);
+
+    /**
+     * Find which of some Strings are in which StringSets of this partition.
+     *
+     * @param strings the Strings, without duplicates
+     * @param ids the ids of the StringSets to look in, or null for every
+     *        StringSet, ids not in this partition are ignored
+     * @return a mutable map of id to the Strings in that StringSet, in the
+     *         same order, omitting StringSets containing none of them
+     */
+    Map<Integer, List<String>> findMembers(List<String> strings, Collection<Integer> ids);
+}
@@ -0,0 +1,36 @@
+/*
+   Copyright 2016 Cyberian Tiger
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.cyberiantiger.example.stringsets.model;
+
+/**
+ * Thrown when creating a StringSet would take a {@link Data} store over it's
+ * memory limit.
+ *
+ * @author antony
+ */
+public class QuotaExceededException extends IllegalStateException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Create a new QuotaExceededException.
+     *
+     * @param message the detail message
+     */
+    public QuotaExceededException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,430 @@
+/*
+   Copyright 2016 Cyberian Tiger
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.cyberiantiger.example.stringsets.model;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tiered storage for StringSets, keeping the Strings of recently used
+ * StringSets on the heap and evicting the least recently used to an append
+ * only memory mapped segment file.
+ *
+ * An evicted StringSet keeps only it's position in the file on the heap,
+ * along with it's statistics, fingerprint and MinHash signature, and is
+ * faulted back in by {@link StringSet#getSet()}. Indexes use
+ * {@link StringSet#contains(java.lang.String)} and
+ * {@link StringSet#readSet()} which read evicted StringSets in place without
+ * faulting them back in.
+ *
+ * StringSets cannot change once created so each is written at most once,
+ * the space used by deleted StringSets is not reclaimed until the store is
+ * cleared, and the file is truncated when opened, it is not a means of
+ * persistence.
+ *
+ * Getting the Strings of a StringSet on the heap takes no lock, it only
+ * marks the StringSet as referenced, and eviction gives referenced
+ * StringSets a second chance, an approximation of least recently used.
+ * Only faulting an evicted StringSet back in locks the store.
+ *
+ * Each StringSet is written as it's size, followed by the UTF-8 length and
+ * bytes of each String, sizes and lengths are 4 byte ints.
+ *
+ * @author antony
+ */
+public class SegmentStore implements Closeable {
+
+    /**
+     * System property used to enable tiered storage for {@link Data#instance},
+     * the path of the segment file.
+     */
+    public static final String FILE_PROPERTY = "stringsets.segmentFile";
+
+    /**
+     * System property used to configure the approximate maximum heap used by
+     * the Strings of StringSets in {@link Data#instance} when tiered.
+     */
+    public static final String HEAP_BYTES_PROPERTY = "stringsets.heapBytes";
+
+    /**
+     * Size of each mapped segment, larger StringSets get a segment to
+     * themselves.
+     */
+    private static final int SEGMENT_SIZE = 64 << 20;
+
+    /**
+     * Approximate heap used by a set, and by each String in a set excluding
+     * it's characters.
+     */
+    private static final int SET_BYTES = 64;
+    private static final int STRING_BYTES = 88;
+
+    private final Path file;
+
+    private final FileChannel channel;
+
+    /**
+     * The maximum approximate heap used by StringSets on the heap.
+     */
+    private final long maxHeapBytes;
+
+    /**
+     * The mapped segments, replaced rather than modified so it can be read
+     * without locking.
+     */
+    private volatile MappedByteBuffer[] segments = new MappedByteBuffer[0];
+
+    /**
+     * The offset in the file of the end of the last segment.
+     */
+    private long fileSize;
+
+    /**
+     * The offset in the last segment to write to next.
+     */
+    private int writeOffset;
+
+    /**
+     * StringSets on the heap in access order, with their approximate heap use.
+     */
+    private final Map<StringSet, Long> onHeap = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * The approximate heap used by StringSets on the heap.
+     */
+    private long heapBytes;
+
+    /**
+     * Set once the store has been replaced by {@link #clear()}, it's
+     * StringSets remain readable but are no longer managed.
+     */
+    private boolean cleared;
+
+    private SegmentStore(Path file, FileChannel channel, long maxHeapBytes) {
+        this.file = file;
+        this.channel = channel;
+        this.maxHeapBytes = maxHeapBytes;
+    }
+
+    /**
+     * Create a SegmentStore, truncating the segment file if it exists.
+     *
+     * @param file the segment file
+     * @param maxHeapBytes the approximate maximum heap used by the Strings
+     *        of StringSets kept on the heap
+     * @return the SegmentStore
+     * @throws IOException if the file cannot be opened
+     */
+    public static SegmentStore open(Path file, long maxHeapBytes) throws IOException {
+        return new SegmentStore(file, FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE), maxHeapBytes);
+    }
+
+    /**
+     * Start managing a newly created StringSet, which is on the heap.
+     *
+     * @param set the StringSet
+     */
+    synchronized void add(StringSet set) {
+        set.setStore(this);
+        set.setManaged(true);
+        long size = heapBytes(set.getHeapSet());
+        onHeap.put(set, size);
+        heapBytes += size;
+        evict();
+    }
+
+    /**
+     * Stop managing a deleted StringSet, it remains readable but won't be
+     * counted towards our heap use if it is on the heap, and won't be
+     * faulted back onto the heap if it has been evicted.
+     *
+     * @param set the StringSet
+     */
+    synchronized void remove(StringSet set) {
+        set.setManaged(false);
+        Long size = onHeap.remove(set);
+        if (size != null) {
+            heapBytes -= size;
+        }
+    }
+
+    /**
+     * Stop managing every StringSet, and replace this store with a new one
+     * with an empty segment file.
+     *
+     * The segment file is deleted and created again rather than truncated,
+     * so StringSets still referenced by concurrent readers remain readable
+     * from their existing mappings, and the space is reclaimed once they
+     * are unmapped.
+     *
+     * @return the new SegmentStore, using the same file
+     * @throws IOException if the file cannot be created again
+     */
+    synchronized SegmentStore clear() throws IOException {
+        for (StringSet set : onHeap.keySet()) {
+            set.setManaged(false);
+        }
+        onHeap.clear();
+        heapBytes = 0;
+        cleared = true;
+        channel.close();
+        Files.deleteIfExists(file);
+        return open(file, maxHeapBytes);
+    }
+
+    /**
+     * Get the Strings of a StringSet, faulting them back onto the heap if
+     * they have been evicted, and marking them as referenced.
+     *
+     * @param set the StringSet
+     * @return the Strings
+     */
+    Set<String> access(StringSet set) {
+        Set<String> result = set.getHeapSet();
+        if (result != null) {
+            if (!set.isReferenced()) {
+                set.setReferenced(true);
+            }
+            return result;
+        }
+        return faultIn(set);
+    }
+
+    private synchronized Set<String> faultIn(StringSet set) {
+        Set<String> result = set.getHeapSet();
+        if (result != null) {
+            // Faulted in by another thread.
+            return result;
+        }
+        result = read(set.getPosition());
+        if (cleared || !set.isManaged()) {
+            // Deleted, don't keep it.
+            return result;
+        }
+        set.setHeapSet(result);
+        long size = heapBytes(result);
+        onHeap.put(set, size);
+        heapBytes += size;
+        evict();
+        return result;
+    }
+
+    /**
+     * Get the approximate heap used by StringSets on the heap.
+     *
+     * @return the approximate size in bytes
+     */
+    public synchronized long getHeapBytes() {
+        return heapBytes;
+    }
+
+    /**
+     * Get the number of StringSets on the heap.
+     *
+     * @return the number of StringSets
+     */
+    public synchronized int getHeapCount() {
+        return onHeap.size();
+    }
+
+    private void evict() {
+        int chances = onHeap.size();
+        while (heapBytes > maxHeapBytes && !onHeap.isEmpty()) {
+            Iterator<Map.Entry<StringSet, Long>> i = onHeap.entrySet().iterator();
+            Map.Entry<StringSet, Long> e = i.next();
+            StringSet set = e.getKey();
+            if (set.isReferenced() && chances-- > 0) {
+                // Used since it was added, move it to the back.
+                set.setReferenced(false);
+                onHeap.get(set);
+                continue;
+            }
+            if (set.getPosition() < 0) {
+                set.setPosition(write(set.getHeapSet()));
+            }
+            set.setHeapSet(null);
+            heapBytes -= e.getValue();
+            i.remove();
+        }
+    }
+
+    /**
+     * Get the approximate heap used by a set of Strings.
+     *
+     * @param set the set of Strings
+     * @return the approximate size in bytes
+     */
+    static long heapBytes(Set<String> set) {
+        if (set instanceof PackedStringSet) {
+            return ((PackedStringSet) set).heapBytes();
+        }
+        if (set instanceof CompactStringSet) {
+            long result = ((CompactStringSet) set).heapBytes();
+            for (String s : set) {
+                result += s.length();
+            }
+            return result;
+        }
+        long result = SET_BYTES;
+        for (String s : set) {
+            result += STRING_BYTES + s.length();
+        }
+        return result;
+    }
+
+    /**
+     * Append a set of Strings to the segment file.
+     *
+     * @param set the set of Strings
+     * @return the position it was written at
+     */
+    private long write(Set<String> set) {
+        byte[][] encoded = new byte[set.size()][];
+        long size = 4;
+        int i = 0;
+        for (String s : set) {
+            encoded[i] = s.getBytes(StandardCharsets.UTF_8);
+            size += 4 + encoded[i++].length;
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("StringSet too large for segment file");
+        }
+        MappedByteBuffer[] current = segments;
+        if (current.length == 0 || current[current.length - 1].capacity() - writeOffset < size) {
+            int segmentSize = Math.max(SEGMENT_SIZE, (int) size);
+            try {
+                MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_WRITE, fileSize, segmentSize);
+                fileSize += segmentSize;
+                current = Arrays.copyOf(current, current.length + 1);
+                current[current.length - 1] = segment;
+                segments = current;
+                writeOffset = 0;
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+        ByteBuffer out = current[current.length - 1].duplicate();
+        out.position(writeOffset);
+        out.putInt(encoded.length);
+        for (byte[] b : encoded) {
+            out.putInt(b.length);
+            out.put(b);
+        }
+        long result = ((long) (current.length - 1) << 32) | writeOffset;
+        writeOffset = out.position();
+        return result;
+    }
+
+    private ByteBuffer buffer(long position) {
+        ByteBuffer result = segments[(int) (position >>> 32)].duplicate();
+        result.position((int) position);
+        return result;
+    }
+
+    /**
+     * Read a set of Strings from the segment file, without faulting it back
+     * onto the heap.
+     *
+     * @param position the position it was written at
+     * @return a new set of Strings
+     */
+    Set<String> read(long position) {
+        ByteBuffer in = buffer(position);
+        int size = in.getInt();
+        StringSetBuilder result = new StringSetBuilder(size);
+        byte[] buf = new byte[64];
+        for (int i = 0; i < size; i++) {
+            int length = in.getInt();
+            if (length > buf.length) {
+                buf = new byte[Math.max(length, buf.length * 2)];
+            }
+            in.get(buf, 0, length);
+            result.add(new String(buf, 0, length, StandardCharsets.UTF_8));
+        }
+        return result.build();
+    }
+
+    /**
+     * Check if a set of Strings in the segment file contains a String,
+     * comparing in place.
+     *
+     * @param position the position it was written at
+     * @param query the String
+     * @return true if the set contains the String
+     */
+    boolean contains(long position, String query) {
+        ByteBuffer in = buffer(position);
+        int size = in.getInt();
+        byte[] utf8 = null;
+        for (int i = 0; i < size; i++) {
+            int length = in.getInt();
+            int start = in.position();
+            in.position(start + length);
+            if (length < query.length()) {
+                // UTF-8 is never shorter than the number of chars.
+                continue;
+            }
+            if (length == query.length() && matchesAscii(in, start, query)) {
+                return true;
+            }
+            if (utf8 == null) {
+                utf8 = query.getBytes(StandardCharsets.UTF_8);
+            }
+            if (length == utf8.length && matches(in, start, utf8)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean matchesAscii(ByteBuffer in, int start, String query) {
+        for (int i = 0; i < query.length(); i++) {
+            if (in.get(start + i) != query.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean matches(ByteBuffer in, int start, byte[] utf8) {
+        for (int i = 0; i < utf8.length; i++) {
+            if (in.get(start + i) != utf8[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,207 @@
+/*
+   Copyright 2016 Cyberian Tiger
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.cyberiantiger.example.stringsets.model;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Set operations over an ordered list of sets of Strings.
+ *
+ * Results are ordered by the first appearance of each String, taking the
+ * sets in the order given, so as for {@link Data#createIntersection(int, int)}
+ * the order of an intersection or difference is the order of the first set.
+ *
+ * Each String is examined once, at it's first appearance, by checking
+ * whether it is contained in the other sets, so neither creating nor counting
+ * a result builds any intermediate collections.
+ *
+ * @author antony
+ */
+public enum SetOperation {
+    /**
+     * Strings in every set.
+     */
+    INTERSECTION {
+        @Override
+        boolean includes(int first, int count, int sets) {
+            return count == sets;
+        }
+    },
+    /**
+     * Strings in any set.
+     */
+    UNION {
+        @Override
+        boolean includes(int first, int count, int sets) {
+            return true;
+        }
+    },
+    /**
+     * Strings in the first set, and in none of the others.
+     */
+    DIFFERENCE {
+        @Override
+        boolean includes(int first, int count, int sets) {
+            return first == 0 && count == 1;
+        }
+    },
+    /**
+     * Strings in an odd number of sets.
+     */
+    SYMMETRIC_DIFFERENCE {
+        @Override
+        boolean includes(int first, int count, int sets) {
+            return (count & 1) == 1;
+        }
+    };
+
+    /**
+     * Check if a String is in the result of this operation.
+     *
+     * @param first the index of the first set the String is in
+     * @param count the number of sets the String is in
+     * @param sets the number of sets
+     * @return true if the String is in the result
+     */
+    abstract boolean includes(int first, int count, int sets);
+
+    /**
+     * Check if Strings first seen in a set could be in the result.
+     *
+     * @param index the index of the set
+     * @return true if Strings first seen in the set could be in the result
+     */
+    private boolean mayInclude(int index) {
+        return index == 0 || (this != INTERSECTION && this != DIFFERENCE);
+    }
+
+    /**
+     * Get the name of this operation as used by the api.
+     *
+     * @return the lower case name
+     */
+    public String getName() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Get an operation from it's name as used by the api.
+     *
+     * @param name the lower case name
+     * @return the operation
+     * @throws IllegalArgumentException if there is no such operation
+     */
+    public static SetOperation fromName(String name) {
+        for (SetOperation op : values()) {
+            if (op.getName().equals(name)) {
+                return op;
+            }
+        }
+        throw new IllegalArgumentException("Unknown operation: " + name);
+    }
+
+    /**
+     * Apply the operation.
+     *
+     * @param sets the sets to apply the operation to
+     * @return the ordered result
+     */
+    public Set<String> apply(List<Set<String>> sets) {
+        Set<String> result = new LinkedHashSet<>();
+        visit(sets, result);
+        return result;
+    }
+
+    /**
+     * Count the size of the result of the operation, without creating it.
+     *
+     * @param sets the sets to apply the operation to
+     * @return the size of the result
+     */
+    public int count(List<Set<String>> sets) {
+        if (this == INTERSECTION) {
+            // Order doesn't matter, so scan the smallest set.
+            int smallest = 0;
+            for (int i = 1; i < sets.size(); i++) {
+                if (sets.get(i).size() < sets.get(smallest).size()) {
+                    smallest = i;
+                }
+            }
+            int result = 0;
+            for (String s : sets.get(smallest)) {
+                if (containedInAll(sets, s)) {
+                    result++;
+                }
+            }
+            return result;
+        }
+        return visit(sets, null);
+    }
+
+    private static boolean containedInAll(List<Set<String>> sets, String s) {
+        for (Set<String> set : sets) {
+            if (!set.contains(s)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Visit every String at it's first appearance, adding those in the result
+     * to an optional set.
+     *
+     * @param sets the sets to apply the operation to
+     * @param result set to add results to, or null to only count them
+     * @return the size of the result
+     */
+    private int visit(List<Set<String>> sets, Set<String> result) {
+        int size = sets.size();
+        int count = 0;
+        for (int i = 0; i < size && mayInclude(i); i++) {
+            strings:
+            for (String s : sets.get(i)) {
+                for (int j = 0; j < i; j++) {
+                    if (sets.get(j).contains(s)) {
+                        // Not the first appearance.
+                        continue strings;
+                    }
+                }
+                int in = 1;
+                for (int j = i + 1; j < size; j++) {
+                    if (sets.get(j).contains(s)) {
+                        if (this == DIFFERENCE) {
+                            continue strings;
+                        }
+                        in++;
+                    } else if (this == INTERSECTION) {
+                        continue strings;
+                    }
+                }
+                if (includes(i, in, size)) {
+                    count++;
+                    if (result != null) {
+                        result.add(s);
+                    }
+                }
+            }
+        }
+        return count;
+    }
+}
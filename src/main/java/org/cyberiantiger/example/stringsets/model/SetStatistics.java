@@ -17,9 +17,7 @@ package org.cyberiantiger.example.stringsets.model;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
-import java.util.List;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 /**
  * Statistics for a StringSet
@@ -39,10 +37,11 @@ public class SetStatistics {
      * @param strings The Strings to create the statistics for.
      */
     public SetStatistics(Set<String> strings) {
-        this.count = strings.size();
+        int[] lengths = new int[strings.size()];
         int shortestLength = Integer.MAX_VALUE;
         int longestLength = Integer.MIN_VALUE;
-        int totalLength = 0;
+        long totalLength = 0;
+        int i = 0;
 
         for (String s : strings) {
             int len = s.length();
@@ -53,22 +52,71 @@ public class SetStatistics {
                 longestLength = len;
             }
             totalLength += len;
+            lengths[i++] = len;
         }
 
+        this.count = lengths.length;
         this.shortestLength = shortestLength;
         this.longestLength = longestLength;
-        this.averageLength = 1D * totalLength / strings.size();
+        this.averageLength = 1D * totalLength / lengths.length;
 
-        List<Integer> collect = strings.stream().map(s -> s.length()).collect(Collectors.toList());
-
-        if ((collect.size() & 1) == 1) {
+        int middle = lengths.length / 2;
+        int upper = select(lengths, middle);
+        if ((lengths.length & 1) == 1) {
             // Odd
-            medianLength = collect.get((collect.size()-1)/2);
+            medianLength = upper;
         } else {
-            // Even, mean of middle two lengths.
-            int offset = collect.size()/2;
-            medianLength = (collect.get(offset) + collect.get(offset-1)) / 2d;
+            // Even, mean of middle two lengths, the lower of which is the
+            // largest length before the middle after selection.
+            int lower = lengths[0];
+            for (int j = 1; j < middle; j++) {
+                lower = Math.max(lower, lengths[j]);
+            }
+            medianLength = (lower + upper) / 2d;
+        }
+    }
+
+    /**
+     * Find the k-th smallest value with quickselect, in expected linear time.
+     * 
+     * Reorders values so those before k are no greater than the result and
+     * those after are no less.
+     * 
+     * @param values the values
+     * @param k the zero based rank
+     * @return the k-th smallest value
+     */
+    static int select(int[] values, int k) {
+        int left = 0;
+        int right = values.length - 1;
+        while (left < right) {
+            // Median of three pivot, avoiding quadratic behaviour on sorted input.
+            int mid = (left + right) >>> 1;
+            int pivot = Math.max(Math.min(values[left], values[mid]), Math.min(Math.max(values[left], values[mid]), values[right]));
+            int i = left;
+            int j = right;
+            while (i <= j) {
+                while (values[i] < pivot) {
+                    i++;
+                }
+                while (values[j] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    int tmp = values[i];
+                    values[i++] = values[j];
+                    values[j--] = tmp;
+                }
+            }
+            if (k <= j) {
+                right = j;
+            } else if (k >= i) {
+                left = i;
+            } else {
+                break;
+            }
         }
+        return values[k];
     }
 
     /**
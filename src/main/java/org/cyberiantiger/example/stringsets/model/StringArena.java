@@ -0,0 +1,117 @@
+/*
+   Copyright 2016 Cyberian Tiger
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.cyberiantiger.example.stringsets.model;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+
+/**
+ * An off heap arena which StringSets' Strings are packed into.
+ *
+ * The Strings of each set are packed as UTF-8 into a contiguous slice of a
+ * direct ByteBuffer chunk, see {@link PackedStringSet}. Space is allocated
+ * by bumping a pointer and is never reused, a chunk's memory is freed by the
+ * garbage collector once every set packed into it is unreachable.
+ *
+ * @author antony
+ */
+public class StringArena {
+
+    /**
+     * System property used to pack the Strings of {@link Data#instance} into
+     * an arena.
+     */
+    public static final String PACKED_PROPERTY = "stringsets.packed";
+
+    /**
+     * Default size of each chunk, sets larger than a quarter of a chunk get a
+     * buffer to themselves.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+
+    private final int chunkSize;
+
+    /**
+     * The chunk currently being allocated from.
+     */
+    private ByteBuffer chunk;
+
+    /**
+     * Create an arena with the default chunk size.
+     */
+    public StringArena() {
+        this(DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Create an arena.
+     *
+     * @param chunkSize the size of each direct buffer allocated
+     */
+    public StringArena(int chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Pack a set of Strings into the arena.
+     *
+     * @param set the set of Strings
+     * @return an immutable set of Strings with the same order
+     */
+    public PackedStringSet pack(Set<String> set) {
+        int size = set.size();
+        byte[][] encoded = new byte[size][];
+        int[] hashes = new int[size];
+        int[] offsets = new int[size + 1];
+        int i = 0;
+        for (String s : set) {
+            encoded[i] = s.getBytes(StandardCharsets.UTF_8);
+            hashes[i] = s.hashCode();
+            offsets[i + 1] = offsets[i] + encoded[i].length;
+            i++;
+        }
+        ByteBuffer bytes = allocate(offsets[size]);
+        for (byte[] b : encoded) {
+            bytes.put(b);
+        }
+        bytes.flip();
+        return new PackedStringSet(bytes, offsets, hashes);
+    }
+
+    /**
+     * Allocate a slice of a chunk.
+     *
+     * @param length the length of the slice
+     * @return a direct ByteBuffer positioned at zero, with length capacity
+     */
+    private ByteBuffer allocate(int length) {
+        if (length > chunkSize / 4) {
+            return ByteBuffer.allocateDirect(length);
+        }
+        synchronized (this) {
+            if (chunk == null || chunk.remaining() < length) {
+                chunk = ByteBuffer.allocateDirect(chunkSize);
+            }
+            int position = chunk.position();
+            chunk.position(position + length);
+            ByteBuffer result = chunk.duplicate();
+            result.position(position);
+            result.limit(position + length);
+            return result.slice();
+        }
+    }
+}
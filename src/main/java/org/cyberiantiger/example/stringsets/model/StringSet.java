@@ -15,7 +15,12 @@
 */
 package org.cyberiantiger.example.stringsets.model;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
+import org.cyberiantiger.example.stringsets.model.longestchain.ChainSummary;
+import org.cyberiantiger.example.stringsets.model.longestchain.LongestChainSolver;
+import org.cyberiantiger.example.stringsets.model.similarity.MinHash;
 
 /**
  * A class to represent a set of Strings.
@@ -24,14 +29,62 @@ import java.util.Set;
 public class StringSet {
     
     /**
-     * The Set of Strings.
+     * The Set of Strings, or null while evicted to {@link #store}.
      */
-    private final Set<String> set;
+    private volatile Set<String> set;
 
     /**
-     * Statistics about the Strings.
+     * The tiered store managing the set, or null if it is always on the heap.
      */
-    private final SetStatistics statistics;
+    private volatile SegmentStore store;
+
+    /**
+     * Position of the set in {@link #store}'s segment file, or -1 if it has
+     * not been written.
+     */
+    private volatile long position = -1;
+
+    /**
+     * Whether {@link #store} is managing the set, false once it is deleted.
+     */
+    private volatile boolean managed;
+
+    /**
+     * Whether the set has been used since {@link #store} last considered
+     * evicting it.
+     */
+    private volatile boolean referenced;
+
+    /**
+     * Statistics about the Strings, computed on first use.
+     */
+    private volatile SetStatistics statistics;
+
+    /**
+     * Fingerprint of the content of the set.
+     */
+    private final Fingerprint fingerprint;
+
+    /**
+     * MinHash signature of the set.
+     */
+    private final int[] minHash;
+
+    /**
+     * Bloom filter of the Strings, kept on the heap even while the set is
+     * evicted.
+     */
+    private final BloomFilter bloomFilter;
+
+    /**
+     * Summary of the chains in the set, computed on first use.
+     */
+    private volatile ChainSummary chainSummary;
+
+    /**
+     * Approximate heap used by the set, computed on first use, or -1.
+     */
+    private volatile long bytes = -1;
     
     /**
      * Create a new StringSet with the specified set of Strings.
@@ -42,23 +95,193 @@ public class StringSet {
      * @param set the (ordered) set of Strings
      */
     public StringSet(Set<String> set) {
-        this.set = set;
-        this.statistics = new SetStatistics(set);
+        this(set, Fingerprint.of(set));
+    }
+
+    /**
+     * Create a new StringSet with the specified set of Strings and it's
+     * already computed fingerprint.
+     * 
+     * @param set the (ordered) set of Strings
+     * @param fingerprint the fingerprint of the set
+     */
+    public StringSet(Set<String> set, Fingerprint fingerprint) {
+        this(set, fingerprint, null);
+    }
+
+    /**
+     * Create a new StringSet with the specified set of Strings and it's
+     * already computed fingerprint, optionally packing the Strings off heap.
+     * 
+     * @param set the (ordered) set of Strings
+     * @param fingerprint the fingerprint of the set
+     * @param arena the arena to pack the Strings into, or null to keep set
+     */
+    public StringSet(Set<String> set, Fingerprint fingerprint, StringArena arena) {
+        this.fingerprint = fingerprint;
+        this.minHash = MinHash.signature(set);
+        this.bloomFilter = new BloomFilter(set);
+        this.set = arena == null ? set : arena.pack(set);
     }
     
     /**
-     * Get the set of Strings.
+     * Get the set of Strings, faulting it back onto the heap if it has been
+     * evicted by a {@link SegmentStore}.
      * @return the set of Strings
      */
     public Set<String> getSet() {
+        SegmentStore s = store;
+        return s == null ? set : s.access(this);
+    }
+
+    /**
+     * Get the set of Strings without faulting it back onto the heap, for use
+     * by indexes and bulk reads such as exports, which shouldn't change which
+     * StringSets a {@link SegmentStore} keeps on the heap.
+     * @return the set of Strings, which may be a copy
+     */
+    public Set<String> readSet() {
+        Set<String> result = set;
+        return result != null ? result : store.read(position);
+    }
+
+    /**
+     * Check if the set contains a String, without faulting it back onto the
+     * heap.
+     * @param s the String
+     * @return true if the set contains the String
+     */
+    boolean contains(String s) {
+        return contains(s, BloomFilter.hash(s));
+    }
+
+    /**
+     * Check if the set contains a String, without faulting it back onto the
+     * heap, only reading the set if it's Bloom filter might contain it.
+     * @param s the String
+     * @param hash the {@link BloomFilter#hash(String)} of the String
+     * @return true if the set contains the String
+     */
+    boolean contains(String s, long hash) {
+        if (!bloomFilter.mightContain(hash)) {
+            return false;
+        }
+        Set<String> result = set;
+        return result != null ? result.contains(s) : store.contains(position, s);
+    }
+
+    /**
+     * Find which of some Strings the set contains, without faulting it back
+     * onto the heap, reading the set at most once and only if it's Bloom
+     * filter might contain one of them.
+     * @param strings the Strings
+     * @param hashes the {@link BloomFilter#hash(String)} of each String
+     * @return the Strings the set contains, in the same order
+     */
+    List<String> getMembers(List<String> strings, long[] hashes) {
+        List<String> result = new ArrayList<>();
+        Set<String> read = null;
+        for (int i = 0; i < hashes.length; i++) {
+            if (bloomFilter.mightContain(hashes[i])) {
+                if (read == null) {
+                    read = readSet();
+                }
+                if (read.contains(strings.get(i))) {
+                    result.add(strings.get(i));
+                }
+            }
+        }
+        return result;
+    }
+
+    void setStore(SegmentStore store) {
+        this.store = store;
+    }
+
+    Set<String> getHeapSet() {
         return set;
     }
 
+    void setHeapSet(Set<String> set) {
+        this.set = set;
+    }
+
+    boolean isManaged() {
+        return managed;
+    }
+
+    void setManaged(boolean managed) {
+        this.managed = managed;
+    }
+
+    boolean isReferenced() {
+        return referenced;
+    }
+
+    void setReferenced(boolean referenced) {
+        this.referenced = referenced;
+    }
+
+    long getPosition() {
+        return position;
+    }
+
+    void setPosition(long position) {
+        this.position = position;
+    }
+
     /**
-     * Get the SetStatistics for the set.
+     * Get the SetStatistics for the set, computing them on first use.
      * @return the SetStatistics for the set
      */
     public SetStatistics getStatistics() {
-        return statistics;
+        SetStatistics result = statistics;
+        if (result == null) {
+            result = new SetStatistics(readSet());
+            statistics = result;
+        }
+        return result;
+    }
+
+    /**
+     * Get the fingerprint of the content of the set.
+     * @return the fingerprint
+     */
+    public Fingerprint getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * Get the MinHash signature of the set.
+     * @return the MinHash signature, which must not be modified
+     */
+    public int[] getMinHash() {
+        return minHash;
+    }
+
+    /**
+     * Get the approximate heap used by the set, computed on first use.
+     * @return the approximate size in bytes
+     */
+    public long getBytes() {
+        long result = bytes;
+        if (result < 0) {
+            result = SegmentStore.heapBytes(readSet()) + bloomFilter.getBytes();
+            bytes = result;
+        }
+        return result;
+    }
+
+    /**
+     * Get the ChainSummary for the set, searching the set on first use.
+     * @return the ChainSummary for the set
+     */
+    public ChainSummary getChainSummary() {
+        ChainSummary result = chainSummary;
+        if (result == null) {
+            result = LongestChainSolver.summarise(readSet());
+            chainSummary = result;
+        }
+        return result;
     }
 }
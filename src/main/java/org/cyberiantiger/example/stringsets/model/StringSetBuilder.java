@@ -0,0 +1,131 @@
+/*
+   Copyright 2016 Cyberian Tiger
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.cyberiantiger.example.stringsets.model;
+
+import java.util.Arrays;
+
+/**
+ * Builds a {@link CompactStringSet} from Strings as they are read, checking
+ * for empty and duplicated Strings and computing it's {@link Fingerprint} in
+ * the same pass, so a StringSet can be created without another pass over
+ * it's Strings and without any intermediate collection.
+ *
+ * Duplicates are detected with an open addressing hash table of indexes
+ * into an array of hash codes, so the only objects allocated per String are
+ * those read.
+ *
+ * @author antony
+ */
+public class StringSetBuilder {
+
+    private String[] strings;
+    private int[] hashes;
+    private int[] table;
+    private int size;
+    private int hashCode;
+    private final Fingerprint.Builder fingerprint = new Fingerprint.Builder();
+
+    /**
+     * Create a StringSetBuilder.
+     */
+    public StringSetBuilder() {
+        this(16);
+    }
+
+    /**
+     * Create a StringSetBuilder for an expected number of Strings.
+     *
+     * @param expectedSize the expected number of Strings, the builder grows
+     *        if there are more
+     */
+    public StringSetBuilder(int expectedSize) {
+        int capacity = Math.max(1, expectedSize);
+        strings = new String[capacity];
+        hashes = new int[capacity];
+        table = new int[Integer.highestOneBit(capacity * 2 - 1) << 1];
+    }
+
+    /**
+     * Add the next String.
+     *
+     * @param s the String
+     * @return this builder
+     * @throws IllegalArgumentException if the String is empty, or has
+     *         already been added
+     */
+    public StringSetBuilder add(String s) {
+        if (s.isEmpty()) {
+            throw new IllegalArgumentException("Empty strings not allowed");
+        }
+        int hash = s.hashCode();
+        int mask = table.length - 1;
+        int slot = CompactStringSet.spread(hash) & mask;
+        for (; table[slot] != 0; slot = (slot + 1) & mask) {
+            int index = table[slot] - 1;
+            if (hashes[index] == hash && strings[index].equals(s)) {
+                throw new IllegalArgumentException("Duplicated string: " + s);
+            }
+        }
+        if (size == strings.length) {
+            strings = Arrays.copyOf(strings, size * 2);
+            hashes = Arrays.copyOf(hashes, size * 2);
+        }
+        strings[size] = s;
+        hashes[size] = hash;
+        table[slot] = ++size;
+        hashCode += hash;
+        fingerprint.add(s);
+        if (size * 2 > table.length) {
+            rehash();
+        }
+        return this;
+    }
+
+    private void rehash() {
+        table = new int[table.length * 2];
+        int mask = table.length - 1;
+        for (int i = 0; i < size; i++) {
+            int slot = CompactStringSet.spread(hashes[i]) & mask;
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = i + 1;
+        }
+    }
+
+    /**
+     * Get the number of Strings added.
+     *
+     * @return the number of Strings
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Build the set, the builder must not be used afterwards.
+     *
+     * @return a set of the Strings added, in the order added
+     */
+    public CompactStringSet build() {
+        // Trim the arrays if they're much larger than needed.
+        if (strings.length > size + (size >> 2) + 16) {
+            strings = Arrays.copyOf(strings, size);
+            hashes = Arrays.copyOf(hashes, size);
+        }
+        return new CompactStringSet(strings, hashes, table, size, hashCode, fingerprint.build());
+    }
+}
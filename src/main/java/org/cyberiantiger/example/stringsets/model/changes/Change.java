@@ -0,0 +1,87 @@
+/*
+   Copyright 2016 Cyberian Tiger
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.cyberiantiger.example.stringsets.model.changes;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * A change to the data store, recorded in a {@link ChangeLog}.
+ *
+ * @author antony
+ */
+public class Change {
+
+    /**
+     * The type of a change.
+     */
+    public enum Type {
+        /**
+         * A StringSet was created.
+         */
+        CREATE,
+        /**
+         * A StringSet was deleted.
+         */
+        DELETE,
+        /**
+         * Every StringSet was deleted, id is 0.
+         */
+        CLEAR
+    }
+
+    private final long sequence;
+    private final Type type;
+    private final int id;
+
+    /**
+     * Create a Change.
+     *
+     * @param sequence the sequence number of the change
+     * @param type the type of change
+     * @param id the id of the StringSet changed
+     */
+    @JsonCreator
+    public Change(@JsonProperty("sequence") long sequence, @JsonProperty("type") Type type, @JsonProperty("id") int id) {
+        this.sequence = sequence;
+        this.type = type;
+        this.id = id;
+    }
+
+    /**
+     * Get the sequence number of the change.
+     * @return the sequence number, starting at 1
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Get the type of change.
+     * @return the type of change
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Get the id of the StringSet changed.
+     * @return the id, or 0 for {@link Type#CLEAR}
+     */
+    public int getId() {
+        return id;
+    }
+}
@@ -0,0 +1,73 @@
+/*
+   Copyright 2016 Cyberian Tiger
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.cyberiantiger.example.stringsets.model.changes;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.util.List;
+
+/**
+ * A batch of consecutive changes read from a {@link ChangeLog}.
+ *
+ * @author antony
+ */
+public class ChangeBatch {
+
+    private final long sequence;
+    private final boolean truncated;
+    private final List<Change> changes;
+
+    /**
+     * Create a ChangeBatch.
+     *
+     * @param sequence the sequence number to read the next batch from
+     * @param truncated true if changes were missed
+     * @param changes the changes
+     */
+    @JsonCreator
+    public ChangeBatch(@JsonProperty("sequence") long sequence, @JsonProperty("truncated") boolean truncated, @JsonProperty("changes") List<Change> changes) {
+        this.sequence = sequence;
+        this.truncated = truncated;
+        this.changes = changes;
+    }
+
+    /**
+     * Get the sequence number of the last change read, which the next batch
+     * should be read after.
+     * @return the sequence number
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Check if changes were missed, either because they are older than the
+     * change log retains, or the sequence number read from is from before a
+     * restart. The reader should list every StringSet again.
+     * @return true if changes were missed
+     */
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    /**
+     * Get the changes in sequence order.
+     * @return the changes
+     */
+    public List<Change> getChanges() {
+        return changes;
+    }
+}
@@ -0,0 +1,239 @@
+/*
+   Copyright 2016 Cyberian Tiger
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.cyberiantiger.example.stringsets.model.changes;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded log of the most recent changes to the data store, each with a
+ * monotonically increasing sequence number, so readers can follow changes
+ * incrementally rather than listing every StringSet.
+ *
+ * A writer reserves a sequence number before making a change and publishes
+ * the change once it is visible, readers only see changes up to the highest
+ * sequence number below which every change has been published. So readers
+ * see changes to each StringSet in the order they happened, e.g. a delete
+ * racing with the create of the same id is never read before the create.
+ *
+ * Reserved changes occupy their slot in the ring as soon as they are
+ * published, even out of order, so only changes within capacity of the
+ * last reserved sequence number are retained, and reserving waits while
+ * capacity changes are reserved but not yet readable.
+ *
+ * Reserving, publishing and reading take no lock, only threads waiting for
+ * changes to be published, and publishers waking them, use our monitor.
+ *
+ * @author antony
+ */
+public class ChangeLog {
+
+    /**
+     * Default number of changes retained.
+     */
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+
+    /**
+     * Ring buffer of changes, indexed by sequence number modulo capacity.
+     */
+    private final AtomicReferenceArray<Change> changes;
+
+    /**
+     * The last sequence number reserved.
+     */
+    private final AtomicLong reserved = new AtomicLong();
+
+    /**
+     * The sequence number up to which every change has been published.
+     */
+    private final AtomicLong published = new AtomicLong();
+
+    /**
+     * The number of threads waiting on our monitor for changes to be
+     * published, only modified while holding it.
+     */
+    private volatile int waiters;
+
+    /**
+     * Create a ChangeLog with the default capacity.
+     */
+    public ChangeLog() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Create a ChangeLog.
+     *
+     * @param capacity the number of changes retained
+     * @throws IllegalArgumentException if capacity is less than one
+     */
+    public ChangeLog(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Invalid capacity: " + capacity);
+        }
+        this.changes = new AtomicReferenceArray<>(capacity);
+    }
+
+    /**
+     * Reserve the sequence number of a change about to be made, which must
+     * then be published by {@link #publish(long, Change.Type, int)}, waiting
+     * if it would overwrite a change which has not been published in order.
+     *
+     * @return the sequence number
+     */
+    public long reserve() {
+        while (true) {
+            long last = reserved.get();
+            if (last - published.get() >= changes.length()) {
+                awaitSpace();
+            } else if (reserved.compareAndSet(last, last + 1)) {
+                return last + 1;
+            }
+        }
+    }
+
+    private synchronized void awaitSpace() {
+        boolean interrupted = false;
+        waiters++;
+        try {
+            while (reserved.get() - published.get() >= changes.length()) {
+                try {
+                    wait();
+                } catch (InterruptedException ex) {
+                    // The reservation must still be made, the caller is mid change.
+                    interrupted = true;
+                }
+            }
+        } finally {
+            waiters--;
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Publish a change once it has been made.
+     *
+     * Whichever publisher finds the next change in order published advances
+     * the published sequence number, if two race at least one sees the
+     * other's change.
+     *
+     * @param sequence the reserved sequence number
+     * @param type the type of change, or null if no change was made after all
+     * @param id the id of the StringSet changed
+     */
+    public void publish(long sequence, Change.Type type, int id) {
+        changes.set(index(sequence), new Change(sequence, type, id));
+        boolean advanced = false;
+        while (true) {
+            long last = published.get();
+            Change next = changes.get(index(last + 1));
+            if (next == null || next.getSequence() != last + 1) {
+                break;
+            }
+            if (published.compareAndSet(last, last + 1)) {
+                advanced = true;
+            }
+        }
+        if (advanced && waiters > 0) {
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+    }
+
+    private int index(long sequence) {
+        return (int) (sequence % changes.length());
+    }
+
+    /**
+     * Get the sequence number of the last published change.
+     *
+     * @return the sequence number, 0 if there have been no changes
+     */
+    public long getSequence() {
+        return published.get();
+    }
+
+    /**
+     * Read the changes after a sequence number.
+     *
+     * @param since the sequence number of the last change already read, 0 to
+     *        read from the start
+     * @param max the maximum number of changes to read
+     * @return the changes, if changes since are no longer retained the batch
+     *         is truncated and starts with the oldest retained change
+     * @throws IllegalArgumentException if max is less than one
+     */
+    public ChangeBatch read(long since, int max) {
+        if (max < 1) {
+            throw new IllegalArgumentException("Invalid max: " + max);
+        }
+        long end = published.get();
+        if (since > end || since < 0) {
+            return new ChangeBatch(end, true, new ArrayList<>());
+        }
+        // Slots after published may already hold later, unreadable changes.
+        long oldest = Math.max(1, reserved.get() - changes.length() + 1);
+        boolean truncated = since + 1 < oldest;
+        long sequence = Math.max(since, oldest - 1);
+        List<Change> result = new ArrayList<>(Math.min(max, (int) Math.max(0, end - sequence)));
+        while (sequence < end && result.size() < max) {
+            Change change = changes.get(index(++sequence));
+            if (change.getSequence() != sequence) {
+                // Overwritten by a change reserved while reading.
+                result.clear();
+                truncated = true;
+            } else if (change.getType() != null) {
+                result.add(change);
+            }
+        }
+        return new ChangeBatch(sequence, truncated, result);
+    }
+
+    /**
+     * Read the changes after a sequence number, waiting for a change if
+     * there are none.
+     *
+     * @param since the sequence number of the last change already read
+     * @param max the maximum number of changes to read
+     * @param timeoutMillis the maximum time to wait
+     * @return the changes, which are empty if the wait timed out
+     * @throws IllegalArgumentException if max is less than one
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public ChangeBatch await(long since, int max, long timeoutMillis) throws InterruptedException {
+        if (since == published.get() && timeoutMillis > 0) {
+            synchronized (this) {
+                waiters++;
+                try {
+                    long deadline = System.nanoTime() + timeoutMillis * 1000000L;
+                    long remaining = timeoutMillis;
+                    while (since == published.get() && remaining > 0) {
+                        wait(remaining);
+                        remaining = (deadline - System.nanoTime()) / 1000000L;
+                    }
+                } finally {
+                    waiters--;
+                }
+            }
+        }
+        return read(since, max);
+    }
+}
@@ -0,0 +1,170 @@
+/*
+   Copyright 2016 Cyberian Tiger
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.cyberiantiger.example.stringsets.model.frequency;
+
+import java.util.Arrays;
+import org.cyberiantiger.example.stringsets.model.similarity.MinHash;
+
+/**
+ * Count-Min sketch of the number of StringSets containing each String, in
+ * constant memory however many distinct Strings there are.
+ *
+ * Each String is counted in one of {@link #getWidth()} counters in each of
+ * {@link #getDepth()} rows, and it's count estimated as the smallest of
+ * them. An estimate is never less than the true count, and with
+ * probability at least 1 - e^-depth is more than it by at most
+ * e / width times {@link #getTotal()}, the sum of every count. As every
+ * String is added before it is removed counters never go negative, so
+ * removing keeps these bounds.
+ *
+ * Not thread safe, the owner must synchronize access.
+ *
+ * @author antony
+ */
+public class CountMinSketch {
+
+    /**
+     * Default width, 64Ki counters per row.
+     */
+    public static final int DEFAULT_WIDTH = 1 << 16;
+
+    /**
+     * Default depth, estimates are within the error bound with probability
+     * over 98%.
+     */
+    public static final int DEFAULT_DEPTH = 4;
+
+    private final int width;
+    private final int depth;
+
+    /**
+     * The counters of each row, one after another.
+     */
+    private final int[] counters;
+
+    private long total;
+
+    /**
+     * Create a sketch with the default width and depth, using 1MiB.
+     */
+    public CountMinSketch() {
+        this(DEFAULT_WIDTH, DEFAULT_DEPTH);
+    }
+
+    /**
+     * Create a sketch.
+     *
+     * @param width the number of counters in each row, a power of two
+     * @param depth the number of rows
+     * @throws IllegalArgumentException if width is not a power of two, or
+     *         depth is less than one
+     */
+    public CountMinSketch(int width, int depth) {
+        if (width < 1 || Integer.bitCount(width) != 1) {
+            throw new IllegalArgumentException("Invalid width: " + width);
+        }
+        if (depth < 1) {
+            throw new IllegalArgumentException("Invalid depth: " + depth);
+        }
+        this.width = width;
+        this.depth = depth;
+        this.counters = new int[width * depth];
+    }
+
+    /**
+     * Add to the count of a String.
+     *
+     * @param s the String
+     * @param delta the amount to add, negative to remove
+     * @return the new estimated count of the String
+     */
+    public int add(String s, int delta) {
+        long hash = MinHash.hash(s);
+        // Derive each row's hash from two halves of one hash.
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        int result = Integer.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            int i = row * width + ((h1 + row * h2) & (width - 1));
+            counters[i] += delta;
+            result = Math.min(result, counters[i]);
+        }
+        total += delta;
+        return result;
+    }
+
+    /**
+     * Estimate the count of a String.
+     *
+     * @param s the String
+     * @return the estimated count, never less than the true count
+     */
+    public int estimate(String s) {
+        long hash = MinHash.hash(s);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        int result = Integer.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            result = Math.min(result, counters[row * width + ((h1 + row * h2) & (width - 1))]);
+        }
+        return result;
+    }
+
+    /**
+     * Get the sum of every count.
+     *
+     * @return the total
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * Get the amount an estimate may exceed the true count by, with
+     * probability at least 1 - e^-depth.
+     *
+     * @return e / width times the total
+     */
+    public double getErrorBound() {
+        return Math.E / width * total;
+    }
+
+    /**
+     * Get the number of counters in each row.
+     *
+     * @return the width
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Get the number of rows, each with it's own hash function.
+     *
+     * @return the depth
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Reset every count to zero.
+     */
+    public void clear() {
+        Arrays.fill(counters, 0);
+        total = 0;
+    }
+}
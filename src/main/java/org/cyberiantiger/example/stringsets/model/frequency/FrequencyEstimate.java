@@ -0,0 +1,73 @@
+/*
+   Copyright 2016 Cyberian Tiger
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.cyberiantiger.example.stringsets.model.frequency;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.util.Comparator;
+
+/**
+ * The number of StringSets containing a String, exact or estimated.
+ *
+ * @author antony
+ */
+public class FrequencyEstimate {
+
+    /**
+     * Orders by descending count, then alphabetically.
+     */
+    public static final Comparator<FrequencyEstimate> MOST_FREQUENT = Comparator
+            .comparingInt(FrequencyEstimate::getCount).reversed()
+            .thenComparing(FrequencyEstimate::getString);
+
+    /**
+     * Orders by ascending count, then alphabetically.
+     */
+    public static final Comparator<FrequencyEstimate> LEAST_FREQUENT = Comparator
+            .comparingInt(FrequencyEstimate::getCount)
+            .thenComparing(FrequencyEstimate::getString);
+
+    private final String string;
+    private final int count;
+
+    /**
+     * Create a FrequencyEstimate.
+     *
+     * @param string the String
+     * @param count the number of StringSets containing it
+     */
+    @JsonCreator
+    public FrequencyEstimate(@JsonProperty("string") String string, @JsonProperty("count") int count) {
+        this.string = string;
+        this.count = count;
+    }
+
+    /**
+     * Get the String.
+     * @return the String
+     */
+    public String getString() {
+        return string;
+    }
+
+    /**
+     * Get the number of StringSets containing the String.
+     * @return the count
+     */
+    public int getCount() {
+        return count;
+    }
+}
@@ -0,0 +1,189 @@
+/*
+   Copyright 2016 Cyberian Tiger
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.cyberiantiger.example.stringsets.model.frequency;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Approximate heavy hitters, the Strings in the most StringSets, in
+ * constant memory.
+ *
+ * Counts are kept in a {@link CountMinSketch}, along with a fixed number of
+ * candidates, the Strings with the highest estimated count when they were
+ * last added. A String not a candidate replaces the candidate with the
+ * lowest count when it's own estimated count exceeds it. Counts of
+ * candidates are estimated again from the sketch when queried, so are
+ * subject to the sketch's error bound. Removing a String only lowers it's
+ * own count, a String which has fallen out of the candidates is not
+ * considered again until it is next added.
+ *
+ * Not thread safe, the owner must synchronize access.
+ *
+ * @author antony
+ */
+public class HeavyHitters {
+
+    /**
+     * System property used to keep approximate rather than exact frequencies
+     * in {@link org.cyberiantiger.example.stringsets.model.Data#instance},
+     * the number of candidates in each shard.
+     */
+    public static final String CAPACITY_PROPERTY = "stringsets.heavyHitters";
+
+    private final CountMinSketch sketch;
+    private final int capacity;
+
+    /**
+     * Estimated count of each candidate when it was last added or removed.
+     */
+    private final Map<String, Integer> candidates;
+
+    /**
+     * The lowest count in candidates, or -1 if not known.
+     */
+    private int minCount = -1;
+
+    /**
+     * Create HeavyHitters with a sketch of the default size.
+     *
+     * @param capacity the number of candidates
+     */
+    public HeavyHitters(int capacity) {
+        this(capacity, new CountMinSketch());
+    }
+
+    /**
+     * Create HeavyHitters.
+     *
+     * @param capacity the number of candidates
+     * @param sketch an empty sketch to count with
+     * @throws IllegalArgumentException if capacity is less than one
+     */
+    public HeavyHitters(int capacity, CountMinSketch sketch) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Invalid capacity: " + capacity);
+        }
+        this.capacity = capacity;
+        this.sketch = sketch;
+        this.candidates = new HashMap<>(capacity * 4 / 3 + 1);
+    }
+
+    /**
+     * Count a String in one more StringSet.
+     *
+     * @param s the String
+     */
+    public void add(String s) {
+        int count = sketch.add(s, 1);
+        Integer previous = candidates.get(s);
+        if (previous != null) {
+            candidates.put(s, count);
+            if (previous == minCount) {
+                minCount = -1;
+            }
+        } else if (candidates.size() < capacity) {
+            candidates.put(s, count);
+            minCount = -1;
+        } else {
+            if (minCount < 0) {
+                minCount = candidates.values().stream().min(Integer::compare).get();
+            }
+            if (count > minCount) {
+                // Removes one candidate with the lowest count.
+                candidates.values().remove((Integer) minCount);
+                candidates.put(s, count);
+                minCount = -1;
+            }
+        }
+    }
+
+    /**
+     * Count a String in one fewer StringSet, it must have been added.
+     *
+     * @param s the String
+     */
+    public void remove(String s) {
+        int count = sketch.add(s, -1);
+        if (candidates.containsKey(s)) {
+            if (count == 0) {
+                candidates.remove(s);
+            } else {
+                candidates.put(s, count);
+            }
+            minCount = -1;
+        }
+    }
+
+    /**
+     * Estimate the number of StringSets containing a String.
+     *
+     * @param s the String
+     * @return the estimated count, never less than the true count, and zero
+     *         only if no StringSet contains it
+     */
+    public int estimate(String s) {
+        return sketch.estimate(s);
+    }
+
+    /**
+     * Get the candidates with the highest estimated counts.
+     *
+     * @param k the maximum number of Strings to return
+     * @return a mutable list of the most frequent Strings, most frequent first
+     */
+    public List<FrequencyEstimate> getTop(int k) {
+        List<FrequencyEstimate> result = new ArrayList<>(candidates.size());
+        for (String s : candidates.keySet()) {
+            result.add(new FrequencyEstimate(s, sketch.estimate(s)));
+        }
+        return result.stream()
+                .sorted(FrequencyEstimate.MOST_FREQUENT)
+                .limit(k)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Get the amount an estimated count may exceed the true count by, see
+     * {@link CountMinSketch#getErrorBound()}.
+     *
+     * @return the error bound
+     */
+    public double getErrorBound() {
+        return sketch.getErrorBound();
+    }
+
+    /**
+     * Get the number of candidate Strings tracked.
+     *
+     * @return the capacity
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Forget every String.
+     */
+    public void clear() {
+        sketch.clear();
+        candidates.clear();
+        minCount = -1;
+    }
+}
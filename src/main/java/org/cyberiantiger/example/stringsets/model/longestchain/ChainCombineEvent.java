@@ -0,0 +1,43 @@
+/*
+   Copyright 2016 Cyberian Tiger
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.cyberiantiger.example.stringsets.model.longestchain;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event for combining the summaries of string sets into the
+ * longest chain.
+ *
+ * @author antony
+ */
+@Name("org.cyberiantiger.stringsets.ChainCombine")
+@Label("Chain Combine")
+@Category({"String Sets", "Longest Chain"})
+@Description("Combination of string set chain summaries into the longest chain")
+class ChainCombineEvent extends Event {
+    @Label("From Sets")
+    int from;
+
+    @Label("To Sets")
+    int to;
+
+    @Label("Chain Length")
+    int length;
+}
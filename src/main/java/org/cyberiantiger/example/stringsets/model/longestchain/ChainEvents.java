@@ -0,0 +1,98 @@
+/*
+   Copyright 2016 Cyberian Tiger
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.cyberiantiger.example.stringsets.model.longestchain;
+
+/**
+ * Records the flight recorder events of {@link LongestChainSolver}.
+ *
+ * The events need the jdk.jfr API, which Java 8 only has from 8u262, so
+ * they are only compiled on later JDKs and loaded by name, falling back to
+ * recording nothing if they or a flight recorder are not available.
+ *
+ * @author antony
+ */
+abstract class ChainEvents {
+
+    /**
+     * Records nothing.
+     */
+    private static final ChainEvents NONE = new ChainEvents() {
+        @Override
+        Object beginSearch() {
+            return null;
+        }
+
+        @Override
+        void endSearch(Object event, ChainSummary summary) {
+        }
+
+        @Override
+        Object beginCombine() {
+            return null;
+        }
+
+        @Override
+        void endCombine(Object event, int from, int to, int length) {
+        }
+    };
+
+    /**
+     * The events of this JDK.
+     */
+    static final ChainEvents instance = load();
+
+    private static ChainEvents load() {
+        try {
+            return (ChainEvents) Class.forName(ChainEvents.class.getPackage().getName() + ".JfrChainEvents")
+                    .getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError ex) {
+            return NONE;
+        }
+    }
+
+    /**
+     * Start timing the search of a single string set.
+     *
+     * @return the event, passed to {@link #endSearch(Object, ChainSummary)}
+     */
+    abstract Object beginSearch();
+
+    /**
+     * Finish timing the search of a single string set, and record it if
+     * enabled.
+     *
+     * @param event the event returned by {@link #beginSearch()}
+     * @param summary the result of the search
+     */
+    abstract void endSearch(Object event, ChainSummary summary);
+
+    /**
+     * Start timing the combination of summaries.
+     *
+     * @return the event, passed to {@link #endCombine(Object, int, int, int)}
+     */
+    abstract Object beginCombine();
+
+    /**
+     * Finish timing the combination of summaries, and record it if enabled.
+     *
+     * @param event the event returned by {@link #beginCombine()}
+     * @param from the number of summaries chains start in
+     * @param to the number of summaries chains jump to
+     * @param length the length of the longest chain
+     */
+    abstract void endCombine(Object event, int from, int to, int length);
+}
@@ -0,0 +1,152 @@
+/*
+   Copyright 2016 Cyberian Tiger
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.cyberiantiger.example.stringsets.model.longestchain;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The longest chain together with how it was found, to tell whether a slow
+ * longest_chain is down to one large string set, many string sets, or strings
+ * whose characters make the graph expensive to search.
+ *
+ * @author antony
+ */
+public class ChainExplanation {
+    private final List<String> longest;
+    private final Integer from;
+    private final Integer to;
+    private final Map<Integer, ChainSearchStatistics> sets;
+    private final int memoHits;
+    private final long summaryNanos;
+    private final long buildNanos;
+    private final long searchNanos;
+    private final long combineNanos;
+
+    /**
+     * Create a new ChainExplanation.
+     *
+     * @param longest The longest chain
+     * @param from The id of the string set the chain starts in, or null if there are no chains
+     * @param to The id of the string set the chain jumps to, or null if it does not jump
+     * @param sets Statistics on the search of each string set by id
+     * @param memoHits The number of string sets which shared the search of another with the same strings
+     * @param summaryNanos The time getting the summary of every string set in nanoseconds
+     * @param buildNanos The total time building graphs in nanoseconds
+     * @param searchNanos The total time searching graphs in nanoseconds
+     * @param combineNanos The time combining pairs of string sets in nanoseconds
+     */
+    @JsonCreator
+    public ChainExplanation(@JsonProperty("longest") List<String> longest, @JsonProperty("from") Integer from, @JsonProperty("to") Integer to, @JsonProperty("sets") Map<Integer, ChainSearchStatistics> sets, @JsonProperty("memoHits") int memoHits, @JsonProperty("summaryNanos") long summaryNanos, @JsonProperty("buildNanos") long buildNanos, @JsonProperty("searchNanos") long searchNanos, @JsonProperty("combineNanos") long combineNanos) {
+        this.longest = longest;
+        this.from = from;
+        this.to = to;
+        this.sets = sets;
+        this.memoHits = memoHits;
+        this.summaryNanos = summaryNanos;
+        this.buildNanos = buildNanos;
+        this.searchNanos = searchNanos;
+        this.combineNanos = combineNanos;
+    }
+
+    /**
+     * Get the longest chain.
+     *
+     * @return the longest chain
+     */
+    public List<String> getLongest() {
+        return longest;
+    }
+
+    /**
+     * Get the id of the string set the longest chain starts in.
+     *
+     * @return the id, or null if there are no chains
+     */
+    public Integer getFrom() {
+        return from;
+    }
+
+    /**
+     * Get the id of the string set the longest chain jumps to.
+     *
+     * @return the id, or null if the chain stays in one string set
+     */
+    public Integer getTo() {
+        return to;
+    }
+
+    /**
+     * Get statistics on the search of each string set. Summaries are cached,
+     * so these are from when the string set was first searched.
+     *
+     * @return the statistics by id, null for string sets searched without them
+     */
+    public Map<Integer, ChainSearchStatistics> getSets() {
+        return sets;
+    }
+
+    /**
+     * Get the number of string sets which were not searched, as another
+     * string set with the same strings had already been.
+     *
+     * @return the number of string sets sharing another's search
+     */
+    public int getMemoHits() {
+        return memoHits;
+    }
+
+    /**
+     * Get the time taken to get the summary of every string set, including
+     * searching any not searched before.
+     *
+     * @return the time in nanoseconds
+     */
+    public long getSummaryNanos() {
+        return summaryNanos;
+    }
+
+    /**
+     * Get the total time spent building the graph of each string set, when
+     * it was first searched.
+     *
+     * @return the time in nanoseconds
+     */
+    public long getBuildNanos() {
+        return buildNanos;
+    }
+
+    /**
+     * Get the total time spent searching the graph of each string set, when
+     * it was first searched.
+     *
+     * @return the time in nanoseconds
+     */
+    public long getSearchNanos() {
+        return searchNanos;
+    }
+
+    /**
+     * Get the time spent combining the summaries of pairs of string sets.
+     *
+     * @return the time in nanoseconds
+     */
+    public long getCombineNanos() {
+        return combineNanos;
+    }
+}
@@ -0,0 +1,305 @@
+/*
+   Copyright 2016 Cyberian Tiger
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.cyberiantiger.example.stringsets.model.longestchain;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * The longest chain across string sets, maintained as string sets are added
+ * and removed rather than combined from every summary on each request.
+ *
+ * For each character the chains of every string set ending and starting
+ * with it are kept ordered by length, so the best two of each, which is all
+ * {@link LongestChainSolver#combine(Map)} needs to join chains, are known
+ * without looking at other string sets, even after the best is removed.
+ * Adding or removing a string set only updates the characters it's chains
+ * start and end with, and the longest chain is found again from the best
+ * join of each character and the longest chain within a single string set
+ * on the next call to {@link #getLongest()}, after which it is kept until
+ * the next change.
+ *
+ * Not thread safe.
+ *
+ * @author antony
+ */
+public class ChainIndex {
+
+    private static final Comparator<Chain> LONGEST_FIRST = Comparator
+            .comparingInt((Chain c) -> -c.strings.size())
+            .thenComparingInt(c -> c.id);
+
+    private final Map<Integer, ChainSummary> summaries = new HashMap<>();
+
+    /**
+     * The longest chain within each string set.
+     */
+    private final TreeSet<Chain> longest = new TreeSet<>(LONGEST_FIRST);
+
+    private final Map<Character, Joins> joins = new HashMap<>();
+
+    /**
+     * The characters whose best join must be found again.
+     */
+    private final Map<Character, Joins> changed = new HashMap<>();
+
+    /**
+     * The longest chain, or null if it must be found again.
+     */
+    private List<String> chain = Collections.emptyList();
+
+    /**
+     * The sequence number of the last change applied, for the owner's use.
+     */
+    private volatile long sequence = -1;
+
+    /**
+     * Get the sequence number of the last change applied.
+     *
+     * @return the sequence number, initially -1
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Set the sequence number of the last change applied.
+     *
+     * @param sequence the sequence number
+     */
+    public void setSequence(long sequence) {
+        this.sequence = sequence;
+    }
+
+    /**
+     * Get the number of string sets.
+     *
+     * @return the number of string sets
+     */
+    public int size() {
+        return summaries.size();
+    }
+
+    /**
+     * Add a string set, replacing any string set with the same id.
+     *
+     * @param id the id of the string set
+     * @param summary the summary of it's chains
+     */
+    public void put(int id, ChainSummary summary) {
+        ChainSummary old = summaries.put(id, summary);
+        if (old == summary) {
+            return;
+        }
+        if (old != null) {
+            remove(id, old);
+        }
+        longest.add(new Chain(id, summary.getLongest()));
+        for (Map.Entry<Character, List<String>> e : summary.getEndingWith().entrySet()) {
+            joins(e.getKey()).ends.add(new Chain(id, e.getValue()));
+        }
+        for (Map.Entry<Character, List<String>> e : summary.getStartingWith().entrySet()) {
+            joins(e.getKey()).starts.add(new Chain(id, e.getValue()));
+        }
+        chain = null;
+    }
+
+    /**
+     * Remove a string set.
+     *
+     * @param id the id of the string set
+     * @return true if it was present
+     */
+    public boolean remove(int id) {
+        ChainSummary summary = summaries.remove(id);
+        if (summary == null) {
+            return false;
+        }
+        remove(id, summary);
+        return true;
+    }
+
+    private void remove(int id, ChainSummary summary) {
+        longest.remove(new Chain(id, summary.getLongest()));
+        for (Map.Entry<Character, List<String>> e : summary.getEndingWith().entrySet()) {
+            joins(e.getKey()).ends.remove(new Chain(id, e.getValue()));
+        }
+        for (Map.Entry<Character, List<String>> e : summary.getStartingWith().entrySet()) {
+            joins(e.getKey()).starts.remove(new Chain(id, e.getValue()));
+        }
+        chain = null;
+    }
+
+    private Joins joins(char c) {
+        return changed.computeIfAbsent(c, k -> joins.computeIfAbsent(k, j -> new Joins()));
+    }
+
+    /**
+     * Remove every string set.
+     */
+    public void clear() {
+        summaries.clear();
+        longest.clear();
+        joins.clear();
+        changed.clear();
+        chain = Collections.emptyList();
+    }
+
+    /**
+     * Get the longest chain across every string set, the same length as
+     * {@link LongestChainSolver#combine(Map)} of every summary.
+     *
+     * @return an unmodifiable list of the strings in the longest chain
+     */
+    public List<String> getLongest() {
+        if (chain == null) {
+            for (Map.Entry<Character, Joins> e : changed.entrySet()) {
+                Joins j = e.getValue();
+                if (j.ends.isEmpty() && j.starts.isEmpty()) {
+                    joins.remove(e.getKey());
+                } else {
+                    j.join();
+                }
+            }
+            changed.clear();
+            List<String> first = longest.isEmpty() ? Collections.emptyList() : longest.first().strings;
+            List<String> second = Collections.emptyList();
+            for (Joins j : joins.values()) {
+                if (j.first != null && j.first.size() + j.second.size() > first.size() + second.size()) {
+                    first = j.first;
+                    second = j.second;
+                }
+            }
+            List<String> result = new ArrayList<>(first.size() + second.size());
+            result.addAll(first);
+            result.addAll(second);
+            chain = Collections.unmodifiableList(result);
+        }
+        return chain;
+    }
+
+    /**
+     * Get the summaries of the string sets with the two longest chains
+     * starting with each of some characters, which is all
+     * {@link LongestChainSolver#join(Map, Map)} needs to join chains ending
+     * with those characters to another string set.
+     *
+     * @param characters the characters
+     * @return the summaries by id
+     */
+    public Map<Integer, ChainSummary> getStartingWith(Set<Character> characters) {
+        Map<Integer, ChainSummary> result = new HashMap<>();
+        for (char c : characters) {
+            Joins j = joins.get(c);
+            if (j != null) {
+                best(j.starts, result);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get the summaries of the string sets with the two longest chains
+     * ending with each of some characters, which is all
+     * {@link LongestChainSolver#join(Map, Map)} needs to join them to chains
+     * in another string set starting with those characters.
+     *
+     * @param characters the characters
+     * @return the summaries by id
+     */
+    public Map<Integer, ChainSummary> getEndingWith(Set<Character> characters) {
+        Map<Integer, ChainSummary> result = new HashMap<>();
+        for (char c : characters) {
+            Joins j = joins.get(c);
+            if (j != null) {
+                best(j.ends, result);
+            }
+        }
+        return result;
+    }
+
+    private void best(TreeSet<Chain> chains, Map<Integer, ChainSummary> result) {
+        Iterator<Chain> i = chains.iterator();
+        for (int n = 0; n < 2 && i.hasNext(); n++) {
+            int id = i.next().id;
+            result.put(id, summaries.get(id));
+        }
+    }
+
+    /**
+     * The longest chain of a string set ending or starting with some
+     * character.
+     */
+    private static final class Chain {
+        private final int id;
+        private final List<String> strings;
+
+        private Chain(int id, List<String> strings) {
+            this.id = id;
+            this.strings = strings;
+        }
+    }
+
+    /**
+     * The chains ending and starting with a single character, and the
+     * longest join of one of each from different string sets.
+     */
+    private static final class Joins {
+        private final TreeSet<Chain> ends = new TreeSet<>(LONGEST_FIRST);
+        private final TreeSet<Chain> starts = new TreeSet<>(LONGEST_FIRST);
+        private List<String> first;
+        private List<String> second;
+
+        private void join() {
+            first = null;
+            second = null;
+            if (ends.isEmpty() || starts.isEmpty()) {
+                return;
+            }
+            // As in LongestChainSolver a chain cannot jump from a string set
+            // to itself, so when the best of both are in the same string
+            // set the second best of each is needed.
+            Iterator<Chain> e = ends.iterator();
+            Iterator<Chain> s = starts.iterator();
+            Chain end = e.next();
+            Chain start = s.next();
+            if (end.id != start.id) {
+                offer(end, start);
+                return;
+            }
+            if (s.hasNext()) {
+                offer(end, s.next());
+            }
+            if (e.hasNext()) {
+                offer(e.next(), start);
+            }
+        }
+
+        private void offer(Chain end, Chain start) {
+            if (first == null || end.strings.size() + start.strings.size() > first.size() + second.size()) {
+                first = end.strings;
+                second = start.strings;
+            }
+        }
+    }
+}
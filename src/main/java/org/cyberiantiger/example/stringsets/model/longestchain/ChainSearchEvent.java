@@ -0,0 +1,50 @@
+/*
+   Copyright 2016 Cyberian Tiger
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.cyberiantiger.example.stringsets.model.longestchain;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event for the search of a single string set for chains.
+ *
+ * @author antony
+ */
+@Name("org.cyberiantiger.stringsets.ChainSearch")
+@Label("Chain Search")
+@Category({"String Sets", "Longest Chain"})
+@Description("Search of a single string set for the longest chains")
+class ChainSearchEvent extends Event {
+    @Label("Strings")
+    int strings;
+
+    @Label("Edges")
+    long edges;
+
+    @Label("Expanded")
+    @Description("Nodes visited by the search")
+    long expanded;
+
+    @Label("Pruned")
+    @Description("Edges not followed as the string was already in the chain")
+    long pruned;
+
+    @Label("Chain Length")
+    int length;
+}
@@ -0,0 +1,132 @@
+/*
+   Copyright 2016 Cyberian Tiger
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.cyberiantiger.example.stringsets.model.longestchain;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Statistics about the search of a single string set for chains, to explain
+ * where the time computing a {@link ChainSummary} went.
+ *
+ * @author antony
+ */
+public class ChainSearchStatistics {
+    private int strings;
+    private long edges;
+    private long expanded;
+    private long pruned;
+    private long buildNanos;
+    private long searchNanos;
+
+    ChainSearchStatistics() {
+    }
+
+    /**
+     * Create a new ChainSearchStatistics.
+     *
+     * @param strings The number of strings (nodes) in the graph
+     * @param edges The number of edges in the graph
+     * @param expanded The number of nodes visited by the search
+     * @param pruned The number of edges not followed as the string was already in the chain
+     * @param buildNanos The time building the graph in nanoseconds
+     * @param searchNanos The time searching the graph in nanoseconds
+     */
+    @JsonCreator
+    public ChainSearchStatistics(@JsonProperty("strings") int strings, @JsonProperty("edges") long edges, @JsonProperty("expanded") long expanded, @JsonProperty("pruned") long pruned, @JsonProperty("buildNanos") long buildNanos, @JsonProperty("searchNanos") long searchNanos) {
+        this.strings = strings;
+        this.edges = edges;
+        this.expanded = expanded;
+        this.pruned = pruned;
+        this.buildNanos = buildNanos;
+        this.searchNanos = searchNanos;
+    }
+
+    /**
+     * Get the number of strings, which is the number of nodes in the graph.
+     *
+     * @return the number of strings
+     */
+    public int getStrings() {
+        return strings;
+    }
+
+    /**
+     * Get the number of edges in the graph, from each string to every string
+     * starting with it's last character.
+     *
+     * @return the number of edges
+     */
+    public long getEdges() {
+        return edges;
+    }
+
+    /**
+     * Get the number of times a node was visited by the search, once for
+     * every distinct path to it.
+     *
+     * @return the number of nodes expanded
+     */
+    public long getExpanded() {
+        return expanded;
+    }
+
+    /**
+     * Get the number of edges the search did not follow, as the string they
+     * lead to was already used in the chain.
+     *
+     * @return the number of edges pruned
+     */
+    public long getPruned() {
+        return pruned;
+    }
+
+    /**
+     * Get the time spent building the graph.
+     *
+     * @return the time in nanoseconds
+     */
+    public long getBuildNanos() {
+        return buildNanos;
+    }
+
+    /**
+     * Get the time spent searching the graph.
+     *
+     * @return the time in nanoseconds
+     */
+    public long getSearchNanos() {
+        return searchNanos;
+    }
+
+    void setGraph(int strings, long edges, long buildNanos) {
+        this.strings = strings;
+        this.edges = edges;
+        this.buildNanos = buildNanos;
+    }
+
+    void setSearchNanos(long searchNanos) {
+        this.searchNanos = searchNanos;
+    }
+
+    void expand() {
+        expanded++;
+    }
+
+    void prune() {
+        pruned++;
+    }
+}
@@ -0,0 +1,93 @@
+/*
+   Copyright 2016 Cyberian Tiger
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.cyberiantiger.example.stringsets.model.longestchain;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Summary of the chains within a single string set, which is all that is
+ * needed to combine it with other string sets to find the longest chain.
+ *
+ * As a chain may only jump between string sets once, the longest chain
+ * jumping from set A to set B is the longest chain in A ending with some
+ * character followed by the longest chain in B starting with that character.
+ *
+ * @author antony
+ */
+public class ChainSummary {
+    private final List<String> longest;
+    private final Map<Character, List<String>> startingWith;
+    private final Map<Character, List<String>> endingWith;
+    private final ChainSearchStatistics statistics;
+
+    /**
+     * Create a new ChainSummary.
+     *
+     * @param longest The longest chain in the string set
+     * @param startingWith The longest chain starting with each character
+     * @param endingWith The longest chain ending with each character
+     * @param statistics Statistics on the search of the string set, or null if unknown
+     */
+    @JsonCreator
+    public ChainSummary(@JsonProperty("longest") List<String> longest, @JsonProperty("startingWith") Map<Character, List<String>> startingWith, @JsonProperty("endingWith") Map<Character, List<String>> endingWith, @JsonProperty("statistics") ChainSearchStatistics statistics) {
+        this.longest = longest;
+        this.startingWith = startingWith;
+        this.endingWith = endingWith;
+        this.statistics = statistics;
+    }
+
+    /**
+     * Get the longest chain within the string set.
+     *
+     * @return the longest chain
+     */
+    public List<String> getLongest() {
+        return longest;
+    }
+
+    /**
+     * Get the longest chain starting with each character, keyed by the
+     * first character of the first string in the chain.
+     *
+     * @return the longest chains by start character
+     */
+    public Map<Character, List<String>> getStartingWith() {
+        return startingWith;
+    }
+
+    /**
+     * Get the longest chain ending with each character, keyed by the
+     * last character of the last string in the chain.
+     *
+     * @return the longest chains by end character
+     */
+    public Map<Character, List<String>> getEndingWith() {
+        return endingWith;
+    }
+
+    /**
+     * Get statistics on the search of the string set which produced this
+     * summary.
+     *
+     * @return the statistics, or null if unknown
+     */
+    public ChainSearchStatistics getStatistics() {
+        return statistics;
+    }
+}
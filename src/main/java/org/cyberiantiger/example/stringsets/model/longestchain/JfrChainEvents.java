@@ -0,0 +1,79 @@
+/*
+   Copyright 2016 Cyberian Tiger
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.cyberiantiger.example.stringsets.model.longestchain;
+
+import jdk.jfr.FlightRecorder;
+
+/**
+ * Records {@link ChainSearchEvent}s and {@link ChainCombineEvent}s, only
+ * created by {@link ChainEvents} by name.
+ *
+ * @author antony
+ */
+class JfrChainEvents extends ChainEvents {
+
+    /**
+     * Create a JfrChainEvents.
+     *
+     * @throws IllegalStateException if this JVM has no flight recorder
+     */
+    JfrChainEvents() {
+        if (!FlightRecorder.isAvailable()) {
+            throw new IllegalStateException("Flight recorder not available");
+        }
+    }
+
+    @Override
+    Object beginSearch() {
+        ChainSearchEvent result = new ChainSearchEvent();
+        result.begin();
+        return result;
+    }
+
+    @Override
+    void endSearch(Object event, ChainSummary summary) {
+        ChainSearchEvent e = (ChainSearchEvent) event;
+        e.end();
+        if (e.shouldCommit()) {
+            ChainSearchStatistics statistics = summary.getStatistics();
+            e.strings = statistics.getStrings();
+            e.edges = statistics.getEdges();
+            e.expanded = statistics.getExpanded();
+            e.pruned = statistics.getPruned();
+            e.length = summary.getLongest().size();
+            e.commit();
+        }
+    }
+
+    @Override
+    Object beginCombine() {
+        ChainCombineEvent result = new ChainCombineEvent();
+        result.begin();
+        return result;
+    }
+
+    @Override
+    void endCombine(Object event, int from, int to, int length) {
+        ChainCombineEvent e = (ChainCombineEvent) event;
+        e.end();
+        if (e.shouldCommit()) {
+            e.from = from;
+            e.to = to;
+            e.length = length;
+            e.commit();
+        }
+    }
+}
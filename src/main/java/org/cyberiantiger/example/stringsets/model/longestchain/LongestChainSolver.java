@@ -20,10 +20,14 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import org.cyberiantiger.example.stringsets.model.Fingerprint;
+import org.cyberiantiger.example.stringsets.model.PackedStringSet;
 
 /**
  * Implementation of an algorithm to find the longest chain given a list of 
@@ -42,162 +46,428 @@ import java.util.Set;
  * Set 3: abc cde cdf fuf fgh
  * 
  * The longest chain is: abc - cdf - fuf - fgh - (set changed here) - hij - jkl - lmn
+ * <p>
+ * Each string set is searched once to produce a {@link ChainSummary}, the
+ * summaries are then combined, so summaries may be computed in parallel,
+ * cached, or computed on other nodes.
  * 
  * @author antony
  */
 public class LongestChainSolver {
     
     public static List<String> solve(Collection<Set<String>> data) {
-        // Construct a directed graph for each string set.
-        Map<Set<String>, Map<Character,List<StringNode>>> graphs = new HashMap<>();
-        Set<Set<String>> duplicated = new HashSet<>();
+        // Don't search duplicate string sets more than once.
+        Map<Fingerprint, ChainSummary> cache = new HashMap<>();
+        List<ChainSummary> summaries = new ArrayList<>(data.size());
         for (Set<String> s : data) {
-            // Don't duplicate graphs for duplicate string sets.
-            if (graphs.get(s) != null) { 
-                duplicated.add(s); // Keep track of which sets are duplicated
-                continue;
+            summaries.add(cache.computeIfAbsent(Fingerprint.of(s), k -> summarise(s)));
+        }
+        return combine(summaries);
+    }
+
+    /**
+     * Find the longest chain from the summaries of a list of string sets.
+     *
+     * @param summaries the summary of each string set
+     * @return A list of strings representing a longest chain (it is not guaranteed to be the only longest chain).
+     */
+    public static List<String> combine(List<ChainSummary> summaries) {
+        Map<Integer, ChainSummary> byIndex = new HashMap<>();
+        for (int i = 0; i < summaries.size(); i++) {
+            byIndex.put(i, summaries.get(i));
+        }
+        return combine(byIndex);
+    }
+
+    /**
+     * Find the longest chain from the summaries of string sets.
+     *
+     * @param summaries the summary of each string set by id
+     * @return A list of strings representing a longest chain (it is not guaranteed to be the only longest chain).
+     */
+    public static List<String> combine(Map<Integer, ChainSummary> summaries) {
+        return new ArrayList<>(combineChains(summaries).chain);
+    }
+
+    /**
+     * Find the longest chain from the summaries of string sets, explaining
+     * how it was found.
+     *
+     * @param summaries the summary of each string set by id
+     * @param summaryNanos the time taken to get the summaries in nanoseconds
+     * @return the longest chain, the string sets it was found in, and
+     *         statistics on the search of each string set
+     */
+    public static ChainExplanation explain(Map<Integer, ChainSummary> summaries, long summaryNanos) {
+        long start = System.nanoTime();
+        Joined result = combineChains(summaries);
+        long combineNanos = System.nanoTime() - start;
+
+        // Summaries of string sets with the same strings are shared, only
+        // count the search of each once.
+        Set<ChainSummary> searched = Collections.newSetFromMap(new IdentityHashMap<>());
+        Map<Integer, ChainSearchStatistics> sets = new TreeMap<>();
+        long buildNanos = 0;
+        long searchNanos = 0;
+        for (Map.Entry<Integer, ChainSummary> e : summaries.entrySet()) {
+            ChainSearchStatistics statistics = e.getValue().getStatistics();
+            sets.put(e.getKey(), statistics);
+            if (statistics != null && searched.add(e.getValue())) {
+                buildNanos += statistics.getBuildNanos();
+                searchNanos += statistics.getSearchNanos();
             }
-            // Create a graph for the string set.
-            Map<Character, List<StringNode>> graph = new HashMap<>();
-            graphs.put(s, graph);
-            for (String ss : s) {
-                StringNode node = new StringNode(ss);
-                List currList = graph.get(node.getFirstCharacter());
-                if(currList == null) {
-                    currList = new ArrayList();
-                    graph.put(node.getFirstCharacter(), currList);
-                }
-                currList.add(node);
-            }
-            for (List<StringNode> nodeList : graph.values()) {
-                for(StringNode node : nodeList) {
-                    List<StringNode> out = graph.get(node.getLastCharacter());
-                    if (out != null) {
-                        node.setChildren(out);
-                    } else {
-                        node.setChildren(Collections.emptyList());
-                    }
+        }
+        return new ChainExplanation(new ArrayList<>(result.chain), result.from, result.to, sets,
+                summaries.size() - searched.size(), summaryNanos, buildNanos, searchNanos, combineNanos);
+    }
+
+    private static Joined combineChains(Map<Integer, ChainSummary> summaries) {
+        Joined result = new Joined(Collections.emptyList(), null, null);
+        for (Map.Entry<Integer, ChainSummary> e : summaries.entrySet()) {
+            if (e.getValue().getLongest().size() > result.chain.size()) {
+                result = new Joined(e.getValue().getLongest(), e.getKey(), null);
+            }
+        }
+        Joined joined = joinChains(summaries, summaries);
+        return joined.chain.size() > result.chain.size() ? joined : result;
+    }
+
+    /**
+     * Find the longest chain which starts in one string set and jumps to
+     * another.
+     *
+     * The chain is the longest chain in a string set of from ending with
+     * some character, followed by the longest chain starting with that
+     * character in a different string set of to. Only characters chains in
+     * from end with are looked up in to.
+     *
+     * @param from the summaries of the string sets to start in by id
+     * @param to the summaries of the string sets to jump to by id
+     * @return the longest chain, or an empty list if no chain can jump
+     */
+    public static List<String> join(Map<Integer, ChainSummary> from, Map<Integer, ChainSummary> to) {
+        return joinChains(from, to).chain;
+    }
+
+    private static Joined joinChains(Map<Integer, ChainSummary> from, Map<Integer, ChainSummary> to) {
+        Object event = ChainEvents.instance.beginCombine();
+        // Best two chains ending and starting with each character, the best
+        // two are needed as a chain cannot jump from a string set to itself.
+        Map<Character, TopTwo> ends = new HashMap<>();
+        for (Map.Entry<Integer, ChainSummary> summary : from.entrySet()) {
+            for (Map.Entry<Character, List<String>> e : summary.getValue().getEndingWith().entrySet()) {
+                ends.computeIfAbsent(e.getKey(), k -> new TopTwo()).offer(summary.getKey(), e.getValue());
+            }
+        }
+        Map<Character, TopTwo> starts = new HashMap<>();
+        for (Map.Entry<Integer, ChainSummary> summary : to.entrySet()) {
+            for (Map.Entry<Character, List<String>> e : summary.getValue().getStartingWith().entrySet()) {
+                if (ends.containsKey(e.getKey())) {
+                    starts.computeIfAbsent(e.getKey(), k -> new TopTwo()).offer(summary.getKey(), e.getValue());
                 }
             }
         }
 
-        List<String> result;
-        if (data.size() == 1) {
-            // Special case if we only have one uploaded set, use an empty graph
-            // for the second string set.
-            result = findLongestPath(graphs.values().iterator().next(), Collections.emptyMap());
-        } else {
-            result = Collections.emptyList();
-            
-            // Choose first string set
-            for (Map.Entry<Set<String>, Map<Character, List<StringNode>>> e : graphs.entrySet()) {
-                boolean foundSecond = false;
-                // Choose second string set
-                for (Map.Entry<Set<String>, Map<Character, List<StringNode>>> ee : graphs.entrySet()) {
-                    // if the second is the same as the first skip it, unless it is a duplicated string set
-                    if (ee.getKey() == e.getKey() && !duplicated.contains(e.getKey())) {
-                        continue;
-                    }
-                    
-                    foundSecond = true;
-                    
-                    List<String> newResult = findLongestPath(e.getValue(), ee.getValue());
-                    
-                    if (newResult.size() > result.size()) {
-                        result = newResult;
-                    }
+        List<String> first = null;
+        List<String> second = null;
+        int firstId = 0;
+        int secondId = 0;
+        int length = 0;
+        for (Map.Entry<Character, TopTwo> e : starts.entrySet()) {
+            TopTwo end = ends.get(e.getKey());
+            TopTwo start = e.getValue();
+            if (end.firstId != start.firstId) {
+                if (end.first.size() + start.first.size() > length) {
+                    first = end.first;
+                    second = start.first;
+                    firstId = end.firstId;
+                    secondId = start.firstId;
+                    length = first.size() + second.size();
                 }
+                continue;
             }
+            if (start.second != null && end.first.size() + start.second.size() > length) {
+                first = end.first;
+                second = start.second;
+                firstId = end.firstId;
+                secondId = start.secondId;
+                length = first.size() + second.size();
+            }
+            if (end.second != null && end.second.size() + start.first.size() > length) {
+                first = end.second;
+                second = start.first;
+                firstId = end.secondId;
+                secondId = start.firstId;
+                length = first.size() + second.size();
+            }
+        }
+        ChainEvents.instance.endCombine(event, from.size(), to.size(), length);
+        if (first == null) {
+            return new Joined(new ArrayList<>(), null, null);
         }
+        List<String> result = new ArrayList<>(length);
+        result.addAll(first);
+        result.addAll(second);
+        return new Joined(result, firstId, secondId);
+    }
 
-        return result;
+    /**
+     * Get the longer of two chains.
+     *
+     * @param a a chain
+     * @param b another chain
+     * @return b if it is longer than a, otherwise a
+     */
+    public static List<String> longer(List<String> a, List<String> b) {
+        return b.size() > a.size() ? b : a;
     }
 
     /**
-     * Find the longest chain given two graphs from two string sets.
-     * 
-     * @param first graph from the first string set
-     * @param second graph from the second string set
-     * @return A list of strings representing a longest path (it is not guaranteed to be the only longest path).
+     * Search a single string set for the longest chains starting and ending
+     * with each character.
+     *
+     * @param set the string set
+     * @return the summary of chains in the string set
      */
-    private static List<String> findLongestPath(Map<Character, List<StringNode>> first, Map<Character, List<StringNode>> second) {
-        List<String> result = Collections.emptyList();
+    public static ChainSummary summarise(Set<String> set) {
+        Object event = ChainEvents.instance.beginSearch();
+        ChainSearchStatistics statistics = new ChainSearchStatistics();
+        Map<Character, List<StringNode>> graph = createGraph(set, false, statistics);
+        long start = System.nanoTime();
+
+        Map<Character, List<String>> startingWith = new HashMap<>();
+        Map<Character, List<String>> endingWith = new HashMap<>();
         Set<String> done = new LinkedHashSet<>();
-        for (List<StringNode> l : first.values()) {
-            for (StringNode node : l) {
-                List<String> newResult = findLongestPathFirst(node, done, second);
-                if (newResult.size() > result.size()) {
-                    // TOOD: possible optimisation, terminate early if result.size() is equal to the number of nodes in both graphs.
-                    result = newResult;
+        for (Map.Entry<Character, List<StringNode>> e : graph.entrySet()) {
+            for (StringNode node : e.getValue()) {
+                findLongestPaths(node, e.getKey(), done, startingWith, endingWith, statistics);
+            }
+        }
+        List<String> longest = Collections.emptyList();
+        for (List<String> chain : startingWith.values()) {
+            if (chain.size() > longest.size()) {
+                longest = chain;
+            }
+        }
+        return finish(new ChainSummary(longest, startingWith, endingWith, statistics), start, event);
+    }
+
+    /**
+     * Search a single string set for the chains starting with a specific
+     * string.
+     *
+     * @param set the string set
+     * @param start the first string of every chain, which must be in the set
+     * @return a summary of the chains starting with start, the longest
+     *         chain, and the longest chain ending with each character
+     */
+    public static ChainSummary summariseFrom(Set<String> set, String start) {
+        Object event = ChainEvents.instance.beginSearch();
+        ChainSearchStatistics statistics = new ChainSearchStatistics();
+        Map<Character, List<StringNode>> graph = createGraph(set, false, statistics);
+        long searchStart = System.nanoTime();
+        Map<Character, List<String>> startingWith = new HashMap<>();
+        Map<Character, List<String>> endingWith = new HashMap<>();
+        StringNode node = findNode(graph, start.charAt(0), start);
+        findLongestPaths(node, node.getFirstCharacter(), new LinkedHashSet<>(), startingWith, endingWith, statistics);
+        return finish(new ChainSummary(startingWith.get(node.getFirstCharacter()), startingWith, endingWith, statistics), searchStart, event);
+    }
+
+    /**
+     * Search a single string set for the chains ending with a specific
+     * string.
+     *
+     * @param set the string set
+     * @param end the last string of every chain, which must be in the set
+     * @return a summary of the chains ending with end, the longest chain,
+     *         and the longest chain starting with each character
+     */
+    public static ChainSummary summariseTo(Set<String> set, String end) {
+        // Search backwards, from each string to those ending with it's first character.
+        Object event = ChainEvents.instance.beginSearch();
+        ChainSearchStatistics statistics = new ChainSearchStatistics();
+        Map<Character, List<StringNode>> graph = createGraph(set, true, statistics);
+        long start = System.nanoTime();
+        Map<Character, List<String>> startingWith = new HashMap<>();
+        StringNode node = findNode(graph, end.charAt(end.length() - 1), end);
+        List<String> longest = findLongestPathsTo(node, new ArrayList<>(), new HashSet<>(), startingWith, Collections.emptyList(), statistics);
+        Map<Character, List<String>> endingWith = new HashMap<>();
+        endingWith.put(node.getLastCharacter(), longest);
+        return finish(new ChainSummary(longest, startingWith, endingWith, statistics), start, event);
+    }
+
+    private static ChainSummary finish(ChainSummary summary, long searchStart, Object event) {
+        summary.getStatistics().setSearchNanos(System.nanoTime() - searchStart);
+        ChainEvents.instance.endSearch(event, summary);
+        return summary;
+    }
+
+    /**
+     * Create a graph of the strings of a string set.
+     *
+     * @param set the string set
+     * @param reverse false to key nodes by their first character, with
+     *        children starting with their last character, true to key nodes
+     *        by their last character, with children ending with their first
+     * @param statistics the statistics to record the size of the graph in
+     * @return the nodes of the graph
+     */
+    private static Map<Character, List<StringNode>> createGraph(Set<String> set, boolean reverse, ChainSearchStatistics statistics) {
+        long start = System.nanoTime();
+        Map<Character, List<StringNode>> graph = new HashMap<>();
+        int strings = 0;
+        long edges = 0;
+        if (set instanceof PackedStringSet) {
+            // Read the first and last characters from the packed bytes.
+            PackedStringSet packed = (PackedStringSet) set;
+            for (int i = 0; i < packed.size(); i++) {
+                addNode(graph, new StringNode(packed.get(i), packed.getFirstCharacter(i), packed.getLastCharacter(i)), reverse);
+            }
+        } else {
+            for (String ss : set) {
+                addNode(graph, new StringNode(ss), reverse);
+            }
+        }
+        for (List<StringNode> nodeList : graph.values()) {
+            for(StringNode node : nodeList) {
+                List<StringNode> out = graph.get(reverse ? node.getFirstCharacter() : node.getLastCharacter());
+                if (out != null) {
+                    node.setChildren(out);
+                    edges += out.size();
+                } else {
+                    node.setChildren(Collections.emptyList());
                 }
+                strings++;
+            }
+        }
+        statistics.setGraph(strings, edges, System.nanoTime() - start);
+        return graph;
+    }
+
+    private static void addNode(Map<Character, List<StringNode>> graph, StringNode node, boolean reverse) {
+        char key = reverse ? node.getLastCharacter() : node.getFirstCharacter();
+        List<StringNode> currList = graph.get(key);
+        if(currList == null) {
+            currList = new ArrayList<>();
+            graph.put(key, currList);
+        }
+        currList.add(node);
+    }
+
+    private static StringNode findNode(Map<Character, List<StringNode>> graph, char key, String data) {
+        for (StringNode node : graph.getOrDefault(key, Collections.emptyList())) {
+            if (node.getData().equals(data)) {
+                return node;
             }
         }
-        return result;
+        throw new IllegalArgumentException("Not in string set: " + data);
     }
 
     /**
-     * Find the longest chain given a current node, a ordered (linkedhashset) of done nodes, and a graph from a second string set.
+     * Visit every path from a current node, recording the longest path seen
+     * for each start and end character.
      * 
      * @param current The current node
+     * @param first The first character of the path
      * @param done A ordered set of strings already used in the chain.
-     * @param second graph from second string set.
-     * @return Longest chain with remaining nodes.
+     * @param startingWith The longest path found starting with each character
+     * @param endingWith The longest path found ending with each character
+     * @param statistics The statistics to count nodes expanded and pruned in
      */
-    private static List<String> findLongestPathFirst(StringNode current, Set<String> done, Map<Character, List<StringNode>> second) {
+    private static void findLongestPaths(StringNode current, char first, Set<String> done, Map<Character, List<String>> startingWith, Map<Character, List<String>> endingWith, ChainSearchStatistics statistics) {
+        statistics.expand();
         done.add(current.getData());
-        List<String> result = Collections.emptyList();
+        List<String> path = null;
+        List<String> start = startingWith.get(first);
+        if (start == null || start.size() < done.size()) {
+            path = new ArrayList<>(done);
+            startingWith.put(first, path);
+        }
+        List<String> end = endingWith.get(current.getLastCharacter());
+        if (end == null || end.size() < done.size()) {
+            endingWith.put(current.getLastCharacter(), path != null ? path : new ArrayList<>(done));
+        }
         for (StringNode child : current.getChildren()) {
             if (child == current || done.contains(child.getData())) {
+                statistics.prune();
                 continue;
             }
-            List<String> newResult = findLongestPathFirst(child, done, second);
-            if (newResult.size() > result.size()) {
-                result = newResult;
-            }
-        }
-        List<StringNode> secondChildren = second.get(current.getLastCharacter());
-        if (secondChildren != null) {
-            Set<String> secondDone = new LinkedHashSet<>();
-            for (StringNode child : secondChildren) {
-                List<String> newResult = findLongestPathSecond(done, child, secondDone);
-                if (newResult.size() > result.size()) {
-                    result = newResult;
-                }
-            }
+            findLongestPaths(child, first, done, startingWith, endingWith, statistics);
         }
-        if (result.isEmpty()) {
-            result = new ArrayList(done);
-        } 
         done.remove(current.getData());
-        return result;
     }
 
     /**
-     * Find the longest chain, given the path in the first graph, from the remaining nodes in the second graph.
-     * 
-     * @param doneFirst Set containing the String path traversed in the first graph.
-     * @param current Current node in the second graph.
-     * @param done Set containing the String path traversed in the second graph.
-     * @return The longest chain given the traversed path in the first and second graph.
+     * Visit every path leading to a node, searching backwards from the
+     * last node, recording the longest path seen for each start character.
+     *
+     * @param current The current node
+     * @param reversed The strings already used in the chain, last first
+     * @param done The strings already used in the chain
+     * @param startingWith The longest path found starting with each character
+     * @param longest The longest path found so far
+     * @param statistics The statistics to count nodes expanded and pruned in
+     * @return The longest path found
      */
-    private static List<String> findLongestPathSecond(Set<String> doneFirst, StringNode current, Set<String> done) {
+    private static List<String> findLongestPathsTo(StringNode current, List<String> reversed, Set<String> done, Map<Character, List<String>> startingWith, List<String> longest, ChainSearchStatistics statistics) {
+        statistics.expand();
+        reversed.add(current.getData());
         done.add(current.getData());
-        List<String> result = Collections.emptyList();
-        for (StringNode child : current.getChildren()) {
-            if (child == current || done.contains(child.getData())) {
+        List<String> start = startingWith.get(current.getFirstCharacter());
+        if (start == null || start.size() < reversed.size()) {
+            List<String> path = new ArrayList<>(reversed);
+            Collections.reverse(path);
+            startingWith.put(current.getFirstCharacter(), path);
+            if (path.size() > longest.size()) {
+                longest = path;
+            }
+        }
+        for (StringNode parent : current.getChildren()) {
+            if (parent == current || done.contains(parent.getData())) {
+                statistics.prune();
                 continue;
             }
-            List<String> newResult = findLongestPathSecond(doneFirst, child, done);
-            if (newResult.size() > result.size()) {
-                result = newResult;
+            longest = findLongestPathsTo(parent, reversed, done, startingWith, longest, statistics);
+        }
+        done.remove(current.getData());
+        reversed.remove(reversed.size() - 1);
+        return longest;
+    }
+
+    /**
+     * The two longest chains from different string sets.
+     */
+    private static class TopTwo {
+        private int firstId;
+        private int secondId;
+        private List<String> first;
+        private List<String> second;
+
+        private void offer(int id, List<String> chain) {
+            if (first == null || chain.size() > first.size()) {
+                second = first;
+                secondId = firstId;
+                first = chain;
+                firstId = id;
+            } else if (second == null || chain.size() > second.size()) {
+                second = chain;
+                secondId = id;
             }
         }
-        if (result.isEmpty()) {
-            result = new ArrayList<>(doneFirst.size() + done.size());
-            result.addAll(doneFirst);
-            result.addAll(done);
+    }
+
+    /**
+     * A chain and the string sets it starts in and jumps to.
+     */
+    private static class Joined {
+        private final List<String> chain;
+        private final Integer from;
+        private final Integer to;
+
+        private Joined(List<String> chain, Integer from, Integer to) {
+            this.chain = chain;
+            this.from = from;
+            this.to = to;
         }
-        done.remove(current.getData());
-        return result;
     }
-}
\ No newline at end of file
+}
@@ -26,6 +26,8 @@ import java.util.List;
  */
 public class StringNode {
     private final String data;
+    private final char firstCharacter;
+    private final char lastCharacter;
     private List<StringNode> children;
 
     /**
@@ -33,7 +35,20 @@ public class StringNode {
      * @param data the string data for the node.
      */
     public StringNode(String data) {
+        this(data, data.charAt(0), data.charAt(data.length() - 1));
+    }
+
+    /**
+     * Create a StringNode for the specified string with it's first and last
+     * characters already known.
+     * @param data the string data for the node.
+     * @param firstCharacter the first character of data
+     * @param lastCharacter the last character of data
+     */
+    public StringNode(String data, char firstCharacter, char lastCharacter) {
         this.data = data;
+        this.firstCharacter = firstCharacter;
+        this.lastCharacter = lastCharacter;
     }
 
     /**
@@ -70,7 +85,7 @@ public class StringNode {
      * @return 
      */
     public char getFirstCharacter() {
-        return data.charAt(0);
+        return firstCharacter;
     }
 
     /**
@@ -78,7 +93,7 @@ public class StringNode {
      * @return 
      */
     public char getLastCharacter() {
-        return data.charAt(data.length() - 1);
+        return lastCharacter;
     }
 
     @Override
@@ -0,0 +1,132 @@
+/*
+   Copyright 2016 Cyberian Tiger
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.cyberiantiger.example.stringsets.model.similarity;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Locality sensitive hashing index of MinHash signatures.
+ *
+ * Signatures are split into {@link #BANDS} bands of {@link #ROWS} values,
+ * two sets are candidates if any band is identical. The probability of a
+ * set with Jaccard similarity s being a candidate is 1 - (1 - s^ROWS)^BANDS,
+ * which is over 50% above a similarity of 0.4, and over 99% above 0.6.
+ *
+ * Not thread safe, the owner must synchronize access.
+ *
+ * @author antony
+ */
+public class LshIndex {
+
+    public static final int BANDS = 32;
+    public static final int ROWS = MinHash.SIZE / BANDS;
+
+    /**
+     * For each band, ids keyed by the hash of that band.
+     */
+    private final List<Map<Long, List<Integer>>> bands = new ArrayList<>(BANDS);
+
+    public LshIndex() {
+        for (int i = 0; i < BANDS; i++) {
+            bands.add(new HashMap<>());
+        }
+    }
+
+    private static long bandHash(int[] signature, int band) {
+        long h = band;
+        for (int i = band * ROWS; i < (band + 1) * ROWS; i++) {
+            h = MinHash.mix(h * 31 + signature[i]);
+        }
+        return h;
+    }
+
+    /**
+     * Add a signature to the index.
+     *
+     * @param id the id of the set
+     * @param signature the signature of the set
+     */
+    public void add(int id, int[] signature) {
+        for (int i = 0; i < BANDS; i++) {
+            bands.get(i).computeIfAbsent(bandHash(signature, i), k -> new ArrayList<>(1)).add(id);
+        }
+    }
+
+    /**
+     * Remove a signature from the index.
+     *
+     * @param id the id of the set
+     * @param signature the signature of the set
+     */
+    public void remove(int id, int[] signature) {
+        for (int i = 0; i < BANDS; i++) {
+            long key = bandHash(signature, i);
+            List<Integer> ids = bands.get(i).get(key);
+            if (ids != null) {
+                ids.remove((Integer) id);
+                if (ids.isEmpty()) {
+                    bands.get(i).remove(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * Add every signature of another index to this one.
+     *
+     * @param other the other index, which must not be used afterwards
+     */
+    public void merge(LshIndex other) {
+        for (int i = 0; i < BANDS; i++) {
+            Map<Long, List<Integer>> band = bands.get(i);
+            other.bands.get(i).forEach((key, ids) -> band.merge(key, ids, (a, b) -> {
+                a.addAll(b);
+                return a;
+            }));
+        }
+    }
+
+    /**
+     * Remove all signatures from the index.
+     */
+    public void clear() {
+        for (Map<Long, List<Integer>> band : bands) {
+            band.clear();
+        }
+    }
+
+    /**
+     * Find the ids of candidate similar sets.
+     *
+     * @param signature the signature to find similar sets to
+     * @return the ids of sets sharing at least one band with the signature
+     */
+    public Set<Integer> candidates(int[] signature) {
+        Set<Integer> result = new LinkedHashSet<>();
+        for (int i = 0; i < BANDS; i++) {
+            List<Integer> ids = bands.get(i).get(bandHash(signature, i));
+            if (ids != null) {
+                result.addAll(ids);
+            }
+        }
+        return result;
+    }
+}
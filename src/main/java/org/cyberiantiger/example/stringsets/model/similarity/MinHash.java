@@ -0,0 +1,144 @@
+/*
+   Copyright 2016 Cyberian Tiger
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.cyberiantiger.example.stringsets.model.similarity;
+
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * MinHash signatures for estimating the Jaccard similarity of sets of
+ * strings.
+ *
+ * Signatures use one permutation hashing, each string is hashed once and
+ * the hash both selects one of {@link #SIZE} bins and provides the value
+ * whose minimum is kept for that bin. Empty bins are filled from the next
+ * non-empty bin (rotation densification), so the probability that two
+ * signatures agree in any position is the Jaccard similarity of the sets.
+ *
+ * @author antony
+ */
+public final class MinHash {
+
+    /**
+     * Number of values in a signature.
+     */
+    public static final int SIZE = 128;
+
+    private static final int BIN_BITS = 7;
+
+    private MinHash() {
+    }
+
+    /**
+     * Compute the signature of a set of strings.
+     *
+     * @param set the set of strings, which must not be empty
+     * @return the signature
+     */
+    public static int[] signature(Set<String> set) {
+        int[] result = new int[SIZE];
+        boolean[] filled = new boolean[SIZE];
+        Arrays.fill(result, Integer.MAX_VALUE);
+        for (String s : set) {
+            long h = hash(s);
+            int bin = (int) (h >>> (64 - BIN_BITS));
+            int value = (int) h & Integer.MAX_VALUE;
+            if (value <= result[bin]) {
+                result[bin] = value;
+                filled[bin] = true;
+            }
+        }
+        for (int i = 0; i < SIZE; i++) {
+            if (filled[i]) {
+                continue;
+            }
+            int distance = 1;
+            while (!filled[(i + distance) % SIZE]) {
+                distance++;
+            }
+            result[i] = (int) mix(((long) result[(i + distance) % SIZE] << BIN_BITS) | distance) & Integer.MAX_VALUE;
+        }
+        return result;
+    }
+
+    /**
+     * Estimate the Jaccard similarity of two sets from their signatures.
+     *
+     * @param a the signature of the first set
+     * @param b the signature of the second set
+     * @return the estimated Jaccard similarity, between 0 and 1
+     */
+    public static double estimate(int[] a, int[] b) {
+        int same = 0;
+        for (int i = 0; i < SIZE; i++) {
+            if (a[i] == b[i]) {
+                same++;
+            }
+        }
+        return (double) same / SIZE;
+    }
+
+    /**
+     * Compute the exact Jaccard similarity of two sets.
+     *
+     * @param a the first set
+     * @param b the second set
+     * @return the Jaccard similarity, between 0 and 1
+     */
+    public static double jaccard(Set<String> a, Set<String> b) {
+        if (a.size() > b.size()) {
+            Set<String> t = a;
+            a = b;
+            b = t;
+        }
+        int intersection = 0;
+        for (String s : a) {
+            if (b.contains(s)) {
+                intersection++;
+            }
+        }
+        return (double) intersection / (a.size() + b.size() - intersection);
+    }
+
+    /**
+     * 64 bit hash of a string.
+     *
+     * @param s the string
+     * @return the hash
+     */
+    public static long hash(String s) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < s.length(); i++) {
+            h = (h ^ s.charAt(i)) * 0x100000001b3L;
+        }
+        return mix(h);
+    }
+
+    /**
+     * Finalisation step of murmur3, to spread the bits of a hash.
+     *
+     * @param h the value to mix
+     * @return the mixed value
+     */
+    public static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,79 @@
+/*
+   Copyright 2016 Cyberian Tiger
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.cyberiantiger.example.stringsets.model.similarity;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.util.Comparator;
+
+/**
+ * The similarity of a StringSet to a query.
+ *
+ * @author antony
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class Similarity {
+
+    /**
+     * Orders by descending similarity, exact if known, then by id.
+     */
+    public static final Comparator<Similarity> MOST_SIMILAR = Comparator
+            .comparingDouble((Similarity s) -> s.getJaccard() != null ? s.getJaccard() : s.getEstimatedJaccard()).reversed()
+            .thenComparingInt(Similarity::getId);
+
+    private final int id;
+    private final double estimatedJaccard;
+    private final Double jaccard;
+
+    /**
+     * Create a Similarity.
+     *
+     * @param id the id of the StringSet
+     * @param estimatedJaccard the Jaccard similarity estimated from MinHash signatures
+     * @param jaccard the exact Jaccard similarity, or null if not computed
+     */
+    @JsonCreator
+    public Similarity(@JsonProperty("id") int id, @JsonProperty("estimatedJaccard") double estimatedJaccard, @JsonProperty("jaccard") Double jaccard) {
+        this.id = id;
+        this.estimatedJaccard = estimatedJaccard;
+        this.jaccard = jaccard;
+    }
+
+    /**
+     * Get the id of the StringSet.
+     * @return the id
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Get the Jaccard similarity estimated from MinHash signatures.
+     * @return the estimated Jaccard similarity
+     */
+    public double getEstimatedJaccard() {
+        return estimatedJaccard;
+    }
+
+    /**
+     * Get the exact Jaccard similarity.
+     * @return the exact Jaccard similarity, or null if not computed
+     */
+    public Double getJaccard() {
+        return jaccard;
+    }
+}
@@ -0,0 +1,399 @@
+/*
+   Copyright 2016 Cyberian Tiger
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.cyberiantiger.example.stringsets.service;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.cyberiantiger.example.stringsets.model.Data;
+
+/**
+ * Limits the number of concurrent requests of each {@link CostClass}, so a
+ * flood of expensive requests can not push the latency of cheap ones into
+ * seconds.
+ *
+ * A request over the limit of it's class waits up to a maximum time for
+ * another to finish, and is rejected if it is not admitted in time, or if
+ * too many requests are already waiting. The limits of scan and expensive
+ * requests adapt to observed latencies: each request slower than the
+ * latency objective of it's class, or any cheap request slower than the
+ * objective for cheap requests, multiplies the limit by
+ * {@value #BACKOFF}, and each request within it's objective while the
+ * class is saturated adds the reciprocal of the limit back, up to the
+ * configured limit and down to a quarter of it. The limit of cheap
+ * requests is fixed, it only protects against floods of cheap requests.
+ *
+ * @author antony
+ */
+public class AdmissionController {
+
+    /**
+     * System property used to disable admission control of {@link #instance}.
+     */
+    public static final String DISABLED_PROPERTY = "stringsets.admission.disabled";
+
+    /**
+     * System property used to configure the maximum time in milliseconds a
+     * request of {@link #instance} waits to be admitted.
+     */
+    public static final String MAX_WAIT_PROPERTY = "stringsets.admission.maxWaitMillis";
+
+    /**
+     * System property used to configure the size in bytes below which scans
+     * of a data store are treated as cheap by {@link #instance}.
+     */
+    public static final String SMALL_STORE_PROPERTY = "stringsets.admission.smallStoreBytes";
+
+    /**
+     * Prefix of system properties used to configure each cost class of
+     * {@link #instance}, followed by the lower case name of the class and
+     * <code>.limit</code>, <code>.sloMillis</code> or <code>.queue</code>.
+     */
+    public static final String PROPERTY_PREFIX = "stringsets.admission.";
+
+    public static final AdmissionController instance = createInstance();
+
+    /**
+     * Multiplier of the limit of a class when a request is too slow.
+     */
+    private static final double BACKOFF = 0.9;
+
+    /**
+     * Weight of each request in the moving average latency.
+     */
+    private static final double LATENCY_WEIGHT = 0.1;
+
+    /**
+     * The outcome of asking to admit a request.
+     */
+    public enum Admission {
+        /**
+         * The request may proceed, and must be released when it is done.
+         */
+        ADMITTED,
+        /**
+         * Too many requests of the class are waiting.
+         */
+        SHED,
+        /**
+         * The request waited too long.
+         */
+        TIMED_OUT
+    }
+
+    private final Map<CostClass, Limiter> limiters = new EnumMap<>(CostClass.class);
+
+    private volatile boolean enabled = true;
+
+    private volatile long maxWaitMillis = 1000;
+
+    private volatile long smallStoreBytes = 1L << 20;
+
+    /**
+     * Create an AdmissionController with default limits: 256 cheap requests
+     * with a latency objective of 100ms, four scans per processor with an
+     * objective of 2s, and one expensive request per processor with an
+     * objective of 10s.
+     */
+    public AdmissionController() {
+        int processors = Runtime.getRuntime().availableProcessors();
+        limiters.put(CostClass.CHEAP, new Limiter(CostClass.CHEAP, 256, 100, 256));
+        limiters.put(CostClass.SCAN, new Limiter(CostClass.SCAN, 4 * processors, 2000, 64));
+        limiters.put(CostClass.EXPENSIVE, new Limiter(CostClass.EXPENSIVE, processors, 10000, 16));
+    }
+
+    private static AdmissionController createInstance() {
+        AdmissionController result = new AdmissionController();
+        result.setEnabled(!Boolean.getBoolean(DISABLED_PROPERTY));
+        result.setMaxWaitMillis(Long.getLong(MAX_WAIT_PROPERTY, result.getMaxWaitMillis()));
+        result.setSmallStoreBytes(Long.getLong(SMALL_STORE_PROPERTY, result.getSmallStoreBytes()));
+        for (Limiter limiter : result.limiters.values()) {
+            String prefix = PROPERTY_PREFIX + limiter.costClass.name().toLowerCase(Locale.ROOT);
+            result.configure(limiter.costClass,
+                    Integer.getInteger(prefix + ".limit", limiter.maxLimit),
+                    Long.getLong(prefix + ".sloMillis", TimeUnit.NANOSECONDS.toMillis(limiter.sloNanos)),
+                    Integer.getInteger(prefix + ".queue", limiter.queue));
+        }
+        return result;
+    }
+
+    /**
+     * Configure a cost class, resetting it's limit.
+     *
+     * @param costClass the cost class
+     * @param limit the maximum number of concurrent requests
+     * @param sloMillis the latency objective in milliseconds
+     * @param queue the maximum number of requests waiting to be admitted
+     * @throws IllegalArgumentException if the class is exempt, the limit is
+     *         less than one, or the objective or queue is negative
+     */
+    public void configure(CostClass costClass, int limit, long sloMillis, int queue) {
+        if (limit < 1 || sloMillis < 0 || queue < 0) {
+            throw new IllegalArgumentException("Invalid limits of " + costClass + ": " + limit + ", " + sloMillis + "ms, " + queue);
+        }
+        limiter(costClass).configure(limit, TimeUnit.MILLISECONDS.toNanos(sloMillis), queue);
+    }
+
+    private Limiter limiter(CostClass costClass) {
+        Limiter result = limiters.get(costClass);
+        if (result == null) {
+            throw new IllegalArgumentException("Not limited: " + costClass);
+        }
+        return result;
+    }
+
+    /**
+     * Check whether requests are subject to admission control.
+     *
+     * @return true if enabled
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Set whether requests are subject to admission control.
+     *
+     * @param enabled true to enable
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Get the maximum time a request waits to be admitted.
+     *
+     * @return the time in milliseconds
+     */
+    public long getMaxWaitMillis() {
+        return maxWaitMillis;
+    }
+
+    /**
+     * Set the maximum time a request waits to be admitted.
+     *
+     * @param maxWaitMillis the time in milliseconds
+     */
+    public void setMaxWaitMillis(long maxWaitMillis) {
+        this.maxWaitMillis = maxWaitMillis;
+    }
+
+    /**
+     * Get the size of a data store below which scans of it are cheap.
+     *
+     * @return the size in bytes
+     */
+    public long getSmallStoreBytes() {
+        return smallStoreBytes;
+    }
+
+    /**
+     * Set the size of a data store below which scans of it are cheap.
+     *
+     * @param smallStoreBytes the size in bytes
+     */
+    public void setSmallStoreBytes(long smallStoreBytes) {
+        this.smallStoreBytes = smallStoreBytes;
+    }
+
+    /**
+     * Estimate the cost class of a request. Requests for the cached longest
+     * chain are cheap while it is current, and scans are cheap when the
+     * StringSets of the data store are small. The size of a coordinator's
+     * data store is unknown, so it's scans are never cheap.
+     *
+     * @param cost the cost of the endpoint, or null if it is not annotated,
+     *        which is a scan so that heavy work never runs as cheap
+     * @param data the data store the request is for, or null if unknown
+     * @return the estimated cost class
+     */
+    public CostClass estimate(Cost cost, Data data) {
+        if (cost == null) {
+            return CostClass.SCAN;
+        }
+        if (data != null) {
+            if (cost.cachedLongestChain() && data.isLongestChainCached()) {
+                return CostClass.CHEAP;
+            }
+            if (cost.value() == CostClass.SCAN && data.isLocal() && data.getBytes() < smallStoreBytes) {
+                return CostClass.CHEAP;
+            }
+        }
+        return cost.value();
+    }
+
+    /**
+     * Ask to admit a request, waiting if the limit of it's class is reached.
+     * An admitted request must be released with
+     * {@link #release(CostClass, long)}.
+     *
+     * @param costClass the cost class of the request
+     * @return whether it was admitted
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public Admission acquire(CostClass costClass) throws InterruptedException {
+        if (costClass == CostClass.EXEMPT) {
+            return Admission.ADMITTED;
+        }
+        return limiter(costClass).acquire(TimeUnit.MILLISECONDS.toNanos(maxWaitMillis));
+    }
+
+    /**
+     * Release an admitted request, adapting limits to it's latency.
+     *
+     * @param costClass the cost class of the request
+     * @param nanos the latency of the request
+     */
+    public void release(CostClass costClass, long nanos) {
+        if (costClass == CostClass.EXEMPT) {
+            return;
+        }
+        boolean slow = limiter(costClass).release(nanos);
+        if (slow && costClass == CostClass.CHEAP) {
+            limiters.get(CostClass.SCAN).backoff();
+            limiters.get(CostClass.EXPENSIVE).backoff();
+        }
+    }
+
+    /**
+     * Get how long a rejected client should wait before retrying: the mean
+     * latency of it's class, rounded up.
+     *
+     * @param costClass the cost class of the rejected request
+     * @return the time in seconds, at least one
+     */
+    public long getRetryAfterSeconds(CostClass costClass) {
+        double meanNanos = limiter(costClass).getMeanNanos();
+        return Math.max(1, (long) Math.ceil(meanNanos / TimeUnit.SECONDS.toNanos(1)));
+    }
+
+    /**
+     * Get the metrics of each cost class.
+     *
+     * @return the metrics of cheap, scan and expensive requests
+     */
+    public List<AdmissionStatistics> getStatistics() {
+        List<AdmissionStatistics> result = new ArrayList<>();
+        for (Limiter limiter : limiters.values()) {
+            result.add(limiter.getStatistics());
+        }
+        return result;
+    }
+
+    /**
+     * The limit and metrics of a single cost class.
+     */
+    private static final class Limiter {
+        private final CostClass costClass;
+        private int maxLimit;
+        private long sloNanos;
+        private int queue;
+        private double limit;
+        private int inFlight;
+        private int waiting;
+        private long admitted;
+        private long deferred;
+        private long shed;
+        private long timedOut;
+        private double meanNanos;
+
+        private Limiter(CostClass costClass, int limit, long sloMillis, int queue) {
+            this.costClass = costClass;
+            configure(limit, TimeUnit.MILLISECONDS.toNanos(sloMillis), queue);
+        }
+
+        private synchronized void configure(int limit, long sloNanos, int queue) {
+            this.maxLimit = limit;
+            this.sloNanos = sloNanos;
+            this.queue = queue;
+            this.limit = limit;
+            notifyAll();
+        }
+
+        private int permits() {
+            return (int) limit;
+        }
+
+        private synchronized Admission acquire(long maxWaitNanos) throws InterruptedException {
+            if (waiting == 0 && inFlight < permits()) {
+                inFlight++;
+                admitted++;
+                return Admission.ADMITTED;
+            }
+            if (waiting >= queue) {
+                shed++;
+                return Admission.SHED;
+            }
+            waiting++;
+            try {
+                long deadline = System.nanoTime() + maxWaitNanos;
+                long remaining = maxWaitNanos;
+                while (inFlight >= permits()) {
+                    if (remaining <= 0) {
+                        timedOut++;
+                        return Admission.TIMED_OUT;
+                    }
+                    TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                    remaining = deadline - System.nanoTime();
+                }
+                inFlight++;
+                admitted++;
+                deferred++;
+                return Admission.ADMITTED;
+            } finally {
+                waiting--;
+            }
+        }
+
+        /**
+         * Release a request.
+         *
+         * @param nanos the latency of the request
+         * @return true if it was slower than the objective
+         */
+        private synchronized boolean release(long nanos) {
+            boolean saturated = waiting > 0 || inFlight >= permits();
+            inFlight--;
+            meanNanos = meanNanos == 0 ? nanos : meanNanos + LATENCY_WEIGHT * (nanos - meanNanos);
+            boolean slow = nanos > sloNanos;
+            if (costClass != CostClass.CHEAP) {
+                if (slow) {
+                    backoff();
+                } else if (saturated) {
+                    limit = Math.min(maxLimit, limit + 1 / limit);
+                }
+            }
+            notifyAll();
+            return slow;
+        }
+
+        private synchronized void backoff() {
+            limit = Math.max(Math.max(1, maxLimit / 4), limit * BACKOFF);
+        }
+
+        private synchronized double getMeanNanos() {
+            return meanNanos;
+        }
+
+        private synchronized AdmissionStatistics getStatistics() {
+            return new AdmissionStatistics(costClass, limit, inFlight, waiting,
+                    admitted, deferred, shed, timedOut, meanNanos / TimeUnit.MILLISECONDS.toNanos(1));
+        }
+    }
+}
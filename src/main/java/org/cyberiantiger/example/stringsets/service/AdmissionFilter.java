@@ -0,0 +1,139 @@
+/*
+   Copyright 2016 Cyberian Tiger
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.cyberiantiger.example.stringsets.service;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Locale;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ResourceInfo;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.Provider;
+import org.cyberiantiger.example.stringsets.model.Data;
+import org.glassfish.jersey.server.ContainerRequest;
+import org.glassfish.jersey.server.monitoring.ApplicationEvent;
+import org.glassfish.jersey.server.monitoring.ApplicationEventListener;
+import org.glassfish.jersey.server.monitoring.RequestEvent;
+import org.glassfish.jersey.server.monitoring.RequestEventListener;
+
+/**
+ * Admits requests to {@link StringSetResource} through an
+ * {@link AdmissionController}, according to the {@link Cost} of their
+ * endpoint. Requests which are shed because too many of their class are
+ * waiting get 429 Too Many Requests, requests which waited too long get 503
+ * Service Unavailable, both with a Retry-After header.
+ *
+ * Permits are returned when the request finishes, whether the response was
+ * written or the resource method failed, so the limit of a class also covers
+ * streamed responses such as export, and latency is measured until the
+ * response has been written.
+ *
+ * @author antony
+ */
+@Provider
+public class AdmissionFilter implements ContainerRequestFilter, ApplicationEventListener {
+
+    /**
+     * HTTP status for Too Many Requests, which is not in {@link Response.Status}.
+     */
+    public static final int TOO_MANY_REQUESTS = 429;
+
+    private static final String COST_CLASS = AdmissionFilter.class.getName() + ".costClass";
+    private static final String START = AdmissionFilter.class.getName() + ".start";
+
+    private final AdmissionController controller;
+
+    @Context
+    private ResourceInfo resourceInfo;
+
+    /**
+     * Create an AdmissionFilter for the default admission controller.
+     */
+    public AdmissionFilter() {
+        this(AdmissionController.instance);
+    }
+
+    /**
+     * Create an AdmissionFilter for a specific admission controller.
+     * @param controller the admission controller
+     */
+    public AdmissionFilter(AdmissionController controller) {
+        this.controller = controller;
+    }
+
+    @Override
+    public void filter(ContainerRequestContext request) throws IOException {
+        Method method = resourceInfo.getResourceMethod();
+        if (!controller.isEnabled() || method == null || resourceInfo.getResourceClass() != StringSetResource.class) {
+            return;
+        }
+        Cost cost = method.getAnnotation(Cost.class);
+        if (cost != null && cost.value() == CostClass.EXEMPT) {
+            return;
+        }
+        Data data = null;
+        List<Object> resources = request.getUriInfo().getMatchedResources();
+        if (!resources.isEmpty() && resources.get(0) instanceof StringSetResource) {
+            data = ((StringSetResource) resources.get(0)).getData();
+        }
+        CostClass costClass = controller.estimate(cost, data);
+        AdmissionController.Admission admission;
+        try {
+            admission = controller.acquire(costClass);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            admission = AdmissionController.Admission.TIMED_OUT;
+        }
+        if (admission == AdmissionController.Admission.ADMITTED) {
+            request.setProperty(COST_CLASS, costClass);
+            request.setProperty(START, System.nanoTime());
+        } else {
+            int status = admission == AdmissionController.Admission.SHED
+                    ? TOO_MANY_REQUESTS : Response.Status.SERVICE_UNAVAILABLE.getStatusCode();
+            request.abortWith(Response.status(status)
+                    .header(HttpHeaders.RETRY_AFTER, controller.getRetryAfterSeconds(costClass))
+                    .type(MediaType.TEXT_PLAIN)
+                    .entity("Too many " + costClass.name().toLowerCase(Locale.ROOT) + " requests")
+                    .build());
+        }
+    }
+
+    @Override
+    public void onEvent(ApplicationEvent event) {
+    }
+
+    @Override
+    public RequestEventListener onRequest(RequestEvent requestEvent) {
+        return this::finished;
+    }
+
+    private void finished(RequestEvent event) {
+        if (event.getType() != RequestEvent.Type.FINISHED) {
+            return;
+        }
+        ContainerRequest request = event.getContainerRequest();
+        CostClass costClass = (CostClass) request.getProperty(COST_CLASS);
+        if (costClass != null) {
+            request.removeProperty(COST_CLASS);
+            controller.release(costClass, System.nanoTime() - (Long) request.getProperty(START));
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/*
+   Copyright 2016 Cyberian Tiger
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.cyberiantiger.example.stringsets.service;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Metrics of the requests of a single {@link CostClass}, see
+ * {@link AdmissionController}.
+ *
+ * @author antony
+ */
+public class AdmissionStatistics {
+    private final CostClass costClass;
+    private final double limit;
+    private final int inFlight;
+    private final int waiting;
+    private final long admitted;
+    private final long deferred;
+    private final long shed;
+    private final long timedOut;
+    private final double meanMillis;
+
+    /**
+     * Create a new AdmissionStatistics.
+     *
+     * @param costClass The cost class
+     * @param limit The current concurrency limit
+     * @param inFlight The number of requests being processed
+     * @param waiting The number of requests waiting to be admitted
+     * @param admitted The number of requests admitted
+     * @param deferred The number of admitted requests which had to wait
+     * @param shed The number of requests rejected because too many were waiting
+     * @param timedOut The number of requests rejected after waiting too long
+     * @param meanMillis The moving average latency of admitted requests
+     */
+    @JsonCreator
+    public AdmissionStatistics(@JsonProperty("costClass") CostClass costClass, @JsonProperty("limit") double limit, @JsonProperty("inFlight") int inFlight, @JsonProperty("waiting") int waiting, @JsonProperty("admitted") long admitted, @JsonProperty("deferred") long deferred, @JsonProperty("shed") long shed, @JsonProperty("timedOut") long timedOut, @JsonProperty("meanMillis") double meanMillis) {
+        this.costClass = costClass;
+        this.limit = limit;
+        this.inFlight = inFlight;
+        this.waiting = waiting;
+        this.admitted = admitted;
+        this.deferred = deferred;
+        this.shed = shed;
+        this.timedOut = timedOut;
+        this.meanMillis = meanMillis;
+    }
+
+    /**
+     * Get the cost class.
+     * @return the cost class
+     */
+    public CostClass getCostClass() {
+        return costClass;
+    }
+
+    /**
+     * Get the current concurrency limit, which adapts to observed latencies.
+     * @return the limit
+     */
+    public double getLimit() {
+        return limit;
+    }
+
+    /**
+     * Get the number of requests being processed.
+     * @return the number of requests
+     */
+    public int getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * Get the number of requests waiting to be admitted.
+     * @return the number of requests
+     */
+    public int getWaiting() {
+        return waiting;
+    }
+
+    /**
+     * Get the number of requests admitted.
+     * @return the number of requests
+     */
+    public long getAdmitted() {
+        return admitted;
+    }
+
+    /**
+     * Get the number of admitted requests which had to wait.
+     * @return the number of requests
+     */
+    public long getDeferred() {
+        return deferred;
+    }
+
+    /**
+     * Get the number of requests rejected with 429 because too many were
+     * already waiting.
+     * @return the number of requests
+     */
+    public long getShed() {
+        return shed;
+    }
+
+    /**
+     * Get the number of requests rejected with 503 after waiting too long.
+     * @return the number of requests
+     */
+    public long getTimedOut() {
+        return timedOut;
+    }
+
+    /**
+     * Get the exponential moving average latency of admitted requests.
+     * @return the latency in milliseconds
+     */
+    public double getMeanMillis() {
+        return meanMillis;
+    }
+}
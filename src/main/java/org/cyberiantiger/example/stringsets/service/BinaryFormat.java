@@ -0,0 +1,305 @@
+/*
+   Copyright 2016 Cyberian Tiger
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.cyberiantiger.example.stringsets.service;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Set;
+import javax.ws.rs.BadRequestException;
+import javax.ws.rs.core.MediaType;
+import org.cyberiantiger.example.stringsets.model.StringSetBuilder;
+
+/**
+ * A compact binary encoding for string sets and ids.
+ *
+ * All integers are encoded as unsigned variable length integers (7 bits per
+ * byte, least significant group first, high bit set on all but the last
+ * byte). Strings are encoded as their UTF-8 length followed by their UTF-8
+ * bytes. A collection is encoded as its size followed by its elements, and
+ * a map as its size followed by each key and value.
+ *
+ * @author antony
+ */
+public final class BinaryFormat {
+
+    /**
+     * Media type of the binary format.
+     */
+    public static final String MEDIA_TYPE = "application/x-string-sets";
+
+    /**
+     * Media type of the binary format.
+     */
+    public static final MediaType MEDIA_TYPE_TYPE = MediaType.valueOf(MEDIA_TYPE);
+
+    private BinaryFormat() {
+    }
+
+    /**
+     * Get the type arguments of a generic type, if it is a parameterized
+     * subtype of a raw type.
+     *
+     * @param genericType the generic type
+     * @param rawType the raw type
+     * @return the type arguments, or null if it is not a subtype of rawType
+     */
+    static Type[] typeArguments(Type genericType, Class<?> rawType) {
+        if (genericType instanceof ParameterizedType) {
+            ParameterizedType type = (ParameterizedType) genericType;
+            if (type.getRawType() instanceof Class && rawType.isAssignableFrom((Class<?>) type.getRawType())) {
+                return type.getActualTypeArguments();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Check if a generic type is a collection of a specific element type.
+     *
+     * @param genericType the generic type
+     * @param elementType the element type
+     * @return true if it is a collection of elementType
+     */
+    static boolean isCollectionOf(Type genericType, Class<?> elementType) {
+        Type[] arguments = typeArguments(genericType, Collection.class);
+        return arguments != null && arguments[0] == elementType;
+    }
+
+    /**
+     * Encodes values to an output stream, with it's own unsynchronized buffer.
+     */
+    static class Encoder {
+        private final OutputStream out;
+        private final byte[] buffer = new byte[8192];
+        private int position;
+
+        /**
+         * Create an Encoder.
+         *
+         * @param out the stream to write to
+         */
+        Encoder(OutputStream out) {
+            this.out = out;
+        }
+
+        /**
+         * Write an unsigned variable length integer.
+         *
+         * @param value the value, which must not be negative
+         * @throws IOException if there is an error writing
+         */
+        void writeInt(int value) throws IOException {
+            if (buffer.length - position < 5) {
+                flushBuffer();
+            }
+            while ((value & ~0x7F) != 0) {
+                buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[position++] = (byte) value;
+        }
+
+        /**
+         * Write a string.
+         *
+         * @param s the string
+         * @throws IOException if there is an error writing
+         */
+        void writeString(String s) throws IOException {
+            int length = s.length();
+            if (length <= buffer.length - 5 && isAscii(s)) {
+                // Common case, encode directly into our buffer.
+                writeInt(length);
+                if (buffer.length - position < length) {
+                    flushBuffer();
+                }
+                for (int i = 0; i < length; i++) {
+                    buffer[position++] = (byte) s.charAt(i);
+                }
+                return;
+            }
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            writeInt(bytes.length);
+            if (buffer.length - position < bytes.length) {
+                flushBuffer();
+                if (buffer.length < bytes.length) {
+                    out.write(bytes);
+                    return;
+                }
+            }
+            System.arraycopy(bytes, 0, buffer, position, bytes.length);
+            position += bytes.length;
+        }
+
+        /**
+         * Write a collection of strings.
+         *
+         * @param strings the strings
+         * @throws IOException if there is an error writing
+         */
+        void writeStrings(Collection<String> strings) throws IOException {
+            writeInt(strings.size());
+            for (String s : strings) {
+                writeString(s);
+            }
+        }
+
+        private static boolean isAscii(String s) {
+            for (int i = 0; i < s.length(); i++) {
+                if (s.charAt(i) >= 0x80) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void flushBuffer() throws IOException {
+            out.write(buffer, 0, position);
+            position = 0;
+        }
+
+        /**
+         * Write any buffered data to the underlying stream and flush it.
+         *
+         * @throws IOException if there is an error writing
+         */
+        void flush() throws IOException {
+            flushBuffer();
+            out.flush();
+        }
+    }
+
+    /**
+     * Decodes values from an input stream, with it's own unsynchronized buffer.
+     */
+    static class Decoder {
+        /**
+         * The maximum UTF-8 length of a string which will be decoded.
+         */
+        static final int MAX_STRING_BYTES = 1 << 24;
+
+        private final InputStream in;
+        private byte[] buffer = new byte[8192];
+        private int position;
+        private int limit;
+
+        /**
+         * Create a Decoder.
+         *
+         * @param in the stream to read from
+         */
+        Decoder(InputStream in) {
+            this.in = in;
+        }
+
+        /**
+         * Ensure at least length bytes are in the buffer, growing it only as
+         * the bytes arrive so a bogus length can't allocate more than was sent.
+         *
+         * @param length the number of bytes needed
+         * @throws IOException if there is an error reading, or the stream ends
+         */
+        private void fill(int length) throws IOException {
+            if (limit - position >= length) {
+                return;
+            }
+            System.arraycopy(buffer, position, buffer, 0, limit - position);
+            limit -= position;
+            position = 0;
+            while (limit < length) {
+                if (limit == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, (int) Math.min(length, 2L * buffer.length));
+                }
+                int read = in.read(buffer, limit, buffer.length - limit);
+                if (read < 0) {
+                    throw new EOFException();
+                }
+                limit += read;
+            }
+        }
+
+        /**
+         * Read an unsigned variable length integer.
+         *
+         * @return the value
+         * @throws IOException if there is an error reading, or the stream ends
+         * @throws BadRequestException if the value is too large
+         */
+        int readInt() throws IOException {
+            int result = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                fill(1);
+                int b = buffer[position++];
+                if (shift == 28 && (b & 0xF8) != 0) {
+                    // Any more bits, or another byte, would overflow a non-negative int.
+                    break;
+                }
+                result |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return result;
+                }
+            }
+            throw new BadRequestException("Malformed integer");
+        }
+
+        /**
+         * Read a string.
+         *
+         * @return the string
+         * @throws IOException if there is an error reading, or the stream ends
+         * @throws BadRequestException if the string is longer than {@link #MAX_STRING_BYTES}
+         */
+        String readString() throws IOException {
+            int length = readInt();
+            if (length > MAX_STRING_BYTES) {
+                throw new BadRequestException("String too long: " + length + " bytes");
+            }
+            fill(length);
+            String result = new String(buffer, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return result;
+        }
+
+        /**
+         * Read a set of strings, decoding straight into a compact set and
+         * checking each string as it is read.
+         *
+         * @return an ordered set of the strings
+         * @throws IOException if there is an error reading, or the stream ends
+         * @throws BadRequestException if the strings contain duplicates or empty strings
+         */
+        Set<String> readStringSet() throws IOException {
+            int count = readInt();
+            // Don't trust the count too far for sizing.
+            StringSetBuilder result = new StringSetBuilder(Math.min(count, 1 << 16));
+            try {
+                for (int i = 0; i < count; i++) {
+                    result.add(readString());
+                }
+            } catch (IllegalArgumentException ex) {
+                throw new BadRequestException(ex.getMessage());
+            }
+            return result.build();
+        }
+    }
+}
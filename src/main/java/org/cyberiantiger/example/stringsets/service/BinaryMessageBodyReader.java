@@ -0,0 +1,97 @@
+/*
+   Copyright 2016 Cyberian Tiger
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.cyberiantiger.example.stringsets.service;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.ws.rs.BadRequestException;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyReader;
+import javax.ws.rs.ext.Provider;
+
+/**
+ * Reads string sets, lists of string sets, and maps of id to string set in
+ * {@link BinaryFormat}.
+ *
+ * Strings are decoded straight into a compact ordered set, checking for
+ * duplicates and empty strings as they are read, see
+ * {@link org.cyberiantiger.example.stringsets.model.StringSetBuilder}.
+ *
+ * @author antony
+ */
+@Provider
+@Consumes(BinaryFormat.MEDIA_TYPE)
+public class BinaryMessageBodyReader implements MessageBodyReader<Object> {
+
+    @Override
+    public boolean isReadable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        if (type == Set.class) {
+            return BinaryFormat.isCollectionOf(genericType, String.class);
+        }
+        if (type == List.class) {
+            Type[] arguments = BinaryFormat.typeArguments(genericType, List.class);
+            return arguments != null
+                    && BinaryFormat.typeArguments(arguments[0], Set.class) != null
+                    && BinaryFormat.isCollectionOf(arguments[0], String.class);
+        }
+        if (type == Map.class) {
+            Type[] arguments = BinaryFormat.typeArguments(genericType, Map.class);
+            return arguments != null && arguments[0] == Integer.class
+                    && BinaryFormat.typeArguments(arguments[1], Set.class) != null
+                    && BinaryFormat.isCollectionOf(arguments[1], String.class);
+        }
+        return false;
+    }
+
+    @Override
+    public Object readFrom(Class<Object> type, Type genericType, Annotation[] annotations, MediaType mediaType, MultivaluedMap<String, String> httpHeaders, InputStream entityStream) throws IOException, WebApplicationException {
+        BinaryFormat.Decoder in = new BinaryFormat.Decoder(entityStream);
+        try {
+            if (Set.class.equals(type)) {
+                return in.readStringSet();
+            }
+            int count = in.readInt();
+            if (Map.class.equals(type)) {
+                Map<Integer, Set<String>> result = new LinkedHashMap<>(Math.min(count, 1 << 16) * 4 / 3 + 1);
+                for (int i = 0; i < count; i++) {
+                    int id = in.readInt();
+                    if (result.put(id, in.readStringSet()) != null) {
+                        throw new BadRequestException("Duplicated id: " + id);
+                    }
+                }
+                return result;
+            }
+            List<Set<String>> result = new ArrayList<>(Math.min(count, 1024));
+            for (int i = 0; i < count; i++) {
+                result.add(in.readStringSet());
+            }
+            return result;
+        } catch (EOFException ex) {
+            throw new BadRequestException("Truncated request");
+        }
+    }
+}
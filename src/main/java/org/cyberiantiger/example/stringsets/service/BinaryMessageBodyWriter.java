@@ -0,0 +1,85 @@
+/*
+   Copyright 2016 Cyberian Tiger
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.cyberiantiger.example.stringsets.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.Collection;
+import java.util.Map;
+import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Provider;
+
+/**
+ * Writes string sets, lists of ids and maps of id to string set in
+ * {@link BinaryFormat}.
+ *
+ * Collections are written directly from the data store's sets without
+ * copying.
+ *
+ * @author antony
+ */
+@Provider
+@Produces(BinaryFormat.MEDIA_TYPE)
+public class BinaryMessageBodyWriter implements MessageBodyWriter<Object> {
+
+    @Override
+    public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        if (Collection.class.isAssignableFrom(type)) {
+            return BinaryFormat.isCollectionOf(genericType, String.class)
+                    || BinaryFormat.isCollectionOf(genericType, Integer.class);
+        }
+        if (Map.class.isAssignableFrom(type)) {
+            Type[] arguments = BinaryFormat.typeArguments(genericType, Map.class);
+            return arguments != null && arguments[0] == Integer.class
+                    && BinaryFormat.isCollectionOf(arguments[1], String.class);
+        }
+        return false;
+    }
+
+    @Override
+    public long getSize(Object t, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return -1;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void writeTo(Object t, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType, MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream) throws IOException, WebApplicationException {
+        BinaryFormat.Encoder out = new BinaryFormat.Encoder(entityStream);
+        if (t instanceof Map) {
+            Map<Integer, ? extends Collection<String>> map = (Map<Integer, ? extends Collection<String>>) t;
+            out.writeInt(map.size());
+            for (Map.Entry<Integer, ? extends Collection<String>> e : map.entrySet()) {
+                out.writeInt(e.getKey());
+                out.writeStrings(e.getValue());
+            }
+        } else if (BinaryFormat.isCollectionOf(genericType, Integer.class)) {
+            Collection<Integer> ids = (Collection<Integer>) t;
+            out.writeInt(ids.size());
+            for (int id : ids) {
+                out.writeInt(id);
+            }
+        } else {
+            out.writeStrings((Collection<String>) t);
+        }
+        out.flush();
+    }
+}
@@ -0,0 +1,85 @@
+/*
+   Copyright 2016 Cyberian Tiger
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.cyberiantiger.example.stringsets.service;
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+import org.cyberiantiger.example.stringsets.model.StringSet;
+
+/**
+ * A read only view of a StringSet returned by the api, which is written to
+ * responses from a {@link ResponseCache} by {@link CachedStringSetWriter}.
+ *
+ * @author antony
+ */
+public class CachedStringSet extends AbstractSet<String> {
+
+    private final StringSet set;
+    private final ResponseCache cache;
+
+    /**
+     * Create a CachedStringSet.
+     *
+     * @param set the StringSet
+     * @param cache the cache to write the StringSet from
+     */
+    public CachedStringSet(StringSet set, ResponseCache cache) {
+        this.set = set;
+        this.cache = cache;
+    }
+
+    /**
+     * Get the StringSet.
+     * @return the StringSet
+     */
+    public StringSet getStringSet() {
+        return set;
+    }
+
+    /**
+     * Get the cache to write the StringSet from.
+     * @return the cache
+     */
+    public ResponseCache getCache() {
+        return cache;
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        Iterator<String> i = set.getSet().iterator();
+        return new Iterator<String>() {
+            @Override
+            public boolean hasNext() {
+                return i.hasNext();
+            }
+
+            @Override
+            public String next() {
+                return i.next();
+            }
+        };
+    }
+
+    @Override
+    public int size() {
+        return set.getSet().size();
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return set.getSet().contains(o);
+    }
+}
@@ -0,0 +1,56 @@
+/*
+   Copyright 2016 Cyberian Tiger
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.cyberiantiger.example.stringsets.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Provider;
+
+/**
+ * Writes a {@link CachedStringSet} as JSON or {@link BinaryFormat} by
+ * copying it's serialised form from a {@link ResponseCache}.
+ *
+ * @author antony
+ */
+@Provider
+@Produces({MediaType.APPLICATION_JSON, BinaryFormat.MEDIA_TYPE})
+public class CachedStringSetWriter implements MessageBodyWriter<CachedStringSet> {
+
+    @Override
+    public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return CachedStringSet.class.isAssignableFrom(type) && ResponseCache.isSupported(mediaType);
+    }
+
+    @Override
+    public long getSize(CachedStringSet t, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return -1;
+    }
+
+    @Override
+    public void writeTo(CachedStringSet t, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType, MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream) throws IOException, WebApplicationException {
+        byte[] bytes = t.getCache().get(t.getStringSet(), mediaType);
+        httpHeaders.putSingle(HttpHeaders.CONTENT_LENGTH, bytes.length);
+        entityStream.write(bytes);
+    }
+}
@@ -0,0 +1,47 @@
+/*
+   Copyright 2016 Cyberian Tiger
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.cyberiantiger.example.stringsets.service;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * The cost class of an endpoint of {@link StringSetResource}, endpoints
+ * without it are treated as {@link CostClass#SCAN}.
+ *
+ * @author antony
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Cost {
+
+    /**
+     * The cost class when the answer must be computed.
+     *
+     * @return the cost class
+     */
+    CostClass value();
+
+    /**
+     * Whether the endpoint is answered from the data store's cached longest
+     * chain while it is current, making it cheap.
+     *
+     * @return true if the endpoint serves the cached longest chain
+     */
+    boolean cachedLongestChain() default false;
+}
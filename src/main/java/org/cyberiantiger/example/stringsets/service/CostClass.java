@@ -0,0 +1,47 @@
+/*
+   Copyright 2016 Cyberian Tiger
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.cyberiantiger.example.stringsets.service;
+
+/**
+ * How expensive a request is, each class has it's own concurrency limit,
+ * see {@link AdmissionController}.
+ *
+ * @author antony
+ */
+public enum CostClass {
+
+    /**
+     * Point reads and writes, and answers served from an index or cache.
+     */
+    CHEAP,
+
+    /**
+     * Requests which read every string set, or every string in an index,
+     * so cost grows with the size of the store.
+     */
+    SCAN,
+
+    /**
+     * Requests which search within string sets, or copy the whole store.
+     */
+    EXPENSIVE,
+
+    /**
+     * Not subject to admission control, for long polls whose latency is
+     * waiting rather than work.
+     */
+    EXEMPT
+}
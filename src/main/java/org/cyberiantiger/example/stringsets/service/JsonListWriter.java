@@ -0,0 +1,227 @@
+/*
+   Copyright 2016 Cyberian Tiger
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.cyberiantiger.example.stringsets.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.Collection;
+import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Provider;
+import org.cyberiantiger.example.stringsets.model.IdList;
+
+/**
+ * Writes lists of ids and lists of strings as JSON, straight to the output
+ * stream through a per thread buffer rather than through Jackson.
+ *
+ * Ids in an {@link IdList} are written without boxing them.
+ *
+ * @author antony
+ */
+@Provider
+@Produces(MediaType.APPLICATION_JSON)
+public class JsonListWriter implements MessageBodyWriter<Collection<?>> {
+
+    @Override
+    public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return IdList.class.isAssignableFrom(type) || Collection.class.isAssignableFrom(type)
+                && (BinaryFormat.isCollectionOf(genericType, String.class)
+                || BinaryFormat.isCollectionOf(genericType, Integer.class));
+    }
+
+    @Override
+    public long getSize(Collection<?> t, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return -1;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void writeTo(Collection<?> t, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType, MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream) throws IOException, WebApplicationException {
+        Encoder out = new Encoder(entityStream);
+        out.writeByte('[');
+        if (t instanceof IdList) {
+            IdList ids = (IdList) t;
+            for (int i = 0; i < ids.size(); i++) {
+                if (i > 0) {
+                    out.writeByte(',');
+                }
+                out.writeInt(ids.getInt(i));
+            }
+        } else if (BinaryFormat.isCollectionOf(genericType, Integer.class)) {
+            boolean first = true;
+            for (int id : (Collection<Integer>) t) {
+                if (!first) {
+                    out.writeByte(',');
+                }
+                first = false;
+                out.writeInt(id);
+            }
+        } else {
+            boolean first = true;
+            for (String s : (Collection<String>) t) {
+                if (!first) {
+                    out.writeByte(',');
+                }
+                first = false;
+                out.writeString(s);
+            }
+        }
+        out.writeByte(']');
+        out.flush();
+    }
+
+    /**
+     * Encodes JSON values to an output stream through a buffer reused by
+     * every response written on the same thread.
+     */
+    static class Encoder {
+        private static final ThreadLocal<byte[]> BUFFERS = ThreadLocal.withInitial(() -> new byte[8192]);
+        private static final byte[] HEX = {
+            '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'A', 'B', 'C', 'D', 'E', 'F'
+        };
+
+        private final OutputStream out;
+        private final byte[] buffer = BUFFERS.get();
+        private int position;
+
+        Encoder(OutputStream out) {
+            this.out = out;
+        }
+
+        void writeByte(int b) throws IOException {
+            if (position == buffer.length) {
+                flushBuffer();
+            }
+            buffer[position++] = (byte) b;
+        }
+
+        /**
+         * Write an integer in decimal.
+         *
+         * @param value the value
+         * @throws IOException if there is an error writing
+         */
+        void writeInt(int value) throws IOException {
+            if (buffer.length - position < 11) {
+                flushBuffer();
+            }
+            long v = value;
+            if (v < 0) {
+                buffer[position++] = '-';
+                v = -v;
+            }
+            int digits = 1;
+            for (long t = v; t >= 10; t /= 10) {
+                digits++;
+            }
+            for (int i = position + digits - 1; i >= position; i--) {
+                buffer[i] = (byte) ('0' + v % 10);
+                v /= 10;
+            }
+            position += digits;
+        }
+
+        /**
+         * Write a string, quoted and escaped, encoded as UTF-8.
+         *
+         * @param s the string
+         * @throws IOException if there is an error writing
+         */
+        void writeString(String s) throws IOException {
+            writeByte('"');
+            int length = s.length();
+            for (int i = 0; i < length; i++) {
+                if (buffer.length - position < 6) {
+                    flushBuffer();
+                }
+                char c = s.charAt(i);
+                if (c < 0x80) {
+                    if (c == '"' || c == '\\') {
+                        buffer[position++] = '\\';
+                        buffer[position++] = (byte) c;
+                    } else if (c < 0x20) {
+                        writeControl(c);
+                    } else {
+                        buffer[position++] = (byte) c;
+                    }
+                } else if (c < 0x800) {
+                    buffer[position++] = (byte) (0xC0 | c >> 6);
+                    buffer[position++] = (byte) (0x80 | c & 0x3F);
+                } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(s.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(c, s.charAt(++i));
+                    buffer[position++] = (byte) (0xF0 | codePoint >> 18);
+                    buffer[position++] = (byte) (0x80 | codePoint >> 12 & 0x3F);
+                    buffer[position++] = (byte) (0x80 | codePoint >> 6 & 0x3F);
+                    buffer[position++] = (byte) (0x80 | codePoint & 0x3F);
+                } else if (Character.isSurrogate(c)) {
+                    // Unpaired surrogates can't be encoded as UTF-8.
+                    writeEscape(c);
+                } else {
+                    buffer[position++] = (byte) (0xE0 | c >> 12);
+                    buffer[position++] = (byte) (0x80 | c >> 6 & 0x3F);
+                    buffer[position++] = (byte) (0x80 | c & 0x3F);
+                }
+            }
+            writeByte('"');
+        }
+
+        /**
+         * Write a control character escaped the same way as Jackson, with
+         * room in our buffer.
+         */
+        private void writeControl(char c) {
+            char escape = c == '\b' ? 'b' : c == '\f' ? 'f' : c == '\n' ? 'n' : c == '\r' ? 'r' : c == '\t' ? 't' : 0;
+            if (escape == 0) {
+                writeEscape(c);
+            } else {
+                buffer[position++] = '\\';
+                buffer[position++] = (byte) escape;
+            }
+        }
+
+        /**
+         * Write a character as a \\u escape, with room in our buffer.
+         */
+        private void writeEscape(char c) {
+            buffer[position++] = '\\';
+            buffer[position++] = 'u';
+            buffer[position++] = HEX[c >> 12 & 0xF];
+            buffer[position++] = HEX[c >> 8 & 0xF];
+            buffer[position++] = HEX[c >> 4 & 0xF];
+            buffer[position++] = HEX[c & 0xF];
+        }
+
+        private void flushBuffer() throws IOException {
+            out.write(buffer, 0, position);
+            position = 0;
+        }
+
+        /**
+         * Write any buffered data to the underlying stream and flush it.
+         *
+         * @throws IOException if there is an error writing
+         */
+        void flush() throws IOException {
+            flushBuffer();
+            out.flush();
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/*
+   Copyright 2016 Cyberian Tiger
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.cyberiantiger.example.stringsets.service;
+
+import java.util.concurrent.atomic.LongAdder;
+import org.cyberiantiger.example.stringsets.model.Data;
+
+/**
+ * A namespace of string sets, with it's own data store, response cache and
+ * request metrics, so the load of one tenant doesn't affect another's.
+ *
+ * @author antony
+ */
+public class Namespace {
+    private final String name;
+    private final Data data;
+    private final ResponseCache responseCache;
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder nanos = new LongAdder();
+
+    /**
+     * Create a new Namespace.
+     *
+     * @param name the name of the namespace
+     * @param data the data store of the namespace
+     * @param responseCache the cache of serialised string sets of the namespace
+     */
+    public Namespace(String name, Data data, ResponseCache responseCache) {
+        this.name = name;
+        this.data = data;
+        this.responseCache = responseCache;
+    }
+
+    /**
+     * Get the name of this namespace.
+     *
+     * @return the name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Get the data store of this namespace.
+     *
+     * @return the data store
+     */
+    public Data getData() {
+        return data;
+    }
+
+    /**
+     * Get the cache of serialised string sets of this namespace.
+     *
+     * @return the response cache
+     */
+    public ResponseCache getResponseCache() {
+        return responseCache;
+    }
+
+    /**
+     * Record a request to this namespace.
+     *
+     * @param status the status of the response
+     * @param nanos the time taken in nanoseconds
+     */
+    void record(int status, long nanos) {
+        requests.increment();
+        if (status >= 500) {
+            errors.increment();
+        }
+        this.nanos.add(nanos);
+    }
+
+    /**
+     * Get the statistics of this namespace.
+     *
+     * @return the statistics
+     */
+    public NamespaceStatistics getStatistics() {
+        return new NamespaceStatistics(name, data.getStatistics().getSets(), data.getBytes(), data.getMaxBytes(),
+                responseCache.getBytes(), requests.sum(), errors.sum(), nanos.sum());
+    }
+}
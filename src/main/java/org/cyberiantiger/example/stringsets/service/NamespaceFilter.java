@@ -0,0 +1,113 @@
+/*
+   Copyright 2016 Cyberian Tiger
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.cyberiantiger.example.stringsets.service;
+
+import java.io.IOException;
+import java.net.URI;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.PreMatching;
+import javax.ws.rs.core.UriBuilder;
+import javax.ws.rs.ext.Provider;
+import org.glassfish.jersey.server.ContainerResponse;
+import org.glassfish.jersey.server.monitoring.ApplicationEvent;
+import org.glassfish.jersey.server.monitoring.ApplicationEventListener;
+import org.glassfish.jersey.server.monitoring.RequestEvent;
+import org.glassfish.jersey.server.monitoring.RequestEventListener;
+
+/**
+ * Routes requests with a {@link Namespaces#HEADER} header to the path of
+ * their namespace, and records the metrics of requests to each namespace.
+ *
+ * Metrics are recorded when a request finishes rather than by a response
+ * filter, which is skipped when a resource throws an exception with no
+ * mapper, so those server errors are counted too.
+ *
+ * @author antony
+ */
+@Provider
+@PreMatching
+public class NamespaceFilter implements ContainerRequestFilter, ApplicationEventListener {
+
+    private static final String NAMESPACE = NamespaceFilter.class.getName() + ".namespace";
+    private static final String START = NamespaceFilter.class.getName() + ".start";
+
+    private final Namespaces namespaces;
+
+    /**
+     * Create a NamespaceFilter for the default namespaces.
+     */
+    public NamespaceFilter() {
+        this(Namespaces.instance);
+    }
+
+    /**
+     * Create a NamespaceFilter for specific namespaces.
+     * @param namespaces the namespaces
+     */
+    public NamespaceFilter(Namespaces namespaces) {
+        this.namespaces = namespaces;
+    }
+
+    @Override
+    public void filter(ContainerRequestContext request) throws IOException {
+        String path = request.getUriInfo().getPath(false);
+        if (path.startsWith("/")) {
+            path = path.substring(1);
+        }
+        String name = request.getHeaderString(Namespaces.HEADER);
+        if (name != null && !path.startsWith("ns/")) {
+            URI base = request.getUriInfo().getBaseUri();
+            URI uri = UriBuilder.fromUri(request.getUriInfo().getRequestUri())
+                    .replacePath(base.getRawPath())
+                    .path("ns").path(name).path(path)
+                    .build();
+            request.setRequestUri(base, uri);
+        } else if (path.startsWith("ns/")) {
+            int end = path.indexOf('/', 3);
+            name = end < 0 ? path.substring(3) : path.substring(3, end);
+        } else {
+            name = Namespaces.DEFAULT;
+        }
+        Namespace namespace = namespaces.get(name);
+        if (namespace != null) {
+            request.setProperty(NAMESPACE, namespace);
+            request.setProperty(START, System.nanoTime());
+        }
+    }
+
+    @Override
+    public void onEvent(ApplicationEvent event) {
+    }
+
+    @Override
+    public RequestEventListener onRequest(RequestEvent requestEvent) {
+        return NamespaceFilter::finished;
+    }
+
+    private static void finished(RequestEvent event) {
+        if (event.getType() != RequestEvent.Type.FINISHED) {
+            return;
+        }
+        Namespace namespace = (Namespace) event.getContainerRequest().getProperty(NAMESPACE);
+        if (namespace != null) {
+            ContainerResponse response = event.getContainerResponse();
+            // Unmapped exceptions are written by the container as a 500.
+            int status = response == null || !event.isSuccess() ? 500 : response.getStatus();
+            namespace.record(status, System.nanoTime() - (Long) event.getContainerRequest().getProperty(START));
+        }
+    }
+}
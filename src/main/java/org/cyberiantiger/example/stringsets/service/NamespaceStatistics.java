@@ -0,0 +1,133 @@
+/*
+   Copyright 2016 Cyberian Tiger
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.cyberiantiger.example.stringsets.service;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Metrics of a single {@link Namespace}.
+ *
+ * @author antony
+ */
+public class NamespaceStatistics {
+    private final String name;
+    private final long sets;
+    private final long bytes;
+    private final long maxBytes;
+    private final long responseCacheBytes;
+    private final long requests;
+    private final long errors;
+    private final long nanos;
+
+    /**
+     * Create a new NamespaceStatistics.
+     *
+     * @param name The name of the namespace
+     * @param sets The number of string sets
+     * @param bytes The approximate heap used by the string sets
+     * @param maxBytes The memory limit, or 0 for none
+     * @param responseCacheBytes The size of the response cache
+     * @param requests The number of requests
+     * @param errors The number of requests which failed with a server error
+     * @param nanos The total time taken by requests in nanoseconds
+     */
+    @JsonCreator
+    public NamespaceStatistics(@JsonProperty("name") String name, @JsonProperty("sets") long sets, @JsonProperty("bytes") long bytes, @JsonProperty("maxBytes") long maxBytes, @JsonProperty("responseCacheBytes") long responseCacheBytes, @JsonProperty("requests") long requests, @JsonProperty("errors") long errors, @JsonProperty("nanos") long nanos) {
+        this.name = name;
+        this.sets = sets;
+        this.bytes = bytes;
+        this.maxBytes = maxBytes;
+        this.responseCacheBytes = responseCacheBytes;
+        this.requests = requests;
+        this.errors = errors;
+        this.nanos = nanos;
+    }
+
+    /**
+     * Get the name of the namespace.
+     *
+     * @return the name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Get the number of string sets in the namespace.
+     *
+     * @return the number of string sets
+     */
+    public long getSets() {
+        return sets;
+    }
+
+    /**
+     * Get the approximate heap used by the string sets of the namespace, 0
+     * on a coordinator.
+     *
+     * @return the size in bytes
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Get the memory limit of the namespace.
+     *
+     * @return the limit in bytes, or 0 for no limit
+     */
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Get the size of the namespace's cache of serialised string sets.
+     *
+     * @return the size in bytes
+     */
+    public long getResponseCacheBytes() {
+        return responseCacheBytes;
+    }
+
+    /**
+     * Get the number of requests made to the namespace.
+     *
+     * @return the number of requests
+     */
+    public long getRequests() {
+        return requests;
+    }
+
+    /**
+     * Get the number of requests to the namespace which failed with a server
+     * error, including exceeding it's memory limit.
+     *
+     * @return the number of failed requests
+     */
+    public long getErrors() {
+        return errors;
+    }
+
+    /**
+     * Get the total time taken by requests to the namespace.
+     *
+     * @return the time in nanoseconds
+     */
+    public long getNanos() {
+        return nanos;
+    }
+}
@@ -0,0 +1,139 @@
+/*
+   Copyright 2016 Cyberian Tiger
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.cyberiantiger.example.stringsets.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import org.cyberiantiger.example.stringsets.model.Data;
+
+/**
+ * The namespaces of string sets.
+ *
+ * Requests are routed to a namespace by the path prefix
+ * <code>ns/{namespace}/</code>, or the {@link #HEADER} header, see
+ * {@link NamespaceFilter}, other requests go to the default namespace.
+ *
+ * @author antony
+ */
+public class Namespaces {
+
+    /**
+     * System property used to configure the names of the namespaces of
+     * {@link #instance}, a comma separated list.
+     */
+    public static final String NAMESPACES_PROPERTY = "stringsets.namespaces";
+
+    /**
+     * System property used to configure the memory limit of each namespace
+     * of {@link #instance}, which may be overridden for a single namespace
+     * by <code>stringsets.namespace.{name}.maxBytes</code>.
+     */
+    public static final String MAX_BYTES_PROPERTY = "stringsets.namespaceMaxBytes";
+
+    /**
+     * Header used to select a namespace.
+     */
+    public static final String HEADER = "X-StringSets-Namespace";
+
+    /**
+     * Name of the default namespace.
+     */
+    public static final String DEFAULT = "default";
+
+    private static final Pattern NAME = Pattern.compile("[A-Za-z0-9_-]+");
+
+    public static final Namespaces instance = createInstance();
+
+    private final Map<String, Namespace> namespaces;
+
+    /**
+     * Create a set of namespaces.
+     *
+     * @param namespaces the namespaces, which must include {@link #DEFAULT}
+     * @throws IllegalArgumentException if there is no default namespace, or
+     *         any name is invalid
+     */
+    public Namespaces(List<Namespace> namespaces) {
+        Map<String, Namespace> map = new LinkedHashMap<>();
+        for (Namespace namespace : namespaces) {
+            if (!NAME.matcher(namespace.getName()).matches()) {
+                throw new IllegalArgumentException("Invalid namespace: " + namespace.getName());
+            }
+            map.put(namespace.getName(), namespace);
+        }
+        if (!map.containsKey(DEFAULT)) {
+            throw new IllegalArgumentException("No default namespace");
+        }
+        this.namespaces = Collections.unmodifiableMap(map);
+    }
+
+    /**
+     * Create our singleton instance as configured by system properties.
+     *
+     * @return the namespaces
+     */
+    private static Namespaces createInstance() {
+        List<Namespace> result = new ArrayList<>();
+        Data.instance.setMaxBytes(getMaxBytes(DEFAULT));
+        result.add(new Namespace(DEFAULT, Data.instance, ResponseCache.instance));
+        long cacheBytes = Long.getLong(ResponseCache.MAX_BYTES_PROPERTY, 64L << 20);
+        for (String name : System.getProperty(NAMESPACES_PROPERTY, "").split("\\s*,\\s*")) {
+            if (name.isEmpty() || name.equals(DEFAULT)) {
+                continue;
+            }
+            Data data = Data.createInstance(name);
+            data.setMaxBytes(getMaxBytes(name));
+            result.add(new Namespace(name, data, new ResponseCache(cacheBytes)));
+        }
+        return new Namespaces(result);
+    }
+
+    private static long getMaxBytes(String name) {
+        return Long.getLong("stringsets.namespace." + name + ".maxBytes", Long.getLong(MAX_BYTES_PROPERTY, 0));
+    }
+
+    /**
+     * Get a namespace by name.
+     *
+     * @param name the name
+     * @return the namespace, or null if it does not exist
+     */
+    public Namespace get(String name) {
+        return namespaces.get(name);
+    }
+
+    /**
+     * Get the default namespace.
+     *
+     * @return the default namespace
+     */
+    public Namespace getDefault() {
+        return namespaces.get(DEFAULT);
+    }
+
+    /**
+     * Get every namespace.
+     *
+     * @return the namespaces, the default first
+     */
+    public List<Namespace> getNamespaces() {
+        return new ArrayList<>(namespaces.values());
+    }
+}
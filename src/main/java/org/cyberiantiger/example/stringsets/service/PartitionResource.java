@@ -0,0 +1,269 @@
+/*
+   Copyright 2016 Cyberian Tiger
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.cyberiantiger.example.stringsets.service;
+
+import java.util.List;
+import java.util.Map;
+import javax.ws.rs.BadRequestException;
+import javax.ws.rs.ClientErrorException;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.DELETE;
+import javax.ws.rs.ForbiddenException;
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.PUT;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.ServerErrorException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import org.cyberiantiger.example.stringsets.model.CompactStringSet;
+import org.cyberiantiger.example.stringsets.model.Data;
+import org.cyberiantiger.example.stringsets.model.Fingerprint;
+import org.cyberiantiger.example.stringsets.model.MembershipQuery;
+import org.cyberiantiger.example.stringsets.model.frequency.FrequencyEstimate;
+import org.cyberiantiger.example.stringsets.model.longestchain.ChainSummary;
+import org.cyberiantiger.example.stringsets.model.similarity.Similarity;
+
+/**
+ * JAX-RS endpoint used by a coordinator to manage the partition of string
+ * sets held by this node.
+ *
+ * @author antony
+ */
+@Path("partition")
+@Produces(MediaType.APPLICATION_JSON)
+public class PartitionResource {
+
+    /**
+     * System property used to enable the endpoints which change the
+     * partition, which are only needed by a node of a cluster.
+     */
+    public static final String NODE_PROPERTY = "stringsets.node";
+
+    private final Data data;
+
+    /**
+     * Whether the endpoints which change the partition are enabled.
+     */
+    private final boolean node;
+
+    /**
+     * Create a PartitionResource for the default data store.
+     */
+    public PartitionResource() {
+        this(Data.instance);
+    }
+
+    /**
+     * Create a PartitionResource for a specific data store, which may be
+     * changed if {@link #NODE_PROPERTY} is set.
+     * @param data the data store
+     */
+    public PartitionResource(Data data) {
+        this(data, Boolean.getBoolean(NODE_PROPERTY));
+    }
+
+    /**
+     * Create a PartitionResource for a specific data store.
+     * @param data the data store
+     * @param node whether the endpoints which change the partition are enabled
+     */
+    public PartitionResource(Data data, boolean node) {
+        this.data = data;
+        this.node = node;
+    }
+
+    /**
+     * Check that the endpoints which change the partition are enabled.
+     *
+     * @throws ForbiddenException if they are not
+     */
+    private void checkNode() {
+        if (!node) {
+            throw new ForbiddenException("Not a node, set " + NODE_PROPERTY);
+        }
+    }
+
+    /**
+     * Get our data store.
+     * @return our data store.
+     */
+    protected Data getData() {
+        return data;
+    }
+
+    /**
+     * Store a string set under an id allocated by the coordinator.
+     *
+     * @param id the id of the string set
+     * @param set the strings to store
+     * @throws BadRequestException If the string set is invalid
+     * @throws ClientErrorException conflict if the id is in use
+     * @throws ForbiddenException if this is not a node
+     */
+    @PUT
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Path("{id}")
+    public void store(@PathParam("id") int id, CompactStringSet set) {
+        checkNode();
+        boolean stored;
+        try {
+            stored = getData().store(id, set);
+        } catch (IllegalArgumentException ex) {
+            throw new BadRequestException(ex.getMessage());
+        }
+        if (!stored) {
+            throw new ClientErrorException("Id already in use: " + id, Response.Status.CONFLICT);
+        }
+    }
+
+    /**
+     * Delete every string set in this partition.
+     *
+     * @throws ForbiddenException if this is not a node
+     */
+    @DELETE
+    public void clear() {
+        checkNode();
+        getData().clear();
+    }
+
+    /**
+     * Get the largest id in this partition, so a coordinator can continue
+     * allocating ids after it.
+     *
+     * @return the id, or 0 if there are no string sets
+     */
+    @GET
+    @Path("max_id")
+    public int maxId() {
+        return getData().getMaxId();
+    }
+
+    /**
+     * Get the number of string sets each string is in.
+     *
+     * @return a map of string to the number of string sets containing it
+     * @throws ServerErrorException not implemented if only approximate frequencies are kept
+     */
+    @GET
+    @Path("frequencies")
+    public Map<String, Integer> frequencies() {
+        try {
+            return getData().getFrequencies();
+        } catch (UnsupportedOperationException ex) {
+            throw new ServerErrorException(ex.getMessage(), Response.Status.NOT_IMPLEMENTED);
+        }
+    }
+
+    /**
+     * Get the number of string sets each of some strings is in, estimated
+     * if only approximate frequencies are kept.
+     *
+     * @param strings the strings
+     * @return a map of each string to the number of string sets containing it
+     */
+    @POST
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Path("frequencies")
+    public Map<String, Integer> frequencies(List<String> strings) {
+        return getData().estimateFrequencies(strings);
+    }
+
+    /**
+     * Get the most frequent strings in this partition.
+     *
+     * @param k the maximum number of strings
+     * @return the most frequent strings, most frequent first
+     * @throws BadRequestException if k is less than one
+     */
+    @GET
+    @Path("top_frequencies")
+    public List<FrequencyEstimate> topFrequencies(@QueryParam("k") int k) {
+        try {
+            return getData().getTopFrequencies(k);
+        } catch (IllegalArgumentException ex) {
+            throw new BadRequestException(ex.getMessage());
+        }
+    }
+
+    /**
+     * Get the longest chain summary of every string set in this partition.
+     *
+     * @return the summary of each string set by id
+     */
+    @GET
+    @Path("chain_summaries")
+    public Map<Integer, ChainSummary> chainSummaries() {
+        return getData().getChainSummaries();
+    }
+
+    /**
+     * Find string sets in this partition similar to a MinHash signature.
+     *
+     * @param threshold the minimum estimated Jaccard similarity
+     * @param signature the MinHash signature
+     * @return the similar string sets, in no particular order
+     */
+    @POST
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Path("similar")
+    public List<Similarity> similar(@QueryParam("threshold") double threshold, int[] signature) {
+        try {
+            return getData().findSimilar(signature, threshold);
+        } catch (IllegalArgumentException ex) {
+            throw new BadRequestException(ex.getMessage());
+        }
+    }
+
+    /**
+     * Find string sets in this partition with the same content as a fingerprint.
+     *
+     * @param fingerprint the fingerprint, as 32 hexadecimal digits
+     * @return the ids of string sets with the same content
+     * @throws BadRequestException if the fingerprint is invalid
+     */
+    @GET
+    @Path("duplicates/{fingerprint}")
+    public List<Integer> duplicates(@PathParam("fingerprint") String fingerprint) {
+        try {
+            return getData().findDuplicates(Fingerprint.fromString(fingerprint));
+        } catch (IllegalArgumentException ex) {
+            throw new BadRequestException(ex.getMessage());
+        }
+    }
+
+    /**
+     * Find which of some strings are in which string sets of this partition.
+     *
+     * @param query the strings, and optionally the ids of the string sets to look in
+     * @return map of id to the strings in that string set
+     * @throws BadRequestException if the strings are missing or contain null
+     */
+    @POST
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Path("members")
+    public Map<Integer, List<String>> members(MembershipQuery query) {
+        try {
+            return getData().findMembers(query.getStrings(), query.getIds());
+        } catch (IllegalArgumentException ex) {
+            throw new BadRequestException(ex.getMessage());
+        }
+    }
+}
@@ -0,0 +1,42 @@
+/*
+   Copyright 2016 Cyberian Tiger
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.cyberiantiger.example.stringsets.service;
+
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.ExceptionMapper;
+import javax.ws.rs.ext.Provider;
+import org.cyberiantiger.example.stringsets.model.QuotaExceededException;
+
+/**
+ * Responds 507 Insufficient Storage when a namespace is over it's memory
+ * limit.
+ *
+ * @author antony
+ */
+@Provider
+public class QuotaExceededExceptionMapper implements ExceptionMapper<QuotaExceededException> {
+
+    /**
+     * HTTP status for Insufficient Storage, which is not in {@link Response.Status}.
+     */
+    public static final int INSUFFICIENT_STORAGE = 507;
+
+    @Override
+    public Response toResponse(QuotaExceededException exception) {
+        return Response.status(INSUFFICIENT_STORAGE).type(MediaType.TEXT_PLAIN).entity(exception.getMessage()).build();
+    }
+}
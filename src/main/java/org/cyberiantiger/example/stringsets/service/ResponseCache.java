@@ -0,0 +1,247 @@
+/*
+   Copyright 2016 Cyberian Tiger
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.cyberiantiger.example.stringsets.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import javax.ws.rs.core.MediaType;
+import org.cyberiantiger.example.stringsets.model.StringSet;
+
+/**
+ * A least recently used cache of the serialised form of StringSets.
+ *
+ * StringSets are immutable once created, so their serialised form can be
+ * kept and written directly to later responses. Entries are keyed by the
+ * StringSet itself rather than it's id, so a deleted StringSet can never be
+ * served from the cache, entries for deleted StringSets are removed on
+ * delete, or eventually evicted.
+ *
+ * @author antony
+ */
+public class ResponseCache {
+
+    /**
+     * System property used to configure the maximum size in bytes of {@link #instance}.
+     */
+    public static final String MAX_BYTES_PROPERTY = "stringsets.responseCacheBytes";
+
+    public static final ResponseCache instance = new ResponseCache(Long.getLong(MAX_BYTES_PROPERTY, 64L << 20));
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final int JSON = 0;
+    private static final int BINARY = 1;
+
+    /**
+     * The maximum total size of cached entries.
+     */
+    private final long maxBytes;
+
+    /**
+     * The cached entries, each recording when it was last used.
+     */
+    private final Map<StringSet, Entry> cache = new ConcurrentHashMap<>();
+
+    /**
+     * The total size of cached entries.
+     */
+    private final AtomicLong bytes = new AtomicLong();
+
+    /**
+     * Entries to evict in least recently used order, with the time the
+     * order was taken, guarded by itself.
+     */
+    private final Deque<Candidate> victims = new ArrayDeque<>();
+    private long victimsTime;
+
+    /**
+     * Create a ResponseCache.
+     *
+     * @param maxBytes the maximum total size of cached entries
+     */
+    public ResponseCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Check if a media type is supported by the cache.
+     *
+     * @param mediaType the media type
+     * @return true if StringSets can be serialised in the media type
+     */
+    static boolean isSupported(MediaType mediaType) {
+        return MediaType.APPLICATION_JSON_TYPE.isCompatible(mediaType) || BinaryFormat.MEDIA_TYPE_TYPE.isCompatible(mediaType);
+    }
+
+    /**
+     * Get the serialised form of a StringSet, serialising and caching it if
+     * it is not already cached.
+     *
+     * A hit only reads the map and stamps the entry, it takes no lock.
+     *
+     * @param set the StringSet
+     * @param mediaType the media type, which must be supported
+     * @return the serialised StringSet, which must not be modified
+     */
+    public byte[] get(StringSet set, MediaType mediaType) {
+        int format = BinaryFormat.MEDIA_TYPE_TYPE.isCompatible(mediaType) ? BINARY : JSON;
+        Entry entry = cache.get(set);
+        if (entry != null) {
+            byte[] result = entry.forms.get(format);
+            if (result != null) {
+                entry.used = System.nanoTime();
+                return result;
+            }
+        }
+        byte[] result = serialise(set, format);
+        if (result.length <= maxBytes / 8) {
+            put(set, format, result);
+        }
+        return result;
+    }
+
+    /**
+     * Remove the cached forms of a StringSet.
+     *
+     * @param set the StringSet
+     */
+    public void remove(StringSet set) {
+        Entry entry = cache.remove(set);
+        if (entry != null) {
+            release(entry);
+        }
+    }
+
+    /**
+     * Get the total size of cached entries.
+     *
+     * @return the size in bytes
+     */
+    public long getBytes() {
+        return bytes.get();
+    }
+
+    private void put(StringSet set, int format, byte[] value) {
+        Entry entry = cache.computeIfAbsent(set, Entry::new);
+        if (!entry.forms.compareAndSet(format, null, value)) {
+            return;
+        }
+        entry.used = System.nanoTime();
+        bytes.addAndGet(value.length);
+        if (cache.get(set) != entry) {
+            // Removed while being added to.
+            release(entry);
+            return;
+        }
+        if (bytes.get() > maxBytes) {
+            evict();
+        }
+    }
+
+    /**
+     * Evict least recently used entries until the cache fits.
+     *
+     * The order is taken once and reused by later evictions, skipping
+     * entries used or removed since it was taken, anything newer is more
+     * recently used than everything left in it.
+     */
+    private void evict() {
+        synchronized (victims) {
+            while (bytes.get() > maxBytes) {
+                if (victims.isEmpty()) {
+                    victimsTime = System.nanoTime();
+                    List<Candidate> candidates = new ArrayList<>(cache.size());
+                    for (Entry entry : cache.values()) {
+                        candidates.add(new Candidate(entry));
+                    }
+                    if (candidates.isEmpty()) {
+                        return;
+                    }
+                    candidates.sort((a, b) -> Long.compare(a.used, b.used));
+                    victims.addAll(candidates);
+                }
+                Candidate victim = victims.poll();
+                if (victim.entry.used == victim.used && victim.used <= victimsTime
+                        && cache.remove(victim.entry.set, victim.entry)) {
+                    release(victim.entry);
+                }
+            }
+        }
+    }
+
+    private void release(Entry entry) {
+        for (int i = 0; i < entry.forms.length(); i++) {
+            byte[] b = entry.forms.getAndSet(i, null);
+            if (b != null) {
+                bytes.addAndGet(-b.length);
+            }
+        }
+    }
+
+    /**
+     * The cached forms of a StringSet, indexed by format.
+     */
+    private static final class Entry {
+        private final StringSet set;
+        private final AtomicReferenceArray<byte[]> forms = new AtomicReferenceArray<>(2);
+        private volatile long used;
+
+        private Entry(StringSet set) {
+            this.set = set;
+        }
+    }
+
+    /**
+     * An entry and when it was last used, when eviction order was taken.
+     */
+    private static final class Candidate {
+        private final Entry entry;
+        private final long used;
+
+        private Candidate(Entry entry) {
+            this.entry = entry;
+            this.used = entry.used;
+        }
+    }
+
+    private static byte[] serialise(StringSet set, int format) {
+        try {
+            if (format == JSON) {
+                return MAPPER.writeValueAsBytes(set.getSet());
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            BinaryFormat.Encoder encoder = new BinaryFormat.Encoder(out);
+            encoder.writeStrings(set.getSet());
+            encoder.flush();
+            return out.toByteArray();
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException(ex);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+/*
+   Copyright 2016 Cyberian Tiger
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.cyberiantiger.example.stringsets.service;
+
+import javax.ws.rs.ext.Provider;
+import org.glassfish.jersey.server.spi.Container;
+import org.glassfish.jersey.server.spi.ContainerLifecycleListener;
+
+/**
+ * Closes the data store of every namespace when the application is shut
+ * down, releasing the connections of a coordinator to it's nodes.
+ *
+ * @author antony
+ */
+@Provider
+public class ShutdownListener implements ContainerLifecycleListener {
+
+    private final Namespaces namespaces;
+
+    /**
+     * Create a ShutdownListener for the default namespaces.
+     */
+    public ShutdownListener() {
+        this(Namespaces.instance);
+    }
+
+    /**
+     * Create a ShutdownListener for specific namespaces.
+     * @param namespaces the namespaces
+     */
+    public ShutdownListener(Namespaces namespaces) {
+        this.namespaces = namespaces;
+    }
+
+    @Override
+    public void onStartup(Container container) {
+    }
+
+    @Override
+    public void onReload(Container container) {
+    }
+
+    @Override
+    public void onShutdown(Container container) {
+        for (Namespace namespace : namespaces.getNamespaces()) {
+            namespace.getData().close();
+        }
+    }
+}
@@ -15,23 +15,44 @@
 */
 package org.cyberiantiger.example.stringsets.service;
 
-import java.util.LinkedHashSet;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.SortedMap;
 import javax.ws.rs.BadRequestException;
 import javax.ws.rs.Consumes;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
 import javax.ws.rs.NotFoundException;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.ServerErrorException;
+import javax.ws.rs.ServiceUnavailableException;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import org.cyberiantiger.example.stringsets.model.CompactStringSet;
+import org.cyberiantiger.example.stringsets.model.CorpusStatistics;
 import org.cyberiantiger.example.stringsets.model.Data;
+import org.cyberiantiger.example.stringsets.model.MembershipQuery;
+import org.cyberiantiger.example.stringsets.model.SetOperation;
 import org.cyberiantiger.example.stringsets.model.SetStatistics;
 import org.cyberiantiger.example.stringsets.model.StringSet;
-import org.cyberiantiger.example.stringsets.model.longestchain.LongestChainSolver;
+import org.cyberiantiger.example.stringsets.model.StringSetBuilder;
+import org.cyberiantiger.example.stringsets.model.changes.ChangeBatch;
+import org.cyberiantiger.example.stringsets.model.changes.ChangeLog;
+import org.cyberiantiger.example.stringsets.model.frequency.FrequencyEstimate;
+import org.cyberiantiger.example.stringsets.model.longestchain.ChainExplanation;
+import org.cyberiantiger.example.stringsets.model.similarity.Similarity;
 
 /**
  * JAX-RS endpoint for StringSet api.
@@ -41,12 +62,157 @@ import org.cyberiantiger.example.stringsets.model.longestchain.LongestChainSolve
 @Produces(MediaType.APPLICATION_JSON)
 public class StringSetResource {
 
+    /**
+     * Media type of server sent events.
+     */
+    public static final String SERVER_SENT_EVENTS = "text/event-stream";
+
+    /**
+     * Maximum time a request for changes waits for a change.
+     */
+    private static final long MAX_WAIT_MILLIS = 60000;
+
+    /**
+     * Time between comments sent to keep a change stream alive when there are
+     * no changes.
+     */
+    private static final long HEARTBEAT_MILLIS = 15000;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final Data data;
+
+    private final ResponseCache responseCache;
+
+    /**
+     * The namespaces, or null if this resource is for a single namespace.
+     */
+    private final Namespaces namespaces;
+
+    /**
+     * Create a StringSetResource for the default data store.
+     */
+    public StringSetResource() {
+        this(Data.instance);
+    }
+
+    /**
+     * Create a StringSetResource for a specific data store.
+     * @param data the data store
+     */
+    public StringSetResource(Data data) {
+        this(data, ResponseCache.instance, Namespaces.instance);
+    }
+
+    /**
+     * Create a StringSetResource for a specific data store, routing requests
+     * with a namespace prefix to specific namespaces.
+     * @param data the data store
+     * @param responseCache the cache of serialised string sets
+     * @param namespaces the namespaces, or null if this resource is for a single namespace
+     */
+    public StringSetResource(Data data, ResponseCache responseCache, Namespaces namespaces) {
+        this.data = data;
+        this.responseCache = responseCache;
+        this.namespaces = namespaces;
+    }
+
     /**
      * Get our data store.
      * @return our data store.
      */
     protected Data getData() {
-        return Data.instance;
+        return data;
+    }
+
+    /**
+     * Get our cache of serialised string sets.
+     * @return our response cache.
+     */
+    protected ResponseCache getResponseCache() {
+        return responseCache;
+    }
+
+    /**
+     * Get the resource for a namespace, which has every endpoint of the
+     * default namespace.
+     * 
+     * @param name the name of the namespace
+     * @return the resource for the namespace
+     * @throws NotFoundException if the namespace does not exist
+     */
+    @Path("ns/{namespace}")
+    public StringSetResource namespace(@PathParam("namespace") String name) {
+        Namespace namespace = namespaces != null ? namespaces.get(name) : null;
+        if (namespace == null) {
+            throw new NotFoundException("Unknown namespace: " + name);
+        }
+        return new StringSetResource(namespace.getData(), namespace.getResponseCache(), null);
+    }
+
+    /**
+     * Get the resource used by a coordinator to manage the partition of this
+     * namespace held by this node.
+     * 
+     * @return the partition resource
+     */
+    @Path("partition")
+    public PartitionResource partition() {
+        return new PartitionResource(getData());
+    }
+
+    /**
+     * Get the statistics of every namespace.
+     * 
+     * @return the number of string sets, memory use and limit, and request
+     *         metrics of each namespace, the default first
+     * @throws NotFoundException if this is the resource of a single namespace
+     */
+    @Cost(CostClass.CHEAP)
+    @GET
+    @Path("namespaces")
+    public List<NamespaceStatistics> namespaces() {
+        if (namespaces == null) {
+            throw new NotFoundException();
+        }
+        List<NamespaceStatistics> result = new ArrayList<>();
+        for (Namespace namespace : namespaces.getNamespaces()) {
+            result.add(namespace.getStatistics());
+        }
+        return result;
+    }
+
+    /**
+     * Get the metrics of admission control of each cost class.
+     *
+     * @return the limit, requests in flight and waiting, and counts of
+     *         admitted and rejected requests of cheap, scan and expensive
+     *         requests
+     */
+    @Cost(CostClass.CHEAP)
+    @GET
+    @Path("admission")
+    public List<AdmissionStatistics> admission() {
+        return AdmissionController.instance.getStatistics();
+    }
+
+    /**
+     * Convert a list of uploaded strings to an ordered set.
+     *
+     * @param strings the uploaded strings
+     * @return an ordered set of the strings
+     * @throws BadRequestException If the strings contain duplicates or empty strings
+     */
+    static Set<String> toSet(List<String> strings) {
+        StringSetBuilder set = new StringSetBuilder(strings.size());
+        try {
+            for (String s : strings) {
+                set.add(s);
+            }
+        } catch (IllegalArgumentException ex) {
+            throw new BadRequestException(ex.getMessage());
+        }
+        return set.build();
     }
 
     /**
@@ -54,8 +220,9 @@ public class StringSetResource {
      * 
      * @return a map of all the data in the system with ids as keys, and string sets as values
      */
+    @Cost(CostClass.SCAN)
     @GET
-    @Produces(MediaType.APPLICATION_JSON)
+    @Produces({MediaType.APPLICATION_JSON, BinaryFormat.MEDIA_TYPE})
     public Map<Integer,Set<String>> list() {
         return getData().getMap();
     }
@@ -63,19 +230,100 @@ public class StringSetResource {
     /**
      * Upload a string set.
      * 
-     * @param strings the strings to upload
+     * The strings are checked and built into a compact set as they are
+     * parsed, see {@link StringSetBuilder}, so the set is created without
+     * another pass over it's strings.
+     * 
+     * @param set the strings to upload
      * @return the id of the newly created string set.
-     * @throws BadRequestException If an uploaded string set contains duplicate strings
+     * @throws BadRequestException If an uploaded string set is empty
      */
+    @Cost(CostClass.CHEAP)
     @POST
     @Consumes(MediaType.APPLICATION_JSON)
     @Path("upload")
+    public int upload(CompactStringSet set) {
+        return create(set);
+    }
+
+    /**
+     * Upload a string set from a list of strings.
+     * 
+     * @param strings the strings to upload
+     * @return the id of the newly created string set.
+     * @throws BadRequestException If an uploaded string set is empty, or
+     *         contains duplicate or empty strings
+     */
     public int upload(List<String> strings) {
-        Set<String> set = new LinkedHashSet<>();
-        for (String s : strings) {
-            if (set.add(s)) continue;
-            throw new BadRequestException("Duplicated string: " + s);
+        return create(toSet(strings));
+    }
+
+    /**
+     * Upload a string set in {@link BinaryFormat}.
+     * 
+     * @param set the strings to upload
+     * @return the id of the newly created string set.
+     * @throws BadRequestException If an uploaded string set contains duplicate strings
+     */
+    @Cost(CostClass.CHEAP)
+    @POST
+    @Consumes(BinaryFormat.MEDIA_TYPE)
+    @Path("upload")
+    public int uploadBinary(Set<String> set) {
+        return create(set);
+    }
+
+    /**
+     * Upload several string sets.
+     * 
+     * @param sets the string sets to upload
+     * @return the ids of the newly created string sets, in upload order.
+     * @throws BadRequestException If any uploaded string set is invalid, in
+     *         which case no string sets are created.
+     */
+    @Cost(CostClass.SCAN)
+    @POST
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Path("bulk_upload")
+    public List<Integer> bulkUpload(List<CompactStringSet> sets) {
+        return bulkUploadBinary(new ArrayList<>(sets));
+    }
+
+    /**
+     * Upload several string sets in {@link BinaryFormat}.
+     * 
+     * @param sets the string sets to upload
+     * @return the ids of the newly created string sets, in upload order.
+     * @throws BadRequestException If any uploaded string set is invalid, in
+     *         which case no string sets are created.
+     */
+    @Cost(CostClass.SCAN)
+    @POST
+    @Consumes(BinaryFormat.MEDIA_TYPE)
+    @Path("bulk_upload")
+    public List<Integer> bulkUploadBinary(List<Set<String>> sets) {
+        for (Set<String> set : sets) {
+            try {
+                Data.validate(set);
+            } catch (IllegalArgumentException ex) {
+                throw new BadRequestException(ex.getMessage());
+            }
         }
+        List<Integer> result = new ArrayList<>(sets.size());
+        for (Set<String> set : sets) {
+            result.add(create(set));
+        }
+        return result;
+    }
+
+    /**
+     * Create a string set.
+     * 
+     * @param set the strings
+     * @return the id of the newly created string set
+     * @throws BadRequestException If the string set is invalid
+     */
+    private int create(Set<String> set) {
         try {
             return getData().create(set);
         } catch (IllegalArgumentException ex) {
@@ -89,8 +337,10 @@ public class StringSetResource {
      * @param search the string to search for in string sets
      * @return a list of string set ids which contain the search string
      */
+    @Cost(CostClass.SCAN)
     @POST
     @Consumes(MediaType.APPLICATION_JSON)
+    @Produces({MediaType.APPLICATION_JSON, BinaryFormat.MEDIA_TYPE})
     @Path("search")
     public List<Integer> search(String search) {
         return getData().search(search);
@@ -101,6 +351,7 @@ public class StringSetResource {
      * 
      * @return an alphabetically sorted list of the most common strings in string sets
      */
+    @Cost(CostClass.SCAN)
     @GET
     @Path("most_common")
     public List<String> mostCommon() {
@@ -112,6 +363,7 @@ public class StringSetResource {
      * 
      * @return an alphabetically sorted list of the longest strings in string sets
      */
+    @Cost(CostClass.SCAN)
     @GET
     @Path("longest")
     public List<String> longest() {
@@ -123,12 +375,126 @@ public class StringSetResource {
      * 
      * @param count the numer of string sets the string should be in
      * @return an alphabetically sorted list of strings exactly in count string sets
+     * @throws ServerErrorException not implemented if only approximate frequencies are kept
      */
+    @Cost(CostClass.SCAN)
     @POST
     @Consumes(MediaType.APPLICATION_JSON)
     @Path("exactly_in")
     public List<String> exactlyIn(int count) {
-        return getData().getExactlyIn(count);
+        try {
+            return getData().getExactlyIn(count);
+        } catch (UnsupportedOperationException ex) {
+            throw new ServerErrorException(ex.getMessage(), Response.Status.NOT_IMPLEMENTED);
+        }
+    }
+
+    /**
+     * Get strings in between min and max string sets, with the number of
+     * string sets containing each, a page at a time.
+     * 
+     * @param min the minimum number of string sets, default 1
+     * @param max the maximum number of string sets, default unlimited
+     * @param offset the number of strings to skip, default 0
+     * @param limit the maximum number of strings, default 1000
+     * @return the strings with their counts, in order of count then alphabetically
+     * @throws BadRequestException if min is less than one or greater than
+     *         max, offset is negative or limit less than one
+     * @throws ServerErrorException not implemented if only approximate frequencies are kept
+     */
+    @Cost(CostClass.SCAN)
+    @GET
+    @Path("exactly_in_range")
+    public List<FrequencyEstimate> exactlyInRange(@QueryParam("min") @DefaultValue("1") int min,
+            @QueryParam("max") @DefaultValue("2147483647") int max,
+            @QueryParam("offset") int offset,
+            @QueryParam("limit") @DefaultValue("1000") int limit) {
+        try {
+            return getData().getExactlyIn(min, max, offset, limit);
+        } catch (IllegalArgumentException ex) {
+            throw new BadRequestException(ex.getMessage());
+        } catch (UnsupportedOperationException ex) {
+            throw new ServerErrorException(ex.getMessage(), Response.Status.NOT_IMPLEMENTED);
+        }
+    }
+
+    /**
+     * Get the number of strings in exactly each number of string sets, the
+     * same as the size of exactly_in for every count at once.
+     * 
+     * @return a map of number of string sets to number of strings, omitting zeros
+     * @throws ServerErrorException not implemented if only approximate frequencies are kept
+     */
+    @Cost(CostClass.SCAN)
+    @GET
+    @Path("exactly_in_histogram")
+    public SortedMap<Integer, Integer> exactlyInHistogram() {
+        try {
+            return getData().getCountHistogram();
+        } catch (UnsupportedOperationException ex) {
+            throw new ServerErrorException(ex.getMessage(), Response.Status.NOT_IMPLEMENTED);
+        }
+    }
+
+    /**
+     * Get the k most common strings in string sets, with the number of
+     * string sets containing each, estimated if only approximate frequencies
+     * are kept.
+     * 
+     * @param k the maximum number of strings, default 10
+     * @return the most common strings, most common first then alphabetically
+     * @throws BadRequestException if k is less than one
+     */
+    @Cost(CostClass.SCAN)
+    @GET
+    @Path("top_strings")
+    public List<FrequencyEstimate> topStrings(@QueryParam("k") @DefaultValue("10") int k) {
+        try {
+            return getData().getTopFrequencies(k);
+        } catch (IllegalArgumentException ex) {
+            throw new BadRequestException(ex.getMessage());
+        }
+    }
+
+    /**
+     * Get the number of string sets containing a string, if only approximate
+     * frequencies are kept an estimate which is never too low.
+     * 
+     * @param string the string
+     * @return the number of string sets containing the string
+     */
+    @Cost(CostClass.CHEAP)
+    @POST
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Path("frequency")
+    public int frequency(String string) {
+        return getData().estimateFrequency(string);
+    }
+
+    /**
+     * Find which of many strings are in which string sets, in one pass over
+     * the string sets rather than a search for each string.
+     *
+     * @param query the strings, and optionally the ids of the string sets to
+     *        look in, by default every string set
+     * @return map of id to the strings in that string set in the order given,
+     *         omitting string sets which don't exist or contain none of them
+     * @throws BadRequestException if the query or strings are missing, or
+     *         the strings or ids contain null
+     */
+    @Cost(CostClass.SCAN)
+    @POST
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Path("membership")
+    public SortedMap<Integer, List<String>> membership(MembershipQuery query) {
+        if (query == null) {
+            throw new BadRequestException("Missing query");
+        }
+        try {
+            return getData().findMembers(query.getStrings(), query.getIds());
+        } catch (IllegalArgumentException ex) {
+            throw new BadRequestException(ex.getMessage());
+        }
     }
 
     /**
@@ -137,14 +503,16 @@ public class StringSetResource {
      * @return the string set
      * @throws NotFoundException if the string set does not exist
      */
+    @Cost(CostClass.CHEAP)
     @GET
     @Path("{id}")
+    @Produces({MediaType.APPLICATION_JSON, BinaryFormat.MEDIA_TYPE})
     public Set<String> get(@PathParam("id") int id) {
         StringSet set = getData().get(id);
         if (set == null)
             throw new NotFoundException();
         else
-            return set.getSet();
+            return new CachedStringSet(set, getResponseCache());
     }
 
     /**
@@ -153,6 +521,7 @@ public class StringSetResource {
      * @return the deleted string set
      * @throws NotFoundException if the string set does not exist
      */
+    @Cost(CostClass.CHEAP)
     @GET
     @Path("{id}/delete")
     public Set<String> delete(@PathParam("id") int id) {
@@ -160,6 +529,7 @@ public class StringSetResource {
         if(deleted == null) {
             throw new NotFoundException();
         } else {
+            getResponseCache().remove(deleted);
             return deleted.getSet();
         }
     }
@@ -169,6 +539,7 @@ public class StringSetResource {
      * @param id the id of the string set
      * @return statistics on the string set
      */
+    @Cost(CostClass.CHEAP)
     @GET
     @Path("{id}/set_statistic")
     public SetStatistics setStatistics(@PathParam("id") int id) {
@@ -185,8 +556,9 @@ public class StringSetResource {
      * @return id of newly created string set
      * @throws BadRequestException if either id does not exist, or if the created string set would be empty
      */
+    @Cost(CostClass.SCAN)
     @GET
-    @Path("{ida}/{idb}/create_intersection")
+    @Path("{ida: -?[0-9]+}/{idb: -?[0-9]+}/create_intersection")
     public int createIntersection(@PathParam("ida") int a, @PathParam("idb") int b) {
         try {
             return getData().createIntersection(a, b);
@@ -195,6 +567,302 @@ public class StringSetResource {
         }
     }
 
+    /**
+     * Create a new string set by applying a set operation to existing string sets.
+     * 
+     * The operation is one of intersection, union, difference (strings in
+     * the first string set and none of the others) or symmetric_difference
+     * (strings in an odd number of string sets). The order of the result is
+     * the order in which each string first appears, taking the string sets
+     * in the order of the ids.
+     * 
+     * @param operation the set operation
+     * @param ids ids of the string sets
+     * @return id of newly created string set
+     * @throws NotFoundException if the operation does not exist
+     * @throws BadRequestException if there are no ids, any id does not exist, or if the created string set would be empty
+     */
+    @Cost(CostClass.SCAN)
+    @POST
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Path("create_{operation}")
+    public int createSetOperation(@PathParam("operation") String operation, List<Integer> ids) {
+        SetOperation op = toSetOperation(operation);
+        try {
+            return getData().create(op, ids);
+        } catch (IllegalArgumentException ex) {
+            throw new BadRequestException(ex.getMessage());
+        }
+    }
+
+    /**
+     * Count the strings in the result of applying a set operation to existing
+     * string sets, without creating a new string set.
+     * 
+     * @param operation the set operation, as for {@link #createSetOperation(java.lang.String, java.util.List)}
+     * @param ids ids of the string sets
+     * @return the number of strings in the result
+     * @throws NotFoundException if the operation does not exist
+     * @throws BadRequestException if there are no ids, or any id does not exist
+     */
+    @Cost(CostClass.SCAN)
+    @POST
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Path("count_{operation}")
+    public int countSetOperation(@PathParam("operation") String operation, List<Integer> ids) {
+        SetOperation op = toSetOperation(operation);
+        try {
+            return getData().count(op, ids);
+        } catch (IllegalArgumentException ex) {
+            throw new BadRequestException(ex.getMessage());
+        }
+    }
+
+    private static SetOperation toSetOperation(String operation) {
+        try {
+            return SetOperation.fromName(operation);
+        } catch (IllegalArgumentException ex) {
+            throw new NotFoundException(ex.getMessage());
+        }
+    }
+
+    /**
+     * Find string sets containing the same strings as a set of strings, in any order.
+     * 
+     * @param strings the strings to find duplicates of
+     * @return the ids of string sets with the same strings
+     * @throws BadRequestException if the strings contain duplicates
+     */
+    @Cost(CostClass.SCAN)
+    @POST
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Path("duplicates")
+    public List<Integer> duplicates(List<String> strings) {
+        return getData().findDuplicates(toSet(strings));
+    }
+
+    /**
+     * Find other string sets containing the same strings as a string set, in any order.
+     * 
+     * @param id the id of the string set
+     * @return the ids of other string sets with the same strings
+     * @throws NotFoundException if the string set does not exist
+     */
+    @Cost(CostClass.SCAN)
+    @GET
+    @Path("{id}/duplicates")
+    public List<Integer> duplicates(@PathParam("id") int id) {
+        try {
+            return getData().findDuplicates(id);
+        } catch (IllegalArgumentException ex) {
+            throw new NotFoundException(ex.getMessage());
+        }
+    }
+
+    /**
+     * Find string sets similar to a set of strings.
+     * 
+     * Similarity is the Jaccard similarity, the number of strings in both
+     * sets divided by the number of strings in either. Candidates are found
+     * using a locality sensitive hashing index of MinHash signatures, so
+     * string sets with a similarity below about 0.4 may be missed.
+     * 
+     * @param threshold the minimum similarity, default 0.5
+     * @param exact if true compute the exact similarity of each candidate and filter by it, rather than by the estimate
+     * @param strings the strings to find similar string sets to
+     * @return similar string sets, with the estimated (and optionally exact) similarity, most similar first
+     * @throws BadRequestException if the strings are empty or contain duplicates, or threshold is not between 0 and 1
+     */
+    @Cost(CostClass.SCAN)
+    @POST
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Path("similar")
+    public List<Similarity> similar(@QueryParam("threshold") @DefaultValue("0.5") double threshold, @QueryParam("exact") boolean exact, List<String> strings) {
+        checkThreshold(threshold);
+        try {
+            return getData().findSimilar(toSet(strings), threshold, exact);
+        } catch (IllegalArgumentException ex) {
+            throw new BadRequestException(ex.getMessage());
+        }
+    }
+
+    /**
+     * Find string sets similar to an existing string set, as for
+     * {@link #similar(double, boolean, java.util.List)}.
+     * 
+     * @param id the id of the string set
+     * @param threshold the minimum similarity, default 0.5
+     * @param exact if true compute the exact similarity of each candidate and filter by it
+     * @return other similar string sets, most similar first
+     * @throws NotFoundException if the string set does not exist
+     * @throws BadRequestException if threshold is not between 0 and 1
+     */
+    @Cost(CostClass.SCAN)
+    @GET
+    @Path("{id}/similar")
+    public List<Similarity> similar(@PathParam("id") int id, @QueryParam("threshold") @DefaultValue("0.5") double threshold, @QueryParam("exact") boolean exact) {
+        checkThreshold(threshold);
+        try {
+            return getData().findSimilar(id, threshold, exact);
+        } catch (IllegalArgumentException ex) {
+            throw new NotFoundException(ex.getMessage());
+        }
+    }
+
+    private static void checkThreshold(double threshold) {
+        if (!(threshold >= 0 && threshold <= 1)) {
+            throw new BadRequestException("Invalid threshold: " + threshold);
+        }
+    }
+
+    /**
+     * Export a consistent point in time snapshot of every string set.
+     * 
+     * The snapshot is taken immediately, only blocking uploads and deletes
+     * while references to every string set are copied, then streamed in
+     * {@link BinaryFormat} as a map of id to string set, the same as list.
+     * 
+     * @return the snapshot
+     * @throws ServerErrorException not implemented in coordinator mode, export each node instead
+     */
+    @Cost(CostClass.EXPENSIVE)
+    @GET
+    @Path("export")
+    @Produces(BinaryFormat.MEDIA_TYPE)
+    public StreamingOutput exportSnapshot() {
+        Map<Integer, StringSet> snapshot;
+        try {
+            snapshot = getData().snapshot();
+        } catch (UnsupportedOperationException ex) {
+            throw new ServerErrorException(ex.getMessage(), Response.Status.NOT_IMPLEMENTED);
+        }
+        return out -> {
+            BinaryFormat.Encoder encoder = new BinaryFormat.Encoder(out);
+            encoder.writeInt(snapshot.size());
+            for (Map.Entry<Integer, StringSet> e : snapshot.entrySet()) {
+                encoder.writeInt(e.getKey());
+                encoder.writeStrings(e.getValue().readSet());
+            }
+            encoder.flush();
+        };
+    }
+
+    /**
+     * Replace every string set with those of a snapshot from
+     * {@link #exportSnapshot()}, keeping their ids.
+     * 
+     * @param sets the snapshot
+     * @return the number of string sets imported
+     * @throws BadRequestException if any string set is invalid, in which case
+     *         nothing is changed
+     */
+    @Cost(CostClass.EXPENSIVE)
+    @POST
+    @Consumes(BinaryFormat.MEDIA_TYPE)
+    @Path("import")
+    public int importSnapshot(Map<Integer, Set<String>> sets) {
+        try {
+            getData().load(sets);
+        } catch (IllegalArgumentException ex) {
+            throw new BadRequestException(ex.getMessage());
+        }
+        return sets.size();
+    }
+
+    /**
+     * Get the changes (string sets created or deleted, or all deleted) since
+     * a sequence number, waiting for a change if there are none, so readers
+     * can follow changes by long polling rather than listing every string
+     * set.
+     * 
+     * Only recent changes are retained, if changes since the sequence number
+     * are no longer retained, or it is from before a restart, the returned
+     * batch is truncated and the reader should list every string set again.
+     * 
+     * @param since the sequence of the last change already read, 0 to read from the start
+     * @param max the maximum number of changes to return, default 1000
+     * @param wait the maximum time to wait for a change in milliseconds, at most a minute, default 0
+     * @return the changes and the sequence to read the next changes after
+     * @throws BadRequestException if max is less than 1 or wait is negative
+     */
+    @Cost(CostClass.EXEMPT)
+    @GET
+    @Path("changes")
+    public ChangeBatch changes(@QueryParam("since") long since, @QueryParam("max") @DefaultValue("1000") int max, @QueryParam("wait") long wait) {
+        if (wait < 0) {
+            throw new BadRequestException("Invalid wait: " + wait);
+        }
+        try {
+            return getData().getChangeLog().await(since, max, Math.min(wait, MAX_WAIT_MILLIS));
+        } catch (IllegalArgumentException ex) {
+            throw new BadRequestException(ex.getMessage());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new ServiceUnavailableException();
+        }
+    }
+
+    /**
+     * Stream changes since a sequence number as server sent events, as for
+     * {@link #changes(long, int, long)}.
+     * 
+     * Each batch of changes is sent as a "changes" event with the batch as
+     * it's JSON data and the sequence of it's last change as it's id, so
+     * reconnecting clients resume where they left off.
+     * 
+     * @param since the sequence of the last change already read, 0 to read from the start
+     * @param lastEventId the id of the last event received, overrides since
+     * @param max the maximum number of changes in each event, default 1000
+     * @return the event stream, which continues until the client disconnects
+     * @throws BadRequestException if max is less than 1
+     */
+    @Cost(CostClass.EXEMPT)
+    @GET
+    @Path("changes")
+    @Produces(SERVER_SENT_EVENTS)
+    public StreamingOutput changeStream(@QueryParam("since") long since, @HeaderParam("Last-Event-ID") Long lastEventId, @QueryParam("max") @DefaultValue("1000") int max) {
+        if (max < 1) {
+            throw new BadRequestException("Invalid max: " + max);
+        }
+        ChangeLog changeLog = getData().getChangeLog();
+        long start = lastEventId != null ? lastEventId : since;
+        return out -> {
+            Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+            long sequence = start;
+            try {
+                while (true) {
+                    ChangeBatch batch = changeLog.await(sequence, max, HEARTBEAT_MILLIS);
+                    if (batch.getSequence() == sequence && !batch.isTruncated()) {
+                        writer.write(":\n\n");
+                    } else {
+                        writer.write("id: " + batch.getSequence() + "\nevent: changes\ndata: ");
+                        writer.write(MAPPER.writeValueAsString(batch));
+                        writer.write("\n\n");
+                        sequence = batch.getSequence();
+                    }
+                    // Fails once the client has disconnected.
+                    writer.flush();
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        };
+    }
+
+    /**
+     * Get statistics of every uploaded string set: histograms and
+     * percentiles of the number of strings in each string set, and of the
+     * length of every string in every string set.
+     * 
+     * @return the statistics
+     */
+    @Cost(CostClass.SCAN)
+    @GET
+    @Path("statistics")
+    public CorpusStatistics statistics() {
+        return getData().getStatistics();
+    }
+
     /**
      * Find the longest chain in all uploaded string sets.
      * 
@@ -213,9 +881,113 @@ public class StringSetResource {
      * The longest chain is: abc - cdf - fuf - fgh - (set changed here) - hij - jkl - lmn
      * @return The longest chain in the uploaded data.
      */
+    @Cost(value = CostClass.EXPENSIVE, cachedLongestChain = true)
     @GET
     @Path("longest_chain")
     public List<String> longestChain() {
-        return LongestChainSolver.solve(getData().getMap().values());
+        return getData().getLongestChain();
+    }
+
+    /**
+     * Get the longest chain, explaining how it was found.
+     * 
+     * The explanation has the string sets the chain starts in and jumps to,
+     * the number of strings and edges in the graph of each string set, the
+     * nodes expanded and edges pruned by its search, the number of string
+     * sets sharing the search of another with the same strings, and the time
+     * spent in each phase.
+     * 
+     * @return The longest chain in the uploaded data, and how it was found.
+     */
+    @Cost(CostClass.EXPENSIVE)
+    @GET
+    @Path("longest_chain/explain")
+    public ChainExplanation explainLongestChain() {
+        return getData().explainLongestChain();
+    }
+
+    /**
+     * Get the longest chain within a list of string sets.
+     * 
+     * @param ids the ids of the string sets to search
+     * @return The longest chain in the string sets
+     * @throws BadRequestException if any id does not exist
+     */
+    @Cost(CostClass.EXPENSIVE)
+    @POST
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Path("longest_chain")
+    public List<String> longestChain(List<Integer> ids) {
+        try {
+            return getData().getLongestChain(ids);
+        } catch (IllegalArgumentException ex) {
+            throw new BadRequestException(ex.getMessage());
+        }
+    }
+
+    /**
+     * Get the longest chain within a single string set.
+     * 
+     * @param id the id of the string set
+     * @return The longest chain in the string set
+     * @throws NotFoundException if the string set does not exist
+     */
+    @Cost(CostClass.EXPENSIVE)
+    @GET
+    @Path("{id}/longest_chain")
+    public List<String> longestChain(@PathParam("id") int id) {
+        try {
+            return getData().getLongestChain(id);
+        } catch (IllegalArgumentException ex) {
+            throw new NotFoundException(ex.getMessage());
+        }
+    }
+
+    /**
+     * Get the longest chain starting in one string set, which may change
+     * to a second string set.
+     * 
+     * @param a id of the string set the chain starts in
+     * @param b id of the string set the chain may change to
+     * @return The longest chain in the two string sets starting in a
+     * @throws BadRequestException if either id does not exist, or they are the same
+     */
+    @Cost(CostClass.EXPENSIVE)
+    @GET
+    @Path("{ida: -?[0-9]+}/{idb: -?[0-9]+}/longest_chain")
+    public List<String> longestChain(@PathParam("ida") int a, @PathParam("idb") int b) {
+        try {
+            return getData().getLongestChain(a, b);
+        } catch (IllegalArgumentException ex) {
+            throw new BadRequestException(ex.getMessage());
+        }
+    }
+
+    /**
+     * Get the longest chain starting with a string.
+     * 
+     * @param string the first string of the chain
+     * @return The longest chain starting with the string, empty if no string set contains it
+     */
+    @Cost(CostClass.EXPENSIVE)
+    @POST
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Path("longest_chain/starting_at")
+    public List<String> longestChainStartingAt(String string) {
+        return getData().getLongestChainStartingAt(string);
+    }
+
+    /**
+     * Get the longest chain ending with a string.
+     * 
+     * @param string the last string of the chain
+     * @return The longest chain ending with the string, empty if no string set contains it
+     */
+    @Cost(CostClass.EXPENSIVE)
+    @POST
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Path("longest_chain/ending_with")
+    public List<String> longestChainEndingWith(String string) {
+        return getData().getLongestChainEndingWith(string);
     }
 }
@@ -0,0 +1,122 @@
+/*
+   Copyright 2016 Cyberian Tiger
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.cyberiantiger.example.stringsets.benchmark;
+
+import com.fasterxml.jackson.jaxrs.json.JacksonJsonProvider;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import javax.ws.rs.core.GenericType;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.ext.MessageBodyReader;
+import javax.ws.rs.ext.MessageBodyWriter;
+import org.cyberiantiger.example.stringsets.service.BinaryFormat;
+import org.cyberiantiger.example.stringsets.service.BinaryMessageBodyReader;
+import org.cyberiantiger.example.stringsets.service.BinaryMessageBodyWriter;
+
+/**
+ * Benchmark comparing the throughput of the JSON and binary message body
+ * readers and writers, for a single large string set (upload and get) and
+ * for a map of many string sets (list).
+ *
+ * Not run as part of the test suite, run with:
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=org.cyberiantiger.example.stringsets.benchmark.BinaryFormatBenchmark
+ * </pre>
+ *
+ * @author antony
+ */
+public class BinaryFormatBenchmark {
+
+    private static final int SET_SIZE = Integer.getInteger("setSize", 1000000);
+    private static final int SETS = Integer.getInteger("sets", 10000);
+    private static final int ITERATIONS = Integer.getInteger("iterations", 10);
+
+    private static final Type LIST_TYPE = new GenericType<List<String>>() {}.getType();
+    private static final Type SET_TYPE = new GenericType<Set<String>>() {}.getType();
+    private static final Type MAP_TYPE = new GenericType<Map<Integer, Set<String>>>() {}.getType();
+    private static final Annotation[] NO_ANNOTATIONS = new Annotation[0];
+
+    public static void main(String... args) throws IOException {
+        Random rand = new Random(0);
+        Set<String> set = new LinkedHashSet<>();
+        while (set.size() < SET_SIZE) {
+            set.add(Long.toString(rand.nextLong() & Long.MAX_VALUE, 36));
+        }
+        Map<Integer, Set<String>> map = new LinkedHashMap<>();
+        for (int i = 1; i <= SETS; i++) {
+            Set<String> s = new LinkedHashSet<>();
+            while (s.size() < 100) {
+                s.add(Integer.toString(rand.nextInt(100000), 36));
+            }
+            map.put(i, s);
+        }
+
+        JacksonJsonProvider json = new JacksonJsonProvider();
+        BinaryMessageBodyWriter binaryWriter = new BinaryMessageBodyWriter();
+        BinaryMessageBodyReader binaryReader = new BinaryMessageBodyReader();
+
+        System.out.printf("%-22s %10s %12s %12s%n", "", "bytes", "write ms", "read ms");
+        run("get/upload json", json, json, set, SET_TYPE, MediaType.APPLICATION_JSON_TYPE, true);
+        run("get/upload binary", binaryWriter, binaryReader, set, SET_TYPE, BinaryFormat.MEDIA_TYPE_TYPE, true);
+        run("list json", json, null, map, MAP_TYPE, MediaType.APPLICATION_JSON_TYPE, false);
+        run("list binary", binaryWriter, null, map, MAP_TYPE, BinaryFormat.MEDIA_TYPE_TYPE, false);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static void run(String name, MessageBodyWriter writer, MessageBodyReader reader, Object value, Type type, MediaType mediaType, boolean read) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long writeNanos = 0;
+        for (int i = 0; i <= ITERATIONS; i++) {
+            out.reset();
+            long start = System.nanoTime();
+            writer.writeTo(value, value.getClass(), type, NO_ANNOTATIONS, mediaType, null, out);
+            if (i > 0) {
+                writeNanos += System.nanoTime() - start;
+            }
+        }
+        byte[] bytes = out.toByteArray();
+        double writeMillis = writeNanos / 1e6 / ITERATIONS;
+
+        String readMillis = "";
+        if (read) {
+            long readNanos = 0;
+            for (int i = 0; i <= ITERATIONS; i++) {
+                long start = System.nanoTime();
+                if (reader instanceof JacksonJsonProvider) {
+                    // Same as the json upload path, read a list then build an ordered set.
+                    new LinkedHashSet<>((List<String>) reader.readFrom(List.class, LIST_TYPE, NO_ANNOTATIONS, mediaType, null, new ByteArrayInputStream(bytes)));
+                } else {
+                    reader.readFrom(Set.class, type, NO_ANNOTATIONS, mediaType, null, new ByteArrayInputStream(bytes));
+                }
+                if (i > 0) {
+                    readNanos += System.nanoTime() - start;
+                }
+            }
+            readMillis = String.format("%12.2f", readNanos / 1e6 / ITERATIONS);
+        }
+        System.out.printf("%-22s %10d %12.2f %12s%n", name, bytes.length, writeMillis, readMillis);
+    }
+}
@@ -0,0 +1,96 @@
+/*
+   Copyright 2016 Cyberian Tiger
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.cyberiantiger.example.stringsets.benchmark;
+
+import java.util.Map;
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.core.UriBuilder;
+import org.cyberiantiger.example.stringsets.model.Data;
+import org.cyberiantiger.example.stringsets.model.Histogram;
+import org.cyberiantiger.example.stringsets.service.ConcurrencyTorture;
+import org.cyberiantiger.example.stringsets.service.JsonListWriter;
+import org.cyberiantiger.example.stringsets.service.ResponseCache;
+import org.cyberiantiger.example.stringsets.service.StringSetResource;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.glassfish.jersey.jackson.JacksonFeature;
+import org.glassfish.jersey.jetty.JettyHttpContainerFactory;
+import org.glassfish.jersey.server.ResourceConfig;
+
+/**
+ * Benchmark of throughput and latency against the number of concurrent
+ * clients, calling {@link Data} directly and {@link StringSetResource}
+ * through an embedded jetty, with the mix of operations of
+ * {@link ConcurrencyTorture}, reporting any violations it finds.
+ *
+ * Not run as part of the test suite, run with:
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=org.cyberiantiger.example.stringsets.benchmark.ConcurrencyBenchmark
+ * </pre>
+ *
+ * @author antony
+ */
+public class ConcurrencyBenchmark {
+
+    private static final int SHARDS = Integer.getInteger("shards", 4);
+    private static final int OPERATIONS = Integer.getInteger("operations", 200000);
+    private static final int MAX_THREADS = Integer.getInteger("maxThreads", 64);
+    private static final boolean DETAIL = Boolean.getBoolean("detail");
+
+    public static void main(String... args) throws Exception {
+        System.out.printf("%6s %8s %12s %10s %10s %10s %10s%n", "mode", "threads", "ops/s", "p50 us", "p99 us", "p99.9 us", "violations");
+        for (int threads = 1; threads <= MAX_THREADS; threads *= 2) {
+            Data data = new Data(SHARDS);
+            print("direct", new ConcurrencyTorture(data, ConcurrencyTorture.direct(data)).run(threads, OPERATIONS / threads, threads));
+        }
+        for (int threads = 1; threads <= MAX_THREADS; threads *= 2) {
+            Data data = new Data(SHARDS);
+            ResourceConfig config = new ResourceConfig()
+                    .register(new StringSetResource(data, new ResponseCache(64L << 20), null))
+                    .register(JsonListWriter.class)
+                    .register(JacksonFeature.class);
+            Server server = JettyHttpContainerFactory.createServer(UriBuilder.fromUri("http://localhost/").port(0).build(), config);
+            Client client = ClientBuilder.newClient().register(JacksonFeature.class);
+            try {
+                int port = ((ServerConnector) server.getConnectors()[0]).getLocalPort();
+                ConcurrencyTorture torture = new ConcurrencyTorture(data,
+                        ConcurrencyTorture.http(client.target(UriBuilder.fromUri("http://localhost/").port(port).build())));
+                // Requests over HTTP are much slower, keep the run time similar.
+                print("http", torture.run(threads, OPERATIONS / 10 / threads, threads));
+            } finally {
+                client.close();
+                server.stop();
+            }
+        }
+    }
+
+    private static void print(String mode, ConcurrencyTorture.Result result) {
+        Histogram latency = result.getLatency();
+        System.out.printf("%6s %8d %12.0f %10.0f %10.0f %10.0f %10d%n", mode, result.getThreads(), result.getThroughput(),
+                latency.getPercentile(50), latency.getPercentile(99), latency.getPercentile(99.9), result.getViolationCount());
+        if (DETAIL) {
+            for (Map.Entry<ConcurrencyTorture.Operation, Histogram> e : result.getLatencies().entrySet()) {
+                System.out.printf("  %-14s %10d calls, p50 %8.0f us, p99 %8.0f us%n", e.getKey(), e.getValue().getCount(),
+                        e.getValue().getPercentile(50), e.getValue().getPercentile(99));
+            }
+        }
+        for (String violation : result.getViolations()) {
+            System.out.println("  " + violation);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/*
+   Copyright 2016 Cyberian Tiger
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.cyberiantiger.example.stringsets.benchmark;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+import org.cyberiantiger.example.stringsets.model.Data;
+
+/**
+ * Benchmark showing how global queries and concurrent uploads scale with
+ * the number of shards in {@link Data}.
+ *
+ * Not run as part of the test suite, run with:
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=org.cyberiantiger.example.stringsets.benchmark.DataShardingBenchmark
+ * </pre>
+ *
+ * @author antony
+ */
+public class DataShardingBenchmark {
+
+    private static final int SETS = Integer.getInteger("sets", 20000);
+    private static final int SET_SIZE = Integer.getInteger("setSize", 100);
+    private static final int DISTINCT = Integer.getInteger("distinct", 200000);
+    private static final int ITERATIONS = Integer.getInteger("iterations", 10);
+
+    public static void main(String... args) {
+        List<Set<String>> sets = new ArrayList<>(SETS);
+        Random rand = new Random(0);
+        for (int i = 0; i < SETS; i++) {
+            Set<String> set = new LinkedHashSet<>();
+            while (set.size() < SET_SIZE) {
+                set.add(Integer.toString(rand.nextInt(DISTINCT), 36));
+            }
+            sets.add(set);
+        }
+
+        System.out.printf("%6s %12s %12s %12s %12s %12s%n", "shards", "upload/s", "search ms", "common ms", "longest ms", "exactly ms");
+        int cores = Runtime.getRuntime().availableProcessors();
+        for (int shards = 1; shards <= Math.max(16, cores * 2); shards *= 2) {
+            Data data = new Data(shards);
+            long start = System.nanoTime();
+            IntStream.range(0, sets.size()).parallel().forEach(i -> data.create(sets.get(i)));
+            double uploadRate = sets.size() / ((System.nanoTime() - start) / 1e9);
+            System.out.printf("%6d %12.0f %12.2f %12.2f %12.2f %12.2f%n", shards, uploadRate,
+                    time(() -> data.search("zz")),
+                    time(data::getMostCommon),
+                    time(data::getLongest),
+                    time(() -> data.getExactlyIn(3)));
+        }
+    }
+
+    private static double time(Supplier<?> query) {
+        query.get(); // warm up
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            query.get();
+        }
+        return (System.nanoTime() - start) / 1e6 / ITERATIONS;
+    }
+}
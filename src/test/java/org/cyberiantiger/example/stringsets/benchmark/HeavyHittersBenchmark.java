@@ -0,0 +1,125 @@
+/*
+   Copyright 2016 Cyberian Tiger
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.cyberiantiger.example.stringsets.benchmark;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.cyberiantiger.example.stringsets.model.Data;
+import org.cyberiantiger.example.stringsets.model.frequency.FrequencyEstimate;
+import org.cyberiantiger.example.stringsets.model.frequency.HeavyHitters;
+
+/**
+ * Benchmark comparing exact frequencies with approximate frequencies kept
+ * by {@link HeavyHitters}: heap used, upload rate, query time, and the
+ * accuracy of the top strings and their counts.
+ *
+ * Strings are drawn from a power law, so there are clear heavy hitters and
+ * a long tail of rare strings.
+ *
+ * Not run as part of the test suite, run with:
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=org.cyberiantiger.example.stringsets.benchmark.HeavyHittersBenchmark
+ * </pre>
+ *
+ * @author antony
+ */
+public class HeavyHittersBenchmark {
+
+    private static final int SETS = Integer.getInteger("sets", 20000);
+    private static final int SET_SIZE = Integer.getInteger("setSize", 100);
+    private static final int DISTINCT = Integer.getInteger("distinct", 10000000);
+    private static final int SHARDS = Integer.getInteger("shards", 4);
+    private static final int CAPACITY = Integer.getInteger("heavyHitters", 1000);
+    private static final int TOP = Integer.getInteger("top", 100);
+    private static final int ITERATIONS = Integer.getInteger("iterations", 10);
+
+    public static void main(String... args) {
+        List<Set<String>> sets = new ArrayList<>(SETS);
+        Random rand = new Random(0);
+        for (int i = 0; i < SETS; i++) {
+            Set<String> set = new LinkedHashSet<>();
+            while (set.size() < SET_SIZE) {
+                set.add(Integer.toString((int) Math.pow(DISTINCT, rand.nextDouble()), 36));
+            }
+            sets.add(set);
+        }
+
+        Data exact = new Data(SHARDS);
+        Data approximate = new Data(SHARDS);
+        approximate.setHeavyHitters(CAPACITY);
+        System.out.printf("%12s %12s %12s %12s %12s%n", "mode", "heap MiB", "upload/s", "common ms", "top ms");
+        run("exact", exact, sets);
+        run("approximate", approximate, sets);
+
+        List<FrequencyEstimate> expected = exact.getTopFrequencies(TOP);
+        List<FrequencyEstimate> actual = approximate.getTopFrequencies(TOP);
+        Set<String> expectedStrings = expected.stream().map(FrequencyEstimate::getString).collect(Collectors.toSet());
+        long found = actual.stream().filter(e -> expectedStrings.contains(e.getString())).count();
+        Map<String, Integer> exactCounts = exact.estimateFrequencies(actual.stream().map(FrequencyEstimate::getString).collect(Collectors.toList()));
+        double maxError = 0;
+        for (FrequencyEstimate e : actual) {
+            maxError = Math.max(maxError, (double) (e.getCount() - exactCounts.get(e.getString())) / exactCounts.get(e.getString()));
+        }
+        System.out.printf("top %d recall %.1f%%, max count error %.2f%%, most_common %s%n", TOP, 100D * found / TOP, 100 * maxError,
+                exact.getMostCommon().equals(approximate.getMostCommon()) ? "matches" : "differs");
+
+        Set<String> tail = new HashSet<>();
+        for (int i = 0; tail.size() < 1000; i++) {
+            tail.add(Integer.toString(DISTINCT / 2 + i, 36));
+        }
+        Map<String, Integer> tailExact = exact.estimateFrequencies(tail);
+        Map<String, Integer> tailEstimate = approximate.estimateFrequencies(tail);
+        double meanError = tail.stream().mapToInt(s -> tailEstimate.get(s) - tailExact.get(s)).average().getAsDouble();
+        System.out.printf("tail strings mean absolute count error %.2f%n", meanError);
+    }
+
+    private static void run(String mode, Data data, List<Set<String>> sets) {
+        long before = usedHeap();
+        long start = System.nanoTime();
+        IntStream.range(0, sets.size()).parallel().forEach(i -> data.create(sets.get(i)));
+        double uploadRate = sets.size() / ((System.nanoTime() - start) / 1e9);
+        long heap = usedHeap() - before;
+        System.out.printf("%12s %12.1f %12.0f %12.2f %12.2f%n", mode, heap / 1048576D, uploadRate,
+                time(data::getMostCommon),
+                time(() -> data.getTopFrequencies(TOP)));
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static double time(Supplier<?> query) {
+        query.get(); // warm up
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            query.get();
+        }
+        return (System.nanoTime() - start) / 1e6 / ITERATIONS;
+    }
+}
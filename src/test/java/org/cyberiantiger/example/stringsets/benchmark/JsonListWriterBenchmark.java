@@ -0,0 +1,91 @@
+/*
+   Copyright 2016 Cyberian Tiger
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.cyberiantiger.example.stringsets.benchmark;
+
+import com.fasterxml.jackson.jaxrs.json.JacksonJsonProvider;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import javax.ws.rs.core.GenericType;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.ext.MessageBodyWriter;
+import org.cyberiantiger.example.stringsets.model.IdList;
+import org.cyberiantiger.example.stringsets.service.JsonListWriter;
+
+/**
+ * Benchmark comparing the throughput and allocation of Jackson and
+ * JsonListWriter writing a large search result and a large list of strings.
+ *
+ * Not run as part of the test suite, run with:
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=org.cyberiantiger.example.stringsets.benchmark.JsonListWriterBenchmark
+ * </pre>
+ *
+ * @author antony
+ */
+public class JsonListWriterBenchmark {
+
+    private static final int SIZE = Integer.getInteger("size", 1000000);
+    private static final int ITERATIONS = Integer.getInteger("iterations", 20);
+
+    private static final Type IDS_TYPE = new GenericType<List<Integer>>() {}.getType();
+    private static final Type STRINGS_TYPE = new GenericType<List<String>>() {}.getType();
+    private static final Annotation[] NO_ANNOTATIONS = new Annotation[0];
+
+    public static void main(String... args) throws IOException {
+        Random rand = new Random(0);
+        IdList ids = new IdList(SIZE);
+        List<String> strings = new ArrayList<>(SIZE);
+        for (int i = 0; i < SIZE; i++) {
+            ids.addInt(1 + rand.nextInt(Integer.MAX_VALUE));
+            strings.add(Long.toString(rand.nextLong() & Long.MAX_VALUE, 36));
+        }
+        List<Integer> boxed = new ArrayList<>(ids);
+
+        JacksonJsonProvider json = new JacksonJsonProvider();
+        JsonListWriter writer = new JsonListWriter();
+        System.out.printf("%-22s %10s %12s %14s%n", "", "bytes", "write ms", "alloc bytes");
+        run("ids jackson", json, boxed, IDS_TYPE);
+        run("ids writer", writer, boxed, IDS_TYPE);
+        run("id list writer", writer, ids, IDS_TYPE);
+        run("strings jackson", json, strings, STRINGS_TYPE);
+        run("strings writer", writer, strings, STRINGS_TYPE);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static void run(String name, MessageBodyWriter writer, Object value, Type type) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(SIZE * 16);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) java.lang.management.ManagementFactory.getThreadMXBean();
+        long nanos = 0;
+        long allocated = 0;
+        for (int i = 0; i <= ITERATIONS; i++) {
+            out.reset();
+            long bytes = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+            long start = System.nanoTime();
+            writer.writeTo(value, value.getClass(), type, NO_ANNOTATIONS, MediaType.APPLICATION_JSON_TYPE, null, out);
+            if (i > 0) {
+                nanos += System.nanoTime() - start;
+                allocated += threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - bytes;
+            }
+        }
+        System.out.printf("%-22s %10d %12.2f %14d%n", name, out.size(), nanos / 1e6 / ITERATIONS, allocated / ITERATIONS);
+    }
+}
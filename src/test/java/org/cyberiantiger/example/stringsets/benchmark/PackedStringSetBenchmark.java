@@ -0,0 +1,132 @@
+/*
+   Copyright 2016 Cyberian Tiger
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.cyberiantiger.example.stringsets.benchmark;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashSet;
+import java.util.Random;
+import java.util.Set;
+import org.cyberiantiger.example.stringsets.model.Data;
+import org.cyberiantiger.example.stringsets.model.StringArena;
+
+/**
+ * Benchmark comparing the heap use and garbage collection time of
+ * StringSets kept as Strings with StringSets packed into a
+ * {@link StringArena}.
+ *
+ * Not run as part of the test suite, run each mode in a fresh JVM with:
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=org.cyberiantiger.example.stringsets.benchmark.PackedStringSetBenchmark \
+ *     -Dexec.args=packed
+ * </pre>
+ *
+ * @author antony
+ */
+public class PackedStringSetBenchmark {
+
+    private static final int SETS = Integer.getInteger("sets", 100000);
+    private static final int SET_SIZE = Integer.getInteger("setSize", 50);
+    private static final int DISTINCT = Integer.getInteger("distinct", 1000000);
+    private static final int CHURN = Integer.getInteger("churn", 2000000);
+
+    public static void main(String... args) {
+        boolean packed = args.length > 0 && "packed".equals(args[0]);
+        Data data = new Data();
+        if (packed) {
+            data.setArena(new StringArena());
+        }
+        Random rand = new Random(0);
+        long baseline = usedHeap();
+        for (int i = 0; i < SETS; i++) {
+            data.create(randomSet(rand));
+        }
+        long heap = usedHeap() - baseline;
+        long direct = directMemory();
+
+        // Churn short lived garbage and measure the collector's time, which
+        // for the old generation and full collections is dominated by the
+        // number of live objects it has to trace.
+        long gcCount = gcCount();
+        long gcTime = gcTime();
+        long start = System.nanoTime();
+        long found = 0;
+        for (int i = 0; i < CHURN; i++) {
+            found += data.get(1 + rand.nextInt(SETS)).getSet().contains(Integer.toString(rand.nextInt(DISTINCT), 36)) ? 1 : 0;
+            if (i % 1000 == 0) {
+                int id = data.create(randomSet(rand));
+                data.delete(id);
+            }
+        }
+        long churnTime = System.nanoTime() - start;
+        gcCount = gcCount() - gcCount;
+        gcTime = gcTime() - gcTime;
+        start = System.nanoTime();
+        System.gc();
+        long fullGcTime = System.nanoTime() - start;
+
+        System.out.printf("%-8s %12s %12s %10s %10s %12s %12s%n", "mode", "heap MiB", "direct MiB", "GCs", "GC ms", "full GC ms", "churn ms");
+        System.out.printf("%-8s %12.1f %12.1f %10d %10d %12.1f %12.1f%n", packed ? "packed" : "heap",
+                heap / 1048576.0, direct / 1048576.0, gcCount, gcTime, fullGcTime / 1e6, churnTime / 1e6);
+        if (found < 0) {
+            System.out.println(found);
+        }
+    }
+
+    private static Set<String> randomSet(Random rand) {
+        Set<String> set = new LinkedHashSet<>();
+        while (set.size() < SET_SIZE) {
+            set.add(Integer.toString(rand.nextInt(DISTINCT), 36));
+        }
+        return set;
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static long directMemory() {
+        long result = 0;
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            if ("direct".equals(pool.getName())) {
+                result += pool.getMemoryUsed();
+            }
+        }
+        return result;
+    }
+
+    private static long gcCount() {
+        long result = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            result += gc.getCollectionCount();
+        }
+        return result;
+    }
+
+    private static long gcTime() {
+        long result = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            result += gc.getCollectionTime();
+        }
+        return result;
+    }
+}
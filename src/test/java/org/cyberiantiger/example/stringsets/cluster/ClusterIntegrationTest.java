@@ -0,0 +1,227 @@
+/*
+   Copyright 2016 Cyberian Tiger
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.cyberiantiger.example.stringsets.cluster;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.GenericType;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.UriBuilder;
+import org.cyberiantiger.example.stringsets.model.CorpusStatistics;
+import org.cyberiantiger.example.stringsets.model.Data;
+import org.cyberiantiger.example.stringsets.model.MembershipQuery;
+import org.cyberiantiger.example.stringsets.service.JsonListWriter;
+import org.cyberiantiger.example.stringsets.service.PartitionResource;
+import org.cyberiantiger.example.stringsets.service.StringSetResource;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.glassfish.jersey.jackson.JacksonFeature;
+import org.glassfish.jersey.jetty.JettyHttpContainerFactory;
+import org.glassfish.jersey.server.ResourceConfig;
+import org.junit.After;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Integration tests for a coordinator and several nodes, each running in
+ * an embedded jetty on localhost.
+ *
+ * @author antony
+ */
+public class ClusterIntegrationTest {
+
+    private static final int NODES = 3;
+
+    private final List<Server> servers = new ArrayList<>();
+    private final List<Data> nodeData = new ArrayList<>();
+    private Data coordinatorData;
+    private Client client;
+    private WebTarget coordinator;
+
+    private String[] uris;
+
+    private URI start(Data data, boolean node) throws Exception {
+        ResourceConfig config = new ResourceConfig()
+                .register(new StringSetResource(data))
+                .register(new PartitionResource(data, node))
+                .register(JsonListWriter.class)
+                .register(JacksonFeature.class);
+        Server server = JettyHttpContainerFactory.createServer(UriBuilder.fromUri("http://localhost/").port(0).build(), config);
+        servers.add(server);
+        int port = ((ServerConnector) server.getConnectors()[0]).getLocalPort();
+        return UriBuilder.fromUri("http://localhost/").port(port).build();
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        uris = new String[NODES];
+        for (int i = 0; i < NODES; i++) {
+            Data data = new Data();
+            nodeData.add(data);
+            uris[i] = start(data, true).toString();
+        }
+        client = ClientBuilder.newClient().register(JacksonFeature.class);
+        coordinatorData = RemotePartition.createCoordinator(uris);
+        coordinator = client.target(start(coordinatorData, false));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        client.close();
+        coordinatorData.close();
+        for (Server server : servers) {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void testApproximateFrequencies() {
+        for (Data data : nodeData) {
+            data.setHeavyHitters(10);
+        }
+        coordinatorData.setHeavyHitters(10);
+        upload("foo", "oomph", "hgf");
+        upload("hij", "foo", "jkm", "lmn");
+        upload("abc", "cde", "foo", "fuf", "hgf");
+        assertEquals(Arrays.asList("foo"), get("most_common"));
+        List<?> top = get("top_strings");
+        assertEquals("foo", ((Map<?, ?>) top.get(0)).get("string"));
+        assertEquals(3, ((Map<?, ?>) top.get(0)).get("count"));
+        assertEquals("hgf", ((Map<?, ?>) top.get(1)).get("string"));
+        assertEquals(501, coordinator.path("exactly_in").request().post(Entity.entity(2, MediaType.APPLICATION_JSON)).getStatus());
+    }
+
+    private int upload(String... strings) {
+        return coordinator.path("upload").request().post(Entity.entity(Arrays.asList(strings), MediaType.APPLICATION_JSON), Integer.class);
+    }
+
+    private List<?> get(String path) {
+        return coordinator.path(path).request().get(List.class);
+    }
+
+    @Test
+    public void testCoordinatorRestart() {
+        int first = upload("foo", "oomph", "hgf");
+        int second = upload("hij", "jkl");
+
+        // A new coordinator continues after the ids already allocated.
+        Data restarted = RemotePartition.createCoordinator(uris);
+        try {
+            int third = restarted.create(new LinkedHashSet<>(Arrays.asList("abc")));
+            assertTrue(third > second);
+        } finally {
+            restarted.close();
+        }
+
+        // As does one which could not reach the nodes when created.
+        List<RemotePartition> partitions = new ArrayList<>();
+        for (String uri : uris) {
+            partitions.add(new RemotePartition(client.target(uri)));
+        }
+        Data unseeded = new Data(partitions);
+        Set<Integer> ids = new HashSet<>(Arrays.asList(first, second));
+        for (int i = 0; i < 5; i++) {
+            assertTrue(ids.add(unseeded.create(new LinkedHashSet<>(Arrays.asList("x" + i)))));
+        }
+        assertEquals(Arrays.asList("foo", "oomph", "hgf"), get(String.valueOf(first)));
+
+        // Only nodes accept changes to their partition.
+        assertEquals(403, coordinator.path("partition").path("1000").request()
+                .put(Entity.entity(Arrays.asList("abc"), MediaType.APPLICATION_JSON)).getStatus());
+        assertEquals(403, coordinator.path("partition").request().delete().getStatus());
+        assertEquals(409, client.target(uris[first % NODES]).path("partition").path(String.valueOf(first)).request()
+                .put(Entity.entity(Arrays.asList("abc"), MediaType.APPLICATION_JSON)).getStatus());
+    }
+
+    @Test
+    public void testCluster() {
+        int idA = upload("foo", "oomph", "hgf");
+        int idB = upload("hij", "jkl", "jkm", "lmn");
+        int idC = upload("abc", "cde", "cdf", "fuf", "fgh");
+        int idD = upload("foo", "abc", "zzzzzz");
+
+        // Every node owns some of the string sets.
+        int total = 0;
+        for (Data data : nodeData) {
+            assertFalse(data.getKeys().isEmpty());
+            total += data.getKeys().size();
+        }
+        assertEquals(4, total);
+        assertEquals(Arrays.asList("hij", "jkl", "jkm", "lmn"), get(String.valueOf(idB)));
+        assertEquals(4, coordinator.request().get(Map.class).size());
+        assertEquals(Arrays.asList(idA, idD), coordinator.path("search").request().post(Entity.entity("foo", MediaType.APPLICATION_JSON), List.class));
+        assertEquals(Arrays.asList("abc", "foo"), get("most_common"));
+        assertEquals(Collections.singletonList("zzzzzz"), get("longest"));
+        assertEquals(Arrays.asList("abc", "foo"), coordinator.path("exactly_in").request().post(Entity.entity(2, MediaType.APPLICATION_JSON), List.class));
+        assertEquals(7, get("longest_chain").size());
+        Map<?, ?> histogram = coordinator.path("exactly_in_histogram").request().get(Map.class);
+        assertEquals(11, histogram.get("1"));
+        assertEquals(2, histogram.get("2"));
+        assertEquals(Arrays.asList("abc", "foo"), coordinator.path("exactly_in_range").queryParam("min", 2).request()
+                .get(new GenericType<List<Map<String, Object>>>() {})
+                .stream().map(e -> e.get("string")).collect(Collectors.toList()));
+        CorpusStatistics statistics = coordinator.path("statistics").request().get(CorpusStatistics.class);
+        assertEquals(4, statistics.getSets());
+        assertEquals(15, statistics.getStrings());
+        assertEquals(3D, statistics.getSetSizes().getPercentile(50), 0D);
+        assertEquals(6, statistics.getStringLengths().getMax());
+
+        List<?> top = get("top_strings");
+        assertEquals(10, top.size());
+        assertEquals("abc", ((Map<?, ?>) top.get(0)).get("string"));
+        assertEquals(2, ((Map<?, ?>) top.get(0)).get("count"));
+        assertEquals(2, (int) coordinator.path("frequency").request().post(Entity.entity("foo", MediaType.APPLICATION_JSON), Integer.class));
+        Map<?, ?> members = coordinator.path("membership").request().post(Entity.entity(
+                new MembershipQuery(Arrays.asList("foo", "jkl", "nope"), null), MediaType.APPLICATION_JSON), Map.class);
+        assertEquals(3, members.size());
+        assertEquals(Collections.singletonList("foo"), members.get(String.valueOf(idA)));
+        assertEquals(Collections.singletonList("jkl"), members.get(String.valueOf(idB)));
+        assertEquals(Collections.singletonList("foo"), members.get(String.valueOf(idD)));
+        members = coordinator.path("membership").request().post(Entity.entity(
+                new MembershipQuery(Arrays.asList("abc", "foo"), Arrays.asList(idC, idD)), MediaType.APPLICATION_JSON), Map.class);
+        assertEquals(Arrays.asList("abc"), members.get(String.valueOf(idC)));
+        assertEquals(Arrays.asList("abc", "foo"), members.get(String.valueOf(idD)));
+        assertEquals(2, members.size());
+
+        int idF = upload("hgf", "foo", "oomph");
+        List<?> similar = coordinator.path(String.format("%d/similar", idA)).request().get(List.class);
+        assertEquals(1, similar.size());
+        assertEquals(idF, ((Map<?, ?>) similar.get(0)).get("id"));
+        assertEquals(1D, ((Map<?, ?>) similar.get(0)).get("estimatedJaccard"));
+        assertEquals(3, get(String.format("%d/delete", idF)).size());
+
+        int idE = coordinator.path(String.format("%d/%d/create_intersection", idA, idD)).request().get(Integer.class);
+        assertEquals(Collections.singletonList("foo"), get(String.valueOf(idE)));
+        assertEquals(Collections.singletonList("foo"), get(String.format("%d/delete", idE)));
+        assertEquals(404, coordinator.path(String.valueOf(idE)).request().get().getStatus());
+        for (Data data : nodeData) {
+            assertFalse(data.getKeys().contains(idE));
+        }
+    }
+}
@@ -0,0 +1,58 @@
+/*
+   Copyright 2016 Cyberian Tiger
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.cyberiantiger.example.stringsets.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Tests for BloomFilter.
+ *
+ * @author antony
+ */
+public class BloomFilterTest {
+
+    @Test
+    public void testNoFalseNegatives() {
+        List<String> strings = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            strings.add("in" + i);
+        }
+        BloomFilter filter = new BloomFilter(strings);
+        for (String s : strings) {
+            assertTrue(filter.mightContain(BloomFilter.hash(s)));
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 100000; i++) {
+            if (filter.mightContain(BloomFilter.hash("out" + i))) {
+                falsePositives++;
+            }
+        }
+        // Roughly 1% expected.
+        assertTrue("False positives: " + falsePositives, falsePositives < 2000);
+    }
+
+    @Test
+    public void testSmallSets() {
+        BloomFilter filter = new BloomFilter(Collections.singletonList("a"));
+        assertTrue(filter.mightContain(BloomFilter.hash("a")));
+        assertEquals(24, filter.getBytes());
+        assertFalse(new BloomFilter(Collections.emptyList()).mightContain(BloomFilter.hash("a")));
+    }
+}
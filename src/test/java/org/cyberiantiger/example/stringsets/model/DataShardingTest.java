@@ -0,0 +1,148 @@
+/*
+   Copyright 2016 Cyberian Tiger
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.cyberiantiger.example.stringsets.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.stream.Collectors;
+import org.cyberiantiger.example.stringsets.model.frequency.FrequencyEstimate;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Tests that a sharded Data store gives the same answers as a single shard.
+ *
+ * @author antony
+ */
+public class DataShardingTest {
+
+    private static List<Set<String>> randomSets(long seed, int count) {
+        Random rand = new Random(seed);
+        List<Set<String>> result = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Set<String> set = new LinkedHashSet<>();
+            int size = 1 + rand.nextInt(20);
+            while (set.size() < size) {
+                set.add(Integer.toString(rand.nextInt(200), 36));
+            }
+            result.add(set);
+        }
+        return result;
+    }
+
+    @Test
+    public void testShardedMatchesSingle() {
+        Data single = new Data(1);
+        Data sharded = new Data(7);
+        for (Set<String> set : randomSets(42, 300)) {
+            assertEquals(single.create(set), sharded.create(set));
+        }
+        for (int id = 1; id <= 300; id += 5) {
+            assertEquals(single.delete(id).getSet(), sharded.delete(id).getSet());
+        }
+        assertEquals(single.createIntersection(2, 3), sharded.createIntersection(2, 3));
+
+        assertEquals(single.getMap(), sharded.getMap());
+        assertEquals(new ArrayList<>(single.getKeys()), new ArrayList<>(sharded.getKeys()));
+        assertEquals(single.getMostCommon(), sharded.getMostCommon());
+        assertEquals(single.getLongest(), sharded.getLongest());
+        for (int count = 0; count < 20; count++) {
+            assertEquals(single.getExactlyIn(count), sharded.getExactlyIn(count));
+        }
+        for (int i = 0; i < 200; i++) {
+            String query = Integer.toString(i, 36);
+            assertEquals(single.search(query), sharded.search(query));
+        }
+        assertEquals(single.get(3).getSet(), sharded.get(3).getSet());
+        assertNull(sharded.get(1));
+    }
+
+    private static List<String> describe(List<FrequencyEstimate> estimates) {
+        return estimates.stream().map(e -> e.getString() + "=" + e.getCount()).collect(Collectors.toList());
+    }
+
+    @Test
+    public void testExactlyInRange() {
+        Data single = new Data(1);
+        Data sharded = new Data(4);
+        for (Set<String> set : randomSets(3, 400)) {
+            assertEquals(single.create(set), sharded.create(set));
+        }
+        for (int id = 1; id <= 400; id += 7) {
+            single.delete(id);
+            sharded.delete(id);
+        }
+        SortedMap<Integer, Integer> histogram = single.getCountHistogram();
+        assertEquals(histogram, sharded.getCountHistogram());
+        for (int count = 1; count < 40; count++) {
+            int size = single.getExactlyIn(count).size();
+            assertEquals(size, (int) histogram.getOrDefault(count, 0));
+        }
+        assertEquals(200, histogram.values().stream().mapToInt(Integer::intValue).sum());
+
+        List<FrequencyEstimate> all = single.getExactlyIn(20, 30, 0, Integer.MAX_VALUE);
+        assertEquals(describe(all), describe(sharded.getExactlyIn(20, 30, 0, Integer.MAX_VALUE)));
+        assertEquals(histogram.subMap(20, 31).values().stream().mapToInt(Integer::intValue).sum(), all.size());
+        List<FrequencyEstimate> paged = new ArrayList<>();
+        for (int offset = 0; offset < all.size(); offset += 7) {
+            List<FrequencyEstimate> page = single.getExactlyIn(20, 30, offset, 7);
+            assertEquals(describe(page), describe(sharded.getExactlyIn(20, 30, offset, 7)));
+            paged.addAll(page);
+        }
+        assertEquals(describe(all), describe(paged));
+        assertEquals(Collections.emptyList(), single.getExactlyIn(20, 30, all.size(), 7));
+        for (int i = 1; i < all.size(); i++) {
+            assertTrue(FrequencyEstimate.LEAST_FREQUENT.compare(all.get(i - 1), all.get(i)) < 0);
+        }
+    }
+
+    @Test
+    public void testSnapshotLoad() {
+        Data single = new Data(1);
+        for (Set<String> set : randomSets(7, 200)) {
+            single.create(set);
+        }
+        for (int id = 1; id <= 200; id += 3) {
+            single.delete(id);
+        }
+        Map<Integer, Set<String>> snapshot = new LinkedHashMap<>();
+        single.snapshot().forEach((id, set) -> snapshot.put(id, set.getSet()));
+        Data sharded = new Data(5);
+        sharded.create(new LinkedHashSet<>(Arrays.asList("x")));
+        sharded.load(snapshot);
+        assertEquals(single.getMap(), sharded.getMap());
+        assertEquals(single.getMostCommon(), sharded.getMostCommon());
+        assertEquals(single.getLongest(), sharded.getLongest());
+        for (int i = 0; i < 200; i++) {
+            String query = Integer.toString(i, 36);
+            assertEquals(single.search(query), sharded.search(query));
+        }
+        assertEquals(201, sharded.create(new LinkedHashSet<>(Arrays.asList("x"))));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidShardCount() {
+        new Data(0);
+    }
+}
@@ -0,0 +1,63 @@
+/*
+   Copyright 2016 Cyberian Tiger
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.cyberiantiger.example.stringsets.model;
+
+import java.util.Arrays;
+import java.util.Random;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Tests for {@link Histogram}.
+ *
+ * @author antony
+ */
+public class HistogramTest {
+
+    @Test
+    public void testPercentiles() {
+        Random rand = new Random(1);
+        int[] values = new int[100000];
+        Histogram a = new Histogram();
+        Histogram b = new Histogram();
+        for (int i = 0; i < values.length; i++) {
+            values[i] = rand.nextInt(1 << rand.nextInt(24));
+            (i % 2 == 0 ? a : b).add(values[i]);
+        }
+        Histogram merged = a.copy().merge(b);
+        assertEquals(values.length, merged.getCount());
+        Arrays.sort(values);
+        for (double p : new double[] { 1, 10, 50, 90, 99, 99.9, 100 }) {
+            int expected = values[(int) Math.ceil(p / 100 * values.length) - 1];
+            assertEquals(expected, merged.getPercentile(p), expected / 32D + 0.5);
+        }
+        assertEquals(values[0], merged.getMin());
+        assertTrue(merged.getMax() >= values[values.length - 1]);
+
+        // Round trip through the JSON form.
+        Histogram copy = new Histogram(merged.getSum(), merged.getBuckets());
+        assertEquals(merged.getCount(), copy.getCount());
+        assertEquals(merged.getPercentiles(), copy.getPercentiles());
+
+        for (int i = 0; i < values.length; i += 2) {
+            merged.remove(values[i]);
+        }
+        assertEquals(values.length / 2, merged.getCount());
+        Histogram empty = new Histogram();
+        assertEquals(0D, empty.getPercentile(50), 0D);
+        assertEquals(0, empty.getMax());
+    }
+}
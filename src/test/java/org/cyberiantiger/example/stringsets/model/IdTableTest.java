@@ -0,0 +1,75 @@
+/*
+   Copyright 2016 Cyberian Tiger
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.cyberiantiger.example.stringsets.model;
+
+import java.util.Arrays;
+import java.util.Map;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Tests for {@link IdTable}.
+ *
+ * @author antony
+ */
+public class IdTableTest {
+
+    @Test
+    public void testPointOperations() {
+        IdTable<String> table = new IdTable<>(3, 2);
+        assertNull(table.get(2));
+        assertNull(table.put(2, "a"));
+        assertNull(table.put(5, "b"));
+        assertEquals("a", table.put(2, "c"));
+        assertEquals("c", table.get(2));
+        assertEquals("b", table.get(5));
+        // Ids of other shards, and negative ids, are never present.
+        assertNull(table.get(3));
+        assertNull(table.get(-1));
+        assertNull(table.remove(-1));
+        assertEquals("b", table.remove(5));
+        assertNull(table.remove(5));
+        assertNull(table.get(5));
+        table.clear();
+        assertNull(table.get(2));
+    }
+
+    @Test
+    public void testForEachAndRelease() {
+        IdTable<Integer> table = new IdTable<>(2, 1);
+        int count = IdTable.CHUNK_SIZE * 3;
+        for (int i = count - 1; i >= 0; i--) {
+            table.put(2 * i + 1, i);
+        }
+        Map<Integer, Integer> map = table.toMap();
+        assertEquals(count, map.size());
+        int expected = 0;
+        for (Map.Entry<Integer, Integer> e : map.entrySet()) {
+            assertEquals(2 * expected + 1, (int) e.getKey());
+            assertEquals(expected++, (int) e.getValue());
+        }
+        // Empty the first chunk, and release it.
+        for (int i = 0; i < IdTable.CHUNK_SIZE; i++) {
+            table.remove(2 * i + 1);
+            table.release(2 * i + 1);
+        }
+        assertEquals(count - IdTable.CHUNK_SIZE, table.toMap().size());
+        assertNull(table.get(1));
+        // A released chunk is added back if needed.
+        table.put(1, 0);
+        assertEquals(Arrays.asList(1, 2 * IdTable.CHUNK_SIZE + 1), Arrays.asList(table.toMap().keySet().toArray()).subList(0, 2));
+    }
+}
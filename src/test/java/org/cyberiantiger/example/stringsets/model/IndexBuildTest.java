@@ -0,0 +1,213 @@
+/*
+   Copyright 2016 Cyberian Tiger
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.cyberiantiger.example.stringsets.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import junit.framework.AssertionFailedError;
+import org.cyberiantiger.example.stringsets.model.frequency.FrequencyEstimate;
+import org.cyberiantiger.example.stringsets.model.similarity.Similarity;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Tests that indexes built in bulk match those maintained one StringSet at
+ * a time, and that queries read every StringSet while they are built.
+ *
+ * @author antony
+ */
+public class IndexBuildTest {
+
+    private static Map<Integer, StringSet> randomSets(long seed, int first, int count) {
+        Random rand = new Random(seed);
+        Map<Integer, StringSet> result = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            Set<String> set = new LinkedHashSet<>();
+            int size = 1 + rand.nextInt(20);
+            while (set.size() < size) {
+                set.add(Integer.toString(rand.nextInt(2000), 36));
+            }
+            result.put(first + i, new StringSet(set));
+        }
+        return result;
+    }
+
+    private static List<String> strings(List<FrequencyEstimate> estimates) {
+        return estimates.stream()
+                .map(e -> e.getString() + "=" + e.getCount())
+                .collect(Collectors.toList());
+    }
+
+    private static List<Integer> ids(List<Similarity> similar) {
+        return similar.stream().map(Similarity::getId).sorted().collect(Collectors.toList());
+    }
+
+    private static void assertSameAnswers(DataShard expected, DataShard actual, Map<Integer, StringSet> sets) {
+        assertEquals(expected.getMap(), actual.getMap());
+        assertEquals(expected.getFrequencies(), actual.getFrequencies());
+        assertEquals(expected.getCountHistogram(), actual.getCountHistogram());
+        assertEquals(strings(expected.getExactlyIn(1, 3, 5, 100)), strings(actual.getExactlyIn(1, 3, 5, 100)));
+        assertEquals(strings(expected.getTopFrequencies(10)), strings(actual.getTopFrequencies(10)));
+        List<String> queries = Arrays.asList("0", "1a", "zz", "missing");
+        assertEquals(expected.estimateFrequencies(queries), actual.estimateFrequencies(queries));
+        CorpusStatistics e = expected.getStatistics();
+        CorpusStatistics a = actual.getStatistics();
+        assertEquals(e.getSets(), a.getSets());
+        assertEquals(e.getStrings(), a.getStrings());
+        assertEquals(e.getStringLengths().getSum(), a.getStringLengths().getSum());
+        assertEquals(e.getSetSizes().getMax(), a.getSetSizes().getMax());
+        List<String> longest = expected.getLongest();
+        List<String> actualLongest = actual.getLongest();
+        longest.sort(null);
+        actualLongest.sort(null);
+        assertEquals(longest, actualLongest);
+        for (int i = 0; i < 50; i++) {
+            String query = Integer.toString(i, 36);
+            assertEquals(expected.search(query), actual.search(query));
+        }
+        for (Map.Entry<Integer, StringSet> entry : sets.entrySet()) {
+            StringSet set = entry.getValue();
+            List<Integer> duplicates = expected.findDuplicates(set.getFingerprint());
+            duplicates.sort(null);
+            List<Integer> actualDuplicates = actual.findDuplicates(set.getFingerprint());
+            actualDuplicates.sort(null);
+            assertEquals(duplicates, actualDuplicates);
+            if (expected.get(entry.getKey()) != null) {
+                assertTrue(ids(actual.findSimilar(set.getMinHash(), 1.0)).contains(entry.getKey()));
+            }
+        }
+    }
+
+    @Test
+    public void testBulkBuild() {
+        Map<Integer, StringSet> loaded = randomSets(1, 1, 5000);
+        Map<Integer, StringSet> later = randomSets(2, 5001, 100);
+        Map<Integer, StringSet> all = new LinkedHashMap<>(loaded);
+        all.putAll(later);
+
+        DataShard incremental = new DataShard(1, 0);
+        loaded.forEach(incremental::put);
+        List<Runnable> builds = new ArrayList<>();
+        DataShard bulk = new DataShard(1, 0, builds::add);
+        bulk.putAll(loaded);
+        assertFalse(bulk.isIndexed());
+        assertEquals(1, builds.size());
+
+        // Changes made while building are applied once built.
+        for (Map.Entry<Integer, StringSet> e : later.entrySet()) {
+            incremental.put(e.getKey(), e.getValue());
+            bulk.put(e.getKey(), e.getValue());
+        }
+        for (int id = 1; id <= 5100; id += 7) {
+            assertSame(incremental.remove(id), bulk.remove(id));
+        }
+
+        assertSameAnswers(incremental, bulk, all);
+        assertFalse(bulk.isIndexed());
+        builds.get(0).run();
+        assertTrue(bulk.isIndexed());
+        assertSameAnswers(incremental, bulk, all);
+    }
+
+    @Test
+    public void testFailedBuild() {
+        List<Runnable> builds = new ArrayList<>();
+        DataShard shard = new DataShard(1, 0, builds::add);
+        Map<Integer, StringSet> all = randomSets(5, 1, 100);
+        AtomicBoolean failing = new AtomicBoolean(true);
+        all.put(101, new StringSet(new LinkedHashSet<>(Arrays.asList("x", "y"))) {
+            @Override
+            public Set<String> readSet() {
+                if (failing.getAndSet(false)) {
+                    throw new IllegalStateException("Failed");
+                }
+                return super.readSet();
+            }
+        });
+        shard.putAll(all);
+        StringSet extra = new StringSet(new LinkedHashSet<>(Arrays.asList("x", "z")));
+        shard.put(102, extra);
+        shard.remove(1);
+        assertFalse(shard.isIndexed());
+        builds.get(0).run();
+        try {
+            shard.awaitIndexes();
+            throw new AssertionFailedError("Build did not fail");
+        } catch (CompletionException ex) {
+        }
+        // Built incrementally instead.
+        assertFalse(failing.get());
+        assertTrue(shard.isIndexed());
+        all.remove(1);
+        all.put(102, extra);
+        DataShard incremental = new DataShard(1, 0);
+        all.forEach(incremental::put);
+        assertSameAnswers(incremental, shard, all);
+    }
+
+    @Test
+    public void testSupersededBuild() {
+        List<Runnable> builds = new ArrayList<>();
+        DataShard shard = new DataShard(1, 0, builds::add);
+        shard.putAll(randomSets(3, 1, 100));
+        shard.setHeavyHitters(10);
+        assertEquals(2, builds.size());
+        try {
+            shard.getFrequencies();
+            throw new AssertionFailedError("Exact frequencies are not kept");
+        } catch (UnsupportedOperationException ex) {
+        }
+        builds.get(1).run();
+        builds.get(0).run();
+        assertTrue(shard.isIndexed());
+        assertEquals(10, shard.getTopFrequencies(20).size());
+
+        shard.putAll(randomSets(4, 101, 10));
+        shard.clear();
+        assertTrue(shard.isIndexed());
+        builds.get(2).run();
+        assertTrue(shard.isIndexed());
+        assertTrue(shard.getMap().isEmpty());
+        assertTrue(shard.getTopFrequencies(20).isEmpty());
+    }
+
+    @Test
+    public void testLoad() {
+        Data incremental = new Data(3);
+        Map<Integer, Set<String>> snapshot = new LinkedHashMap<>();
+        randomSets(5, 1, 20000).forEach((id, set) -> {
+            snapshot.put(id, set.getSet());
+            assertEquals((int) id, incremental.create(set.getSet()));
+        });
+        Data loaded = new Data(3);
+        loaded.load(snapshot);
+        loaded.awaitIndexes();
+        assertTrue(loaded.isIndexed());
+        assertEquals(incremental.getFrequencies(), loaded.getFrequencies());
+        assertEquals(incremental.getExactlyIn(2), loaded.getExactlyIn(2));
+        assertEquals(incremental.findDuplicates(7), loaded.findDuplicates(7));
+        assertEquals(incremental.getStatistics().getStrings(), loaded.getStatistics().getStrings());
+    }
+}
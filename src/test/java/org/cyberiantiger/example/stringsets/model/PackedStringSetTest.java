@@ -0,0 +1,89 @@
+/*
+   Copyright 2016 Cyberian Tiger
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.cyberiantiger.example.stringsets.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import org.cyberiantiger.example.stringsets.model.longestchain.LongestChainSolver;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Tests that StringSets packed into a {@link StringArena} behave as the
+ * original sets.
+ *
+ * @author antony
+ */
+public class PackedStringSetTest {
+
+    private static final List<String> STRINGS = Arrays.asList("cat", "dog", "é", "tiger", "日本", "a😀", "😀b", "ab");
+
+    @Test
+    public void testPackedSet() {
+        Set<String> set = new LinkedHashSet<>(STRINGS);
+        PackedStringSet packed = new StringArena(64).pack(set);
+        assertEquals(set.size(), packed.size());
+        assertEquals(STRINGS, new ArrayList<>(packed));
+        for (int i = 0; i < STRINGS.size(); i++) {
+            String s = STRINGS.get(i);
+            assertTrue(packed.contains(s));
+            assertFalse(packed.contains(s + "x"));
+            assertEquals(s.charAt(0), packed.getFirstCharacter(i));
+            assertEquals(s.charAt(s.length() - 1), packed.getLastCharacter(i));
+        }
+        assertFalse(packed.contains("ba"));
+        assertFalse(packed.contains(1));
+        assertEquals(set.hashCode(), packed.hashCode());
+        assertEquals(set, packed);
+        assertEquals(packed, set);
+
+        List<String> reversed = new ArrayList<>(STRINGS);
+        Collections.reverse(reversed);
+        assertEquals(packed, new StringArena().pack(new LinkedHashSet<>(reversed)));
+        assertNotEquals(packed, new StringArena().pack(new LinkedHashSet<>(STRINGS.subList(1, STRINGS.size()))));
+        assertNotEquals(packed, new StringArena().pack(new LinkedHashSet<>(Arrays.asList("cat", "dog", "é", "tiger", "日本", "a😀", "😀b", "ac"))));
+    }
+
+    @Test
+    public void testPackedMatchesHeap() {
+        Data heap = new Data();
+        Data packed = new Data();
+        packed.setArena(new StringArena(1024));
+        Random rand = new Random(7);
+        for (int i = 0; i < 200; i++) {
+            Set<String> set = new LinkedHashSet<>();
+            int size = 1 + rand.nextInt(20);
+            while (set.size() < size) {
+                set.add(Integer.toString(rand.nextInt(100), 36) + (rand.nextInt(5) == 0 ? "é" : ""));
+            }
+            assertEquals(heap.create(set), packed.create(set));
+        }
+        assertTrue(packed.get(1).getSet() instanceof PackedStringSet);
+        assertEquals(heap.getMap(), packed.getMap());
+        for (int i = 0; i < 100; i++) {
+            String query = Integer.toString(i, 36);
+            assertEquals(heap.search(query), packed.search(query));
+        }
+        assertEquals(heap.create(SetOperation.UNION, Arrays.asList(1, 2, 3)), packed.create(SetOperation.UNION, Arrays.asList(1, 2, 3)));
+        assertEquals(heap.count(SetOperation.INTERSECTION, Arrays.asList(4, 5)), packed.count(SetOperation.INTERSECTION, Arrays.asList(4, 5)));
+        assertEquals(LongestChainSolver.combine(heap.getChainSummaries()).size(), LongestChainSolver.combine(packed.getChainSummaries()).size());
+    }
+}
@@ -0,0 +1,122 @@
+/*
+   Copyright 2016 Cyberian Tiger
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.cyberiantiger.example.stringsets.model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Stress test of concurrent creates, gets and deletes, while aggregate
+ * queries run, checking that ids are unique, point operations see their own
+ * changes, and indexes end up consistent with the StringSets.
+ *
+ * @author antony
+ */
+public class PointOperationsStressTest {
+
+    private static final int THREADS = 32;
+    private static final int OPERATIONS = 2000;
+
+    @Test
+    public void testMixedPointOperations() throws Exception {
+        Data data = new Data(4);
+        Set<Integer> ids = ConcurrentHashMap.newKeySet();
+        AtomicBoolean done = new AtomicBoolean();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS + 2);
+        try {
+            List<Future<?>> writers = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                long seed = t;
+                writers.add(executor.submit(() -> {
+                    Random rand = new Random(seed);
+                    start.await();
+                    for (int i = 0; i < OPERATIONS; i++) {
+                        Set<String> set = new LinkedHashSet<>();
+                        int size = 1 + rand.nextInt(10);
+                        while (set.size() < size) {
+                            set.add(Integer.toString(rand.nextInt(500), 36));
+                        }
+                        int id = data.create(set);
+                        assertTrue("Duplicate id " + id, ids.add(id));
+                        assertEquals(set, data.get(id).getSet());
+                        if (rand.nextBoolean()) {
+                            assertEquals(set, data.delete(id).getSet());
+                            assertNull(data.get(id));
+                            assertNull(data.delete(id));
+                        }
+                    }
+                    return null;
+                }));
+            }
+            List<Future<?>> readers = new ArrayList<>();
+            for (int t = 0; t < 2; t++) {
+                readers.add(executor.submit(() -> {
+                    start.await();
+                    while (!done.get()) {
+                        data.getFrequencies();
+                        data.getStatistics();
+                        data.search("a");
+                        data.getCountHistogram();
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> f : writers) {
+                f.get(5, TimeUnit.MINUTES);
+            }
+            done.set(true);
+            for (Future<?> f : readers) {
+                f.get(1, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(THREADS * OPERATIONS, ids.size());
+        Map<Integer, Set<String>> sets = data.getMap();
+        Map<String, Integer> frequencies = new HashMap<>();
+        for (Set<String> set : sets.values()) {
+            for (String s : set) {
+                frequencies.merge(s, 1, Integer::sum);
+            }
+        }
+        assertEquals(frequencies, data.getFrequencies());
+        assertEquals(sets.size(), data.getStatistics().getSets());
+        int i = 0;
+        for (Map.Entry<Integer, Set<String>> e : sets.entrySet()) {
+            assertTrue(data.findDuplicates(data.get(e.getKey()).getFingerprint()).contains(e.getKey()));
+            if (i++ % 100 == 0) {
+                assertTrue(data.search(e.getValue().iterator().next()).contains(e.getKey()));
+            }
+        }
+    }
+}
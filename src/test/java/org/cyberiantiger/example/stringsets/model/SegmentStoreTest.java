@@ -0,0 +1,164 @@
+/*
+   Copyright 2016 Cyberian Tiger
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.cyberiantiger.example.stringsets.model;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import org.cyberiantiger.example.stringsets.model.longestchain.LongestChainSolver;
+import org.junit.After;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests that a Data store with tiered storage gives the same answers as one
+ * without, and that indexes don't fault evicted StringSets back in.
+ *
+ * @author antony
+ */
+public class SegmentStoreTest {
+
+    private Path file;
+    private SegmentStore store;
+
+    @Before
+    public void setUp() throws IOException {
+        file = Files.createTempFile("stringsets", ".segment");
+        store = SegmentStore.open(file, 4096);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        store.close();
+        Files.delete(file);
+    }
+
+    private static List<Set<String>> randomSets(long seed, int count) {
+        Random rand = new Random(seed);
+        List<Set<String>> result = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Set<String> set = new LinkedHashSet<>();
+            int size = 1 + rand.nextInt(20);
+            while (set.size() < size) {
+                String s = Integer.toString(rand.nextInt(200), 36);
+                set.add(rand.nextInt(10) == 0 ? s + "é中" : s);
+            }
+            result.add(set);
+        }
+        return result;
+    }
+
+    @Test
+    public void testTieredMatchesHeap() {
+        Data heap = new Data(3);
+        Data tiered = new Data(3);
+        tiered.setSegmentStore(store);
+        for (Set<String> set : randomSets(42, 300)) {
+            assertEquals(heap.create(set), tiered.create(set));
+        }
+        assertTrue(store.getHeapBytes() <= 4096);
+        assertTrue(store.getHeapCount() < 100);
+
+        int heapCount = store.getHeapCount();
+        assertEquals(heap.getMostCommon(), tiered.getMostCommon());
+        assertEquals(heap.getLongest(), tiered.getLongest());
+        for (int i = 0; i < 200; i++) {
+            String query = Integer.toString(i, 36);
+            assertEquals(heap.search(query), tiered.search(query));
+            assertEquals(heap.search(query + "é中"), tiered.search(query + "é中"));
+        }
+        assertEquals(LongestChainSolver.combine(heap.getChainSummaries()), LongestChainSolver.combine(tiered.getChainSummaries()));
+        assertEquals(heap.getMap(), tiered.getMap());
+        // None of the above should have faulted anything back in.
+        assertEquals(heapCount, store.getHeapCount());
+
+        for (int id = 1; id <= 300; id += 5) {
+            assertEquals(heap.delete(id).getSet(), tiered.delete(id).getSet());
+        }
+        assertEquals(heap.create(SetOperation.UNION, Arrays.asList(2, 3)), tiered.create(SetOperation.UNION, Arrays.asList(2, 3)));
+        for (int count = 0; count < 20; count++) {
+            assertEquals(heap.getExactlyIn(count), tiered.getExactlyIn(count));
+        }
+        for (int id = 2; id <= 301; id++) {
+            StringSet expected = heap.get(id);
+            StringSet actual = tiered.get(id);
+            if (expected == null) {
+                assertNull(actual);
+            } else {
+                assertEquals(new ArrayList<>(expected.getSet()), new ArrayList<>(actual.getSet()));
+            }
+        }
+        assertTrue(store.getHeapBytes() <= 4096);
+    }
+
+    @Test
+    public void testFaultIn() {
+        Data tiered = new Data();
+        tiered.setSegmentStore(store);
+        int id = tiered.create(new LinkedHashSet<>(Arrays.asList("c", "b", "a")));
+        StringSet set = tiered.get(id);
+        assertNotNull(set.getHeapSet());
+        for (int i = 0; i < 100; i++) {
+            tiered.create(new LinkedHashSet<>(Arrays.asList("x" + i, "y" + i)));
+        }
+        assertNull(set.getHeapSet());
+        assertTrue(set.contains("b"));
+        assertFalse(set.contains("d"));
+        assertNull(set.getHeapSet());
+        assertEquals(Arrays.asList("c", "b", "a"), new ArrayList<>(set.getSet()));
+        assertNotNull(set.getHeapSet());
+    }
+
+    @Test
+    public void testDeleteAndClear() throws IOException {
+        Data tiered = new Data();
+        tiered.setSegmentStore(store);
+        int id = tiered.create(new LinkedHashSet<>(Arrays.asList("c", "b", "a")));
+        StringSet set = tiered.get(id);
+        for (int i = 0; i < 100; i++) {
+            tiered.create(new LinkedHashSet<>(Arrays.asList("x" + i, "y" + i)));
+        }
+        assertNull(set.getHeapSet());
+        // deleted StringSets are still readable, but not faulted back in
+        tiered.delete(id);
+        assertEquals(Arrays.asList("c", "b", "a"), new ArrayList<>(set.getSet()));
+        assertNull(set.getHeapSet());
+
+        StringSet evicted = tiered.get(id + 1);
+        assertNull(evicted.getHeapSet());
+        assertTrue(Files.size(file) > 0);
+        tiered.clear();
+        assertEquals(0, Files.size(file));
+        assertEquals(0, store.getHeapCount());
+        assertEquals(Arrays.asList("x0", "y0"), new ArrayList<>(evicted.getSet()));
+        assertNull(evicted.getHeapSet());
+        // and the new store works
+        id = tiered.create(new LinkedHashSet<>(Arrays.asList("p", "q")));
+        for (int i = 0; i < 100; i++) {
+            tiered.create(new LinkedHashSet<>(Arrays.asList("x" + i, "y" + i)));
+        }
+        assertEquals(Arrays.asList("p", "q"), new ArrayList<>(tiered.get(id).getSet()));
+        assertTrue(Files.size(file) > 0);
+        tiered.close();
+    }
+}
@@ -0,0 +1,59 @@
+/*
+   Copyright 2016 Cyberian Tiger
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.cyberiantiger.example.stringsets.model;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Random;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Tests for {@link SetStatistics}.
+ *
+ * @author antony
+ */
+public class SetStatisticsTest {
+
+    @Test
+    public void testMedian() {
+        SetStatistics odd = new SetStatistics(new LinkedHashSet<>(Arrays.asList("ccc", "a", "bbbbb", "dd", "eeee")));
+        assertEquals(3D, odd.getMedianLength(), 0D);
+        assertEquals(1, odd.getShortestLength());
+        assertEquals(5, odd.getLongestLength());
+        SetStatistics even = new SetStatistics(new LinkedHashSet<>(Arrays.asList("dddd", "a", "ccc", "bbbbbb")));
+        assertEquals(3.5D, even.getMedianLength(), 0D);
+        assertEquals(3.5D, even.getAverageLength(), 0D);
+    }
+
+    @Test
+    public void testSelect() {
+        Random rand = new Random(2);
+        for (int n = 1; n < 200; n++) {
+            int[] values = new int[n];
+            for (int i = 0; i < n; i++) {
+                values[i] = rand.nextInt(10);
+            }
+            int[] sorted = values.clone();
+            Arrays.sort(sorted);
+            int k = rand.nextInt(n);
+            assertEquals(sorted[k], SetStatistics.select(values, k));
+            for (int i = 0; i < n; i++) {
+                assertTrue(i < k ? values[i] <= sorted[k] : values[i] >= sorted[k]);
+            }
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/*
+   Copyright 2016 Cyberian Tiger
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.cyberiantiger.example.stringsets.model;
+
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import junit.framework.AssertionFailedError;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Tests for {@link StringSetBuilder} and {@link CompactStringSet}.
+ *
+ * @author antony
+ */
+public class StringSetBuilderTest {
+
+    @Test
+    public void testMatchesLinkedHashSet() {
+        Random rand = new Random(5);
+        Set<String> expected = new LinkedHashSet<>();
+        StringSetBuilder builder = new StringSetBuilder(1);
+        while (expected.size() < 10000) {
+            String s = Integer.toString(rand.nextInt(1000000), 36) + (rand.nextInt(10) == 0 ? "é中" : "");
+            if (expected.add(s)) {
+                builder.add(s);
+            } else {
+                try {
+                    builder.add(s);
+                    throw new AssertionFailedError("Builder allowed a duplicate: " + s);
+                } catch (IllegalArgumentException ex) {
+                }
+            }
+        }
+        CompactStringSet actual = builder.build();
+        assertEquals(new ArrayList<>(expected), new ArrayList<>(actual));
+        assertEquals(expected, actual);
+        assertEquals(actual, expected);
+        assertEquals(expected.hashCode(), actual.hashCode());
+        assertEquals(Fingerprint.of(expected), Fingerprint.of(actual));
+        for (String s : expected) {
+            assertTrue(actual.contains(s));
+            assertFalse(actual.contains(s + "!"));
+        }
+        assertFalse(actual.contains(1));
+        assertEquals(expected.iterator().next(), actual.get(0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEmptyString() {
+        new StringSetBuilder().add("a").add("");
+    }
+
+    @Test
+    public void testEmptySet() {
+        CompactStringSet set = new StringSetBuilder().build();
+        assertTrue(set.isEmpty());
+        assertFalse(set.contains("a"));
+        try {
+            Data.validate(set);
+            throw new AssertionFailedError("Validation allowed an empty set");
+        } catch (IllegalArgumentException ex) {
+        }
+    }
+
+    @Test
+    public void testJson() throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        CompactStringSet set = mapper.readValue("[\"c\",\"a\",\"b\"]", CompactStringSet.class);
+        assertEquals(Arrays.asList("c", "a", "b"), new ArrayList<>(set));
+        assertEquals("[\"c\",\"a\",\"b\"]", mapper.writeValueAsString(set));
+        List<CompactStringSet> sets = mapper.readValue("[[\"a\"],[\"b\",\"c\"]]",
+                mapper.getTypeFactory().constructCollectionType(List.class, CompactStringSet.class));
+        assertEquals(2, sets.get(1).size());
+        for (String invalid : new String[] { "[\"a\",\"a\"]", "[\"a\",\"\"]", "[\"a\",1]", "\"a\"" }) {
+            try {
+                mapper.readValue(invalid, CompactStringSet.class);
+                throw new AssertionFailedError("Parsed an invalid set: " + invalid);
+            } catch (JsonMappingException ex) {
+            }
+        }
+    }
+}
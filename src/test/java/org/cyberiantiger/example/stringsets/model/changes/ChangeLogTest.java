@@ -0,0 +1,150 @@
+/*
+   Copyright 2016 Cyberian Tiger
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.cyberiantiger.example.stringsets.model.changes;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Tests for {@link ChangeLog}.
+ *
+ * @author antony
+ */
+public class ChangeLogTest {
+
+    @Test
+    public void testPublishedInOrder() {
+        ChangeLog log = new ChangeLog(8);
+        long a = log.reserve();
+        long b = log.reserve();
+        long c = log.reserve();
+        log.publish(b, Change.Type.DELETE, 1);
+        log.publish(c, null, 2);
+        // b can't be read until a is published.
+        assertEquals(0, log.getSequence());
+        assertTrue(log.read(0, 10).getChanges().isEmpty());
+        log.publish(a, Change.Type.CREATE, 1);
+        assertEquals(c, log.getSequence());
+        ChangeBatch batch = log.read(0, 10);
+        assertEquals(c, batch.getSequence());
+        assertEquals(2, batch.getChanges().size());
+        assertEquals(Change.Type.CREATE, batch.getChanges().get(0).getType());
+        assertEquals(Change.Type.DELETE, batch.getChanges().get(1).getType());
+    }
+
+    @Test
+    public void testTruncated() {
+        ChangeLog log = new ChangeLog(8);
+        for (int i = 1; i <= 20; i++) {
+            log.publish(log.reserve(), Change.Type.CREATE, i);
+        }
+        ChangeBatch batch = log.read(5, 100);
+        assertTrue(batch.isTruncated());
+        assertEquals(8, batch.getChanges().size());
+        assertEquals(13, batch.getChanges().get(0).getId());
+        assertEquals(20, batch.getSequence());
+        batch = log.read(12, 100);
+        assertFalse(batch.isTruncated());
+        assertEquals(8, batch.getChanges().size());
+        assertTrue(log.read(21, 100).isTruncated());
+    }
+
+    @Test
+    public void testOutOfOrderWhenFull() throws InterruptedException {
+        ChangeLog log = new ChangeLog(4);
+        for (int i = 1; i <= 4; i++) {
+            log.publish(log.reserve(), Change.Type.CREATE, i);
+        }
+        long a = log.reserve();
+        long b = log.reserve();
+        log.publish(b, Change.Type.DELETE, 6);
+        // b's slot held change 2, which is no longer retained.
+        ChangeBatch batch = log.read(0, 100);
+        assertTrue(batch.isTruncated());
+        assertEquals(4, batch.getSequence());
+        assertEquals(2, batch.getChanges().size());
+        assertEquals(3, batch.getChanges().get(0).getId());
+        assertEquals(4, batch.getChanges().get(1).getId());
+        assertFalse(log.read(2, 100).isTruncated());
+
+        // With capacity changes unpublished, reserving waits.
+        long c = log.reserve();
+        long d = log.reserve();
+        long[] reserved = new long[1];
+        Thread thread = new Thread(() -> reserved[0] = log.reserve());
+        thread.start();
+        thread.join(100);
+        assertTrue(thread.isAlive());
+        log.publish(c, Change.Type.CREATE, 7);
+        log.publish(d, Change.Type.CREATE, 8);
+        assertTrue(thread.isAlive());
+        log.publish(a, Change.Type.CREATE, 5);
+        thread.join();
+        assertEquals(d + 1, reserved[0]);
+        // The new reservation took the slot of 5.
+        batch = log.read(4, 100);
+        assertTrue(batch.isTruncated());
+        assertEquals(d, batch.getSequence());
+        assertEquals(3, batch.getChanges().size());
+        assertEquals(Change.Type.DELETE, batch.getChanges().get(0).getType());
+    }
+
+    @Test
+    public void testConcurrent() throws InterruptedException {
+        ChangeLog log = new ChangeLog(64);
+        Thread[] writers = new Thread[4];
+        for (int t = 0; t < writers.length; t++) {
+            int id = t;
+            writers[t] = new Thread(() -> {
+                for (int i = 0; i < 20000; i++) {
+                    long sequence = log.reserve();
+                    log.publish(sequence, i % 10 == 0 ? null : Change.Type.CREATE, id);
+                }
+            });
+            writers[t].start();
+        }
+        long since = 0;
+        long read = 0;
+        while (since < 80000) {
+            ChangeBatch batch = log.await(since, 16, 1000);
+            long previous = batch.isTruncated() ? 0 : since;
+            for (Change change : batch.getChanges()) {
+                assertTrue(change.getSequence() > previous);
+                assertTrue(change.getSequence() <= batch.getSequence());
+                assertNotNull(change.getType());
+                previous = change.getSequence();
+            }
+            if (!batch.isTruncated()) {
+                read += batch.getChanges().size();
+            }
+            since = batch.getSequence();
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        assertEquals(80000, log.getSequence());
+        assertTrue(read <= 72000);
+    }
+
+    @Test
+    public void testAwaitTimeout() throws InterruptedException {
+        ChangeLog log = new ChangeLog();
+        ChangeBatch batch = log.await(0, 10, 10);
+        assertFalse(batch.isTruncated());
+        assertTrue(batch.getChanges().isEmpty());
+        assertEquals(0, batch.getSequence());
+    }
+}
@@ -0,0 +1,128 @@
+/*
+   Copyright 2016 Cyberian Tiger
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.cyberiantiger.example.stringsets.model.frequency;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.cyberiantiger.example.stringsets.model.Data;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Tests for {@link CountMinSketch}, {@link HeavyHitters} and approximate
+ * frequencies in {@link Data}.
+ *
+ * @author antony
+ */
+public class HeavyHittersTest {
+
+    /**
+     * Sets of Strings whose frequencies follow a power law, so there are
+     * clear heavy hitters and a long tail.
+     */
+    private static List<Set<String>> skewedSets(long seed, int count) {
+        Random rand = new Random(seed);
+        List<Set<String>> result = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Set<String> set = new LinkedHashSet<>();
+            int size = 1 + rand.nextInt(30);
+            while (set.size() < size) {
+                set.add("s" + (int) Math.pow(100000, rand.nextDouble()));
+            }
+            result.add(set);
+        }
+        return result;
+    }
+
+    @Test
+    public void testSketchBounds() {
+        CountMinSketch sketch = new CountMinSketch(1024, 4);
+        Map<String, Integer> exact = new HashMap<>();
+        for (Set<String> set : skewedSets(1, 2000)) {
+            for (String s : set) {
+                sketch.add(s, 1);
+                exact.merge(s, 1, Integer::sum);
+            }
+        }
+        int outside = 0;
+        for (Map.Entry<String, Integer> e : exact.entrySet()) {
+            int estimate = sketch.estimate(e.getKey());
+            assertTrue(estimate >= e.getValue());
+            if (estimate - e.getValue() > sketch.getErrorBound()) {
+                outside++;
+            }
+        }
+        // At most e^-4 (under 2%) are expected to exceed the bound.
+        assertTrue(outside <= exact.size() / 50);
+        for (Map.Entry<String, Integer> e : exact.entrySet()) {
+            sketch.add(e.getKey(), -e.getValue());
+        }
+        assertEquals(0, sketch.getTotal());
+        assertEquals(0, sketch.estimate("s1"));
+    }
+
+    @Test
+    public void testTopMatchesExact() {
+        List<Set<String>> sets = skewedSets(2, 5000);
+        Data exact = new Data(3);
+        Data approximate = new Data(3);
+        approximate.setHeavyHitters(100);
+        for (Set<String> set : sets) {
+            assertEquals(exact.create(set), approximate.create(set));
+        }
+        List<String> expected = exact.getTopFrequencies(20).stream().map(FrequencyEstimate::getString).collect(Collectors.toList());
+        List<String> actual = approximate.getTopFrequencies(20).stream().map(FrequencyEstimate::getString).collect(Collectors.toList());
+        assertEquals(expected, actual);
+        assertEquals(exact.getMostCommon(), approximate.getMostCommon());
+        assertEquals(exact.getLongest(), approximate.getLongest());
+        assertEquals(exact.search("s1"), approximate.search("s1"));
+        assertEquals(Arrays.asList(), approximate.search("missing"));
+        for (FrequencyEstimate e : exact.getTopFrequencies(100)) {
+            int estimate = approximate.estimateFrequency(e.getString());
+            assertTrue(estimate >= e.getCount());
+            assertTrue(estimate <= e.getCount() + 10);
+        }
+
+        // Deleting every set containing the most common string.
+        String mostCommon = expected.get(0);
+        for (int id : exact.search(mostCommon)) {
+            exact.delete(id);
+            approximate.delete(id);
+        }
+        assertEquals(0, approximate.estimateFrequency(mostCommon));
+        assertEquals(exact.getTopFrequencies(1).get(0).getString(), approximate.getTopFrequencies(1).get(0).getString());
+
+        // Switching back to exact frequencies rebuilds them.
+        approximate.setHeavyHitters(0);
+        assertEquals(exact.getFrequencies(), approximate.getFrequencies());
+        assertEquals(exact.getExactlyIn(2), approximate.getExactlyIn(2));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testExactlyInUnsupported() {
+        Data approximate = new Data();
+        approximate.setHeavyHitters(10);
+        approximate.create(new LinkedHashSet<>(Arrays.asList("a", "b")));
+        approximate.getExactlyIn(1);
+    }
+}
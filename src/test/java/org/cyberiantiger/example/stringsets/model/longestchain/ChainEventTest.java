@@ -0,0 +1,74 @@
+/*
+   Copyright 2016 Cyberian Tiger
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.cyberiantiger.example.stringsets.model.longestchain;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+import org.junit.Test;
+
+/**
+ * Tests for the flight recorder events of {@link LongestChainSolver}, not
+ * compiled by the java8 profile.
+ *
+ * @author antony
+ */
+public class ChainEventTest {
+
+    @Test
+    public void testEvents() throws IOException {
+        assumeTrue(FlightRecorder.isAvailable());
+        Set<String> one = new LinkedHashSet<>(Arrays.asList("foo", "oomph", "hgf"));
+        Set<String> two = new LinkedHashSet<>(Arrays.asList("hij", "jkl", "jkm", "lmn"));
+        Set<String> three = new LinkedHashSet<>(Arrays.asList("abc", "cde", "cdf", "fuf", "fgh"));
+        Path file = Files.createTempFile("chain", ".jfr");
+        try {
+            try (Recording recording = new Recording()) {
+                recording.enable(ChainSearchEvent.class).withoutThreshold();
+                recording.enable(ChainCombineEvent.class).withoutThreshold();
+                recording.start();
+                assertEquals(7, LongestChainSolver.solve(Arrays.asList(one, two, three)).size());
+                recording.stop();
+                recording.dump(file);
+            }
+            List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+            List<RecordedEvent> searches = events.stream()
+                    .filter(e -> e.getEventType().getName().equals("org.cyberiantiger.stringsets.ChainSearch"))
+                    .collect(Collectors.toList());
+            List<RecordedEvent> combines = events.stream()
+                    .filter(e -> e.getEventType().getName().equals("org.cyberiantiger.stringsets.ChainCombine"))
+                    .collect(Collectors.toList());
+            assertEquals(3, searches.size());
+            assertEquals(12, searches.stream().mapToInt(e -> e.getInt("strings")).sum());
+            assertEquals(1, combines.size());
+            assertEquals(3, combines.get(0).getInt("from"));
+            assertEquals(7, combines.get(0).getInt("length"));
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
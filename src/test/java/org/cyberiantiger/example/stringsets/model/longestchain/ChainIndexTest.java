@@ -0,0 +1,166 @@
+/*
+   Copyright 2016 Cyberian Tiger
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.cyberiantiger.example.stringsets.model.longestchain;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import org.cyberiantiger.example.stringsets.model.Data;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Tests that the longest chain maintained by {@link ChainIndex} matches the
+ * longest chain combined from every summary.
+ *
+ * @author antony
+ */
+public class ChainIndexTest {
+
+    private static Set<String> randomSet(Random rand) {
+        Set<String> result = new LinkedHashSet<>();
+        int size = 1 + rand.nextInt(6);
+        while (result.size() < size) {
+            result.add("" + (char) ('a' + rand.nextInt(6)) + (char) ('a' + rand.nextInt(6)));
+        }
+        return result;
+    }
+
+    private static void assertChain(List<String> chain) {
+        for (int i = 1; i < chain.size(); i++) {
+            String previous = chain.get(i - 1);
+            assertEquals(previous.charAt(previous.length() - 1), chain.get(i).charAt(0));
+        }
+    }
+
+    @Test
+    public void testRandomChanges() {
+        Random rand = new Random(1);
+        ChainIndex index = new ChainIndex();
+        Map<Integer, ChainSummary> summaries = new HashMap<>();
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            if (ids.isEmpty() || rand.nextInt(3) > 0) {
+                int id = i;
+                ChainSummary summary = LongestChainSolver.summarise(randomSet(rand));
+                summaries.put(id, summary);
+                index.put(id, summary);
+                ids.add(id);
+            } else {
+                // Removing the best chain of a character needs the next best.
+                int id = ids.remove(rand.nextInt(ids.size()));
+                summaries.remove(id);
+                assertTrue(index.remove(id));
+            }
+            List<String> chain = index.getLongest();
+            assertEquals(LongestChainSolver.combine(summaries).size(), chain.size());
+            assertChain(chain);
+        }
+        assertFalse(index.remove(-1));
+        assertEquals(summaries.size(), index.size());
+        index.clear();
+        assertTrue(index.getLongest().isEmpty());
+    }
+
+    @Test
+    public void testNoJumpWithinSet() {
+        ChainIndex index = new ChainIndex();
+        index.put(1, LongestChainSolver.summarise(new LinkedHashSet<>(Arrays.asList("ab", "bc"))));
+        assertEquals(Arrays.asList("ab", "bc"), index.getLongest());
+        index.put(2, LongestChainSolver.summarise(new LinkedHashSet<>(Arrays.asList("cd"))));
+        assertEquals(Arrays.asList("ab", "bc", "cd"), index.getLongest());
+        index.put(2, LongestChainSolver.summarise(new LinkedHashSet<>(Arrays.asList("xy"))));
+        assertEquals(Arrays.asList("ab", "bc"), index.getLongest());
+    }
+
+    @Test
+    public void testData() {
+        Random rand = new Random(2);
+        Data data = new Data(3);
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            if (ids.isEmpty() || rand.nextInt(3) > 0) {
+                ids.add(data.create(randomSet(rand)));
+            } else {
+                data.delete(ids.remove(rand.nextInt(ids.size())));
+            }
+            if (i % 7 == 0) {
+                assertEquals(LongestChainSolver.combine(data.getChainSummaries()).size(), data.getLongestChain().size());
+                assertTrue(data.isLongestChainCached());
+            }
+        }
+        data.clear();
+        assertTrue(data.getLongestChain().isEmpty());
+        Map<Integer, Set<String>> snapshot = new HashMap<>();
+        snapshot.put(1, new LinkedHashSet<>(Arrays.asList("ab", "bc")));
+        snapshot.put(2, new LinkedHashSet<>(Arrays.asList("cd")));
+        data.load(snapshot);
+        assertEquals(Arrays.asList("ab", "bc", "cd"), data.getLongestChain());
+    }
+
+    private static int anchoredLength(Map<Integer, ChainSummary> anchored, Map<Integer, ChainSummary> from, Map<Integer, ChainSummary> to) {
+        int result = LongestChainSolver.join(from, to).size();
+        for (ChainSummary summary : anchored.values()) {
+            result = Math.max(result, summary.getLongest().size());
+        }
+        return result;
+    }
+
+    @Test
+    public void testAnchored() {
+        // The longest chain starting with a is in the anchored set itself,
+        // so the jump must take the next best.
+        Data data = new Data(3);
+        data.create(new LinkedHashSet<>(Arrays.asList("ab", "ba")));
+        data.create(new LinkedHashSet<>(Arrays.asList("ax")));
+        data.create(new LinkedHashSet<>(Arrays.asList("xa")));
+        assertEquals(Arrays.asList("ab", "ba", "ax"), data.getLongestChainStartingAt("ab"));
+        assertEquals(Arrays.asList("xa", "ab", "ba"), data.getLongestChainEndingWith("ba"));
+        assertTrue(data.getLongestChainStartingAt("zz").isEmpty());
+
+        Random rand = new Random(3);
+        data.clear();
+        for (int i = 0; i < 200; i++) {
+            data.create(randomSet(rand));
+        }
+        for (int i = 0; i < 50; i++) {
+            String string = "" + (char) ('a' + rand.nextInt(6)) + (char) ('a' + rand.nextInt(6));
+            Map<Integer, ChainSummary> all = data.getChainSummaries();
+            Map<Integer, ChainSummary> from = new HashMap<>();
+            Map<Integer, ChainSummary> to = new HashMap<>();
+            for (Map.Entry<Integer, Set<String>> e : data.getMap().entrySet()) {
+                if (e.getValue().contains(string)) {
+                    from.put(e.getKey(), LongestChainSolver.summariseFrom(e.getValue(), string));
+                    to.put(e.getKey(), LongestChainSolver.summariseTo(e.getValue(), string));
+                }
+            }
+            List<String> startingAt = data.getLongestChainStartingAt(string);
+            List<String> endingWith = data.getLongestChainEndingWith(string);
+            assertEquals(anchoredLength(from, from, all), startingAt.size());
+            assertEquals(anchoredLength(to, all, to), endingWith.size());
+            assertChain(startingAt);
+            assertChain(endingWith);
+            if (i % 10 == 0) {
+                data.create(randomSet(rand));
+            }
+        }
+    }
+}
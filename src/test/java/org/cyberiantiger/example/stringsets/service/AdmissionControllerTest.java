@@ -0,0 +1,151 @@
+/*
+   Copyright 2016 Cyberian Tiger
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.cyberiantiger.example.stringsets.service;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import javax.ws.rs.HttpMethod;
+import org.cyberiantiger.example.stringsets.model.Data;
+import org.cyberiantiger.example.stringsets.service.AdmissionController.Admission;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Tests for AdmissionController.
+ *
+ * @author antony
+ */
+public class AdmissionControllerTest {
+
+    private static AdmissionStatistics statistics(AdmissionController controller, CostClass costClass) {
+        return controller.getStatistics().stream()
+                .filter(s -> s.getCostClass() == costClass)
+                .findFirst().get();
+    }
+
+    private static Cost cost(String method, Class<?>... parameters) throws NoSuchMethodException {
+        return StringSetResource.class.getMethod(method, parameters).getAnnotation(Cost.class);
+    }
+
+    @Test(timeout = 10000)
+    public void testLimits() throws Exception {
+        AdmissionController controller = new AdmissionController();
+        controller.configure(CostClass.SCAN, 2, 1000, 1);
+        controller.setMaxWaitMillis(5000);
+        assertEquals(Admission.ADMITTED, controller.acquire(CostClass.SCAN));
+        assertEquals(Admission.ADMITTED, controller.acquire(CostClass.SCAN));
+        CompletableFuture<Admission> deferred = CompletableFuture.supplyAsync(() -> {
+            try {
+                return controller.acquire(CostClass.SCAN);
+            } catch (InterruptedException ex) {
+                throw new IllegalStateException(ex);
+            }
+        });
+        while (statistics(controller, CostClass.SCAN).getWaiting() == 0) {
+            Thread.sleep(1);
+        }
+        assertEquals(Admission.SHED, controller.acquire(CostClass.SCAN));
+        // Other classes are unaffected.
+        assertEquals(Admission.ADMITTED, controller.acquire(CostClass.EXPENSIVE));
+        controller.release(CostClass.SCAN, 0);
+        assertEquals(Admission.ADMITTED, deferred.get());
+
+        controller.setMaxWaitMillis(10);
+        assertEquals(Admission.TIMED_OUT, controller.acquire(CostClass.SCAN));
+        AdmissionStatistics scan = statistics(controller, CostClass.SCAN);
+        assertEquals(2, scan.getInFlight());
+        assertEquals(3, scan.getAdmitted());
+        assertEquals(1, scan.getDeferred());
+        assertEquals(1, scan.getShed());
+        assertEquals(1, scan.getTimedOut());
+        assertEquals(Admission.ADMITTED, controller.acquire(CostClass.EXEMPT));
+    }
+
+    @Test
+    public void testAdaptation() throws Exception {
+        AdmissionController controller = new AdmissionController();
+        controller.configure(CostClass.EXPENSIVE, 8, 10, 0);
+        controller.configure(CostClass.SCAN, 8, 10, 0);
+        long slow = TimeUnit.SECONDS.toNanos(1);
+        long fast = TimeUnit.MILLISECONDS.toNanos(1);
+
+        controller.acquire(CostClass.EXPENSIVE);
+        controller.release(CostClass.EXPENSIVE, slow);
+        assertEquals(7.2, statistics(controller, CostClass.EXPENSIVE).getLimit(), 1e-9);
+        for (int i = 0; i < 100; i++) {
+            controller.acquire(CostClass.EXPENSIVE);
+            controller.release(CostClass.EXPENSIVE, slow);
+        }
+        assertEquals(2, statistics(controller, CostClass.EXPENSIVE).getLimit(), 1e-9);
+        assertEquals(1, controller.getRetryAfterSeconds(CostClass.EXPENSIVE));
+
+        // Fast requests only raise the limit when it is reached.
+        controller.acquire(CostClass.EXPENSIVE);
+        controller.release(CostClass.EXPENSIVE, fast);
+        assertEquals(2, statistics(controller, CostClass.EXPENSIVE).getLimit(), 1e-9);
+        controller.acquire(CostClass.EXPENSIVE);
+        controller.acquire(CostClass.EXPENSIVE);
+        controller.release(CostClass.EXPENSIVE, fast);
+        controller.release(CostClass.EXPENSIVE, fast);
+        assertEquals(2.5, statistics(controller, CostClass.EXPENSIVE).getLimit(), 1e-9);
+
+        // Slow cheap requests back off scans, but not cheap requests.
+        double cheapLimit = statistics(controller, CostClass.CHEAP).getLimit();
+        controller.acquire(CostClass.CHEAP);
+        controller.release(CostClass.CHEAP, slow);
+        assertEquals(7.2, statistics(controller, CostClass.SCAN).getLimit(), 1e-9);
+        assertEquals(cheapLimit, statistics(controller, CostClass.CHEAP).getLimit(), 1e-9);
+    }
+
+    @Test
+    public void testEstimate() throws Exception {
+        AdmissionController controller = new AdmissionController();
+        Data data = new Data();
+        data.create(new LinkedHashSet<>(Arrays.asList("abc", "cde")));
+        Cost mostCommon = cost("mostCommon");
+        Cost longestChain = cost("longestChain");
+
+        assertEquals(CostClass.CHEAP, controller.estimate(cost("get", int.class), data));
+        assertEquals(CostClass.SCAN, controller.estimate(null, data));
+        assertEquals(CostClass.CHEAP, controller.estimate(mostCommon, data));
+        assertEquals(CostClass.SCAN, controller.estimate(mostCommon, null));
+        controller.setSmallStoreBytes(0);
+        assertEquals(CostClass.SCAN, controller.estimate(mostCommon, data));
+
+        assertEquals(CostClass.EXPENSIVE, controller.estimate(longestChain, data));
+        assertEquals(Arrays.asList("abc", "cde"), data.getLongestChain());
+        assertEquals(CostClass.CHEAP, controller.estimate(longestChain, data));
+        assertEquals(CostClass.EXPENSIVE, controller.estimate(cost("explainLongestChain"), data));
+        data.create(new LinkedHashSet<>(Arrays.asList("efg")));
+        assertEquals(CostClass.EXPENSIVE, controller.estimate(longestChain, data));
+        assertEquals(CostClass.EXEMPT, controller.estimate(cost("changes", long.class, int.class, long.class), data));
+    }
+
+    @Test
+    public void testEveryEndpointHasCost() {
+        for (Method method : StringSetResource.class.getMethods()) {
+            for (Annotation annotation : method.getAnnotations()) {
+                if (annotation.annotationType().isAnnotationPresent(HttpMethod.class)) {
+                    assertNotNull("No cost for " + method, method.getAnnotation(Cost.class));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/*
+   Copyright 2016 Cyberian Tiger
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.cyberiantiger.example.stringsets.service;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.core.Application;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import org.cyberiantiger.example.stringsets.model.Data;
+import org.glassfish.jersey.server.ResourceConfig;
+import org.glassfish.jersey.test.JerseyTest;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Integration tests for admission control.
+ *
+ * @author antony
+ */
+public class AdmissionIntegrationTest extends JerseyTest {
+
+    private final AtomicBoolean broken = new AtomicBoolean();
+    private Data data;
+    private AdmissionController controller;
+
+    @Override
+    protected Application configure() {
+        data = new Data() {
+            @Override
+            public List<String> getMostCommon() {
+                if (broken.get()) {
+                    throw new IllegalStateException("Broken");
+                }
+                return super.getMostCommon();
+            }
+        };
+        controller = new AdmissionController();
+        controller.configure(CostClass.EXPENSIVE, 1, 10000, 0);
+        controller.configure(CostClass.SCAN, 1, 10000, 1);
+        controller.setMaxWaitMillis(50);
+        controller.setSmallStoreBytes(0);
+        return new ResourceConfig()
+                .register(new StringSetResource(data, new ResponseCache(1 << 20), null))
+                .register(new AdmissionFilter(controller))
+                .register(JsonListWriter.class);
+    }
+
+    private int upload(List<String> strings) {
+        return target("upload").request().post(Entity.entity(strings, MediaType.APPLICATION_JSON), Integer.class);
+    }
+
+    private void awaitIdle(CostClass costClass) throws InterruptedException {
+        // Permits are returned once the response has been written, which may be
+        // after the client has read it.
+        long deadline = System.currentTimeMillis() + 5000;
+        while (controller.getStatistics().get(costClass.ordinal()).getInFlight() != 0
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, controller.getStatistics().get(costClass.ordinal()).getInFlight());
+    }
+
+    @Test
+    public void testShedding() throws Exception {
+        int id = upload(Arrays.asList("abc", "cde"));
+
+        assertEquals(AdmissionController.Admission.ADMITTED, controller.acquire(CostClass.EXPENSIVE));
+        Response response = target("longest_chain").request().get();
+        assertEquals(AdmissionFilter.TOO_MANY_REQUESTS, response.getStatus());
+        assertEquals("1", response.getHeaderString(HttpHeaders.RETRY_AFTER));
+        assertEquals(Arrays.asList("abc", "cde"), target(String.valueOf(id)).request().get(List.class));
+
+        assertEquals(AdmissionController.Admission.ADMITTED, controller.acquire(CostClass.SCAN));
+        assertEquals(503, target("most_common").request().get().getStatus());
+        controller.release(CostClass.SCAN, 0);
+        assertEquals(200, target("most_common").request().get().getStatus());
+
+        controller.release(CostClass.EXPENSIVE, 0);
+        assertEquals(Arrays.asList("abc", "cde"), target("longest_chain").request().get(List.class));
+        awaitIdle(CostClass.EXPENSIVE);
+
+        // The cached longest chain is cheap until the next change.
+        controller.acquire(CostClass.EXPENSIVE);
+        assertEquals(Arrays.asList("abc", "cde"), target("longest_chain").request().get(List.class));
+        upload(Arrays.asList("efg"));
+        assertEquals(AdmissionFilter.TOO_MANY_REQUESTS, target("longest_chain").request().get().getStatus());
+        assertEquals(200, target("changes").queryParam("since", 0).request().get().getStatus());
+        controller.release(CostClass.EXPENSIVE, 0);
+        assertEquals(Arrays.asList("abc", "cde", "efg"), target("longest_chain").request().get(List.class));
+        awaitIdle(CostClass.EXPENSIVE);
+
+        AdmissionStatistics expensive = controller.getStatistics().get(CostClass.EXPENSIVE.ordinal());
+        assertEquals(0, expensive.getInFlight());
+        assertEquals(2, expensive.getShed());
+    }
+
+    @Test
+    public void testException() throws Exception {
+        upload(Arrays.asList("abc", "cde"));
+
+        broken.set(true);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(500, target("most_common").request().get().getStatus());
+            awaitIdle(CostClass.SCAN);
+        }
+
+        broken.set(false);
+        assertEquals(200, target("most_common").request().get().getStatus());
+        awaitIdle(CostClass.SCAN);
+        assertEquals(4, controller.getStatistics().get(CostClass.SCAN.ordinal()).getAdmitted());
+    }
+}
@@ -0,0 +1,171 @@
+/*
+   Copyright 2016 Cyberian Tiger
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.cyberiantiger.example.stringsets.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.core.Application;
+import javax.ws.rs.core.GenericEntity;
+import javax.ws.rs.core.GenericType;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import org.cyberiantiger.example.stringsets.model.Data;
+import org.glassfish.jersey.client.ClientConfig;
+import org.glassfish.jersey.server.ResourceConfig;
+import org.glassfish.jersey.test.JerseyTest;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Integration tests for the binary format.
+ * @author antony
+ */
+public class BinaryFormatIntegrationTest extends JerseyTest {
+    @Override
+    protected Application configure() {
+        return new ResourceConfig(StringSetResource.class, BinaryMessageBodyReader.class, BinaryMessageBodyWriter.class, CachedStringSetWriter.class, JsonListWriter.class);
+    }
+
+    @Override
+    protected void configureClient(ClientConfig config) {
+        config.register(BinaryMessageBodyReader.class).register(BinaryMessageBodyWriter.class);
+    }
+
+    private static final Set<String> sampleSet = new LinkedHashSet<>(Arrays.asList("c", "äö", "a"));
+
+    private static Entity<byte[]> encode(List<String> strings) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryFormat.Encoder encoder = new BinaryFormat.Encoder(out);
+        encoder.writeStrings(strings);
+        encoder.flush();
+        return Entity.entity(out.toByteArray(), BinaryFormat.MEDIA_TYPE_TYPE);
+    }
+
+    @Test
+    public void testBinary() throws IOException {
+        Data.instance.clear();
+        int id = target("upload").request().post(Entity.entity(new GenericEntity<Set<String>>(sampleSet) {}, BinaryFormat.MEDIA_TYPE_TYPE), Integer.class);
+        // get, in both formats
+        Set<String> set = target(String.valueOf(id)).request(BinaryFormat.MEDIA_TYPE_TYPE).get(new GenericType<Set<String>>() {});
+        assertEquals(new ArrayList<>(sampleSet), new ArrayList<>(set));
+        assertEquals(new ArrayList<>(sampleSet), target(String.valueOf(id)).request(MediaType.APPLICATION_JSON).get(List.class));
+        // json is still the default
+        assertEquals(MediaType.APPLICATION_JSON_TYPE, target(String.valueOf(id)).request().get().getMediaType());
+
+        // bulk upload
+        ByteArrayOutputStream bulk = new ByteArrayOutputStream();
+        BinaryFormat.Encoder encoder = new BinaryFormat.Encoder(bulk);
+        encoder.writeInt(2);
+        encoder.writeStrings(Collections.singleton("a"));
+        encoder.writeStrings(Collections.singleton("b"));
+        encoder.flush();
+        List<?> ids = target("bulk_upload").request().post(Entity.entity(bulk.toByteArray(), BinaryFormat.MEDIA_TYPE_TYPE), List.class);
+        assertEquals(Arrays.asList(id + 1, id + 2), ids);
+        ids = target("bulk_upload").request().post(Entity.entity(Arrays.asList(Arrays.asList("x"), Arrays.asList("y", "z")), MediaType.APPLICATION_JSON), List.class);
+        assertEquals(Arrays.asList(id + 3, id + 4), ids);
+
+        // search
+        byte[] search = target("search").request(BinaryFormat.MEDIA_TYPE_TYPE).post(Entity.entity("a", MediaType.APPLICATION_JSON), byte[].class);
+        BinaryFormat.Decoder in = new BinaryFormat.Decoder(new ByteArrayInputStream(search));
+        assertEquals(2, in.readInt());
+        assertEquals(id, in.readInt());
+        assertEquals(id + 1, in.readInt());
+
+        // list
+        in = new BinaryFormat.Decoder(target("").request(BinaryFormat.MEDIA_TYPE_TYPE).get(InputStream.class));
+        assertEquals(5, in.readInt());
+        assertEquals(id, in.readInt());
+        assertEquals(new ArrayList<>(sampleSet), new ArrayList<>(in.readStringSet()));
+
+        // validation
+        Response response = target("upload").request().post(encode(Arrays.asList("a", "a")));
+        assertEquals(400, response.getStatus());
+        response = target("upload").request().post(encode(Collections.singletonList("")));
+        assertEquals(400, response.getStatus());
+        response = target("upload").request().post(Entity.entity(new byte[] { 2, 1 }, BinaryFormat.MEDIA_TYPE_TYPE));
+        assertEquals(400, response.getStatus());
+        response = target("bulk_upload").request().post(Entity.entity(Arrays.asList(Arrays.asList("q"), Collections.emptyList()), MediaType.APPLICATION_JSON));
+        assertEquals(400, response.getStatus());
+        assertEquals(Collections.emptyList(), Data.instance.search("q"));
+    }
+
+    @Test
+    public void testLengths() throws IOException {
+        Data.instance.clear();
+        // a string longer than the decoder's buffer
+        char[] chars = new char[100000];
+        Arrays.fill(chars, 'x');
+        String longString = new String(chars);
+        int id = target("upload").request().post(encode(Collections.singletonList(longString)), Integer.class);
+        assertEquals(Collections.singletonList(longString), target(String.valueOf(id)).request(MediaType.APPLICATION_JSON).get(List.class));
+
+        // a huge length is refused without reading it
+        Response response = target("upload").request().post(Entity.entity(new byte[] { 1, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07 }, BinaryFormat.MEDIA_TYPE_TYPE));
+        assertEquals(400, response.getStatus());
+        // a length under the limit, but more than was sent
+        response = target("upload").request().post(Entity.entity(new byte[] { 1, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0x08, 'a' }, BinaryFormat.MEDIA_TYPE_TYPE));
+        assertEquals(400, response.getStatus());
+        // integers which overflow
+        response = target("upload").request().post(Entity.entity(new byte[] { (byte) 0x81, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0x10 }, BinaryFormat.MEDIA_TYPE_TYPE));
+        assertEquals(400, response.getStatus());
+        response = target("upload").request().post(Entity.entity(new byte[] { (byte) 0x81, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0x00 }, BinaryFormat.MEDIA_TYPE_TYPE));
+        assertEquals(400, response.getStatus());
+        assertEquals(1, Data.instance.getKeys().size());
+    }
+
+    @Test
+    public void testExportImport() throws IOException {
+        Data.instance.clear();
+        int idA = target("upload").request().post(Entity.entity(new GenericEntity<Set<String>>(sampleSet) {}, BinaryFormat.MEDIA_TYPE_TYPE), Integer.class);
+        int idB = target("upload").request().post(Entity.entity(Arrays.asList("a", "b"), MediaType.APPLICATION_JSON), Integer.class);
+        target(idA + "/delete").request().get();
+        int idC = target("upload").request().post(Entity.entity(Arrays.asList("b", "c"), MediaType.APPLICATION_JSON), Integer.class);
+        byte[] snapshot = target("export").request(BinaryFormat.MEDIA_TYPE_TYPE).get(byte[].class);
+        Map<?, ?> expected = target("").request(MediaType.APPLICATION_JSON).get(Map.class);
+
+        Data.instance.clear();
+        target("upload").request().post(Entity.entity(Arrays.asList("z"), MediaType.APPLICATION_JSON), Integer.class);
+        assertEquals(Integer.valueOf(2), target("import").request().post(Entity.entity(snapshot, BinaryFormat.MEDIA_TYPE_TYPE), Integer.class));
+        assertEquals(expected, target("").request(MediaType.APPLICATION_JSON).get(Map.class));
+        // indexes are rebuilt, and new ids follow the imported ones
+        assertEquals(Arrays.asList(idB, idC), target("search").request().post(Entity.entity("b", MediaType.APPLICATION_JSON), List.class));
+        assertEquals(Collections.emptyList(), target("search").request().post(Entity.entity("z", MediaType.APPLICATION_JSON), List.class));
+        assertTrue(target("upload").request().post(Entity.entity(Arrays.asList("z"), MediaType.APPLICATION_JSON), Integer.class) > idC);
+
+        // invalid snapshots change nothing
+        ByteArrayOutputStream invalid = new ByteArrayOutputStream();
+        BinaryFormat.Encoder encoder = new BinaryFormat.Encoder(invalid);
+        encoder.writeInt(2);
+        encoder.writeInt(1);
+        encoder.writeStrings(Collections.singleton("a"));
+        encoder.writeInt(2);
+        encoder.writeStrings(Collections.emptyList());
+        encoder.flush();
+        Response response = target("import").request().post(Entity.entity(invalid.toByteArray(), BinaryFormat.MEDIA_TYPE_TYPE));
+        assertEquals(400, response.getStatus());
+        assertEquals(3, Data.instance.getKeys().size());
+    }
+}
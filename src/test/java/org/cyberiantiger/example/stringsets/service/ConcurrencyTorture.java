@@ -0,0 +1,653 @@
+/*
+   Copyright 2016 Cyberian Tiger
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.cyberiantiger.example.stringsets.service;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.GenericType;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import org.cyberiantiger.example.stringsets.model.CorpusStatistics;
+import org.cyberiantiger.example.stringsets.model.Data;
+import org.cyberiantiger.example.stringsets.model.Histogram;
+import org.cyberiantiger.example.stringsets.model.StringSet;
+import org.cyberiantiger.example.stringsets.model.longestchain.LongestChainSolver;
+
+/**
+ * Drives a data store from many threads with a mix of uploads, deletes,
+ * gets, intersections and aggregate queries, either directly or over HTTP,
+ * recording the latency of each operation and checking every result.
+ *
+ * Every uploaded string set contains {@link #MARKER}, so a search for it
+ * should return every live string set, it's frequency should be the number
+ * of live string sets, and no intersection is empty. Each operation is
+ * timed, and a result is only a violation if no order of the operations
+ * overlapping it could explain it: for example a search returning an id
+ * whose delete completed before the search started, an intersection of a
+ * string set deleted before the intersection started, or an intersection
+ * whose strings are not those of both it's inputs. Once every thread is
+ * done the store is checked against every string set still live.
+ *
+ * @author antony
+ */
+public class ConcurrencyTorture {
+
+    /**
+     * The string in every uploaded string set.
+     */
+    public static final String MARKER = "#";
+
+    /**
+     * The maximum number of violations described in a result.
+     */
+    private static final int MAX_REPORTED = 100;
+
+    /**
+     * The number of live string sets each search checks it returned.
+     */
+    private static final int SEARCH_SAMPLES = 16;
+
+    /**
+     * The operations performed, with their share of the mix in percent.
+     */
+    public enum Operation {
+        CREATE(25),
+        GET(25),
+        DELETE(12),
+        INTERSECT(10),
+        SEARCH(10),
+        FREQUENCY(7),
+        STATISTICS(5),
+        LONGEST_CHAIN(3),
+        MOST_COMMON(3);
+
+        private final int weight;
+
+        private Operation(int weight) {
+            this.weight = weight;
+        }
+    }
+
+    /**
+     * The operations of a data store used by the torture test.
+     */
+    public interface Store {
+
+        int create(Set<String> set);
+
+        /**
+         * @return the strings, or null if the string set does not exist
+         */
+        Set<String> get(int id);
+
+        /**
+         * @return false if the string set does not exist
+         */
+        boolean delete(int id);
+
+        /**
+         * @return the id of the intersection, or -1 if either string set
+         *         does not exist
+         */
+        int intersect(int a, int b);
+
+        List<Integer> search(String string);
+
+        int frequency(String string);
+
+        long sets();
+
+        List<String> longestChain();
+
+        List<String> mostCommon();
+    }
+
+    /**
+     * Get a store which calls a data store directly.
+     *
+     * @param data the data store
+     * @return the store
+     */
+    public static Store direct(Data data) {
+        return new Store() {
+            @Override
+            public int create(Set<String> set) {
+                return data.create(set);
+            }
+
+            @Override
+            public Set<String> get(int id) {
+                StringSet set = data.get(id);
+                return set == null ? null : set.getSet();
+            }
+
+            @Override
+            public boolean delete(int id) {
+                return data.delete(id) != null;
+            }
+
+            @Override
+            public int intersect(int a, int b) {
+                try {
+                    return data.createIntersection(a, b);
+                } catch (IllegalArgumentException ex) {
+                    return -1;
+                }
+            }
+
+            @Override
+            public List<Integer> search(String string) {
+                return data.search(string);
+            }
+
+            @Override
+            public int frequency(String string) {
+                return data.estimateFrequency(string);
+            }
+
+            @Override
+            public long sets() {
+                return data.getStatistics().getSets();
+            }
+
+            @Override
+            public List<String> longestChain() {
+                return data.getLongestChain();
+            }
+
+            @Override
+            public List<String> mostCommon() {
+                return data.getMostCommon();
+            }
+        };
+    }
+
+    /**
+     * Get a store which calls the endpoints of a {@link StringSetResource}.
+     *
+     * @param target the base of the resource
+     * @return the store
+     */
+    public static Store http(WebTarget target) {
+        return new HttpStore(target);
+    }
+
+    private static final class HttpStore implements Store {
+        private static final GenericType<List<String>> STRINGS = new GenericType<List<String>>() {};
+        private static final GenericType<List<Integer>> IDS = new GenericType<List<Integer>>() {};
+
+        private final WebTarget target;
+
+        private HttpStore(WebTarget target) {
+            this.target = target;
+        }
+
+        private static <T> T read(Response response, int missing, T absent, GenericType<T> type) {
+            if (response.getStatus() == missing) {
+                response.close();
+                return absent;
+            }
+            if (response.getStatus() != 200) {
+                response.close();
+                throw new IllegalStateException("HTTP " + response.getStatus());
+            }
+            return response.readEntity(type);
+        }
+
+        @Override
+        public int create(Set<String> set) {
+            return target.path("upload").request()
+                    .post(Entity.entity(new ArrayList<>(set), MediaType.APPLICATION_JSON), Integer.class);
+        }
+
+        @Override
+        public Set<String> get(int id) {
+            List<String> result = read(target.path(String.valueOf(id)).request().get(), 404, null, STRINGS);
+            return result == null ? null : new LinkedHashSet<>(result);
+        }
+
+        @Override
+        public boolean delete(int id) {
+            return read(target.path(id + "/delete").request().get(), 404, null, STRINGS) != null;
+        }
+
+        @Override
+        public int intersect(int a, int b) {
+            return read(target.path(a + "/" + b + "/create_intersection").request().get(), 400, -1, new GenericType<>(Integer.class));
+        }
+
+        @Override
+        public List<Integer> search(String string) {
+            return target.path("search").request().post(Entity.entity(string, MediaType.APPLICATION_JSON), IDS);
+        }
+
+        @Override
+        public int frequency(String string) {
+            return target.path("frequency").request().post(Entity.entity(string, MediaType.APPLICATION_JSON), Integer.class);
+        }
+
+        @Override
+        public long sets() {
+            return target.path("statistics").request().get(CorpusStatistics.class).getSets();
+        }
+
+        @Override
+        public List<String> longestChain() {
+            return target.path("longest_chain").request().get(STRINGS);
+        }
+
+        @Override
+        public List<String> mostCommon() {
+            return target.path("most_common").request().get(STRINGS);
+        }
+    }
+
+    /**
+     * The outcome of a run.
+     */
+    public static final class Result {
+        private final int threads;
+        private final long operations;
+        private final long elapsedNanos;
+        private final Map<Operation, Histogram> latencies;
+        private final List<String> violations;
+        private final long violationCount;
+
+        private Result(int threads, long operations, long elapsedNanos, Map<Operation, Histogram> latencies, List<String> violations, long violationCount) {
+            this.threads = threads;
+            this.operations = operations;
+            this.elapsedNanos = elapsedNanos;
+            this.latencies = latencies;
+            this.violations = violations;
+            this.violationCount = violationCount;
+        }
+
+        public int getThreads() {
+            return threads;
+        }
+
+        public long getOperations() {
+            return operations;
+        }
+
+        public double getThroughput() {
+            return operations / (elapsedNanos / 1e9);
+        }
+
+        /**
+         * @return the latency of each operation in microseconds
+         */
+        public Map<Operation, Histogram> getLatencies() {
+            return latencies;
+        }
+
+        /**
+         * @return the latency of every operation in microseconds
+         */
+        public Histogram getLatency() {
+            Histogram result = new Histogram();
+            for (Histogram h : latencies.values()) {
+                result.merge(h);
+            }
+            return result;
+        }
+
+        /**
+         * @return descriptions of the first violations found
+         */
+        public List<String> getViolations() {
+            return violations;
+        }
+
+        public long getViolationCount() {
+            return violationCount;
+        }
+    }
+
+    /**
+     * What is known of an uploaded string set.
+     */
+    private static final class Record {
+        private final int id;
+        private final Set<String> strings;
+        private final long created;
+        private volatile long deleteStarted = Long.MAX_VALUE;
+        private volatile long deleteCompleted = Long.MAX_VALUE;
+
+        private Record(int id, Set<String> strings, long created) {
+            this.id = id;
+            this.strings = strings;
+            this.created = created;
+        }
+    }
+
+    private final Data data;
+    private final Store store;
+    private final Map<Integer, Record> records = new ConcurrentHashMap<>();
+    private final AtomicInteger maxId = new AtomicInteger();
+    private final AtomicLong createsStarted = new AtomicLong();
+    private final AtomicLong createsCompleted = new AtomicLong();
+    private final AtomicLong deletesStarted = new AtomicLong();
+    private final AtomicLong deletesCompleted = new AtomicLong();
+    private final Queue<String> violations = new ConcurrentLinkedQueue<>();
+    private final AtomicLong violationCount = new AtomicLong();
+
+    /**
+     * Create a torture test of an empty data store.
+     *
+     * @param data the data store, to check once every thread is done
+     * @param store the store to drive, backed by the data store
+     */
+    public ConcurrencyTorture(Data data, Store store) {
+        this.data = data;
+        this.store = store;
+    }
+
+    /**
+     * Run the torture test, then check the data store.
+     *
+     * @param threads the number of concurrent clients
+     * @param operations the number of operations of each client
+     * @param seed the seed of the random operations
+     * @return the throughput, latencies and violations
+     * @throws InterruptedException if interrupted
+     * @throws ExecutionException if a client fails other than by a violation
+     */
+    public Result run(int threads, int operations, long seed) throws InterruptedException, ExecutionException {
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<Map<Operation, Histogram>>> clients = new ArrayList<>();
+        Map<Operation, Histogram> latencies = new EnumMap<>(Operation.class);
+        long elapsed;
+        try {
+            for (int t = 0; t < threads; t++) {
+                long clientSeed = seed * 31 + t;
+                clients.add(executor.submit(() -> client(new Random(clientSeed), operations, start)));
+            }
+            long begin = System.nanoTime();
+            start.countDown();
+            for (Future<Map<Operation, Histogram>> client : clients) {
+                client.get().forEach((op, h) -> latencies.computeIfAbsent(op, k -> new Histogram()).merge(h));
+            }
+            elapsed = System.nanoTime() - begin;
+        } finally {
+            executor.shutdownNow();
+        }
+        checkQuiescent();
+        return new Result(threads, (long) threads * operations, elapsed, latencies,
+                new ArrayList<>(violations), violationCount.get());
+    }
+
+    private void violation(String format, Object... args) {
+        if (violationCount.incrementAndGet() <= MAX_REPORTED) {
+            violations.add(String.format(format, args));
+        }
+    }
+
+    private static Set<String> randomSet(Random rand) {
+        Set<String> result = new LinkedHashSet<>();
+        result.add(MARKER);
+        int size = 1 + rand.nextInt(10);
+        while (result.size() <= size) {
+            result.add(Integer.toString(rand.nextInt(500), 36));
+        }
+        return result;
+    }
+
+    private static Operation randomOperation(Random rand) {
+        int n = rand.nextInt(100);
+        for (Operation op : Operation.values()) {
+            n -= op.weight;
+            if (n < 0) {
+                return op;
+            }
+        }
+        return Operation.GET;
+    }
+
+    private Record randomRecord(Random rand) {
+        for (int i = 0; i < 4; i++) {
+            int max = maxId.get();
+            Record result = max == 0 ? null : records.get(1 + rand.nextInt(max));
+            if (result != null) {
+                return result;
+            }
+        }
+        return null;
+    }
+
+    private void register(int id, Set<String> strings, long created, List<Integer> owned) {
+        if (records.putIfAbsent(id, new Record(id, strings, created)) != null) {
+            violation("Duplicate id %d", id);
+            return;
+        }
+        maxId.accumulateAndGet(id, Math::max);
+        owned.add(id);
+    }
+
+    private Map<Operation, Histogram> client(Random rand, int operations, CountDownLatch start) throws InterruptedException {
+        Map<Operation, Histogram> latencies = new EnumMap<>(Operation.class);
+        List<Integer> owned = new ArrayList<>();
+        start.await();
+        for (int i = 0; i < operations; i++) {
+            Operation op = randomOperation(rand);
+            try {
+                long nanos = perform(op, rand, owned);
+                int micros = (int) Math.min(Integer.MAX_VALUE, nanos / 1000);
+                latencies.computeIfAbsent(op, k -> new Histogram()).add(micros);
+            } catch (RuntimeException ex) {
+                violation("%s failed: %s", op, ex);
+            }
+        }
+        return latencies;
+    }
+
+    /**
+     * Perform and check an operation.
+     *
+     * @return the latency of the operation in nanoseconds
+     */
+    private long perform(Operation op, Random rand, List<Integer> owned) {
+        if (op == Operation.DELETE && owned.isEmpty()) {
+            op = Operation.CREATE;
+        }
+        switch (op) {
+            case CREATE: {
+                Set<String> set = randomSet(rand);
+                createsStarted.incrementAndGet();
+                long start = System.nanoTime();
+                int id = store.create(set);
+                long end = System.nanoTime();
+                createsCompleted.incrementAndGet();
+                register(id, set, end, owned);
+                return end - start;
+            }
+            case DELETE: {
+                Record record = records.get(owned.remove(rand.nextInt(owned.size())));
+                deletesStarted.incrementAndGet();
+                long start = System.nanoTime();
+                record.deleteStarted = start;
+                boolean deleted = store.delete(record.id);
+                long end = System.nanoTime();
+                record.deleteCompleted = end;
+                deletesCompleted.incrementAndGet();
+                if (!deleted) {
+                    violation("Delete of live id %d found nothing", record.id);
+                }
+                return end - start;
+            }
+            case GET: {
+                Record record = randomRecord(rand);
+                if (record == null) {
+                    return 0;
+                }
+                long start = System.nanoTime();
+                Set<String> strings = store.get(record.id);
+                long end = System.nanoTime();
+                if (strings == null && record.deleteStarted > end) {
+                    violation("Get of live id %d found nothing", record.id);
+                } else if (strings != null && record.deleteCompleted < start) {
+                    violation("Get of id %d found it after it was deleted", record.id);
+                } else if (strings != null && !strings.equals(record.strings)) {
+                    violation("Get of id %d found %s, uploaded %s", record.id, strings, record.strings);
+                }
+                return end - start;
+            }
+            case INTERSECT: {
+                Record a = randomRecord(rand);
+                Record b = randomRecord(rand);
+                if (a == null || b == null) {
+                    return 0;
+                }
+                createsStarted.incrementAndGet();
+                long start = System.nanoTime();
+                int id = store.intersect(a.id, b.id);
+                long end = System.nanoTime();
+                if (id < 0) {
+                    if (a.deleteStarted > end && b.deleteStarted > end) {
+                        violation("Intersection of live ids %d and %d failed", a.id, b.id);
+                    }
+                    return end - start;
+                }
+                createsCompleted.incrementAndGet();
+                if (a.deleteCompleted < start || b.deleteCompleted < start) {
+                    violation("Intersection %d of ids %d and %d created after one was deleted", id, a.id, b.id);
+                }
+                Set<String> expected = new HashSet<>(a.strings);
+                expected.retainAll(b.strings);
+                Set<String> strings = store.get(id);
+                if (strings == null || !expected.equals(new HashSet<>(strings))) {
+                    violation("Intersection %d of ids %d and %d is %s, expected %s", id, a.id, b.id, strings, expected);
+                }
+                register(id, strings != null ? strings : expected, System.nanoTime(), owned);
+                return end - start;
+            }
+            case SEARCH: {
+                long start = System.nanoTime();
+                List<Integer> ids = store.search(MARKER);
+                long end = System.nanoTime();
+                Set<Integer> found = new HashSet<>();
+                int previous = Integer.MIN_VALUE;
+                for (int id : ids) {
+                    if (id <= previous) {
+                        violation("Search results out of order: %d after %d", id, previous);
+                    }
+                    previous = id;
+                    found.add(id);
+                    Record record = records.get(id);
+                    if (record != null && record.deleteCompleted < start) {
+                        violation("Search found id %d after it was deleted", id);
+                    }
+                }
+                for (int i = 0; i < SEARCH_SAMPLES; i++) {
+                    Record record = randomRecord(rand);
+                    if (record != null && record.created < start && record.deleteStarted > end && !found.contains(record.id)) {
+                        violation("Search missed live id %d", record.id);
+                    }
+                }
+                return end - start;
+            }
+            case FREQUENCY:
+            case STATISTICS: {
+                long lower = createsCompleted.get();
+                long upper = -deletesCompleted.get();
+                long start = System.nanoTime();
+                long count = op == Operation.FREQUENCY ? store.frequency(MARKER) : store.sets();
+                long end = System.nanoTime();
+                lower -= deletesStarted.get();
+                upper += createsStarted.get();
+                if (count < lower || count > upper) {
+                    violation("%s counted %d string sets, expected between %d and %d", op, count, lower, upper);
+                }
+                return end - start;
+            }
+            case LONGEST_CHAIN: {
+                long start = System.nanoTime();
+                List<String> chain = store.longestChain();
+                long end = System.nanoTime();
+                for (int i = 1; i < chain.size(); i++) {
+                    String from = chain.get(i - 1);
+                    if (from.charAt(from.length() - 1) != chain.get(i).charAt(0)) {
+                        violation("Longest chain %s is not a chain", chain);
+                        break;
+                    }
+                }
+                return end - start;
+            }
+            case MOST_COMMON: {
+                long start = System.nanoTime();
+                List<String> common = store.mostCommon();
+                long end = System.nanoTime();
+                // Every string set has the marker, so nothing is more common.
+                if (!common.isEmpty() && !common.contains(MARKER)) {
+                    violation("Most common %s does not include %s", common, MARKER);
+                }
+                return end - start;
+            }
+            default:
+                throw new IllegalArgumentException("Unknown operation: " + op);
+        }
+    }
+
+    private void checkQuiescent() {
+        Set<Integer> live = new TreeSet<>();
+        for (Record record : records.values()) {
+            if (record.deleteCompleted == Long.MAX_VALUE) {
+                live.add(record.id);
+            }
+        }
+        Set<Integer> keys = new TreeSet<>(data.getKeys());
+        if (!keys.equals(live)) {
+            Set<Integer> extra = new TreeSet<>(keys);
+            extra.removeAll(live);
+            Set<Integer> missing = new TreeSet<>(live);
+            missing.removeAll(keys);
+            violation("Store has ids %s which were deleted, and is missing live ids %s", extra, missing);
+        }
+        if (!new ArrayList<>(live).equals(store.search(MARKER))) {
+            violation("Search does not return every live id");
+        }
+        if (store.frequency(MARKER) != live.size()) {
+            violation("Frequency %d, expected %d", store.frequency(MARKER), live.size());
+        }
+        if (store.sets() != live.size()) {
+            violation("Statistics counted %d string sets, expected %d", store.sets(), live.size());
+        }
+        int longest = LongestChainSolver.combine(data.getChainSummaries()).size();
+        if (store.longestChain().size() != longest) {
+            violation("Longest chain of %d strings, expected %d", store.longestChain().size(), longest);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+/*
+   Copyright 2016 Cyberian Tiger
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.cyberiantiger.example.stringsets.service;
+
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.core.UriBuilder;
+import org.cyberiantiger.example.stringsets.model.Data;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.glassfish.jersey.jackson.JacksonFeature;
+import org.glassfish.jersey.jetty.JettyHttpContainerFactory;
+import org.glassfish.jersey.server.ResourceConfig;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Runs {@link ConcurrencyTorture} against a data store directly and through
+ * an embedded jetty, failing on any violation.
+ *
+ * @author antony
+ */
+public class ConcurrencyTortureTest {
+
+    private static void assertNoViolations(ConcurrencyTorture.Result result) {
+        assertEquals(String.join("\n", result.getViolations()), 0, result.getViolationCount());
+    }
+
+    @Test
+    public void testDirect() throws Exception {
+        Data data = new Data(4);
+        ConcurrencyTorture torture = new ConcurrencyTorture(data, ConcurrencyTorture.direct(data));
+        assertNoViolations(torture.run(64, 200, 1));
+    }
+
+    @Test
+    public void testHttp() throws Exception {
+        Data data = new Data(4);
+        ResourceConfig config = new ResourceConfig()
+                .register(new StringSetResource(data, new ResponseCache(1 << 20), null))
+                .register(JsonListWriter.class)
+                .register(JacksonFeature.class);
+        Server server = JettyHttpContainerFactory.createServer(UriBuilder.fromUri("http://localhost/").port(0).build(), config);
+        Client client = ClientBuilder.newClient().register(JacksonFeature.class);
+        try {
+            int port = ((ServerConnector) server.getConnectors()[0]).getLocalPort();
+            ConcurrencyTorture torture = new ConcurrencyTorture(data,
+                    ConcurrencyTorture.http(client.target(UriBuilder.fromUri("http://localhost/").port(port).build())));
+            assertNoViolations(torture.run(16, 100, 2));
+        } finally {
+            client.close();
+            server.stop();
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/*
+   Copyright 2016 Cyberian Tiger
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.cyberiantiger.example.stringsets.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import javax.ws.rs.core.GenericType;
+import javax.ws.rs.core.MediaType;
+import org.cyberiantiger.example.stringsets.model.IdList;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Tests that JsonListWriter writes the same JSON as Jackson.
+ *
+ * @author antony
+ */
+public class JsonListWriterTest {
+
+    private static final Type STRINGS = new GenericType<List<String>>() {}.getType();
+    private static final Type IDS = new GenericType<List<Integer>>() {}.getType();
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static String write(Collection<?> value, Type type) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new JsonListWriter().writeTo(value, value.getClass(), type, new Annotation[0], MediaType.APPLICATION_JSON_TYPE, null, out);
+        return new String(out.toByteArray(), "UTF-8");
+    }
+
+    @Test
+    public void testIsWriteable() {
+        JsonListWriter writer = new JsonListWriter();
+        Annotation[] none = new Annotation[0];
+        assertTrue(writer.isWriteable(ArrayList.class, STRINGS, none, MediaType.APPLICATION_JSON_TYPE));
+        assertTrue(writer.isWriteable(ArrayList.class, IDS, none, MediaType.APPLICATION_JSON_TYPE));
+        assertTrue(writer.isWriteable(IdList.class, IdList.class, none, MediaType.APPLICATION_JSON_TYPE));
+        assertFalse(writer.isWriteable(ArrayList.class, new GenericType<List<Map<String, Integer>>>() {}.getType(), none, MediaType.APPLICATION_JSON_TYPE));
+        assertFalse(writer.isWriteable(Map.class, Map.class, none, MediaType.APPLICATION_JSON_TYPE));
+    }
+
+    @Test
+    public void testStrings() throws IOException {
+        List<String> strings = Arrays.asList("", "plain", "quote\"back\\slash", "\n\t\u0000\u001f",
+                "caf\u00e9", "\u20ac", "\ud83d\ude00", "/\u007f", "\b\f\r");
+        assertEquals(MAPPER.writeValueAsString(strings), write(strings, STRINGS));
+        assertEquals(strings, MAPPER.readValue(write(strings, STRINGS), List.class));
+        // Unpaired surrogates are escaped rather than written as invalid UTF-8.
+        assertEquals("[\"\\uD800alone\"]", write(Collections.singletonList("\ud800alone"), STRINGS));
+        assertEquals("[]", write(Collections.emptyList(), STRINGS));
+
+        // Longer than the buffer.
+        Random rand = new Random(0);
+        List<String> many = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            char[] chars = new char[rand.nextInt(10)];
+            for (int j = 0; j < chars.length; j++) {
+                chars[j] = (char) (0x20 + rand.nextInt(0x3000));
+            }
+            many.add(new String(chars));
+        }
+        assertEquals(MAPPER.writeValueAsString(many), write(many, STRINGS));
+    }
+
+    @Test
+    public void testIds() throws IOException {
+        List<Integer> ids = Arrays.asList(0, 1, -1, 9, 10, 99, 100, 123456789, Integer.MAX_VALUE, Integer.MIN_VALUE);
+        String expected = MAPPER.writeValueAsString(ids);
+        assertEquals(expected, write(ids, IDS));
+        IdList idList = new IdList(1);
+        idList.addAll(ids);
+        assertEquals(ids, idList);
+        assertEquals(expected, write(idList, IdList.class));
+
+        IdList many = new IdList();
+        for (int i = 0; i < 5000; i++) {
+            many.addInt(i * 7919);
+        }
+        assertEquals(MAPPER.writeValueAsString(new ArrayList<>(many)), write(many, IDS));
+    }
+}
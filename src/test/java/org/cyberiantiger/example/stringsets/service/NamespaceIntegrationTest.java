@@ -0,0 +1,133 @@
+/*
+   Copyright 2016 Cyberian Tiger
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.cyberiantiger.example.stringsets.service;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.core.Application;
+import javax.ws.rs.core.GenericType;
+import javax.ws.rs.core.MediaType;
+import org.cyberiantiger.example.stringsets.model.Data;
+import org.glassfish.jersey.server.ResourceConfig;
+import org.glassfish.jersey.test.JerseyTest;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Integration tests for namespaces.
+ *
+ * @author antony
+ */
+public class NamespaceIntegrationTest extends JerseyTest {
+
+    private static final List<String> sampleList = Arrays.asList("abc", "cde", "efg");
+
+    private Data defaultData;
+    private Data teamData;
+
+    @Override
+    protected Application configure() {
+        defaultData = new Data();
+        teamData = new Data(2);
+        teamData.setMaxBytes(2000);
+        Namespaces namespaces = new Namespaces(Arrays.asList(
+                new Namespace(Namespaces.DEFAULT, defaultData, new ResponseCache(1 << 20)),
+                new Namespace("team", teamData, new ResponseCache(1 << 20))));
+        return new ResourceConfig()
+                .register(new StringSetResource(defaultData, new ResponseCache(1 << 20), namespaces))
+                .register(new NamespaceFilter(namespaces))
+                .register(QuotaExceededExceptionMapper.class)
+                .register(CachedStringSetWriter.class)
+                .register(JsonListWriter.class)
+                .register(BrokenResource.class);
+    }
+
+    /**
+     * A resource throwing an exception with no mapper.
+     */
+    @Path("ns/{namespace}/broken")
+    public static class BrokenResource {
+        @GET
+        public String get() {
+            throw new IllegalStateException("Broken");
+        }
+    }
+
+    private int upload(String path, List<String> strings) {
+        return target(path).request().post(Entity.entity(strings, MediaType.APPLICATION_JSON), Integer.class);
+    }
+
+    @Test
+    public void testIsolation() {
+        int id = upload("upload", sampleList);
+        assertEquals(id, upload("ns/team/upload", sampleList));
+        int other = target("upload").request().header(Namespaces.HEADER, "team")
+                .post(Entity.entity(Arrays.asList("ghi"), MediaType.APPLICATION_JSON), Integer.class);
+
+        assertEquals(1, defaultData.getKeys().size());
+        assertEquals(2, teamData.getKeys().size());
+        assertEquals(Arrays.asList("ghi"), target("ns/team/" + other).request().get(List.class));
+        assertEquals(Arrays.asList("ghi"), target(String.valueOf(other)).request().header(Namespaces.HEADER, "team").get(List.class));
+        assertEquals(404, target(String.valueOf(other)).request().get().getStatus());
+        assertEquals(Collections.singletonList(id), target("ns/default/search").request().post(Entity.entity("abc", MediaType.APPLICATION_JSON), List.class));
+        assertEquals(4, target(String.format("ns/team/%d/%d/longest_chain", id, other)).request().get(List.class).size());
+        assertEquals(sampleList, target(String.format("ns/team/%d/delete", id)).request().get(List.class));
+        assertEquals(sampleList, target(String.valueOf(id)).request().get(List.class));
+
+        assertEquals(404, target("ns/unknown/upload").request().post(Entity.entity(sampleList, MediaType.APPLICATION_JSON)).getStatus());
+        assertEquals(404, target("ns/team/ns/default").request().get().getStatus());
+    }
+
+    @Test
+    public void testMemoryLimit() {
+        int status = 200;
+        int created = 0;
+        while (status == 200 && created < 100) {
+            status = target("ns/team/upload").request().post(Entity.entity(sampleList, MediaType.APPLICATION_JSON)).getStatus();
+            created++;
+        }
+        assertEquals(QuotaExceededExceptionMapper.INSUFFICIENT_STORAGE, status);
+        assertTrue(teamData.getBytes() <= teamData.getMaxBytes());
+        // Other namespaces are unaffected, and deleting makes room.
+        upload("upload", sampleList);
+        target("ns/team/1/delete").request().get();
+        upload("ns/team/upload", sampleList);
+
+        List<Map<String, Object>> statistics = target("namespaces").request().get(new GenericType<List<Map<String, Object>>>() {});
+        assertEquals(2, statistics.size());
+        assertEquals("team", statistics.get(1).get("name"));
+        assertEquals(teamData.getKeys().size(), ((Number) statistics.get(1).get("sets")).intValue());
+        assertEquals(2000, ((Number) statistics.get(1).get("maxBytes")).intValue());
+        assertTrue(((Number) statistics.get(1).get("requests")).intValue() >= created + 2);
+        assertEquals(1, ((Number) statistics.get(1).get("errors")).intValue());
+
+        // Including errors no exception mapper handles, recorded once the
+        // request finishes, which may be after the client has the response.
+        assertEquals(500, target("broken").request().header(Namespaces.HEADER, "team").get().getStatus());
+        long deadline = System.currentTimeMillis() + 5000;
+        int errors;
+        do {
+            statistics = target("namespaces").request().get(new GenericType<List<Map<String, Object>>>() {});
+            errors = ((Number) statistics.get(1).get("errors")).intValue();
+        } while (errors < 2 && System.currentTimeMillis() < deadline);
+        assertEquals(2, errors);
+    }
+}
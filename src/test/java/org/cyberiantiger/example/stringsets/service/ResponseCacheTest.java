@@ -0,0 +1,103 @@
+/*
+   Copyright 2016 Cyberian Tiger
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.cyberiantiger.example.stringsets.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import javax.ws.rs.core.MediaType;
+import org.cyberiantiger.example.stringsets.model.StringSet;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Unit tests for ResponseCache.
+ *
+ * @author antony
+ */
+public class ResponseCacheTest {
+
+    private static StringSet stringSet(String... strings) {
+        return new StringSet(new LinkedHashSet<>(Arrays.asList(strings)));
+    }
+
+    @Test
+    public void testCache() {
+        ResponseCache cache = new ResponseCache(1000);
+        StringSet a = stringSet("b", "a");
+        byte[] json = cache.get(a, MediaType.APPLICATION_JSON_TYPE);
+        assertEquals("[\"b\",\"a\"]", new String(json, StandardCharsets.UTF_8));
+        assertSame(json, cache.get(a, MediaType.APPLICATION_JSON_TYPE));
+        byte[] binary = cache.get(a, BinaryFormat.MEDIA_TYPE_TYPE);
+        assertArrayEquals(new byte[] { 2, 1, 'b', 1, 'a' }, binary);
+        assertEquals(json.length + binary.length, cache.getBytes());
+        cache.remove(a);
+        assertEquals(0, cache.getBytes());
+        assertNotSame(json, cache.get(a, MediaType.APPLICATION_JSON_TYPE));
+    }
+
+    @Test
+    public void testEviction() {
+        ResponseCache cache = new ResponseCache(1000);
+        StringSet[] sets = new StringSet[20];
+        for (int i = 0; i < sets.length; i++) {
+            char[] chars = new char[90];
+            Arrays.fill(chars, (char) ('a' + i));
+            sets[i] = stringSet(new String(chars));
+            cache.get(sets[i], MediaType.APPLICATION_JSON_TYPE);
+            // Keep the first set recently used.
+            cache.get(sets[0], MediaType.APPLICATION_JSON_TYPE);
+            assertTrue(cache.getBytes() <= 1000);
+        }
+        byte[] first = cache.get(sets[0], MediaType.APPLICATION_JSON_TYPE);
+        assertSame(first, cache.get(sets[0], MediaType.APPLICATION_JSON_TYPE));
+        long before = cache.getBytes();
+        cache.get(sets[1], MediaType.APPLICATION_JSON_TYPE);
+        assertEquals(before, cache.getBytes());
+    }
+
+    @Test
+    public void testConcurrent() throws InterruptedException {
+        ResponseCache cache = new ResponseCache(2000);
+        StringSet[] sets = new StringSet[50];
+        for (int i = 0; i < sets.length; i++) {
+            sets[i] = stringSet("set" + i, "x");
+        }
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            int seed = t;
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 20000; i++) {
+                    StringSet set = sets[(i * 7 + seed) % sets.length];
+                    if (i % 10 == seed) {
+                        cache.remove(set);
+                    } else {
+                        cache.get(set, i % 2 == 0 ? MediaType.APPLICATION_JSON_TYPE : BinaryFormat.MEDIA_TYPE_TYPE);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertTrue(cache.getBytes() <= 2000);
+        for (StringSet set : sets) {
+            cache.remove(set);
+        }
+        assertEquals(0, cache.getBytes());
+    }
+}
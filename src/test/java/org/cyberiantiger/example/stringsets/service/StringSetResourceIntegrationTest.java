@@ -38,7 +38,7 @@ import org.junit.Test;
 public class StringSetResourceIntegrationTest extends JerseyTest {
     @Override
     protected Application configure() {
-        return new ResourceConfig(StringSetResource.class);
+        return new ResourceConfig(StringSetResource.class, CachedStringSetWriter.class, JsonListWriter.class);
     }
 
     private static final List<String> sampleList = Arrays.asList(new String[] {"a", "b", "c"});
@@ -66,10 +66,25 @@ public class StringSetResourceIntegrationTest extends JerseyTest {
         // create_intersection
         int intersectionId = target(String.format("%d/%d/create_intersection", id, id)).request().get(Integer.class);
         assertEquals(sampleList, target(String.valueOf(intersectionId)).request().get(List.class));
+        // create_{operation} and count_{operation}
+        int unionId = target("create_union").request().post(Entity.entity(Arrays.asList(id, intersectionId), MediaType.APPLICATION_JSON), Integer.class);
+        assertEquals(sampleList, target(String.valueOf(unionId)).request().get(List.class));
+        assertEquals((Integer) 0, target("count_difference").request().post(Entity.entity(Arrays.asList(id, unionId), MediaType.APPLICATION_JSON), Integer.class));
+        assertEquals(sampleList, target(String.format("%d/delete", unionId)).request().get(List.class));
         // delete
         assertEquals(sampleList, target(String.format("%d/delete", intersectionId)).request().get(List.class));
         // longest_chain
         assertEquals(1, target("longest_chain").request().get(List.class).size());
     }
+
+    @Test
+    public void testInvalidUpload() {
+        Data.instance.clear();
+        for (List<String> invalid : Arrays.asList(Arrays.asList("a", "b", "a"), Arrays.asList("a", ""), Collections.<String>emptyList())) {
+            assertEquals(400, target("upload").request().post(Entity.entity(invalid, MediaType.APPLICATION_JSON)).getStatus());
+        }
+        assertEquals(400, target("bulk_upload").request().post(Entity.entity(Arrays.asList(sampleList, Arrays.asList("b", "b")), MediaType.APPLICATION_JSON)).getStatus());
+        assertEquals(Collections.emptyMap(), target("").request().get(Map.class));
+    }
     
 }
@@ -15,18 +15,32 @@
 */
 package org.cyberiantiger.example.stringsets.service;
 
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import javax.ws.rs.BadRequestException;
 import javax.ws.rs.NotFoundException;
 import junit.framework.AssertionFailedError;
+import org.cyberiantiger.example.stringsets.model.CorpusStatistics;
 import org.cyberiantiger.example.stringsets.model.Data;
+import org.cyberiantiger.example.stringsets.model.MembershipQuery;
 import org.cyberiantiger.example.stringsets.model.SetStatistics;
+import org.cyberiantiger.example.stringsets.model.changes.Change;
+import org.cyberiantiger.example.stringsets.model.changes.ChangeBatch;
+import org.cyberiantiger.example.stringsets.model.frequency.FrequencyEstimate;
+import org.cyberiantiger.example.stringsets.model.longestchain.ChainExplanation;
+import org.cyberiantiger.example.stringsets.model.longestchain.ChainSearchStatistics;
+import org.cyberiantiger.example.stringsets.model.similarity.Similarity;
 import static org.junit.Assert.*;
 import org.junit.Test;
 
@@ -99,6 +113,42 @@ public class StringSetResourceUnitTest {
         assertEquals(Collections.emptyList(), res.search("d"));
     }
 
+    /**
+     * Test the membership endpoint.
+     */
+    @Test
+    public void testMembership() {
+        StringSetResource res = createStringSetResource();
+        int idA = res.upload(Arrays.asList("a", "b", "c"));
+        int idB = res.upload(Arrays.asList("c", "d"));
+        int idC = res.upload(Arrays.asList("e"));
+
+        Map<Integer, List<String>> members = res.membership(new MembershipQuery(Arrays.asList("c", "a", "x", "c"), null));
+        assertEquals(Arrays.asList(idA, idB), new ArrayList<>(members.keySet()));
+        assertEquals(Arrays.asList("c", "a"), members.get(idA));
+        assertEquals(Arrays.asList("c"), members.get(idB));
+
+        members = res.membership(new MembershipQuery(Arrays.asList("c", "e"), Arrays.asList(idB, idC, idC + 1)));
+        assertEquals(Arrays.asList(idB, idC), new ArrayList<>(members.keySet()));
+        assertEquals(Arrays.asList("e"), members.get(idC));
+        assertTrue(res.membership(new MembershipQuery(Collections.emptyList(), null)).isEmpty());
+        try {
+            res.membership(new MembershipQuery(null, null));
+            throw new AssertionFailedError("Membership without strings did not return bad request");
+        } catch (BadRequestException ex) {
+        }
+        try {
+            res.membership(new MembershipQuery(Arrays.asList("a"), Arrays.asList(idB, null)));
+            throw new AssertionFailedError("Membership with a null id did not return bad request");
+        } catch (BadRequestException ex) {
+        }
+        try {
+            res.membership(null);
+            throw new AssertionFailedError("Membership without a query did not return bad request");
+        } catch (BadRequestException ex) {
+        }
+    }
+
     /**
      * Test the delete endpoint.
      */
@@ -142,6 +192,96 @@ public class StringSetResourceUnitTest {
         assertEquals(4, stats.getLongestLength());
         assertEquals(2.5D, stats.getAverageLength(), 0D);
         assertEquals(2.5D, stats.getMedianLength(), 0D);
+        // The median is of the sorted lengths, not the middle of the upload order.
+        id = res.upload(Arrays.asList(new String[] { "aaaaa", "a", "aaa", "aa" }));
+        assertEquals(2.5D, res.setStatistics(id).getMedianLength(), 0D);
+        id = res.upload(Arrays.asList(new String[] { "aaaa", "a", "aa", "aaaaaaaa", "aaaaaaa", "aaa", "b" }));
+        assertEquals(3D, res.setStatistics(id).getMedianLength(), 0D);
+    }
+
+    /**
+     * Test the exactly_in_range and exactly_in_histogram endpoints.
+     */
+    @Test
+    public void testExactlyInRange() {
+        StringSetResource res = createStringSetResource();
+        res.upload(sampleList);
+        res.upload(Arrays.asList(new String[] { "c", "b", "e" }));
+        res.upload(Arrays.asList(new String[] { "c" }));
+        Map<Integer, Integer> histogram = res.exactlyInHistogram();
+        assertEquals(Arrays.asList(1, 2, 3), new ArrayList<>(histogram.keySet()));
+        assertEquals(Arrays.asList(3, 1, 1), new ArrayList<>(histogram.values()));
+        List<FrequencyEstimate> range = res.exactlyInRange(1, 2, 0, 1000);
+        assertEquals(4, range.size());
+        assertEquals("a", range.get(0).getString());
+        assertEquals("b", range.get(3).getString());
+        assertEquals(2, range.get(3).getCount());
+        range = res.exactlyInRange(1, Integer.MAX_VALUE, 2, 2);
+        assertEquals(2, range.size());
+        assertEquals("e", range.get(0).getString());
+        assertEquals("b", range.get(1).getString());
+        try {
+            res.exactlyInRange(2, 1, 0, 1000);
+            throw new AssertionFailedError("exactlyInRange allowed min greater than max");
+        } catch (BadRequestException ex) {
+        }
+        try {
+            res.exactlyInRange(1, 2, 0, 0);
+            throw new AssertionFailedError("exactlyInRange allowed a limit of 0");
+        } catch (BadRequestException ex) {
+        }
+    }
+
+    /**
+     * Test the top_strings and frequency endpoints.
+     */
+    @Test
+    public void testTopStrings() {
+        StringSetResource res = createStringSetResource();
+        assertEquals(0, res.topStrings(10).size());
+        res.upload(sampleList);
+        res.upload(Arrays.asList(new String[] { "c", "b" }));
+        res.upload(Arrays.asList(new String[] { "c" }));
+        List<FrequencyEstimate> top = res.topStrings(2);
+        assertEquals(2, top.size());
+        assertEquals("c", top.get(0).getString());
+        assertEquals(3, top.get(0).getCount());
+        assertEquals("b", top.get(1).getString());
+        assertEquals(2, top.get(1).getCount());
+        assertEquals(4, res.topStrings(10).size());
+        assertEquals(1, res.frequency("a"));
+        assertEquals(0, res.frequency("z"));
+        try {
+            res.topStrings(0);
+            throw new AssertionFailedError("topStrings allowed a count of 0");
+        } catch (BadRequestException ex) {
+        }
+    }
+
+    /**
+     * Test the statistics endpoint.
+     */
+    @Test
+    public void testStatistics() {
+        StringSetResource res = createStringSetResource();
+        assertEquals(0, res.statistics().getSets());
+        res.upload(sampleList);
+        int id = res.upload(Arrays.asList(new String[] { "a", "aa", "aaa", "aaaa", "aaaaa" }));
+        res.upload(Arrays.asList(new String[] { "bb" }));
+        CorpusStatistics statistics = res.statistics();
+        assertEquals(3, statistics.getSets());
+        assertEquals(10, statistics.getStrings());
+        assertEquals(1, statistics.getSetSizes().getMin());
+        assertEquals(5, statistics.getSetSizes().getMax());
+        assertEquals(4D, statistics.getSetSizes().getPercentile(50), 0D);
+        assertEquals(1D, statistics.getStringLengths().getPercentile(50), 0D);
+        assertEquals(5D, statistics.getStringLengths().getPercentile(99), 0D);
+        assertEquals(2.1D, statistics.getStringLengths().getMean(), 1e-9);
+        res.delete(id);
+        statistics = res.statistics();
+        assertEquals(2, statistics.getSets());
+        assertEquals(5, statistics.getStrings());
+        assertEquals(2, statistics.getStringLengths().getMax());
     }
 
     /**
@@ -230,6 +370,220 @@ public class StringSetResourceUnitTest {
         assertEquals(Arrays.asList(new String[] { "d", "c", "b", "a" }), new ArrayList<>(res.get(idG)));
     }
 
+    /**
+     * Test the create_{operation} and count_{operation} endpoints.
+     */
+    @Test
+    public void testSetOperations() {
+        StringSetResource res = createStringSetResource();
+        int idA = res.upload(Arrays.asList(new String[] { "a", "b", "c", "d" }));
+        int idB = res.upload(Arrays.asList(new String[] { "e", "d", "c" }));
+        int idC = res.upload(Arrays.asList(new String[] { "c", "f", "a" }));
+        List<Integer> ids = Arrays.asList(idA, idB, idC);
+
+        int id = res.createSetOperation("union", ids);
+        assertEquals(Arrays.asList("a", "b", "c", "d", "e", "f"), new ArrayList<>(res.get(id)));
+        id = res.createSetOperation("intersection", Arrays.asList(idB, idA));
+        assertEquals(Arrays.asList("d", "c"), new ArrayList<>(res.get(id)));
+        id = res.createSetOperation("difference", ids);
+        assertEquals(Arrays.asList("b"), new ArrayList<>(res.get(id)));
+        id = res.createSetOperation("symmetric_difference", ids);
+        assertEquals(Arrays.asList("b", "c", "e", "f"), new ArrayList<>(res.get(id)));
+
+        assertEquals(6, res.countSetOperation("union", ids));
+        assertEquals(1, res.countSetOperation("intersection", ids));
+        assertEquals(1, res.countSetOperation("difference", ids));
+        assertEquals(4, res.countSetOperation("symmetric_difference", ids));
+        assertEquals(0, res.countSetOperation("difference", Arrays.asList(idA, idA)));
+
+        // Operation names must not depend on the default locale.
+        Locale locale = Locale.getDefault();
+        try {
+            Locale.setDefault(new Locale("tr", "TR"));
+            assertEquals(1, res.countSetOperation("intersection", ids));
+        } finally {
+            Locale.setDefault(locale);
+        }
+
+        try {
+            res.createSetOperation("difference", Arrays.asList(idA, idA));
+            throw new AssertionFailedError("create_difference did not return bad request for creating an empty string set");
+        } catch (BadRequestException ex) {
+        }
+        try {
+            res.countSetOperation("union", Arrays.asList(idA, -1));
+            throw new AssertionFailedError("count_union did not return bad request for invalid string set id");
+        } catch (BadRequestException ex) {
+        }
+        try {
+            res.countSetOperation("union", Collections.emptyList());
+            throw new AssertionFailedError("count_union did not return bad request for no string set ids");
+        } catch (BadRequestException ex) {
+        }
+        try {
+            res.countSetOperation("product", ids);
+            throw new AssertionFailedError("count_product did not return not found");
+        } catch (NotFoundException ex) {
+        }
+    }
+
+    /**
+     * Test the changes endpoints.
+     */
+    @Test
+    public void testChanges() throws Exception {
+        StringSetResource res = createStringSetResource();
+        long start = res.changes(0, 1000, 0).getSequence();
+        int idA = res.upload(sampleList);
+        int idB = res.upload(Arrays.asList(new String[] { "b", "c" }));
+        res.delete(idA);
+        try {
+            res.delete(idA);
+            throw new AssertionFailedError("delete did not return not found for deleted string set id");
+        } catch (NotFoundException ex) {
+        }
+
+        ChangeBatch batch = res.changes(start, 1000, 0);
+        assertFalse(batch.isTruncated());
+        assertEquals(3, batch.getChanges().size());
+        assertEquals(Change.Type.CREATE, batch.getChanges().get(0).getType());
+        assertEquals(idA, batch.getChanges().get(0).getId());
+        assertEquals(idB, batch.getChanges().get(1).getId());
+        assertEquals(Change.Type.DELETE, batch.getChanges().get(2).getType());
+        assertEquals(res.getData().getChangeLog().getSequence(), batch.getSequence());
+
+        batch = res.changes(start, 2, 0);
+        assertEquals(2, batch.getChanges().size());
+        batch = res.changes(batch.getSequence(), 2, 0);
+        assertEquals(1, batch.getChanges().size());
+        assertEquals(Change.Type.DELETE, batch.getChanges().get(0).getType());
+        assertTrue(res.changes(Long.MAX_VALUE, 1000, 0).isTruncated());
+
+        // Long poll wakes up on a change.
+        long sequence = res.changes(start, 1000, 0).getSequence();
+        Thread uploader = new Thread(() -> {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException ex) {
+            }
+            res.upload(sampleList);
+        });
+        uploader.start();
+        batch = res.changes(sequence, 1000, 60000);
+        uploader.join();
+        assertEquals(1, batch.getChanges().size());
+        assertEquals(Change.Type.CREATE, batch.getChanges().get(0).getType());
+
+        // Event stream, the client disconnecting after the first event.
+        ByteArrayOutputStream events = new ByteArrayOutputStream();
+        try {
+            res.changeStream(start, null, 1000).write(new FilterOutputStream(events) {
+                @Override
+                public void flush() throws IOException {
+                    throw new IOException("Disconnected");
+                }
+            });
+            throw new AssertionFailedError("change stream did not stop when disconnected");
+        } catch (IOException ex) {
+        }
+        String event = new String(events.toByteArray(), StandardCharsets.UTF_8);
+        assertTrue(event, event.startsWith("id: " + batch.getSequence() + "\nevent: changes\ndata: {"));
+        assertTrue(event, event.endsWith("}\n\n"));
+
+        try {
+            res.changes(0, 0, 0);
+            throw new AssertionFailedError("changes did not return bad request for invalid max");
+        } catch (BadRequestException ex) {
+        }
+    }
+
+    /**
+     * Test the duplicates endpoints.
+     */
+    @Test
+    public void testDuplicates() {
+        StringSetResource res = createStringSetResource();
+        int idA = res.upload(Arrays.asList(new String[] { "a", "b", "c" }));
+        int idB = res.upload(Arrays.asList(new String[] { "c", "b", "a" }));
+        int idC = res.upload(Arrays.asList(new String[] { "a", "b" }));
+        assertEquals(Collections.singletonList(idB), res.duplicates(idA));
+        assertEquals(Collections.emptyList(), res.duplicates(idC));
+        assertEquals(Arrays.asList(idA, idB), res.duplicates(Arrays.asList(new String[] { "b", "a", "c" })));
+        assertEquals(Collections.singletonList(idC), res.duplicates(Arrays.asList(new String[] { "b", "a" })));
+        res.delete(idB);
+        assertEquals(Collections.emptyList(), res.duplicates(idA));
+        try {
+            res.duplicates(idB);
+            throw new AssertionFailedError("duplicates did not return not found for invalid string set id");
+        } catch (NotFoundException ex) {
+        }
+    }
+
+    /**
+     * Test identical string sets share storage when deduplication is enabled.
+     */
+    @Test
+    public void testDeduplicate() {
+        StringSetResource res = createStringSetResource();
+        try {
+            res.getData().setDeduplicate(true);
+            int idA = res.upload(sampleList);
+            int idB = res.upload(sampleList);
+            int idC = res.upload(Arrays.asList(new String[] { "d", "c", "b", "a" }));
+            assertSame(res.getData().get(idA), res.getData().get(idB));
+            assertNotSame(res.getData().get(idA), res.getData().get(idC));
+            assertEquals(Arrays.asList(new String[] { "d", "c", "b", "a" }), new ArrayList<>(res.get(idC)));
+            assertEquals(Arrays.asList(idB, idC), res.duplicates(idA));
+            assertEquals(sampleSet, new HashSet<>(res.exactlyIn(3)));
+            res.delete(idA);
+            assertEquals(sampleSet, res.get(idB));
+        } finally {
+            res.getData().setDeduplicate(false);
+        }
+    }
+
+    /**
+     * Test the similar endpoints.
+     */
+    @Test
+    public void testSimilar() {
+        StringSetResource res = createStringSetResource();
+        List<String> a = new ArrayList<>();
+        List<String> b = new ArrayList<>();
+        List<String> c = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            a.add("a" + i);
+            b.add(i < 190 ? "a" + i : "b" + i);
+            c.add("c" + i);
+        }
+        int idA = res.upload(a);
+        int idB = res.upload(b);
+        int idC = res.upload(c);
+
+        List<Similarity> result = res.similar(idA, 0.5, true);
+        assertEquals(1, result.size());
+        assertEquals(idB, result.get(0).getId());
+        assertEquals(190D / 210D, result.get(0).getJaccard(), 1e-9);
+        assertEquals(190D / 210D, result.get(0).getEstimatedJaccard(), 0.15);
+
+        result = res.similar(0.99, false, c);
+        assertEquals(1, result.size());
+        assertEquals(idC, result.get(0).getId());
+        assertEquals(1D, result.get(0).getEstimatedJaccard(), 0D);
+        assertNull(result.get(0).getJaccard());
+
+        try {
+            res.similar(idC + 1, 0.5, false);
+            throw new AssertionFailedError("similar did not return not found for invalid string set id");
+        } catch (NotFoundException ex) {
+        }
+        try {
+            res.similar(1.5, false, c);
+            throw new AssertionFailedError("similar did not return bad request for invalid threshold");
+        } catch (BadRequestException ex) {
+        }
+    }
+
     /**
      * Test the longest_chain endpoint.
      */
@@ -258,4 +612,77 @@ public class StringSetResourceUnitTest {
         result = res.longestChain();
         assertEquals(1, result.size());
     }
+
+    /**
+     * Test the longest_chain endpoints for a single set, a pair of sets,
+     * a list of sets and starting or ending with a string.
+     */
+    @Test
+    public void testTargetedLongestChain() {
+        StringSetResource res = createStringSetResource();
+        int one = res.upload(Arrays.asList(new String[] {"foo",  "oomph",  "hgf"}));
+        int two = res.upload(Arrays.asList(new String[] {"hij", "jkl", "jkm", "lmn"}));
+        int three = res.upload(Arrays.asList(new String[] {"abc", "cde", "cdf", "fuf", "fgh"}));
+
+        assertEquals(Arrays.asList("abc", "cdf", "fuf", "fgh"), res.longestChain(three));
+        assertEquals(Arrays.asList("abc", "cdf", "fuf", "fgh", "hij", "jkl", "lmn"), res.longestChain(three, two));
+        assertEquals(Arrays.asList("hij", "jkl", "lmn"), res.longestChain(two, three));
+        assertEquals(Arrays.asList("hgf", "foo", "oomph", "hij", "jkl", "lmn"), res.longestChain(Arrays.asList(one, two)));
+        assertEquals(7, res.longestChain(Arrays.asList(one, two, three)).size());
+
+        List<String> result = res.longestChainStartingAt("cdf");
+        assertEquals(6, result.size());
+        assertEquals(Arrays.asList("cdf", "fuf", "fgh"), result.subList(0, 3));
+        assertEquals(Arrays.asList("abc", "cdf", "fuf", "fgh", "hij", "jkl"), res.longestChainEndingWith("jkl"));
+        assertEquals(Arrays.asList("abc", "cdf", "fuf", "fgh", "hgf", "foo", "oomph"), res.longestChainEndingWith("oomph"));
+        assertTrue(res.longestChainStartingAt("xyz").isEmpty());
+        assertTrue(res.longestChainEndingWith("xyz").isEmpty());
+
+        try {
+            res.longestChain(-1);
+            throw new AssertionFailedError("longestChain allowed a missing id");
+        } catch (NotFoundException ex) {
+        }
+        try {
+            res.longestChain(one, one);
+            throw new AssertionFailedError("longestChain allowed the same id twice");
+        } catch (BadRequestException ex) {
+        }
+        try {
+            res.longestChain(Arrays.asList(one, -1));
+            throw new AssertionFailedError("longestChain allowed a missing id in a list");
+        } catch (BadRequestException ex) {
+        }
+    }
+
+    /**
+     * Test the longest_chain/explain endpoint.
+     */
+    @Test
+    public void testExplainLongestChain() {
+        StringSetResource res = createStringSetResource();
+        ChainExplanation explanation = res.explainLongestChain();
+        assertTrue(explanation.getLongest().isEmpty());
+        assertNull(explanation.getFrom());
+        assertNull(explanation.getTo());
+
+        int one = res.upload(Arrays.asList(new String[] {"foo",  "oomph",  "hgf"}));
+        int two = res.upload(Arrays.asList(new String[] {"hij", "jkl", "jkm", "lmn"}));
+        int three = res.upload(Arrays.asList(new String[] {"abc", "cde", "cdf", "fuf", "fgh"}));
+        int four = res.upload(Arrays.asList(new String[] {"cde", "fgh", "abc", "fuf", "cdf"}));
+        explanation = res.explainLongestChain();
+        assertEquals(res.longestChain().size(), explanation.getLongest().size());
+        assertEquals(7, explanation.getLongest().size());
+        assertTrue(explanation.getFrom() == three || explanation.getFrom() == four);
+        assertTrue(explanation.getTo() == one || explanation.getTo() == two);
+        assertTrue(res.get(explanation.getTo()).contains(explanation.getLongest().get(6)));
+        assertEquals(4, explanation.getSets().size());
+        assertEquals(1, explanation.getMemoHits());
+        ChainSearchStatistics statistics = explanation.getSets().get(three);
+        assertEquals(5, statistics.getStrings());
+        // abc -> cde, cdf; cdf -> fuf, fgh; fuf -> fuf, fgh
+        assertEquals(6, statistics.getEdges());
+        assertTrue(statistics.getExpanded() > statistics.getStrings());
+        assertTrue(statistics.getPruned() > 0);
+    }
 }